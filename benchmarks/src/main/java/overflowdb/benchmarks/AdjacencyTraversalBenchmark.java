@@ -0,0 +1,77 @@
+package overflowdb.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import overflowdb.Node;
+import overflowdb.OdbGraph;
+import overflowdb.testdomains.simple.TestEdge;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures `OdbNode.out(label)` and `OdbNode.in(label)`: the time to visit all adjacent nodes of all nodes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AdjacencyTraversalBenchmark {
+
+  @Param({"10000", "100000"})
+  public int nodeCount;
+
+  @Param({"UNIFORM", "POWER_LAW"})
+  public DegreeDistribution degreeDistribution;
+
+  @Param({"10"})
+  public int averageDegree;
+
+  private OdbGraph graph;
+
+  @Setup
+  public void setup() {
+    graph = SyntheticGraph.create(nodeCount, degreeDistribution, averageDegree);
+  }
+
+  @TearDown
+  public void teardown() {
+    graph.close();
+  }
+
+  @Benchmark
+  public void out(Blackhole blackhole) {
+    Iterator<Node> nodes = graph.nodes();
+    while (nodes.hasNext()) {
+      Iterator<Node> adjacent = nodes.next().out(TestEdge.LABEL);
+      while (adjacent.hasNext()) {
+        blackhole.consume(adjacent.next());
+      }
+    }
+  }
+
+  @Benchmark
+  public void in(Blackhole blackhole) {
+    Iterator<Node> nodes = graph.nodes();
+    while (nodes.hasNext()) {
+      Iterator<Node> adjacent = nodes.next().in(TestEdge.LABEL);
+      while (adjacent.hasNext()) {
+        blackhole.consume(adjacent.next());
+      }
+    }
+  }
+
+}
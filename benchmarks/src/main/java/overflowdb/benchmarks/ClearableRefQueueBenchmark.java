@@ -0,0 +1,77 @@
+package overflowdb.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import overflowdb.util.ChunkedMpscQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the queue of clearable references in `ReferenceManager`: many threads register refs (e.g. while
+ * deserializing nodes during a multithreaded traversal) while one thread drains them in batches
+ * compares the current `ChunkedMpscQueue` against the previously used synchronized LinkedList
+ * run with `-prof gc` to see the allocated bytes per registered ref (`gc.alloc.rate.norm`)
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClearableRefQueueBenchmark {
+  private static final int DRAIN_BATCH_SIZE = 1000;
+  private static final Object REF = new Object();
+
+  private final ChunkedMpscQueue<Object> chunkedMpscQueue = new ChunkedMpscQueue<>();
+  private final List<Object> synchronizedLinkedList = Collections.synchronizedList(new LinkedList<>());
+  private final List<Object> drained = new ArrayList<>(DRAIN_BATCH_SIZE);
+
+  @Benchmark
+  @Group("chunkedMpscQueue")
+  @GroupThreads(4)
+  public void chunkedMpscQueueRegister() {
+    chunkedMpscQueue.offer(REF);
+  }
+
+  @Benchmark
+  @Group("chunkedMpscQueue")
+  @GroupThreads(1)
+  public int chunkedMpscQueueDrain() {
+    drained.clear();
+    return chunkedMpscQueue.drainTo(drained, DRAIN_BATCH_SIZE);
+  }
+
+  @Benchmark
+  @Group("synchronizedLinkedList")
+  @GroupThreads(4)
+  public void synchronizedLinkedListRegister() {
+    synchronizedLinkedList.add(REF);
+  }
+
+  @Benchmark
+  @Group("synchronizedLinkedList")
+  @GroupThreads(1)
+  public int synchronizedLinkedListDrain() {
+    drained.clear();
+    int count = 0;
+    while (count < DRAIN_BATCH_SIZE && !synchronizedLinkedList.isEmpty()) {
+      drained.add(synchronizedLinkedList.remove(0));
+      count++;
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,126 @@
+package overflowdb.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import overflowdb.NodeFactory;
+import overflowdb.NodeRef;
+import overflowdb.OdbGraph;
+import overflowdb.storage.Compression;
+import overflowdb.storage.NodeDeserializer;
+import overflowdb.storage.NodeSerializer;
+import overflowdb.testdomains.gratefuldead.Artist;
+import overflowdb.testdomains.gratefuldead.ArtistDb;
+import overflowdb.testdomains.gratefuldead.GratefulDead;
+import overflowdb.testdomains.gratefuldead.Song;
+import overflowdb.testdomains.gratefuldead.SongDb;
+import overflowdb.testdomains.simple.TestNode;
+import overflowdb.testdomains.simple.TestNodeDb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the tradeoff of `Compression` for the serialized nodes of the gratefuldead graph and a synthetic graph:
+ * compression time, and read latency (decompress and deserialize). The `compress` results include the serialized and
+ * stored bytes of all nodes as secondary results, see {@link Sizes}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompressionBenchmark {
+
+  @Param({"GRATEFUL_DEAD", "SYNTHETIC"})
+  public String graphType;
+
+  @Param({"NONE", "LZ4", "DEFLATE"})
+  public Compression compression;
+
+  /* only used for the synthetic graph */
+  @Param({"100000"})
+  public int nodeCount;
+
+  private OdbGraph graph;
+  private List<byte[]> serializedNodes;
+  private List<byte[]> storedNodes;
+  private NodeDeserializer deserializer;
+
+  @Setup
+  public void setup() throws IOException {
+    final Map<Integer, NodeFactory> nodeFactories = new HashMap<>();
+    if (graphType.equals("GRATEFUL_DEAD")) {
+      graph = GratefulDead.newGraph();
+      GratefulDead.loadData(graph);
+      nodeFactories.put(SongDb.layoutInformation.labelId, Song.factory);
+      nodeFactories.put(ArtistDb.layoutInformation.labelId, Artist.factory);
+    } else {
+      graph = SyntheticGraph.create(nodeCount, DegreeDistribution.POWER_LAW, 10);
+      nodeFactories.put(TestNodeDb.layoutInformation.labelId, TestNode.factory);
+    }
+    deserializer = new NodeDeserializer(graph, nodeFactories, false);
+
+    final NodeSerializer serializer = new NodeSerializer(false);
+    serializedNodes = new ArrayList<>();
+    storedNodes = new ArrayList<>();
+    Iterator<overflowdb.Node> iter = graph.nodes();
+    while (iter.hasNext()) {
+      final byte[] serialized = serializer.serialize(((NodeRef) iter.next()).get());
+      serializedNodes.add(serialized);
+      storedNodes.add(compression.compress(serialized));
+    }
+  }
+
+  @TearDown
+  public void teardown() {
+    graph.close();
+  }
+
+  @Benchmark
+  public void compress(Sizes sizes, Blackhole blackhole) {
+    long serializedBytes = 0;
+    long storedBytes = 0;
+    for (byte[] bytes : serializedNodes) {
+      final byte[] stored = compression.compress(bytes);
+      serializedBytes += bytes.length;
+      storedBytes += stored.length;
+      blackhole.consume(stored);
+    }
+    sizes.serializedBytes = serializedBytes;
+    sizes.storedBytes = storedBytes;
+  }
+
+  @Benchmark
+  public void decompressAndDeserialize(Blackhole blackhole) throws IOException {
+    for (byte[] bytes : storedNodes) {
+      blackhole.consume(deserializer.deserialize(Compression.decompress(bytes)));
+    }
+  }
+
+  /** the total size of all nodes, before and after compression - the same for every invocation, i.e. not accumulated */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Sizes {
+    public long serializedBytes;
+    public long storedBytes;
+  }
+
+}
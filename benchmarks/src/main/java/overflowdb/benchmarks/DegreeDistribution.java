@@ -0,0 +1,31 @@
+package overflowdb.benchmarks;
+
+import java.util.Random;
+
+/**
+ * how many outgoing edges each node of a synthetic graph gets
+ */
+public enum DegreeDistribution {
+  /** every node has exactly `averageDegree` outgoing edges */
+  UNIFORM {
+    @Override
+    public int nextDegree(Random random, int averageDegree) {
+      return averageDegree;
+    }
+  },
+
+  /** few nodes have a very high degree, most have a low one - roughly what we see in code property graphs
+   * sampled from a pareto distribution with shape 2, i.e. mean = 2 * scale */
+  POWER_LAW {
+    @Override
+    public int nextDegree(Random random, int averageDegree) {
+      double scale = averageDegree / 2d;
+      double sample = scale / Math.sqrt(1d - random.nextDouble());
+      return (int) Math.min(sample, MAX_DEGREE);
+    }
+  };
+
+  private static final int MAX_DEGREE = 100_000;
+
+  public abstract int nextDegree(Random random, int averageDegree);
+}
@@ -0,0 +1,67 @@
+package overflowdb.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import overflowdb.Node;
+import overflowdb.OdbGraph;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures `OdbNode.addEdgeSilent` for all edges of a synthetic graph, i.e. including the growth of
+ * `adjacentNodesWithProperties` - the result is the time to insert all edges of the graph
+ * `bulkLoader` inserts the same edges via `BulkLoader`, which allocates the adjacent nodes arrays once per batch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EdgeInsertionBenchmark {
+
+  @Param({"10000", "100000"})
+  public int nodeCount;
+
+  @Param({"UNIFORM", "POWER_LAW"})
+  public DegreeDistribution degreeDistribution;
+
+  @Param({"10"})
+  public int averageDegree;
+
+  private OdbGraph graph;
+  private Node[] nodes;
+
+  @Setup(Level.Invocation)
+  public void setup() {
+    graph = SyntheticGraph.newGraph();
+    nodes = SyntheticGraph.addNodes(graph, nodeCount);
+  }
+
+  @TearDown(Level.Invocation)
+  public void teardown() {
+    graph.close();
+  }
+
+  @Benchmark
+  public int addEdgeSilent() {
+    return SyntheticGraph.addEdges(nodes, degreeDistribution, averageDegree);
+  }
+
+  @Benchmark
+  public int bulkLoader() {
+    return SyntheticGraph.addEdges(graph.bulkLoader(), nodes, degreeDistribution, averageDegree);
+  }
+
+}
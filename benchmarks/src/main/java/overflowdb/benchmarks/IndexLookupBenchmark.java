@@ -0,0 +1,62 @@
+package overflowdb.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import overflowdb.OdbGraph;
+import overflowdb.testdomains.simple.TestNode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures `OdbIndexManager.lookup` for an indexed integer property with `SyntheticGraph.DISTINCT_INT_VALUES` distinct
+ * values, as well as the initial index creation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexLookupBenchmark {
+
+  @Param({"10000", "100000"})
+  public int nodeCount;
+
+  private OdbGraph graph;
+  private int nextValue;
+
+  @Setup
+  public void setup() {
+    graph = SyntheticGraph.create(nodeCount, DegreeDistribution.UNIFORM, 0);
+    graph.indexManager.createNodePropertyIndex(TestNode.INT_PROPERTY);
+  }
+
+  @TearDown
+  public void teardown() {
+    graph.close();
+  }
+
+  @Benchmark
+  public void lookup(Blackhole blackhole) {
+    nextValue = (nextValue + 1) % SyntheticGraph.DISTINCT_INT_VALUES;
+    graph.indexManager.lookup(TestNode.INT_PROPERTY, nextValue).forEachRemaining(blackhole::consume);
+  }
+
+  @Benchmark
+  public void createIndex() {
+    graph.indexManager.dropNodePropertyIndex(TestNode.STRING_PROPERTY);
+    graph.indexManager.createNodePropertyIndex(TestNode.STRING_PROPERTY);
+  }
+
+}
@@ -0,0 +1,40 @@
+package overflowdb.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import overflowdb.OdbGraph;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures `OdbGraph.addNode`, including property attachment and reference manager registration - the result is
+ * the time to create all nodes of a graph
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NodeCreationBenchmark {
+
+  @Param({"10000", "100000"})
+  public int nodeCount;
+
+  @Benchmark
+  public void addNode(Blackhole blackhole) {
+    try (OdbGraph graph = SyntheticGraph.newGraph()) {
+      blackhole.consume(SyntheticGraph.addNodes(graph, nodeCount));
+    }
+  }
+
+}
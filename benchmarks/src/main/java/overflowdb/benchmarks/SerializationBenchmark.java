@@ -0,0 +1,96 @@
+package overflowdb.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import overflowdb.NodeFactory;
+import overflowdb.NodeRef;
+import overflowdb.OdbGraph;
+import overflowdb.OdbNode;
+import overflowdb.storage.NodeDeserializer;
+import overflowdb.storage.NodeSerializer;
+import overflowdb.testdomains.simple.TestNode;
+import overflowdb.testdomains.simple.TestNodeDb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures `NodeSerializer.serialize` and `NodeDeserializer.deserialize` for all nodes of a synthetic graph
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @Param({"10000", "100000"})
+  public int nodeCount;
+
+  @Param({"UNIFORM", "POWER_LAW"})
+  public DegreeDistribution degreeDistribution;
+
+  @Param({"10"})
+  public int averageDegree;
+
+  private OdbGraph graph;
+  private List<OdbNode> nodes;
+  private List<byte[]> serializedNodes;
+  private NodeSerializer serializer;
+  private NodeDeserializer deserializer;
+
+  @Setup
+  public void setup() throws IOException {
+    graph = SyntheticGraph.create(nodeCount, degreeDistribution, averageDegree);
+    serializer = new NodeSerializer(false);
+    Map<Integer, NodeFactory> nodeFactories = new HashMap<>();
+    nodeFactories.put(TestNodeDb.layoutInformation.labelId, TestNode.factory);
+    deserializer = new NodeDeserializer(graph, nodeFactories, false);
+
+    nodes = new ArrayList<>(nodeCount);
+    serializedNodes = new ArrayList<>(nodeCount);
+    Iterator<overflowdb.Node> iter = graph.nodes();
+    while (iter.hasNext()) {
+      OdbNode node = ((NodeRef) iter.next()).get();
+      nodes.add(node);
+      serializedNodes.add(serializer.serialize(node));
+    }
+  }
+
+  @TearDown
+  public void teardown() {
+    graph.close();
+  }
+
+  @Benchmark
+  public void serialize(Blackhole blackhole) throws IOException {
+    for (OdbNode node : nodes) {
+      blackhole.consume(serializer.serialize(node));
+    }
+  }
+
+  @Benchmark
+  public void deserialize(Blackhole blackhole) throws IOException {
+    for (byte[] bytes : serializedNodes) {
+      blackhole.consume(deserializer.deserialize(bytes));
+    }
+  }
+
+}
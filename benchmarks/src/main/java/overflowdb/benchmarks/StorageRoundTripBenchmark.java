@@ -0,0 +1,98 @@
+package overflowdb.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import overflowdb.NodeRef;
+import overflowdb.OdbConfig;
+import overflowdb.OdbGraph;
+import overflowdb.storage.StorageBackend;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures saving a graph to disk via `OdbStorage` (i.e. `graph.close` with a storage location configured),
+ * and loading it back, including the deserialization of all nodes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StorageRoundTripBenchmark {
+
+  @Param({"10000", "100000"})
+  public int nodeCount;
+
+  @Param({"UNIFORM", "POWER_LAW"})
+  public DegreeDistribution degreeDistribution;
+
+  @Param({"10"})
+  public int averageDegree;
+
+  /* see `StorageBackend` - IN_MEMORY is not included because it can't persist */
+  @Param({"MVSTORE", "MMAP"})
+  public String storageBackend;
+
+  private File storageFile;
+  private OdbGraph graph;
+
+  @Setup(Level.Invocation)
+  public void setup() throws IOException {
+    storageFile = Files.createTempFile("overflowdb-benchmark", "bin").toFile();
+    storageFile.delete(); // only reserve the name, OdbStorage should create it
+    graph = SyntheticGraph.create(storageConfig(), nodeCount, degreeDistribution, averageDegree);
+  }
+
+  @TearDown(Level.Invocation)
+  public void teardown() {
+    if (!graph.isClosed()) graph.close();
+    storageFile.delete();
+    final File nodeStoreDirectory = new File(storageFile.getPath() + ".nodes");
+    final File[] segmentFiles = nodeStoreDirectory.listFiles();
+    if (segmentFiles != null) {
+      for (File segmentFile : segmentFiles) segmentFile.delete();
+    }
+    nodeStoreDirectory.delete();
+  }
+
+  @Benchmark
+  public void save() {
+    graph.close();
+  }
+
+  @Benchmark
+  public int saveAndLoad() {
+    graph.close();
+    graph = SyntheticGraph.newGraph(storageConfig());
+    int deserializedCount = 0;
+    Iterator<overflowdb.Node> nodes = graph.nodes();
+    while (nodes.hasNext()) {
+      ((NodeRef) nodes.next()).get();
+      deserializedCount++;
+    }
+    return deserializedCount;
+  }
+
+  private OdbConfig storageConfig() {
+    return OdbConfig.withoutOverflow()
+        .withStorageLocation(storageFile.getAbsolutePath())
+        .withStorageBackend(storageBackend.equals("MMAP") ? StorageBackend.MMAP : StorageBackend.MVSTORE);
+  }
+
+}
@@ -0,0 +1,82 @@
+package overflowdb.benchmarks;
+
+import overflowdb.BulkLoader;
+import overflowdb.Node;
+import overflowdb.OdbConfig;
+import overflowdb.OdbGraph;
+import overflowdb.testdomains.simple.SimpleDomain;
+import overflowdb.testdomains.simple.TestEdge;
+import overflowdb.testdomains.simple.TestNode;
+
+import java.util.Random;
+
+/**
+ * Creates reproducible graphs of the `simple` test domain, so that benchmark results are comparable between runs.
+ */
+public class SyntheticGraph {
+  /** fixed seed: all benchmark runs operate on the very same graph */
+  public static final long SEED = 42L;
+
+  /** number of distinct values for `TestNode.INT_PROPERTY`, used for index lookups */
+  public static final int DISTINCT_INT_VALUES = 1000;
+
+  public static OdbGraph newGraph() {
+    return SimpleDomain.newGraph(OdbConfig.withoutOverflow());
+  }
+
+  public static OdbGraph newGraph(OdbConfig config) {
+    return SimpleDomain.newGraph(config);
+  }
+
+  public static OdbGraph create(int nodeCount, DegreeDistribution degreeDistribution, int averageDegree) {
+    return create(OdbConfig.withoutOverflow(), nodeCount, degreeDistribution, averageDegree);
+  }
+
+  public static OdbGraph create(OdbConfig config, int nodeCount, DegreeDistribution degreeDistribution, int averageDegree) {
+    OdbGraph graph = newGraph(config);
+    Node[] nodes = addNodes(graph, nodeCount);
+    addEdges(nodes, degreeDistribution, averageDegree);
+    return graph;
+  }
+
+  public static Node[] addNodes(OdbGraph graph, int nodeCount) {
+    Node[] nodes = new Node[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      nodes[i] = graph.addNode(TestNode.LABEL,
+          TestNode.STRING_PROPERTY, "node " + i,
+          TestNode.INT_PROPERTY, i % DISTINCT_INT_VALUES);
+    }
+    return nodes;
+  }
+
+  /** @return number of edges added */
+  public static int addEdges(Node[] nodes, DegreeDistribution degreeDistribution, int averageDegree) {
+    Random random = new Random(SEED);
+    int edgeCount = 0;
+    for (Node node : nodes) {
+      int degree = degreeDistribution.nextDegree(random, averageDegree);
+      for (int i = 0; i < degree; i++) {
+        node.addEdgeSilent(TestEdge.LABEL, nodes[random.nextInt(nodes.length)]);
+        edgeCount++;
+      }
+    }
+    return edgeCount;
+  }
+
+  /** same edges as {@link #addEdges(Node[], DegreeDistribution, int)}, but via the given BulkLoader
+   * @return number of edges added */
+  public static int addEdges(BulkLoader loader, Node[] nodes, DegreeDistribution degreeDistribution, int averageDegree) {
+    Random random = new Random(SEED);
+    int edgeCount = 0;
+    for (Node node : nodes) {
+      int degree = degreeDistribution.nextDegree(random, averageDegree);
+      for (int i = 0; i < degree; i++) {
+        loader.addEdge(node, TestEdge.LABEL, nodes[random.nextInt(nodes.length)]);
+        edgeCount++;
+      }
+    }
+    loader.flush();
+    return edgeCount;
+  }
+
+}
@@ -0,0 +1,25 @@
+package overflowdb;
+
+/**
+ * How {@link OdbNode} stores the references to its adjacent nodes. Configure via
+ * {@link OdbConfig#withAdjacencyStorage(AdjacencyStorage)}, defaults to {@link #HEAP}.
+ */
+public enum AdjacencyStorage {
+  /** NodeRefs on the heap, interleaved with the edge properties - fastest, but the GC needs to trace every edge */
+  HEAP,
+
+  /**
+   * node ids in native memory (see {@link OffHeapSlotAllocator}), resolved to NodeRefs via the node table on iteration.
+   * Drastically reduces the GC marking work for edge-heavy graphs, at the cost of one id lookup per traversed edge.
+   * Edge properties remain on the heap.
+   */
+  OFF_HEAP,
+
+  /**
+   * dense int indices into a graph-wide NodeRef array (see {@link NodeRefRegistry}), resolved on iteration: 4 bytes per
+   * adjacent node even without compressed oops (i.e. halves the adjacency memory of heaps above 32G), and no pointers
+   * for the GC to trace. Only used for nodes without edge properties: those would still need an Object array for the
+   * edge properties with a slot per adjacent node, i.e. take more memory than {@link #HEAP}, which they use instead.
+   */
+  NODE_INDEX
+}
@@ -0,0 +1,38 @@
+package overflowdb;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** like {@link overflowdb.util.ArrayOffsetIterator}, for {@link AdjacentNodeSlots} */
+class AdjacentNodeIterator implements Iterator<Node> {
+  private final AdjacentNodeSlots slots;
+  private int current;
+  private final int exclusiveEnd;
+  private final int strideSize;
+  private NodeRef nextCached;
+
+  AdjacentNodeIterator(AdjacentNodeSlots slots, int begin, int exclusiveEnd, int strideSize) {
+    this.slots = slots;
+    this.current = begin;
+    this.exclusiveEnd = exclusiveEnd;
+    this.strideSize = strideSize;
+  }
+
+  @Override
+  public boolean hasNext() {
+    /* there may be holes, e.g. if an edge was removed */
+    while (nextCached == null && current < exclusiveEnd) {
+      nextCached = slots.get(current);
+      current += strideSize;
+    }
+    return nextCached != null;
+  }
+
+  @Override
+  public Node next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    final NodeRef next = nextCached;
+    nextCached = null;
+    return next;
+  }
+}
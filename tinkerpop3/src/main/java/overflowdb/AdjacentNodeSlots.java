@@ -0,0 +1,23 @@
+package overflowdb;
+
+/**
+ * Storage for the adjacent nodes of an {@link OdbNode} other than {@link AdjacencyStorage#HEAP}.
+ * Uses the same indices as `OdbNode.adjacentNodesWithProperties`, which then only holds the edge properties (if any).
+ */
+abstract class AdjacentNodeSlots {
+
+  abstract int capacity();
+
+  /** @return the adjacent node at the given index, or null if the slot is empty (unused, or the edge was removed) */
+  abstract NodeRef get(int index);
+
+  abstract boolean isEmpty(int index);
+
+  /** @param ref null to empty the slot */
+  abstract void set(int index, NodeRef ref);
+
+  /** @return new (empty) slots of the same kind, with at least the given capacity */
+  abstract AdjacentNodeSlots allocate(int minCapacity);
+
+  abstract void copyTo(int srcPos, AdjacentNodeSlots dest, int destPos, int length);
+}
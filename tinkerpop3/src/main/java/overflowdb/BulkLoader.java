@@ -0,0 +1,218 @@
+package overflowdb;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Loads edges in batches: rather than growing the adjacent nodes array of each node step by step (like
+ * {@link Node#addEdgeSilent(String, Node, Object...)}), we first count the number of new edges per
+ * (node, direction, label), then allocate each node's `adjacentNodesWithProperties` array exactly once per batch, and
+ * finally add the edges. This avoids the repeated array copying and leaves no over-allocation, i.e. there's no need to
+ * {@link OdbNode#trim()} afterwards.
+ *
+ * Nodes are added to the graph immediately, edges are buffered until {@link #flush()} or {@link #close()} is called, or
+ * until the (optional) batch size is reached. The fewer flushes, the fewer reallocations - flushing only once at the end
+ * allocates each adjacent nodes array exactly once, but requires to buffer all edges in memory.
+ *
+ * usage:
+ * <pre>
+ * try (BulkLoader loader = graph.bulkLoader()) {
+ *   Node a = loader.addNode("label");
+ *   Node b = loader.addNode("label");
+ *   loader.addEdge(a, "edgeLabel", b);
+ * }
+ * </pre>
+ *
+ * n.b. this is not thread-safe, each thread should use its own BulkLoader
+ */
+public class BulkLoader implements AutoCloseable {
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final Object[] NO_KEY_VALUES = new Object[0];
+
+  private final OdbGraph graph;
+  private final int batchSize;
+
+  /* pending edges, one column per edge attribute - keyValues are null if the edge doesn't have properties */
+  private NodeRef[] outNodes = new NodeRef[INITIAL_CAPACITY];
+  private String[] labels = new String[INITIAL_CAPACITY];
+  private NodeRef[] inNodes = new NodeRef[INITIAL_CAPACITY];
+  private Object[][] keyValues = new Object[INITIAL_CAPACITY][];
+  private int pendingEdgeCount = 0;
+
+  /**
+   * @param batchSize number of edges to buffer before they're automatically flushed, or Integer.MAX_VALUE to only
+   *                  flush explicitly
+   */
+  BulkLoader(OdbGraph graph, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batchSize must be positive, but was " + batchSize);
+    }
+    this.graph = graph;
+    this.batchSize = batchSize;
+  }
+
+  public Node addNode(final String label, final Object... keyValues) {
+    return graph.addNode(label, keyValues);
+  }
+
+  public Node addNode(final long id, final String label, final Object... keyValues) {
+    return graph.addNode(id, label, keyValues);
+  }
+
+  /**
+   * buffers the given edge - it will be added to the graph on the next flush
+   */
+  public void addEdge(Node outNode, String label, Node inNode, Object... keyValues) {
+    if (pendingEdgeCount == outNodes.length) {
+      growBuffers();
+    }
+    outNodes[pendingEdgeCount] = (NodeRef) outNode;
+    labels[pendingEdgeCount] = label;
+    inNodes[pendingEdgeCount] = (NodeRef) inNode;
+    this.keyValues[pendingEdgeCount] = keyValues.length > 0 ? keyValues : null;
+    pendingEdgeCount++;
+
+    if (pendingEdgeCount >= batchSize) {
+      flush();
+    }
+  }
+
+  public int pendingEdgeCount() {
+    return pendingEdgeCount;
+  }
+
+  /**
+   * adds all buffered edges to the graph
+   */
+  public void flush() {
+    if (pendingEdgeCount == 0) {
+      return;
+    }
+
+    /* 1) assign a dense slot to each involved node, and count its new edges per offsetPos */
+    final NodeSlots slots = new NodeSlots();
+    final int[] outSlots = new int[pendingEdgeCount];
+    final int[] inSlots = new int[pendingEdgeCount];
+    final int[] outOffsetPositions = new int[pendingEdgeCount];
+    final int[] inOffsetPositions = new int[pendingEdgeCount];
+    for (int i = 0; i < pendingEdgeCount; i++) {
+      outSlots[i] = slots.slotFor(outNodes[i]);
+      outOffsetPositions[i] = slots.countEdge(outSlots[i], Direction.OUT, labels[i]);
+      inSlots[i] = slots.slotFor(inNodes[i]);
+      inOffsetPositions[i] = slots.countEdge(inSlots[i], Direction.IN, labels[i]);
+    }
+
+    /* 2) group the edge ends by node (stable, i.e. in the order they were added), so that we can add all edges of a
+     * node in one go, rather than jumping between nodes for each edge. n.b. this also keeps the relative order of
+     * multiple edges between the same two nodes, which must be the same on both sides */
+    final int[] bucketStarts = new int[slots.size() + 1];
+    for (int i = 0; i < pendingEdgeCount; i++) {
+      bucketStarts[outSlots[i] + 1]++;
+      bucketStarts[inSlots[i] + 1]++;
+    }
+    for (int slot = 0; slot < slots.size(); slot++) {
+      bucketStarts[slot + 1] += bucketStarts[slot];
+    }
+    final int[] edgeEnds = new int[pendingEdgeCount * 2]; // edge index * 2, +1 for the IN side
+    final int[] bucketPositions = Arrays.copyOf(bucketStarts, slots.size());
+    for (int i = 0; i < pendingEdgeCount; i++) {
+      edgeEnds[bucketPositions[outSlots[i]]++] = i * 2;
+      edgeEnds[bucketPositions[inSlots[i]]++] = i * 2 + 1;
+    }
+
+    /* 3) allocate each node's adjacent nodes array once, and add all edges without properties */
+    for (int slot = 0; slot < slots.size(); slot++) {
+      final OdbNode node = slots.nodes[slot].get();
+      synchronized (node) { // only lock once per node, rather than once per edge
+        node.reserveAdjacentNodeCapacity(slots.counts[slot]);
+        for (int j = bucketStarts[slot]; j < bucketStarts[slot + 1]; j++) {
+          final int edgeIdx = edgeEnds[j] >> 1;
+          if (isFastPathEdge(edgeIdx, outOffsetPositions, inOffsetPositions)) {
+            if ((edgeEnds[j] & 1) == 0) {
+              node.storeAdjacentNodeWithoutProperties(outOffsetPositions[edgeIdx], inNodes[edgeIdx]);
+            } else {
+              node.storeAdjacentNodeWithoutProperties(inOffsetPositions[edgeIdx], outNodes[edgeIdx]);
+            }
+          }
+        }
+      }
+    }
+
+    /* 4) edge properties and error handling (unsupported edges) are taken care of by the regular api */
+    for (int i = 0; i < pendingEdgeCount; i++) {
+      if (!isFastPathEdge(i, outOffsetPositions, inOffsetPositions)) {
+        outNodes[i].addEdgeSilent(labels[i], inNodes[i], keyValues[i] != null ? keyValues[i] : NO_KEY_VALUES);
+      }
+    }
+
+    Arrays.fill(outNodes, 0, pendingEdgeCount, null);
+    Arrays.fill(labels, 0, pendingEdgeCount, null);
+    Arrays.fill(inNodes, 0, pendingEdgeCount, null);
+    Arrays.fill(keyValues, 0, pendingEdgeCount, null);
+    pendingEdgeCount = 0;
+  }
+
+  private boolean isFastPathEdge(int edgeIdx, int[] outOffsetPositions, int[] inOffsetPositions) {
+    return keyValues[edgeIdx] == null && outOffsetPositions[edgeIdx] != -1 && inOffsetPositions[edgeIdx] != -1;
+  }
+
+  private void growBuffers() {
+    final int newCapacity = (int) Math.min((long) outNodes.length * 2, Integer.MAX_VALUE - 8);
+    outNodes = Arrays.copyOf(outNodes, newCapacity);
+    labels = Arrays.copyOf(labels, newCapacity);
+    inNodes = Arrays.copyOf(inNodes, newCapacity);
+    keyValues = Arrays.copyOf(keyValues, newCapacity);
+  }
+
+  /**
+   * adds all buffered edges to the graph
+   */
+  @Override
+  public void close() {
+    flush();
+  }
+
+  /**
+   * dense numbering of all nodes involved in a flush, with their number of new edges per offsetPos
+   */
+  private static class NodeSlots {
+    private final TLongIntMap slotById = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1, -1);
+    private NodeRef[] nodes = new NodeRef[INITIAL_CAPACITY];
+    private int[][] counts = new int[INITIAL_CAPACITY][];
+    private int size = 0;
+
+    int size() {
+      return size;
+    }
+
+    int slotFor(NodeRef nodeRef) {
+      int slot = slotById.get(nodeRef.id);
+      if (slot == -1) {
+        if (size == nodes.length) {
+          nodes = Arrays.copyOf(nodes, size * 2);
+          counts = Arrays.copyOf(counts, size * 2);
+        }
+        slot = size++;
+        slotById.put(nodeRef.id, slot);
+        nodes[slot] = nodeRef;
+        counts[slot] = new int[nodeRef.get().getEdgeOffsetsPackedArray().length() / 2];
+      }
+      return slot;
+    }
+
+    /**
+     * @return offsetPos of the edge in the given node, -1 if the edge label is not supported
+     */
+    int countEdge(int slot, Direction direction, String label) {
+      final int offsetPos = nodes[slot].get().getPositionInEdgeOffsets(direction, label);
+      if (offsetPos != -1) {
+        counts[slot][offsetPos]++;
+      }
+      return offsetPos;
+    }
+  }
+
+}
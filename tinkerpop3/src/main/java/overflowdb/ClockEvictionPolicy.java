@@ -0,0 +1,20 @@
+package overflowdb;
+
+/**
+ * CLOCK a.k.a. second chance: each node has an access flag, which is set in {@link NodeRef#get()}. When a node is
+ * considered for eviction and has been accessed since it was last considered, the flag is reset and the node gets
+ * another chance. Nodes that are frequently traversed therefor stay on heap, while nodes that haven't been accessed
+ * since they were loaded (or since the last round) are cleared.
+ */
+public class ClockEvictionPolicy implements EvictionPolicy {
+
+  @Override
+  public boolean shouldEvict(NodeRef ref) {
+    return !ref.resetAccessedFlag();
+  }
+
+  @Override
+  public String toString() {
+    return "CLOCK";
+  }
+}
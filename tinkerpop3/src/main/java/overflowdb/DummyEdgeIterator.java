@@ -5,6 +5,7 @@ import java.util.NoSuchElementException;
 
 public class DummyEdgeIterator implements Iterator<OdbEdge> {
   private final Object[] array;
+  private final AdjacentNodeSlots slots;
   private int current;
   private final int begin;
   private final int exclusiveEnd;
@@ -15,7 +16,19 @@ public class DummyEdgeIterator implements Iterator<OdbEdge> {
 
   public DummyEdgeIterator(Object[] array, int begin, int exclusiveEnd, int strideSize,
                            Direction direction, String label, NodeRef thisRef) {
+    this(array, null, begin, exclusiveEnd, strideSize, direction, label, thisRef);
+  }
+
+  /** for {@link AdjacencyStorage#OFF_HEAP} */
+  DummyEdgeIterator(AdjacentNodeSlots slots, int begin, int exclusiveEnd, int strideSize,
+                    Direction direction, String label, NodeRef thisRef) {
+    this(null, slots, begin, exclusiveEnd, strideSize, direction, label, thisRef);
+  }
+
+  private DummyEdgeIterator(Object[] array, AdjacentNodeSlots slots, int begin, int exclusiveEnd, int strideSize,
+                            Direction direction, String label, NodeRef thisRef) {
     this.array = array;
+    this.slots = slots;
     this.begin = begin;
     this.current = begin;
     this.exclusiveEnd = exclusiveEnd;
@@ -28,7 +41,7 @@ public class DummyEdgeIterator implements Iterator<OdbEdge> {
   @Override
   public boolean hasNext() {
     /* there may be holes, e.g. if an edge was removed */
-    while (current < exclusiveEnd && array[current] == null) {
+    while (current < exclusiveEnd && isEmpty(current)) {
       current += strideSize;
     }
     return current < exclusiveEnd;
@@ -38,7 +51,7 @@ public class DummyEdgeIterator implements Iterator<OdbEdge> {
   public OdbEdge next() {
     if (!hasNext()) throw new NoSuchElementException();
 
-    NodeRef otherRef = (NodeRef) array[current];
+    NodeRef otherRef = slots == null ? (NodeRef) array[current] : slots.get(current);
     OdbEdge dummyEdge;
     if (direction == Direction.OUT) {
       dummyEdge = thisRef.get().instantiateDummyEdge(label, thisRef, otherRef);
@@ -50,4 +63,8 @@ public class DummyEdgeIterator implements Iterator<OdbEdge> {
     current += strideSize;
     return dummyEdge;
   }
+
+  private boolean isEmpty(int index) {
+    return slots == null ? array[index] == null : slots.isEmpty(index);
+  }
 }
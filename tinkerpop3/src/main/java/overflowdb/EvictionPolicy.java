@@ -0,0 +1,21 @@
+package overflowdb;
+
+/**
+ * Decides which nodes the {@link ReferenceManager} clears (i.e. serializes to disk and releases from the heap) when
+ * running low on memory. Candidates are presented in the order in which they were loaded into memory (FIFO).
+ */
+public interface EvictionPolicy {
+
+  /**
+   * @return true if the given node should be cleared now, false if it should get another chance, in which case it is
+   * appended to the end of the queue of clearable references
+   */
+  boolean shouldEvict(NodeRef ref);
+
+  /** evicts in the order in which nodes were loaded into memory, regardless of how often they are accessed */
+  EvictionPolicy FIFO = new FifoEvictionPolicy();
+
+  /** second chance: nodes that have been accessed since they were last considered are kept, so that frequently
+   * traversed nodes stay on heap */
+  EvictionPolicy CLOCK = new ClockEvictionPolicy();
+}
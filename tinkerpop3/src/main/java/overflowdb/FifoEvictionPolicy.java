@@ -0,0 +1,17 @@
+package overflowdb;
+
+/**
+ * Evicts in the order in which nodes were loaded into memory, regardless of how often they are accessed.
+ */
+public class FifoEvictionPolicy implements EvictionPolicy {
+
+  @Override
+  public boolean shouldEvict(NodeRef ref) {
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "FIFO";
+  }
+}
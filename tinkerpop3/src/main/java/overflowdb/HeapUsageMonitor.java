@@ -23,7 +23,8 @@ import java.util.Set;
  */
 public class HeapUsageMonitor implements AutoCloseable {
   interface HeapNotificationListener {
-    void notifyHeapAboveThreshold();
+    /** @param bytesAboveThreshold how much the heap usage (after GC) exceeds the configured threshold */
+    void notifyHeapAboveThreshold(long bytesAboveThreshold);
   }
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -78,7 +79,8 @@ public class HeapUsageMonitor implements AutoCloseable {
           if (heapUsagePercent > 95) logger.warn(msg);
           else logger.info(msg);
 
-          notificationListener.notifyHeapAboveThreshold();
+          final long bytesAboveThreshold = totalMemUsed - (long) (totalMemMax * (double) heapUsageThreshold);
+          notificationListener.notifyHeapAboveThreshold(bytesAboveThreshold);
         } else {
           logger.trace("heap usage after GC: " + heapUsagePercent + "%");
         }
@@ -0,0 +1,34 @@
+package overflowdb;
+
+/** kinds of node property indexes, see {@link OdbIndexManager#createNodePropertyIndex(String, IndexType)} */
+public enum IndexType {
+  /** lookups by exact value only, hash based */
+  EXACT(""),
+
+  /**
+   * values in sorted order: additionally supports range lookups (e.g. `gt`, `between`) on numbers and prefix lookups on
+   * strings, at the cost of a bit more memory and slower updates
+   */
+  SORTED("sorted:"),
+
+  /**
+   * lookups by exact value, and regex lookups on strings: the values are also indexed by their trigrams, so that a
+   * regex only needs to be checked against the values that contain its literal parts (e.g. `foo` and `bar` for
+   * `foo.*bar`). Needs considerably more memory than the other index types.
+   */
+  TRIGRAM("trigram:");
+
+  /** prefix of the index name in the storage, followed by the property name */
+  final String storageNamePrefix;
+
+  IndexType(String storageNamePrefix) {
+    this.storageNamePrefix = storageNamePrefix;
+  }
+
+  static IndexType forStorageName(String indexName) {
+    for (IndexType type : values()) {
+      if (!type.storageNamePrefix.isEmpty() && indexName.startsWith(type.storageNamePrefix)) return type;
+    }
+    return EXACT;
+  }
+}
@@ -0,0 +1,49 @@
+package overflowdb;
+
+/**
+ * {@link AdjacencyStorage#NODE_INDEX}: the adjacent nodes as indices into the graph's {@link NodeRefRegistry}.
+ * Stores `nodeIndex + 1`, so that a freshly allocated array consists of empty slots.
+ */
+final class NodeIndexAdjacentNodeSlots extends AdjacentNodeSlots {
+  private static final int EMPTY = 0;
+
+  private final NodeRefRegistry registry;
+  private final int[] slots;
+
+  NodeIndexAdjacentNodeSlots(NodeRefRegistry registry, int minCapacity) {
+    this.registry = registry;
+    this.slots = new int[minCapacity];
+  }
+
+  @Override
+  int capacity() {
+    return slots.length;
+  }
+
+  @Override
+  NodeRef get(int index) {
+    final int slot = slots[index];
+    return slot == EMPTY ? null : registry.get(slot - 1);
+  }
+
+  @Override
+  boolean isEmpty(int index) {
+    return slots[index] == EMPTY;
+  }
+
+  @Override
+  void set(int index, NodeRef ref) {
+    slots[index] = ref == null ? EMPTY : registry.indexOf(ref) + 1;
+  }
+
+  @Override
+  AdjacentNodeSlots allocate(int minCapacity) {
+    return new NodeIndexAdjacentNodeSlots(registry, minCapacity);
+  }
+
+  @Override
+  void copyTo(int srcPos, AdjacentNodeSlots dest, int destPos, int length) {
+    System.arraycopy(slots, srcPos, ((NodeIndexAdjacentNodeSlots) dest).slots, destPos, length);
+  }
+
+}
@@ -163,6 +163,14 @@ public class NodeLayoutInformation {
     return edgePropertyCountByOffsetPosition[offsetPos];
   }
 
+  /** @return true if any of the edges of this node (in either direction) can have properties */
+  public boolean hasEdgeProperties() {
+    for (int count : edgePropertyCountByOffsetPosition) {
+      if (count > 0) return true;
+    }
+    return false;
+  }
+
   class LabelAndKey {
     final String label;
     final String propertyKey;
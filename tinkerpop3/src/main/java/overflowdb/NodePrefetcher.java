@@ -0,0 +1,118 @@
+package overflowdb;
+
+import overflowdb.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * read-ahead for traversals over overflowed nodes: when a cleared node had to be read from disk, its adjacent nodes
+ * are likely to be accessed next. Those that are cleared as well are loaded asynchronously, breadth first up to
+ * `maxDepth` hops and at most `maxNodes` nodes per trigger. Each hop is read as one batch (see
+ * {@link OdbGraph#materialize(Iterator)}), i.e. in storage order rather than one random read per node.
+ *
+ * Prefetched nodes don't count as accessed (i.e. the {@link ClockEvictionPolicy} evicts them first if they aren't
+ * used after all), and nothing is prefetched while references are being cleared.
+ */
+class NodePrefetcher implements AutoCloseable {
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /* triggers that arrive while this many are queued up are dropped: prefetching is only worthwhile if it's ahead */
+  private static final int MAX_PENDING_TRIGGERS = 16;
+
+  private final OdbGraph graph;
+  private final ReferenceManager referenceManager;
+  private final int maxDepth;
+  private final int maxNodes;
+  private final ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(MAX_PENDING_TRIGGERS),
+      new NamedThreadFactory("overflowdb-prefetcher"),
+      new ThreadPoolExecutor.DiscardPolicy());
+  private final LongAdder prefetchedCount = new LongAdder();
+  private volatile boolean stopped = false;
+
+  NodePrefetcher(OdbGraph graph, ReferenceManager referenceManager, int maxDepth, int maxNodes) {
+    this.graph = graph;
+    this.referenceManager = referenceManager;
+    this.maxDepth = maxDepth;
+    this.maxNodes = maxNodes;
+  }
+
+  /**
+   * called after `node` has been read from disk on access, must not be called while holding the node's lock.
+   * Only enqueues the node, the neighbours are collected (which may copy its adjacency, e.g. for
+   * {@link AdjacencyStorage#OFF_HEAP}) on the prefetcher thread.
+   */
+  void nodeLoaded(OdbNode node) {
+    if (referenceManager.isClearing()) return;
+    executor.execute(() -> prefetch(node));
+  }
+
+  /** number of nodes that have been read from disk in advance */
+  long getPrefetchedCount() {
+    return prefetchedCount.sum();
+  }
+
+  private void prefetch(OdbNode loadedNode) {
+    final Set<Long> visited = new HashSet<>();
+    visited.add(loadedNode.ref.id);
+    List<NodeRef> currentHop = new ArrayList<>();
+    collectClearedNeighbours(loadedNode, currentHop, visited, maxNodes);
+
+    int remaining = maxNodes;
+    for (int depth = 1; depth <= maxDepth && !currentHop.isEmpty() && remaining > 0; depth++) {
+      if (stopped || referenceManager.isClearing()) return;
+      if (currentHop.size() > remaining) currentHop = currentHop.subList(0, remaining);
+
+      final List<OdbNode> prefetched;
+      try {
+        prefetched = graph.materialize(currentHop.iterator(), false);
+      } catch (Exception e) {
+        if (logger.isDebugEnabled()) logger.debug("unable to prefetch " + currentHop.size() + " nodes", e);
+        return;
+      }
+      prefetchedCount.add(prefetched.size());
+      remaining -= prefetched.size();
+
+      final List<NodeRef> nextHop = new ArrayList<>();
+      if (depth < maxDepth) {
+        for (OdbNode node : prefetched) collectClearedNeighbours(node, nextHop, visited, remaining);
+      }
+      currentHop = nextHop;
+    }
+  }
+
+  private static void collectClearedNeighbours(OdbNode node, List<NodeRef> result, Set<Long> visited, int limit) {
+    for (Object adjacentNodeOrProperty : node.getAdjacentNodesWithProperties()) {
+      if (result.size() >= limit) return;
+      if (adjacentNodeOrProperty instanceof NodeRef) {
+        final NodeRef adjacentNode = (NodeRef) adjacentNodeOrProperty;
+        if (adjacentNode.isCleared() && visited.add(adjacentNode.id)) {
+          result.add(adjacentNode);
+        }
+      }
+    }
+  }
+
+  /** waits for a running prefetch to complete: interrupting it might close the underlying storage's file channel */
+  @Override
+  public void close() {
+    executor.shutdown();
+    stopped = true;
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,380 @@
+package overflowdb;
+
+import org.apache.tinkerpop.gremlin.util.iterator.IteratorUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Index for one node property, maps property values to the nodes that have that value. For {@link IndexType#SORTED}
+ * the values are kept in {@link #VALUE_ORDER}, so that ranges and string prefixes can be looked up as well. For
+ * {@link IndexType#TRIGRAM} the String values are additionally indexed in a {@link TrigramIndex}, to speed up regex
+ * lookups.
+ * Memory efficient for both unique-ish properties and properties with few distinct values: values with only one node
+ * store the NodeRef inline, others use a {@link Bucket} with a NodeRef array (sorted by id) and small deltas of
+ * recent additions and removals, which are merged into the array once they grow beyond a quarter of it.
+ */
+final class NodePropertyIndex {
+  private static final Comparator<NodeRef> BY_ID = Comparator.comparingLong(ref -> ref.id);
+
+  /**
+   * numbers are compared by their exact numeric value independent of their type (i.e. 1, 1L and 1.0 are the same
+   * value, -0.0 and 0.0 as well, NaN is greater than everything else), strings and other Comparables of the same type
+   * naturally. Different types are ordered by numbers first, then strings, then by class name.
+   * Values that aren't Comparable can't be ordered, and are rejected by sorted indexes.
+   */
+  static final Comparator<Object> VALUE_ORDER = NodePropertyIndex::compareValues;
+
+  final IndexType type;
+  /* property value -> NodeRef | Bucket */
+  private final Map<Object, Object> entries;
+  /* only for IndexType.TRIGRAM, updated whenever a value is added to or removed from `entries` */
+  private final TrigramIndex trigrams;
+
+  NodePropertyIndex(IndexType type) {
+    this.type = type;
+    this.entries = type == IndexType.SORTED ? new ConcurrentSkipListMap<>(VALUE_ORDER) : new ConcurrentHashMap<>();
+    this.trigrams = type == IndexType.TRIGRAM ? new TrigramIndex() : null;
+  }
+
+  void put(Object value, NodeRef ref) {
+    checkSupported(value);
+    entries.compute(value, (key, existing) -> {
+      if (existing == null) {
+        valueAdded(value);
+        return ref;
+      }
+      if (sameNode(existing, ref)) return existing;
+      if (existing instanceof NodeRef) return new Bucket(sortedById((NodeRef) existing, ref));
+      ((Bucket) existing).add(ref);
+      return existing;
+    });
+  }
+
+  /** bulk version of {@link #put(Object, NodeRef)}, e.g. used when loading a stored index */
+  void putAll(Object value, NodeRef[] refs) {
+    if (refs.length == 0) return;
+    checkSupported(value);
+    final NodeRef[] sorted = refs.clone();
+    Arrays.sort(sorted, BY_ID);
+    entries.compute(value, (key, existing) -> {
+      if (existing == null) {
+        valueAdded(value);
+        return sorted.length == 1 ? sorted[0] : new Bucket(sorted);
+      }
+      final Bucket bucket = existing instanceof NodeRef ? new Bucket(new NodeRef[]{(NodeRef) existing}) : (Bucket) existing;
+      for (NodeRef ref : sorted) bucket.add(ref);
+      return bucket;
+    });
+  }
+
+  void remove(Object value, NodeRef ref) {
+    entries.computeIfPresent(value, (key, existing) -> {
+      if (sameNode(existing, ref)) {
+        valueRemoved(value);
+        return null;
+      }
+      if (existing instanceof NodeRef) return existing;
+      final Bucket bucket = (Bucket) existing;
+      bucket.remove(ref);
+      final int remaining = bucket.size();
+      if (remaining > 1) return bucket;
+      if (remaining == 1) return bucket.snapshot()[0];
+      valueRemoved(value);
+      return null;
+    });
+  }
+
+  void checkSupported(Object value) {
+    if (type == IndexType.SORTED && !(value instanceof Comparable)) {
+      throw new IllegalArgumentException("sorted indexes only support Comparable values, but got " + value.getClass());
+    }
+  }
+
+  /* called from within `entries.compute`, i.e. while the value's entry is locked */
+  private void valueAdded(Object value) {
+    if (trigrams != null && value instanceof String) trigrams.add((String) value);
+  }
+
+  private void valueRemoved(Object value) {
+    if (trigrams != null && value instanceof String) trigrams.remove((String) value);
+  }
+
+  /** @return all nodes with the given property value, without copying them */
+  Iterator<NodeRef> lookup(Object value) {
+    return nodes(entries.get(value));
+  }
+
+  /**
+   * only for {@link IndexType#SORTED}
+   * @param from lower bound, null for none
+   * @param to upper bound, null for none
+   * @return all nodes with a property value within the given range, in the order of their values
+   */
+  Iterator<NodeRef> lookupRange(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+    ConcurrentNavigableMap<Object, Object> range = sortedEntries();
+    if (from != null && to != null && compareValues(from, to) > 0) return Collections.emptyIterator();
+    if (from != null) range = range.tailMap(from, fromInclusive);
+    if (to != null) range = range.headMap(to, toInclusive);
+    return flatten(range.values().iterator());
+  }
+
+  /**
+   * only for {@link IndexType#SORTED}
+   * @return all nodes with a String property value that starts with the given prefix
+   */
+  Iterator<NodeRef> lookupPrefix(String prefix) {
+    final Iterator<Map.Entry<Object, Object>> tail = sortedEntries().tailMap(prefix, true).entrySet().iterator();
+    final Iterator<Object> matching = new Iterator<Object>() {
+      private Object next = advance();
+
+      private Object advance() {
+        if (!tail.hasNext()) return null;
+        final Map.Entry<Object, Object> entry = tail.next();
+        final Object value = entry.getKey();
+        /* strings are contiguous in VALUE_ORDER, so the first non-matching value ends the prefix range */
+        return value instanceof String && ((String) value).startsWith(prefix) ? entry.getValue() : null;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Object next() {
+        if (next == null) throw new NoSuchElementException();
+        final Object result = next;
+        next = advance();
+        return result;
+      }
+    };
+    return flatten(matching);
+  }
+
+  /**
+   * Each distinct value is matched against the regex at most once. For {@link IndexType#TRIGRAM} only the values that
+   * contain the regex' required literals are checked, for other index types all of them.
+   * @return all nodes with a String property value that matches the given regex entirely
+   */
+  Iterator<NodeRef> lookupRegex(Pattern pattern) {
+    Collection<?> values = entries.keySet();
+    /* flags like CASE_INSENSITIVE change the meaning of the literals */
+    if (trigrams != null && pattern.flags() == 0) {
+      final Set<String> candidates = trigrams.candidates(RegexLiterals.requiredLiterals(pattern.pattern()));
+      if (candidates != null) values = candidates;
+    }
+    final Iterator<?> matchingValues = IteratorUtils.filter(values.iterator(),
+        value -> value instanceof String && pattern.matcher((String) value).matches());
+    return flatten(IteratorUtils.map(matchingValues, entries::get));
+  }
+
+  private ConcurrentNavigableMap<Object, Object> sortedEntries() {
+    if (type != IndexType.SORTED) throw new UnsupportedOperationException("only supported for sorted indexes");
+    return (ConcurrentNavigableMap<Object, Object>) entries;
+  }
+
+  /** @param entries NodeRefs and Buckets */
+  private static Iterator<NodeRef> flatten(Iterator<Object> entries) {
+    return new Iterator<NodeRef>() {
+      private Iterator<NodeRef> current = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!current.hasNext() && entries.hasNext()) current = nodes(entries.next());
+        return current.hasNext();
+      }
+
+      @Override
+      public NodeRef next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return current.next();
+      }
+    };
+  }
+
+  private static Iterator<NodeRef> nodes(Object entry) {
+    if (entry == null) return Collections.emptyIterator();
+    if (entry instanceof NodeRef) return Collections.singleton((NodeRef) entry).iterator();
+    return Arrays.asList(((Bucket) entry).snapshot()).iterator();
+  }
+
+  private static int compareValues(Object a, Object b) {
+    if (a instanceof Number && b instanceof Number) return compareNumbers((Number) a, (Number) b);
+    final int typeOrder = Integer.compare(typeRank(a), typeRank(b));
+    if (typeOrder != 0) return typeOrder;
+    if (!(a instanceof Comparable) || !(b instanceof Comparable)) {
+      throw new IllegalArgumentException("can't order " + a.getClass() + " and " + b.getClass() + ", they need to be Comparable");
+    }
+    if (a.getClass() == b.getClass()) return ((Comparable) a).compareTo(b);
+    return a.getClass().getName().compareTo(b.getClass().getName());
+  }
+
+  private static int compareNumbers(Number a, Number b) {
+    if (isIntegral(a) && isIntegral(b)) return Long.compare(a.longValue(), b.longValue());
+    if (isFloatingPoint(a) && isFloatingPoint(b)) return compareDoubles(a.doubleValue(), b.doubleValue());
+    if (!isFinite(a) || !isFinite(b)) {
+      /* infinity and NaN are outside of the range of all finite numbers */
+      return compareDoubles(isFinite(a) ? 0d : a.doubleValue(), isFinite(b) ? 0d : b.doubleValue());
+    }
+    /* mixed types are compared exactly: e.g. doubleValue() can't tell 2^53 and 2^53 + 1 apart, which would make the
+     * order non-transitive */
+    return toBigDecimal(a).compareTo(toBigDecimal(b));
+  }
+
+  /** like Double.compare, but -0.0 and 0.0 are equal, consistent with the exact comparison of mixed types */
+  private static int compareDoubles(double a, double b) {
+    if (a < b) return -1;
+    if (a > b) return 1;
+    return Boolean.compare(Double.isNaN(a), Double.isNaN(b));
+  }
+
+  private static BigDecimal toBigDecimal(Number number) {
+    if (number instanceof BigDecimal) return (BigDecimal) number;
+    if (number instanceof BigInteger) return new BigDecimal((BigInteger) number);
+    if (isIntegral(number)) return BigDecimal.valueOf(number.longValue());
+    return new BigDecimal(number.doubleValue());
+  }
+
+  private static boolean isIntegral(Number number) {
+    return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+  }
+
+  private static boolean isFloatingPoint(Number number) {
+    return number instanceof Double || number instanceof Float;
+  }
+
+  private static boolean isFinite(Number number) {
+    return !isFloatingPoint(number) || Double.isFinite(number.doubleValue());
+  }
+
+  /* numbers, strings, everything else */
+  private static int typeRank(Object value) {
+    if (value instanceof Number) return 0;
+    if (value instanceof String) return 1;
+    return 2;
+  }
+
+  int size() {
+    int size = 0;
+    for (Object entry : entries.values()) {
+      size += entry instanceof NodeRef ? 1 : ((Bucket) entry).size();
+    }
+    return size;
+  }
+
+  /** @return property value -> nodes with that value */
+  Stream<Map.Entry<Object, NodeRef[]>> parallelStream() {
+    return entries.entrySet().parallelStream().map(entry -> {
+      final Object nodes = entry.getValue();
+      final NodeRef[] refs = nodes instanceof NodeRef ? new NodeRef[]{(NodeRef) nodes} : ((Bucket) nodes).snapshot();
+      return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), refs);
+    });
+  }
+
+  private static boolean sameNode(Object entry, NodeRef ref) {
+    return entry instanceof NodeRef && ((NodeRef) entry).id == ref.id;
+  }
+
+  private static NodeRef[] sortedById(NodeRef a, NodeRef b) {
+    return a.id <= b.id ? new NodeRef[]{a, b} : new NodeRef[]{b, a};
+  }
+
+  /**
+   * Nodes for one property value: `sorted` is never modified once assigned, so that lookups can iterate over it
+   * without copying. Additions go into `delta` and removals of nodes in `sorted` into `removed` first. Both are
+   * merged into a new `sorted` array in one pass, once either of them grows beyond a quarter of it, or on the next
+   * lookup at the latest. I.e. removing all nodes of a bucket one by one takes amortized constant time per node.
+   */
+  private static final class Bucket {
+    private static final int MIN_DELTA_MERGE_SIZE = 16;
+
+    private NodeRef[] sorted;
+    private Set<NodeRef> delta;
+    private Set<NodeRef> removed;
+
+    Bucket(NodeRef[] sorted) {
+      this.sorted = sorted;
+    }
+
+    synchronized void add(NodeRef ref) {
+      if (indexInSorted(ref) >= 0) {
+        if (removed != null) removed.remove(ref);
+        return;
+      }
+      if (delta == null) delta = new HashSet<>();
+      delta.add(ref);
+      if (delta.size() > mergeThreshold()) merge();
+    }
+
+    synchronized void remove(NodeRef ref) {
+      if (delta != null && delta.remove(ref)) return;
+      if (indexInSorted(ref) < 0) return;
+      if (removed == null) removed = new HashSet<>();
+      removed.add(ref);
+      if (removed.size() > mergeThreshold()) merge();
+    }
+
+    synchronized NodeRef[] snapshot() {
+      if (delta != null || removed != null) merge();
+      return sorted;
+    }
+
+    synchronized int size() {
+      return sorted.length + (delta == null ? 0 : delta.size()) - (removed == null ? 0 : removed.size());
+    }
+
+    private int mergeThreshold() {
+      return Math.max(MIN_DELTA_MERGE_SIZE, sorted.length / 4);
+    }
+
+    private int indexInSorted(NodeRef ref) {
+      int low = 0;
+      int high = sorted.length - 1;
+      while (low <= high) {
+        final int mid = (low + high) >>> 1;
+        final long midId = sorted[mid].id;
+        if (midId < ref.id) low = mid + 1;
+        else if (midId > ref.id) high = mid - 1;
+        else return mid;
+      }
+      return -1;
+    }
+
+    private void merge() {
+      final List<NodeRef> additions = delta == null ? Collections.emptyList() : new ArrayList<>(delta);
+      additions.sort(BY_ID);
+      final int removedCount = removed == null ? 0 : removed.size();
+      final NodeRef[] merged = new NodeRef[sorted.length + additions.size() - removedCount];
+      int i = 0, j = 0, k = 0;
+      while (i < sorted.length || j < additions.size()) {
+        if (j == additions.size() || (i < sorted.length && sorted[i].id <= additions.get(j).id)) {
+          final NodeRef ref = sorted[i++];
+          if (removedCount == 0 || !removed.contains(ref)) merged[k++] = ref;
+        } else {
+          merged[k++] = additions.get(j++);
+        }
+      }
+      sorted = merged;
+      delta = null;
+      removed = null;
+    }
+  }
+}
@@ -27,6 +27,12 @@ public abstract class NodeRef<N extends OdbNode> implements Vertex, Node {
   protected final OdbGraph graph;
   private N node;
 
+  /** position within the per-label segment of the {@link NodeTable}, maintained by the latter */
+  int labelPosition = -1;
+
+  /** position in the graph's {@link NodeRefRegistry}, only used for {@link AdjacencyStorage#NODE_INDEX} */
+  int nodeIndex = -1;
+
   public NodeRef(final OdbGraph graph, N node) {
     this.graph = graph;
     this.node = node;
@@ -63,6 +69,23 @@ public abstract class NodeRef<N extends OdbNode> implements Vertex, Node {
     this.node = null;
   }
 
+  /**
+   * only called by @ReferenceManager, after the serialized node has been persisted
+   * @return false if the node has been modified since it was serialized, i.e. it must not be cleared (yet)
+   */
+  final synchronized boolean clearIfClean() {
+    final N node = this.node;
+    if (node != null && node.isDirty()) return false;
+    this.node = null;
+    return true;
+  }
+
+  /** only called by @ReferenceManager, if the serialized node couldn't be persisted, i.e. it must be serialized again */
+  final void markAsDirtyIfSet() {
+    final N node = this.node;
+    if (node != null) node.markAsDirty();
+  }
+
   protected byte[] serializeWhenDirty() {
     OdbNode node = this.node;
     if (node != null && node.isDirty()) {
@@ -79,32 +102,84 @@ public abstract class NodeRef<N extends OdbNode> implements Vertex, Node {
     final N ref = node;
     if (ref != null) {
       /* Node is in memory, just return it */
+      if (!ref.accessed) ref.accessed = true; // avoid the write if it's already set
+      graph.referenceManager.recordHit();
       return ref;
     } else {
       /* read Node from disk */
+      final N loaded;
       try {
-        return getSynchronized();
+        loaded = getSynchronized();
       } catch (Exception e) {
         throw new RuntimeException(e);
       }
+      if (loaded == null) return get(); // another thread came first
+      /* not while holding the lock, so that other threads can access the node right away */
+      graph.prefetcher.ifPresent(prefetcher -> prefetcher.nodeLoaded(loaded));
+      return loaded;
     }
   }
 
-  /** deserialize node from disk, synchronized to ensure this only happens once in a multi-threaded setup */
+  /**
+   * deserialize node from disk, synchronized to ensure this only happens once in a multi-threaded setup
+   * @return the node if it has been read from disk by this call, null if another thread came first
+   */
   private final synchronized N getSynchronized() throws IOException {
-    final N ref = node;
     /* checking again, in case another thread came here first and deserialized the node from disk */
-    if (ref != null) {
-      return ref;
+    if (node != null) {
+      return null;
     } else {
       final N node = readFromDisk(id);
       if (node == null) throw new IllegalStateException("unable to read node from disk; id=" + id);
+      node.accessed = true;
       this.node = node;
+      graph.referenceManager.recordMiss();
       graph.referenceManager.registerRef(this); // so it can be cleared on low memory
       return node;
     }
   }
 
+  /**
+   * only called by {@link OdbGraph#materialize(Iterator, boolean)}, which has read the node from disk
+   * @return false if the node has been read from disk in the meantime, i.e. the given node is discarded
+   */
+  final synchronized boolean setNodeIfCleared(N node, boolean markAsAccessed) {
+    if (this.node != null) return false;
+
+    if (markAsAccessed) {
+      node.accessed = true;
+      graph.referenceManager.recordMiss();
+    }
+    this.node = node;
+    graph.referenceManager.registerRef(this); // so it can be cleared on low memory
+    return true;
+  }
+
+  /**
+   * reads all given nodes that are currently cleared from disk in one go, see {@link OdbGraph#materialize(Iterator)}
+   * @return number of nodes that have been read from disk
+   */
+  public static int getAll(Iterable<? extends Node> nodes) {
+    for (Node node : nodes) {
+      if (node instanceof NodeRef) return ((NodeRef) node).graph.materialize(nodes.iterator());
+    }
+    return 0;
+  }
+
+  /**
+   * for the {@link ClockEvictionPolicy}
+   * @return whether the node has been accessed since the last call. Always false if the node is not in memory.
+   */
+  public final boolean resetAccessedFlag() {
+    final N ref = node;
+    if (ref != null && ref.accessed) {
+      ref.accessed = false;
+      return true;
+    } else {
+      return false;
+    }
+  }
+
   public final Optional<N> getOption() {
     return Optional.ofNullable(node);
   }
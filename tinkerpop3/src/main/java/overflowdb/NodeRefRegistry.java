@@ -0,0 +1,55 @@
+package overflowdb;
+
+import java.util.Arrays;
+
+/**
+ * For {@link AdjacencyStorage#NODE_INDEX}: assigns each NodeRef a dense int index (`NodeRef.nodeIndex`) on first use,
+ * and resolves indices back to NodeRefs.
+ * Indices of removed nodes aren't reused: an iterator over a stale adjacency array must not resolve to some other node.
+ */
+class NodeRefRegistry {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /* replaced when growing, so that readers usually don't need to lock, see `get` */
+  private volatile NodeRef[] refs = new NodeRef[INITIAL_CAPACITY];
+  private int size;
+
+  /** @return the index of the given ref, assigns the next free one if it doesn't have one yet */
+  int indexOf(NodeRef ref) {
+    final int index = ref.nodeIndex;
+    if (index >= 0) return index;
+    return register(ref);
+  }
+
+  private synchronized int register(NodeRef ref) {
+    if (ref.nodeIndex >= 0) return ref.nodeIndex; // another thread came here first
+
+    if (size == refs.length) refs = Arrays.copyOf(refs, refs.length * 2);
+    refs[size] = ref;
+    ref.nodeIndex = size;
+    return size++;
+  }
+
+  /** @return the ref with the given index, or null if it has been removed */
+  NodeRef get(int index) {
+    final NodeRef[] refs = this.refs;
+    final NodeRef ref = index < refs.length ? refs[index] : null;
+    /* The element is written without a memory barrier, and the index may have reached this thread via some path
+     * without a happens-before relation (e.g. another thread's adjacency array), i.e. this thread may not see the
+     * element (or the grown array) yet. Refs are only ever set once and then removed, so a non-null ref is correct. */
+    return ref != null ? ref : getSynchronized(index);
+  }
+
+  private synchronized NodeRef getSynchronized(int index) {
+    return index < size ? refs[index] : null;
+  }
+
+  /** the node has been removed from the graph: drop the reference, so that it can be garbage collected */
+  synchronized void remove(NodeRef ref) {
+    if (ref.nodeIndex >= 0) refs[ref.nodeIndex] = null;
+  }
+
+  synchronized int size() {
+    return size;
+  }
+}
@@ -0,0 +1,69 @@
+package overflowdb;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Holds all nodes of a graph, and serves lookups by id and by label.
+ * {@link OpenHashNodeTable} is the default (single threaded) implementation, {@link StripedNodeTable} allows for
+ * concurrent mutation.
+ */
+interface NodeTable {
+
+  NodeRef get(long id);
+
+  boolean contains(long id);
+
+  /**
+   * @return false if the table already contains a node with the same id, in which case the table remains unchanged
+   */
+  boolean add(NodeRef ref);
+
+  /**
+   * bulk version of {@link #add(NodeRef)}, e.g. used when restoring a graph from storage: allows implementations to
+   * allocate space for all nodes upfront
+   * @param refs all have the given label
+   * @return number of added nodes, i.e. excluding those that were already contained
+   */
+  default int addAll(String label, List<NodeRef> refs) {
+    int addedCount = 0;
+    for (NodeRef ref : refs) {
+      if (add(ref)) addedCount++;
+    }
+    return addedCount;
+  }
+
+  /**
+   * @return the removed node, or null if there was no node with the given id
+   */
+  NodeRef remove(long id);
+
+  int size();
+
+  int size(String label);
+
+  Set<String> labels();
+
+  /** iterator over all nodes, grouped by label */
+  Iterator<NodeRef> iterator();
+
+  Iterator<NodeRef> iterator(String label);
+
+  default Stream<NodeRef> parallelStream() {
+    return StreamSupport.stream(Spliterators.spliterator(iterator(), size(), Spliterator.DISTINCT | Spliterator.NONNULL), true);
+  }
+
+  static NodeTable create(OdbConfig config, int expectedSize) {
+    if (config.isConcurrentMutationEnabled()) {
+      return new StripedNodeTable(expectedSize);
+    } else {
+      return new OpenHashNodeTable(expectedSize);
+    }
+  }
+
+}
@@ -1,5 +1,8 @@
 package overflowdb;
 
+import overflowdb.storage.Compression;
+import overflowdb.storage.StorageBackend;
+
 import java.util.Optional;
 
 public class OdbConfig {
@@ -7,6 +10,17 @@ public class OdbConfig {
   private int heapPercentageThreshold = 80;
   private Optional<String> storageLocation = Optional.empty();
   private boolean serializationStatsEnabled = false;
+  private boolean concurrentMutationEnabled = false;
+  private EvictionPolicy evictionPolicy = EvictionPolicy.FIFO;
+  private int releaseCount = 100000;
+  private boolean adaptiveReleaseCountEnabled = false;
+  private long maxBackpressureWaitMillis = 0;
+  private StorageBackend.Factory storageBackend = StorageBackend.MVSTORE;
+  private Compression compression = Compression.NONE;
+  private int writeQueueCapacity = 10000;
+  private int prefetchDepth = 0;
+  private int prefetchMaxNodes = 0;
+  private AdjacencyStorage adjacencyStorage = AdjacencyStorage.HEAP;
 
   public static OdbConfig withDefaults() {
     return new OdbConfig();
@@ -38,12 +52,116 @@ public class OdbConfig {
     return this;
   }
 
-  /* If specified, OdbGraph will measure and report serialization / deserialization timing averages. */
+  /* If specified, OdbGraph will measure and report serialization / deserialization timing averages,
+   * as well as the hit rate of node accesses (i.e. the share of accesses that didn't need to read from disk). */
   public OdbConfig withSerializationStatsEnabled() {
     this.serializationStatsEnabled = true;
     return this;
   }
 
+  /* If specified, multiple threads may add/remove nodes and edges concurrently, e.g. to import a graph in parallel.
+   * This comes with a (small) price for the locking overhead, therefor it's disabled by default. */
+  public OdbConfig withConcurrentMutationEnabled() {
+    this.concurrentMutationEnabled = true;
+    return this;
+  }
+
+  /**
+   * decides which nodes are cleared when running low on heap, see {@link EvictionPolicy}
+   * defaults to {@link EvictionPolicy#FIFO}
+   */
+  public OdbConfig withEvictionPolicy(EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+    return this;
+  }
+
+  /**
+   * number of nodes to clear (i.e. write to storage and set to `null`) whenever the heap is above the threshold.
+   * defaults to 100000
+   */
+  public OdbConfig withReleaseCount(int releaseCount) {
+    if (releaseCount <= 0) throw new IllegalArgumentException("releaseCount must be positive, but is " + releaseCount);
+    this.releaseCount = releaseCount;
+    return this;
+  }
+
+  /**
+   * If specified, the number of nodes to clear is derived from how much the heap exceeds the threshold and the
+   * average serialized node size, so that one round of clearing suffices.
+   * The configured `releaseCount` is only used until the first nodes have been (de)serialized.
+   */
+  public OdbConfig withAdaptiveReleaseCount() {
+    this.adaptiveReleaseCountEnabled = true;
+    return this;
+  }
+
+  /**
+   * while references are being cleared, threads that create nodes or edges wait until the serializers can hand over
+   * their nodes to the writer again, i.e. while the write queue is full (backpressure).
+   * If specified, they'll wait at most this long and then continue regardless.
+   * defaults to 0, i.e. wait until clearing is completed
+   */
+  public OdbConfig withMaxBackpressureWaitMillis(long millis) {
+    if (millis < 0) throw new IllegalArgumentException("maxBackpressureWaitMillis must not be negative, but is " + millis);
+    this.maxBackpressureWaitMillis = millis;
+    return this;
+  }
+
+  /**
+   * where overflowed (and persisted) nodes are stored, e.g. {@link StorageBackend#MMAP}
+   * defaults to {@link StorageBackend#MVSTORE}
+   */
+  public OdbConfig withStorageBackend(StorageBackend.Factory storageBackend) {
+    this.storageBackend = storageBackend;
+    return this;
+  }
+
+  /**
+   * compress each serialized node before handing it to the storage backend, e.g. {@link Compression#LZ4}
+   * saves disk space at the cost of some cpu time when overflowing and reading nodes. Defaults to {@link Compression#NONE}.
+   * Can be changed between runs: nodes are always read with the compression they were written with.
+   */
+  public OdbConfig withCompression(Compression compression) {
+    this.compression = compression;
+    return this;
+  }
+
+  /**
+   * when clearing references, serialized nodes are handed to a dedicated writer via a bounded queue of this size,
+   * so that node creation can continue while they're written to storage. Only when the queue is full, the serializers
+   * (and with them, via backpressure, the threads creating nodes) wait for the writer.
+   * defaults to 10000
+   */
+  public OdbConfig withWriteQueueCapacity(int writeQueueCapacity) {
+    if (writeQueueCapacity <= 0) throw new IllegalArgumentException("writeQueueCapacity must be positive, but is " + writeQueueCapacity);
+    this.writeQueueCapacity = writeQueueCapacity;
+    return this;
+  }
+
+  /**
+   * If specified, when a cleared node is read from disk, its adjacent nodes that are cleared as well are read
+   * asynchronously (breadth first, up to `depth` hops and `maxNodes` nodes), so that traversals over overflowed nodes
+   * don't need to wait for one read per hop. Disabled by default.
+   */
+  public OdbConfig withNeighbourPrefetch(int depth, int maxNodes) {
+    if (depth <= 0) throw new IllegalArgumentException("prefetch depth must be positive, but is " + depth);
+    if (maxNodes <= 0) throw new IllegalArgumentException("prefetch maxNodes must be positive, but is " + maxNodes);
+    this.prefetchDepth = depth;
+    this.prefetchMaxNodes = maxNodes;
+    return this;
+  }
+
+  /**
+   * where nodes store the references to their adjacent nodes: {@link AdjacencyStorage#OFF_HEAP} and
+   * {@link AdjacencyStorage#NODE_INDEX} keep edge-heavy graphs out of the GC's way (note that direct memory is limited
+   * by `-XX:MaxDirectMemorySize`).
+   * Defaults to {@link AdjacencyStorage#HEAP}.
+   */
+  public OdbConfig withAdjacencyStorage(AdjacencyStorage adjacencyStorage) {
+    this.adjacencyStorage = adjacencyStorage;
+    return this;
+  }
+
   public boolean isOverflowEnabled() {
     return overflowEnabled;
   }
@@ -59,4 +177,52 @@ public class OdbConfig {
   public boolean isSerializationStatsEnabled() {
     return serializationStatsEnabled;
   }
+
+  public boolean isConcurrentMutationEnabled() {
+    return concurrentMutationEnabled;
+  }
+
+  public EvictionPolicy getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  public int getReleaseCount() {
+    return releaseCount;
+  }
+
+  public boolean isAdaptiveReleaseCountEnabled() {
+    return adaptiveReleaseCountEnabled;
+  }
+
+  public long getMaxBackpressureWaitMillis() {
+    return maxBackpressureWaitMillis;
+  }
+
+  public StorageBackend.Factory getStorageBackend() {
+    return storageBackend;
+  }
+
+  public Compression getCompression() {
+    return compression;
+  }
+
+  public int getWriteQueueCapacity() {
+    return writeQueueCapacity;
+  }
+
+  public boolean isNeighbourPrefetchEnabled() {
+    return prefetchDepth > 0;
+  }
+
+  public int getPrefetchDepth() {
+    return prefetchDepth;
+  }
+
+  public int getPrefetchMaxNodes() {
+    return prefetchMaxNodes;
+  }
+
+  public AdjacencyStorage getAdjacencyStorage() {
+    return adjacencyStorage;
+  }
 }
@@ -1,9 +1,5 @@
 package overflowdb;
 
-import gnu.trove.map.TLongObjectMap;
-import gnu.trove.map.hash.THashMap;
-import gnu.trove.map.hash.TLongObjectHashMap;
-import gnu.trove.set.hash.THashSet;
 import org.apache.commons.collections.iterators.EmptyIterator;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang.NotImplementedException;
@@ -25,7 +21,9 @@ import org.apache.tinkerpop.gremlin.util.iterator.IteratorUtils;
 import org.apache.tinkerpop.gremlin.util.iterator.MultiIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import overflowdb.storage.Compression;
 import overflowdb.storage.NodeDeserializer;
+import overflowdb.storage.NodeManifest;
 import overflowdb.storage.OdbStorage;
 import overflowdb.tp3.GraphVariables;
 import overflowdb.tp3.TinkerIoRegistryV1d0;
@@ -37,14 +35,20 @@ import overflowdb.util.MultiIterator2;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 public final class OdbGraph implements Graph {
   private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -57,11 +61,11 @@ public final class OdbGraph implements Graph {
 
   private final GraphFeatures features = new GraphFeatures();
   protected final AtomicLong currentId = new AtomicLong(-1L);
-  protected TLongObjectMap<NodeRef> nodes;
-  protected THashMap<String, Set<NodeRef>> nodesByLabel;
+  protected NodeTable nodes;
   protected final GraphVariables variables = new GraphVariables();
   public final OdbIndexManager indexManager = new OdbIndexManager(this);
   private final OdbConfig config;
+  protected final boolean concurrentMutationEnabled;
   private boolean closed = false;
 
   protected final Map<String, NodeFactory> nodeFactoryByLabel;
@@ -70,6 +74,13 @@ public final class OdbGraph implements Graph {
   protected final OdbStorage storage;
   protected final Optional<HeapUsageMonitor> heapUsageMonitor;
   protected final ReferenceManager referenceManager;
+  final Optional<NodePrefetcher> prefetcher;
+  /* only for AdjacencyStorage.OFF_HEAP */
+  private final Optional<OffHeapSlotAllocator> offHeapSlotAllocator;
+  /* only for AdjacencyStorage.NODE_INDEX */
+  final Optional<NodeRefRegistry> nodeRefRegistry;
+  /* label ids of the layouts that can't use the nodeRefRegistry, see createAdjacentNodeSlots */
+  private final Set<Integer> heapAdjacencyLabelIds = ConcurrentHashMap.newKeySet();
 
   public static OdbGraph open(OdbConfig configuration,
                               List<NodeFactory<?>> nodeFactories,
@@ -88,8 +99,15 @@ public final class OdbGraph implements Graph {
                    Map<Integer, NodeFactory> nodeFactoryByLabelId,
                    Map<String, EdgeFactory> edgeFactoryByLabel) {
     this.config = config;
+    this.concurrentMutationEnabled = config.isConcurrentMutationEnabled();
     this.nodeFactoryByLabel = nodeFactoryByLabel;
     this.edgeFactoryByLabel = edgeFactoryByLabel;
+    this.offHeapSlotAllocator = config.getAdjacencyStorage() == AdjacencyStorage.OFF_HEAP ?
+        Optional.of(new OffHeapSlotAllocator(this)) :
+        Optional.empty();
+    this.nodeRefRegistry = config.getAdjacencyStorage() == AdjacencyStorage.NODE_INDEX ?
+        Optional.of(new NodeRefRegistry()) :
+        Optional.empty();
 
     NodeDeserializer nodeDeserializer = new NodeDeserializer(
         this, nodeFactoryByLabelId, config.isSerializationStatsEnabled());
@@ -97,54 +115,136 @@ public final class OdbGraph implements Graph {
       storage = OdbStorage.createWithSpecificLocation(
           nodeDeserializer,
           new File(config.getStorageLocation().get()),
-          config.isSerializationStatsEnabled()
+          config.isSerializationStatsEnabled(),
+          config.getStorageBackend(),
+          config.getCompression()
       );
       initElementCollections(storage);
     } else {
-      storage = OdbStorage.createWithTempFile(nodeDeserializer, config.isSerializationStatsEnabled());
+      storage = OdbStorage.createWithTempFile(
+          nodeDeserializer, config.isSerializationStatsEnabled(), config.getStorageBackend(), config.getCompression());
       initEmptyElementCollections();
     }
-    referenceManager = new ReferenceManager(storage);
+    referenceManager = new ReferenceManager(storage, config);
     heapUsageMonitor = config.isOverflowEnabled() ?
         Optional.of(new HeapUsageMonitor(config.getHeapPercentageThreshold(), referenceManager)) :
         Optional.empty();
+    prefetcher = config.isNeighbourPrefetchEnabled() ?
+        Optional.of(new NodePrefetcher(this, referenceManager, config.getPrefetchDepth(), config.getPrefetchMaxNodes())) :
+        Optional.empty();
   }
 
   private void initEmptyElementCollections() {
-    nodes = new TLongObjectHashMap<>();
-    nodesByLabel = new THashMap<>(100);
+    nodes = NodeTable.create(config, 0);
   }
 
+  /**
+   * restores all NodeRefs from storage: if the storage contains a {@link NodeManifest} (written on `close`), the
+   * NodeRefs are created from that, without touching the serialized nodes. Otherwise, all serialized nodes are scanned.
+   */
   private void initElementCollections(OdbStorage storage) {
     long start = System.currentTimeMillis();
-    final Set<Map.Entry<Long, byte[]>> serializedNodes = storage.allNodes();
-    logger.info("initializing " + serializedNodes.size() + " nodes from existing storage - this may take some time");
+    final int nodeCount = storage.allNodes().size();
+    nodes = NodeTable.create(config, nodeCount);
+
+    final Optional<NodeManifest> manifest = NodeManifest.load(storage.getBackend());
+    final long maxId;
+    final String restoreStats;
+    if (manifest.isPresent() && manifest.get().nodeCount() == nodeCount) {
+      logger.info("initializing " + nodeCount + " nodes from node manifest");
+      maxId = restoreFromManifest(manifest.get());
+      restoreStats = "from node manifest";
+    } else {
+      if (manifest.isPresent()) {
+        logger.warn("node manifest doesn't match storage (" + manifest.get().nodeCount() + " vs " + nodeCount + " nodes), ignoring it");
+      }
+      logger.info("initializing " + nodeCount + " nodes from existing storage - this may take some time");
+      final int partitionCount = Runtime.getRuntime().availableProcessors() * 4;
+      final long[] decodingAndMergingMillis = new long[2];
+      maxId = restoreFromStorage(storage, nodeCount, partitionCount, decodingAndMergingMillis);
+      restoreStats = "decoding " + partitionCount + " partitions: " + decodingAndMergingMillis[0] + "ms, merging: "
+          + decodingAndMergingMillis[1] + "ms";
+    }
+    /* the manifest is only valid for the state it was written in - a new one will be written on `close` */
+    NodeManifest.remove(storage.getBackend());
+    storage.flush();
+    long restoreMillis = System.currentTimeMillis() - start;
+
+    currentId.set(Math.max(maxId, currentId.get()) + 1);
+    indexManager.initializeStoredIndices(storage);
+    long elapsedMillis = System.currentTimeMillis() - start;
+    logger.info("initialized " + this.toString() + " from existing storage in " + elapsedMillis + "ms (" + restoreStats
+        + ", indices: " + (elapsedMillis - restoreMillis) + "ms)");
+  }
+
+  /** creates the NodeRefs of all nodes in the manifest, the nodes themselves are only read on demand */
+  private long restoreFromManifest(NodeManifest manifest) {
+    final Map<Integer, NodeFactory> nodeFactoryByLabelId = new HashMap<>(nodeFactoryByLabel.size());
+    nodeFactoryByLabel.values().forEach(factory -> nodeFactoryByLabelId.put(factory.forLabelId(), factory));
+    manifest.getIdsByLabelId().forEach((labelId, ids) -> {
+      final NodeFactory nodeFactory = nodeFactoryByLabelId.get(labelId);
+      if (nodeFactory == null) throw new IllegalStateException("node manifest contains unknown label id " + labelId);
+      final List<NodeRef> refs = Arrays.stream(ids).parallel()
+          .mapToObj(id -> (NodeRef) nodeFactory.createNodeRef(this, id))
+          .collect(Collectors.toList());
+      nodes.addAll(nodeFactory.forLabel(), refs);
+    });
+    return manifest.maxId;
+  }
+
+  /**
+   * the storage is split into partitions which are decoded concurrently, then the NodeRefs are merged (label by label)
+   * into the pre-sized NodeTable
+   * @param decodingAndMergingMillis output parameter for the time spent in both phases
+   */
+  private long restoreFromStorage(OdbStorage storage, int nodeCount, int partitionCount, long[] decodingAndMergingMillis) {
+    long start = System.currentTimeMillis();
+    final NodeDeserializer nodeDeserializer = storage.getNodeDeserializer().get();
+    final List<Iterable<Map.Entry<Long, byte[]>>> partitions = storage.allNodesPartitioned(partitionCount);
+    final List<RestoredPartition> restoredPartitions = partitions.parallelStream()
+        .map(partition -> restorePartition(partition, nodeDeserializer))
+        .collect(Collectors.toList());
+    decodingAndMergingMillis[0] = System.currentTimeMillis() - start;
+
+    long maxId = -1;
+    final Map<String, Integer> countByLabel = new HashMap<>();
+    for (RestoredPartition partition : restoredPartitions) {
+      maxId = Math.max(maxId, partition.maxId);
+      partition.refsByLabel.forEach((label, refs) -> countByLabel.merge(label, refs.size(), Integer::sum));
+    }
     int importCount = 0;
-    long maxId = currentId.get();
+    for (Map.Entry<String, Integer> labelAndCount : countByLabel.entrySet()) {
+      final String label = labelAndCount.getKey();
+      final List<NodeRef> refs = new ArrayList<>(labelAndCount.getValue());
+      for (RestoredPartition partition : restoredPartitions) {
+        refs.addAll(partition.refsByLabel.getOrDefault(label, Collections.emptyList()));
+      }
+      importCount += nodes.addAll(label, refs);
+    }
+    if (importCount < nodeCount) {
+      logger.warn("storage contained " + (nodeCount - importCount) + " nodes with duplicate ids, which were ignored");
+    }
+    decodingAndMergingMillis[1] = System.currentTimeMillis() - start - decodingAndMergingMillis[0];
+    return maxId;
+  }
 
-    nodes = new TLongObjectHashMap<>(serializedNodes.size());
-    nodesByLabel = new THashMap<>(serializedNodes.size());
-    final Iterator<Map.Entry<Long, byte[]>> serializedVertexIter = serializedNodes.iterator();
-    while (serializedVertexIter.hasNext()) {
-      final Map.Entry<Long, byte[]> entry = serializedVertexIter.next();
+  private static RestoredPartition restorePartition(Iterable<Map.Entry<Long, byte[]>> partition, NodeDeserializer nodeDeserializer) {
+    final RestoredPartition restored = new RestoredPartition();
+    for (Map.Entry<Long, byte[]> entry : partition) {
       try {
-        final NodeRef nodeRef = storage.getNodeDeserializer().get().deserializeRef(entry.getValue());
-        nodes.put(nodeRef.id, nodeRef);
-        storeInByLabelCollection(nodeRef);
-        importCount++;
-        if (importCount % 131072 == 0) {
-          logger.debug("imported " + importCount + " elements - still running...");
-        }
-        if (nodeRef.id > maxId) maxId = nodeRef.id;
+        final NodeRef nodeRef = nodeDeserializer.deserializeRef(Compression.decompress(entry.getValue()));
+        restored.refsByLabel.computeIfAbsent(nodeRef.label(), label -> new ArrayList<>()).add(nodeRef);
+        if (nodeRef.id > restored.maxId) restored.maxId = nodeRef.id;
       } catch (IOException e) {
         throw new RuntimeException("error while initializing vertex from storage: id=" + entry.getKey(), e);
       }
     }
+    return restored;
+  }
 
-    currentId.set(maxId + 1);
-    indexManager.initializeStoredIndices(storage);
-    long elapsedMillis = System.currentTimeMillis() - start;
-    logger.info("initialized " + this.toString() + " from existing storage in " + elapsedMillis + "ms");
+  private static class RestoredPartition {
+    final Map<String, List<NodeRef>> refsByLabel = new HashMap<>();
+    long maxId = -1;
   }
 
 
@@ -159,15 +259,24 @@ public final class OdbGraph implements Graph {
       throw new IllegalStateException("cannot add more elements, graph is closed");
     }
     ElementHelper.legalPropertyKeyValueArray(keyValues);
-    if (nodes.containsKey(id)) {
+    if (nodes.contains(id)) {
       throw Exceptions.vertexWithIdAlreadyExists(id);
     }
 
-    currentId.set(Long.max(id, currentId.get()));
-    final NodeRef node = createNode(id, label, keyValues);
-    nodes.put(node.id, node);
-    storeInByLabelCollection(node);
-    return node;
+    currentId.accumulateAndGet(id, Long::max);
+    return createNode(id, label, keyValues);
+  }
+
+  /** for efficient bulk imports: see {@link BulkLoader}
+   * edges are only added to the graph when calling `flush` or `close` */
+  public BulkLoader bulkLoader() {
+    return bulkLoader(Integer.MAX_VALUE);
+  }
+
+  /** for efficient bulk imports: see {@link BulkLoader}
+   * @param batchSize number of edges to buffer before they're automatically added to the graph */
+  public BulkLoader bulkLoader(int batchSize) {
+    return new BulkLoader(this, batchSize);
   }
 
   // TODO: move to tinkerpop-specific OdbGraph wrapper
@@ -197,9 +306,19 @@ public final class OdbGraph implements Graph {
     }
     final NodeFactory factory = nodeFactoryByLabel.get(label);
     final OdbNode underlying = factory.createNode(this, idValue);
-    this.referenceManager.registerRef(underlying.ref);
     node = underlying.ref;
-    ElementHelper.attachProperties(node, VertexProperty.Cardinality.list, keyValues);
+    // atomically claim the id - another thread may have added a node with the same id in the meantime
+    if (!nodes.add(node)) {
+      throw Exceptions.vertexWithIdAlreadyExists(idValue);
+    }
+    try {
+      ElementHelper.attachProperties(node, VertexProperty.Cardinality.list, keyValues);
+    } catch (RuntimeException e) {
+      indexManager.removeElement(node);
+      nodes.remove(idValue);
+      throw e;
+    }
+    this.referenceManager.registerRef(node);
     return node;
   }
 
@@ -240,13 +359,51 @@ public final class OdbGraph implements Graph {
   public void close() {
     this.closed = true;
     heapUsageMonitor.ifPresent(monitor -> monitor.close());
+    prefetcher.ifPresent(prefetcher -> prefetcher.close());
     if (config.getStorageLocation().isPresent()) {
       /* persist to disk */
       indexManager.storeIndexes(storage);
       referenceManager.clearAllReferences();
+      writeNodeManifest();
     }
     referenceManager.close();
     storage.close();
+    offHeapSlotAllocator.ifPresent(allocator -> allocator.close());
+  }
+
+  /**
+   * @return empty slots for a new node with the given layout, or null if the adjacent nodes are stored in the node
+   * itself: for {@link AdjacencyStorage#HEAP}, and for {@link AdjacencyStorage#NODE_INDEX} if the layout has edge
+   * properties
+   */
+  AdjacentNodeSlots createAdjacentNodeSlots(NodeLayoutInformation layout) {
+    if (offHeapSlotAllocator.isPresent()) return new OffHeapAdjacentNodeSlots(offHeapSlotAllocator.get(), 0);
+    if (nodeRefRegistry.isPresent()) {
+      if (!layout.hasEdgeProperties()) return new NodeIndexAdjacentNodeSlots(nodeRefRegistry.get(), 0);
+      if (heapAdjacencyLabelIds.add(layout.labelId)) {
+        logger.info("nodes with label id " + layout.labelId + " have edge properties, storing their adjacent nodes on " +
+            "the heap rather than as node indices");
+      }
+    }
+    return null;
+  }
+
+  /** number of bytes that are currently used to store adjacent nodes off-heap, see {@link AdjacencyStorage#OFF_HEAP} */
+  public long getOffHeapAdjacencyBytes() {
+    return offHeapSlotAllocator.map(allocator -> allocator.getAllocatedBytes()).orElse(0L);
+  }
+
+  /** so that the next `open` doesn't need to scan all serialized nodes, see {@link NodeManifest} */
+  private void writeNodeManifest() {
+    final Map<Integer, long[]> idsByLabelId = new HashMap<>();
+    for (String label : nodes.labels()) {
+      final long[] ids = new long[nodes.size(label)];
+      int idx = 0;
+      final Iterator<NodeRef> refs = nodes.iterator(label);
+      while (refs.hasNext() && idx < ids.length) ids[idx++] = refs.next().id;
+      idsByLabelId.put(nodeFactoryByLabel.get(label).forLabelId(), Arrays.copyOf(ids, idx));
+    }
+    NodeManifest.create(currentId.get(), idsByLabelId).save(storage.getBackend());
   }
 
   @Override
@@ -266,7 +423,7 @@ public final class OdbGraph implements Graph {
   @Override
   public Iterator<Vertex> vertices(final Object... idsOrVertices) {
     if (idsOrVertices.length == 0) { //return all nodes - that's how the tinkerpop api rolls.
-      final Iterator<NodeRef> nodeRefIter = nodes.valueCollection().iterator();
+      final Iterator<NodeRef> nodeRefIter = nodes.iterator();
       return IteratorUtils.map(nodeRefIter, ref -> ref); // javac has humour
     } else {
       final long[] ids = new long[idsOrVertices.length];
@@ -291,6 +448,60 @@ public final class OdbGraph implements Graph {
     return nodes.size();
   }
 
+  public int nodeCount(String label) {
+    return nodes.size(label);
+  }
+
+  /**
+   * reads all given nodes that are currently cleared (i.e. overflowed to disk) in one go: in storage order, and
+   * deserialized in parallel. Much faster than reading them one by one on access, e.g. before traversing over many
+   * overflowed nodes. Nodes that are in memory already (or belong to a different graph) are ignored.
+   * @return number of nodes that have been read from disk
+   */
+  public int materialize(Iterator<? extends Node> nodes) {
+    return materialize(nodes, true).size();
+  }
+
+  /**
+   * @param markAsAccessed false for speculative reads, i.e. the nodes don't count as accessed for the eviction policy
+   * @return the nodes that have been read from disk
+   */
+  List<OdbNode> materialize(Iterator<? extends Node> nodes, boolean markAsAccessed) {
+    final Map<Long, NodeRef> clearedRefs = new LinkedHashMap<>();
+    while (nodes.hasNext()) {
+      final Node node = nodes.next();
+      if (node instanceof NodeRef) {
+        final NodeRef ref = (NodeRef) node;
+        if (ref.graph == this && ref.isCleared()) clearedRefs.putIfAbsent(ref.id, ref);
+      }
+    }
+    if (clearedRefs.isEmpty()) return Collections.emptyList();
+
+    final long[] ids = new long[clearedRefs.size()];
+    final NodeRef[] refsById = new NodeRef[ids.length];
+    int idx = 0;
+    for (NodeRef ref : clearedRefs.values()) {
+      ids[idx] = ref.id;
+      refsById[idx++] = ref;
+    }
+
+    final OdbNode[] readNodes;
+    try {
+      readNodes = storage.readNodes(ids);
+    } catch (IOException e) {
+      throw new RuntimeException("unable to read nodes from disk", e);
+    }
+    final List<OdbNode> materialized = new ArrayList<>(readNodes.length);
+    for (int i = 0; i < readNodes.length; i++) {
+      /* the node may have been read in the meantime, e.g. by another thread: keep that one */
+      if (readNodes[i] == null) continue;
+      if (refsById[i].setNodeIfCleared(readNodes[i], markAsAccessed)) {
+        materialized.add(readNodes[i]);
+      }
+    }
+    return materialized;
+  }
+
   public int edgeCount() {
     int i = 0;
     final Iterator<OdbEdge> edges = edges();
@@ -315,21 +526,10 @@ public final class OdbGraph implements Graph {
   public Iterator<Edge> edges(final Object... ids) {
     if (ids.length > 0) throw new IllegalArgumentException("edges only exist virtually, and they don't have ids");
     MultiIterator2 multiIterator = new MultiIterator2();
-    nodes.forEachValue(vertex -> {
-      multiIterator.addIterator(vertex.edges(Direction.OUT));
-      return true;
-    });
+    nodes.iterator().forEachRemaining(vertex -> multiIterator.addIterator(vertex.edges(Direction.OUT)));
     return multiIterator;
   }
 
-  private void storeInByLabelCollection(NodeRef nodeRef) {
-    final String label = nodeRef.label();
-    if (!nodesByLabel.containsKey(label))
-      nodesByLabel.put(label, new THashSet<>(1));
-
-    nodesByLabel.get(label).add(nodeRef);
-  }
-
   /** Iterator over all nodes - alias for `nodes` */
   public Iterator<Node> V() {
     return nodes();
@@ -337,7 +537,7 @@ public final class OdbGraph implements Graph {
 
   /** Iterator over all nodes */
   public final Iterator<Node> nodes() {
-    final Iterator<NodeRef> nodeRefIter = nodes.valueCollection().iterator();
+    final Iterator<NodeRef> nodeRefIter = nodes.iterator();
     return IteratorUtils.map(nodeRefIter, ref -> ref); // javac has humour
   }
 
@@ -369,11 +569,7 @@ public final class OdbGraph implements Graph {
   }
 
   public Iterator<Node> nodesByLabel(final String label) {
-    final Set<NodeRef> nodes = nodesByLabel.get(label);
-    if (nodes != null)
-      return IteratorUtils.map(nodes.iterator(), node -> node);
-    else
-      return EmptyIterator.INSTANCE;
+    return IteratorUtils.map(nodes.iterator(label), node -> node);
   }
 
   public Iterator<Node> nodesByLabel(final String... labels) {
@@ -394,7 +590,7 @@ public final class OdbGraph implements Graph {
 
   public Iterator<Node> nodesByLabel(final P<String> labelPredicate) {
     final MultiIterator<Node> multiIterator = new MultiIterator<>();
-    for (String label : nodesByLabel.keySet()) {
+    for (String label : nodes.labels()) {
       if (labelPredicate.test(label)) {
         addNodesToMultiIterator(multiIterator, label);
       }
@@ -403,9 +599,8 @@ public final class OdbGraph implements Graph {
   }
 
   private final void addNodesToMultiIterator(final MultiIterator<Node> multiIterator, final String label) {
-    final Set<NodeRef> nodes = nodesByLabel.get(label);
-    if (nodes != null) {
-      multiIterator.addIterator(IteratorUtils.map(nodes.iterator(), node -> node));
+    if (nodes.size(label) > 0) {
+      multiIterator.addIterator(IteratorUtils.map(nodes.iterator(label), node -> node));
     }
   }
 
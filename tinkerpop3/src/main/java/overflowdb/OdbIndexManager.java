@@ -1,24 +1,33 @@
 package overflowdb;
 
 import overflowdb.storage.OdbStorage;
-import org.apache.tinkerpop.gremlin.structure.Property;
-import org.h2.mvstore.MVMap;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 public final class OdbIndexManager {
 
   private final OdbGraph graph;
-  // TODO use concurrent but memory efficient map
-  protected Map<String, Map<Object, Set<NodeRef>>> indexes = new ConcurrentHashMap<>();
+  protected Map<String, NodePropertyIndex> indexes = new ConcurrentHashMap<>();
+  /* label -> property name -> index, for nodes with that label only */
+  protected Map<String, Map<String, NodePropertyIndex>> labelIndexes = new ConcurrentHashMap<>();
+  /* keyed by property name, or by `labelIndexKey` for label specific indexes */
   protected Map<String, Boolean> dirtyFlags = new ConcurrentHashMap<>();
 
+  /* prefix for the storage name of label specific indexes, followed by the label, `;` and the regular storage name */
+  private static final String LABEL_INDEX_PREFIX = "label=";
+
   public OdbIndexManager(OdbGraph graph) {
     this.graph = graph;
   }
@@ -29,17 +38,56 @@ public final class OdbIndexManager {
    * When the index is created, all existing elements are indexed to ensure that they are captured by the index.
    */
   public final void createNodePropertyIndex(final String propertyName) {
+    createNodePropertyIndex(propertyName, IndexType.EXACT);
+  }
+
+  /**
+   * Like {@link #createNodePropertyIndex(String)}, for the given type of index. An existing index of a different type
+   * for the same property is replaced.
+   */
+  public final void createNodePropertyIndex(final String propertyName, final IndexType type) {
     checkPropertyName(propertyName);
 
-    if (indexes.containsKey(propertyName))
-      return;
+    final NodePropertyIndex existing = indexes.get(propertyName);
+    if (existing != null) {
+      if (existing.type == type) return;
+      dropNodePropertyIndex(propertyName);
+    }
 
     dirtyFlags.put(propertyName, true);
+    final NodePropertyIndex index = indexes.computeIfAbsent(propertyName, key -> new NodePropertyIndex(type));
 
-    graph.nodes.valueCollection().parallelStream()
-        .map(e -> new Object[]{e.property(propertyName), e})
-        .filter(a -> ((Property) a[0]).isPresent())
-        .forEach(a -> put(propertyName, ((Property) a[0]).value(), (NodeRef) a[1]));
+    graph.nodes.parallelStream().forEach(nodeRef -> {
+      final Object value = snapshot(nodeRef.property2(propertyName));
+      if (value != null) index.put(value, nodeRef);
+    });
+  }
+
+  /**
+   * Create an index for the specified property of nodes with the given label only: smaller than an index for all
+   * nodes, and doesn't contain nodes with other labels, e.g. for `g.V().hasLabel(label).has(propertyName, value)`.
+   * An existing index of a different type for the same label and property is replaced.
+   */
+  public final void createLabelPropertyIndex(final String label, final String propertyName, final IndexType type) {
+    checkPropertyName(propertyName);
+
+    final Map<String, NodePropertyIndex> indexesForLabel = labelIndexes.computeIfAbsent(label, l -> new ConcurrentHashMap<>());
+    final NodePropertyIndex existing = indexesForLabel.get(propertyName);
+    if (existing != null) {
+      if (existing.type == type) return;
+      dropLabelPropertyIndex(label, propertyName);
+    }
+
+    dirtyFlags.put(labelIndexKey(label, propertyName), true);
+    final NodePropertyIndex index = indexesForLabel.computeIfAbsent(propertyName, key -> new NodePropertyIndex(type));
+    graph.nodesByLabel(label).forEachRemaining(node -> {
+      final Object value = snapshot(((NodeRef) node).property2(propertyName));
+      if (value != null) index.put(value, (NodeRef) node);
+    });
+  }
+
+  public final void createLabelPropertyIndex(final String label, final String propertyName) {
+    createLabelPropertyIndex(label, propertyName, IndexType.EXACT);
   }
 
   private void checkPropertyName(String propertyName) {
@@ -48,40 +96,41 @@ public final class OdbIndexManager {
   }
 
   public final void loadNodePropertyIndex(final String propertyName, Map<Object, long[]> valueToNodeIds) {
-    dirtyFlags.put(propertyName, false);
-    valueToNodeIds.entrySet().parallelStream().forEach(entry ->
-        LongStream.of(entry.getValue())
-          .forEach(nodeId -> put(propertyName, entry.getKey(), (NodeRef)graph.vertex(nodeId))));
+    loadNodePropertyIndex(propertyName, IndexType.EXACT, valueToNodeIds);
   }
 
-  public void putIfIndexed(final String key, final Object newValue, final NodeRef nodeRef) {
-    dirtyFlags.put(key, true);
-    if (indexes.containsKey(key)) {
-      put(key, newValue, nodeRef);
-    }
+  public final void loadNodePropertyIndex(final String propertyName, IndexType type, Map<Object, long[]> valueToNodeIds) {
+    dirtyFlags.put(propertyName, false);
+    loadNodePropertyIndex(indexes.computeIfAbsent(propertyName, key -> new NodePropertyIndex(type)), valueToNodeIds);
   }
 
-  private final void put(final String key, final Object value, final NodeRef nodeRef) {
-    Map<Object, Set<NodeRef>> keyMap = indexes.get(key);
-    if (null == keyMap) {
-      indexes.putIfAbsent(key, new ConcurrentHashMap<>());
-      keyMap = indexes.get(key);
-    }
-    Set<NodeRef> objects = keyMap.get(value);
-    if (null == objects) {
-      keyMap.putIfAbsent(value, ConcurrentHashMap.newKeySet());
-      objects = keyMap.get(value);
-    }
-    objects.add(nodeRef);
+  private void loadNodePropertyIndex(NodePropertyIndex index, Map<Object, long[]> valueToNodeIds) {
+    valueToNodeIds.entrySet().parallelStream().forEach(entry -> {
+      final NodeRef[] refs = LongStream.of(entry.getValue())
+          .mapToObj(nodeId -> graph.nodes.get(nodeId))
+          .filter(Objects::nonNull)
+          .toArray(NodeRef[]::new);
+      index.putAll(entry.getKey(), refs);
+    });
   }
 
   /**
    * Drop the index for specified node property.
    */
   public final void dropNodePropertyIndex(final String key) {
-    if (indexes.containsKey(key)) {
-      indexes.remove(key).clear();
+    final NodePropertyIndex index = indexes.remove(key);
+    if (index != null) {
       dirtyFlags.remove(key);
+      graph.storage.removeIndex(storageName(key, index.type));
+    }
+  }
+
+  public final void dropLabelPropertyIndex(final String label, final String key) {
+    final Map<String, NodePropertyIndex> indexesForLabel = labelIndexes.get(label);
+    final NodePropertyIndex index = indexesForLabel == null ? null : indexesForLabel.remove(key);
+    if (index != null) {
+      dirtyFlags.remove(labelIndexKey(label, key));
+      graph.storage.removeIndex(labelStorageName(label, key, index.type));
     }
   }
 
@@ -92,50 +141,187 @@ public final class OdbIndexManager {
     return indexes.keySet();
   }
 
+  public final Optional<IndexType> getIndexType(String propertyName) {
+    final NodePropertyIndex index = indexes.get(propertyName);
+    return index == null ? Optional.empty() : Optional.of(index.type);
+  }
+
+  /** @return the keys being indexed for nodes with the given label, see {@link #createLabelPropertyIndex} */
+  public final Set<String> getIndexedNodeProperties(String label) {
+    final Map<String, NodePropertyIndex> indexesForLabel = labelIndexes.get(label);
+    return indexesForLabel == null ? Collections.emptySet() : indexesForLabel.keySet();
+  }
+
+  public final Optional<IndexType> getIndexType(String label, String propertyName) {
+    final NodePropertyIndex index = labelIndex(label, propertyName);
+    return index == null ? Optional.empty() : Optional.of(index.type);
+  }
+
+  public final int getIndexedNodeCount(String label, String propertyName) {
+    final NodePropertyIndex index = labelIndex(label, propertyName);
+    return index == null ? 0 : index.size();
+  }
+
   public final int getIndexedNodeCount(String propertyName) {
-    final Map<Object, Set<NodeRef>> indexMap = this.indexes.get(propertyName);
-    return indexMap == null ? 0 : indexMap.values().stream().mapToInt(Set::size).sum();
+    final NodePropertyIndex index = indexes.get(propertyName);
+    return index == null ? 0 : index.size();
   }
 
-  public final List<NodeRef> lookup(final String key, final Object value) {
-    final Map<Object, Set<NodeRef>> keyMap = indexes.get(key);
-    if (null == keyMap) {
-      return Collections.emptyList();
-    } else {
-      Set<NodeRef> set = keyMap.get(value);
-      if (null == set)
-        return Collections.emptyList();
-      else
-        return new ArrayList<>(set);
-    }
+  /** @return all nodes with the given value for the given (indexed) property. n.b. the nodes aren't copied */
+  public final Iterator<NodeRef> lookup(final String key, final Object value) {
+    final NodePropertyIndex index = indexes.get(key);
+    return index == null ? Collections.emptyIterator() : index.lookup(value);
+  }
+
+  /**
+   * @param from lower bound, null for none
+   * @param to upper bound, null for none
+   * @return all nodes with a value for the given property within the given range, ordered by value
+   * @throws UnsupportedOperationException if the property doesn't have an {@link IndexType#SORTED} index
+   */
+  public final Iterator<NodeRef> lookupRange(final String key, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+    return sortedIndex(key).lookupRange(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * @return all nodes with a String value for the given property that starts with the given prefix
+   * @throws UnsupportedOperationException if the property doesn't have an {@link IndexType#SORTED} index
+   */
+  public final Iterator<NodeRef> lookupPrefix(final String key, String prefix) {
+    return sortedIndex(key).lookupPrefix(prefix);
+  }
+
+  /**
+   * Uses the trigrams of an {@link IndexType#TRIGRAM} index to narrow down the values that need to be checked, with
+   * other index types each distinct value is checked once.
+   * @return all nodes with a String value for the given property that matches the given regex entirely, like
+   * {@link java.util.regex.Matcher#matches()}
+   * @throws UnsupportedOperationException if the property isn't indexed
+   */
+  public final Iterator<NodeRef> lookupRegex(final String key, Pattern regex) {
+    final NodePropertyIndex index = indexes.get(key);
+    if (index == null) throw new UnsupportedOperationException("property `" + key + "` isn't indexed");
+    return index.lookupRegex(regex);
+  }
+
+  /** like {@link #lookup(String, Object)}, for the index of nodes with the given label */
+  public final Iterator<NodeRef> lookup(final String label, final String key, final Object value) {
+    final NodePropertyIndex index = labelIndex(label, key);
+    return index == null ? Collections.emptyIterator() : index.lookup(value);
+  }
+
+  /** like {@link #lookupRange(String, Object, boolean, Object, boolean)}, for the index of nodes with the given label */
+  public final Iterator<NodeRef> lookupRange(final String label, final String key, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+    return sortedIndex(labelIndex(label, key), key).lookupRange(from, fromInclusive, to, toInclusive);
+  }
+
+  /** like {@link #lookupPrefix(String, String)}, for the index of nodes with the given label */
+  public final Iterator<NodeRef> lookupPrefix(final String label, final String key, String prefix) {
+    return sortedIndex(labelIndex(label, key), key).lookupPrefix(prefix);
+  }
+
+  /** like {@link #lookupRegex(String, Pattern)}, for the index of nodes with the given label */
+  public final Iterator<NodeRef> lookupRegex(final String label, final String key, Pattern regex) {
+    final NodePropertyIndex index = labelIndex(label, key);
+    if (index == null) throw new UnsupportedOperationException("property `" + key + "` isn't indexed for label `" + label + "`");
+    return index.lookupRegex(regex);
+  }
+
+  private NodePropertyIndex sortedIndex(String key) {
+    return sortedIndex(indexes.get(key), key);
+  }
+
+  private static NodePropertyIndex sortedIndex(NodePropertyIndex index, String key) {
+    if (index == null || index.type != IndexType.SORTED)
+      throw new UnsupportedOperationException("property `" + key + "` doesn't have a sorted index");
+    return index;
+  }
+
+  private NodePropertyIndex labelIndex(String label, String key) {
+    final Map<String, NodePropertyIndex> indexesForLabel = labelIndexes.get(label);
+    return indexesForLabel == null ? null : indexesForLabel.get(key);
   }
 
   public final void remove(final String key, final Object value, final NodeRef nodeRef) {
     dirtyFlags.put(key, true);
-    final Map<Object, Set<NodeRef>> keyMap = indexes.get(key);
-    if (null != keyMap) {
-      Set<NodeRef> objects = keyMap.get(value);
-      if (null != objects) {
-        objects.remove(nodeRef);
-        if (objects.size() == 0) {
-          keyMap.remove(value);
-        }
-      }
+    final NodePropertyIndex index = indexes.get(key);
+    if (index != null) {
+      index.remove(value, nodeRef);
+    }
+    final NodePropertyIndex labelIndex = labelIndex(nodeRef.label(), key);
+    if (labelIndex != null) {
+      dirtyFlags.put(labelIndexKey(nodeRef.label(), key), true);
+      labelIndex.remove(value, nodeRef);
     }
   }
 
+  /**
+   * Removes the node from all indexes, based on its current property values: i.e. this only needs to visit the
+   * indexed properties, rather than all index entries. Removing the node from a value that's shared by `n` nodes takes
+   * amortized O(log n), see {@link NodePropertyIndex}. The node needs to be in memory.
+   */
   public final void removeElement(final NodeRef nodeRef) {
-    for (String propertyName : indexes.keySet())
-      dirtyFlags.put(propertyName, true);
-    for (Map<Object, Set<NodeRef>> map : indexes.values()) {
-      for (Set<NodeRef> set : map.values()) {
-        set.remove(nodeRef);
-      }
+    indexes.forEach((propertyName, index) -> removeElement(nodeRef, propertyName, propertyName, index));
+    final Map<String, NodePropertyIndex> indexesForLabel = labelIndexes.get(nodeRef.label());
+    if (indexesForLabel != null) {
+      indexesForLabel.forEach((propertyName, index) ->
+          removeElement(nodeRef, propertyName, labelIndexKey(nodeRef.label(), propertyName), index));
     }
   }
 
-  public Map<Object, Set<NodeRef>> getIndexMap(String propertyName) {
-    return this.indexes.get(propertyName);
+  private void removeElement(NodeRef nodeRef, String propertyName, String dirtyFlagKey, NodePropertyIndex index) {
+    final Object value = nodeRef.property2(propertyName);
+    if (value != null) {
+      dirtyFlags.put(dirtyFlagKey, true);
+      index.remove(value, nodeRef);
+    }
+  }
+
+  /** @return true if there's an index for the given property, either for all nodes or for the given label */
+  final boolean isIndexed(String label, String propertyName) {
+    return indexes.containsKey(propertyName) || labelIndex(label, propertyName) != null;
+  }
+
+  /**
+   * Called after a property of the given node has been changed or removed: moves the node from the old value to the
+   * new value in all indexes for that property. Values are indexed as a whole, i.e. a multi-valued (Collection)
+   * property is found by an equal Collection.
+   * @param oldValue see {@link #snapshot(Object)}
+   * @param newValue null if the property has been removed
+   */
+  final void update(final NodeRef nodeRef, final String propertyName, final Object oldValue, final Object newValue) {
+    final Object indexedValue = snapshot(newValue);
+    /* before changing anything, so that a rejected value doesn't leave the indexes half updated */
+    checkSupported(nodeRef.label(), propertyName, indexedValue);
+    updateIndex(indexes.get(propertyName), propertyName, nodeRef, oldValue, indexedValue);
+    updateIndex(labelIndex(nodeRef.label(), propertyName), labelIndexKey(nodeRef.label(), propertyName), nodeRef, oldValue, indexedValue);
+  }
+
+  /**
+   * @throws IllegalArgumentException if an index for the given property doesn't support the given value, e.g. a value
+   * that isn't Comparable for an {@link IndexType#SORTED} index
+   */
+  final void checkSupported(final String label, final String propertyName, final Object value) {
+    if (value == null) return;
+    final NodePropertyIndex index = indexes.get(propertyName);
+    if (index != null) index.checkSupported(value);
+    final NodePropertyIndex labelIndex = labelIndex(label, propertyName);
+    if (labelIndex != null) labelIndex.checkSupported(value);
+  }
+
+  private void updateIndex(NodePropertyIndex index, String dirtyFlagKey, NodeRef nodeRef, Object oldValue, Object newValue) {
+    if (index == null || Objects.equals(oldValue, newValue)) return;
+    dirtyFlags.put(dirtyFlagKey, true);
+    if (oldValue != null) index.remove(oldValue, nodeRef);
+    if (newValue != null) index.put(newValue, nodeRef);
+  }
+
+  /**
+   * @return a copy of the given property value if it's a Collection: those may be modified in place, but the keys of
+   * an index must not change
+   */
+  static Object snapshot(Object value) {
+    return value instanceof Collection ? new ArrayList<>((Collection<?>) value) : value;
   }
 
   public void initializeStoredIndices(OdbStorage storage) {
@@ -146,27 +332,52 @@ public final class OdbIndexManager {
   }
 
   public void loadIndex(String indexName, OdbStorage storage) {
-    final MVMap<Object, long[]> indexMVMap = storage.openIndex(indexName);
-    loadNodePropertyIndex(indexName, indexMVMap);
+    String label = null;
+    String storageName = indexName;
+    if (indexName.startsWith(LABEL_INDEX_PREFIX)) {
+      final int labelEnd = indexName.indexOf(';');
+      label = indexName.substring(LABEL_INDEX_PREFIX.length(), labelEnd);
+      storageName = indexName.substring(labelEnd + 1);
+    }
+    final IndexType type = IndexType.forStorageName(storageName);
+    final String propertyName = storageName.substring(type.storageNamePrefix.length());
+    if (label == null) {
+      loadNodePropertyIndex(propertyName, type, storage.loadIndex(indexName));
+    } else {
+      final NodePropertyIndex index = new NodePropertyIndex(type);
+      loadNodePropertyIndex(index, storage.loadIndex(indexName));
+      labelIndexes.computeIfAbsent(label, l -> new ConcurrentHashMap<>()).put(propertyName, index);
+      dirtyFlags.put(labelIndexKey(label, propertyName), false);
+    }
+  }
+
+  private static String storageName(String propertyName, IndexType type) {
+    return type.storageNamePrefix + propertyName;
+  }
+
+  private static String labelStorageName(String label, String propertyName, IndexType type) {
+    return LABEL_INDEX_PREFIX + label + ";" + storageName(propertyName, type);
+  }
+
+  private static String labelIndexKey(String label, String propertyName) {
+    return LABEL_INDEX_PREFIX + label + ";" + propertyName;
   }
 
   public void storeIndexes(OdbStorage storage) {
-    getIndexedNodeProperties()
-        .stream()
-        .forEach(propertyName ->
-            saveIndex(storage, propertyName, getIndexMap(propertyName)));
+    indexes.forEach((propertyName, index) -> saveIndex(storage, propertyName, storageName(propertyName, index.type), index));
+    labelIndexes.forEach((label, indexesForLabel) ->
+        indexesForLabel.forEach((propertyName, index) ->
+            saveIndex(storage, labelIndexKey(label, propertyName), labelStorageName(label, propertyName, index.type), index)));
   }
 
-  private void saveIndex(OdbStorage storage, String propertyName, Map<Object, Set<NodeRef>> indexMap) {
-    if (dirtyFlags.get(propertyName)) {
-      storage.clearIndex(propertyName);
-      final MVMap<Object, long[]> indexStore = storage.openIndex(propertyName);
-      indexMap.entrySet().parallelStream().forEach(entry -> {
+  private void saveIndex(OdbStorage storage, String dirtyFlagKey, String storageName, NodePropertyIndex index) {
+    if (dirtyFlags.get(dirtyFlagKey)) {
+      storage.saveIndex(storageName, index.parallelStream().map(entry -> {
         final Object propertyValue = entry.getKey();
-        final Set<NodeRef> nodeRefs = entry.getValue();
-        indexStore.put(propertyValue, nodeRefs.stream().mapToLong(nodeRef -> nodeRef.id).toArray());
-      });
-      dirtyFlags.put(propertyName, false);
+        final NodeRef[] nodeRefs = entry.getValue();
+        return new AbstractMap.SimpleImmutableEntry<>(propertyValue, Stream.of(nodeRefs).mapToLong(nodeRef -> nodeRef.id).toArray());
+      }));
+      dirtyFlags.put(dirtyFlagKey, false);
     }
   }
 }
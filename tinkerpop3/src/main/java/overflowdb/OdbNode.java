@@ -36,10 +36,15 @@ public abstract class OdbNode implements Vertex, Node {
   public final NodeRef ref;
 
   /**
-   * holds refs to all adjacent nodes (a.k.a. dummy edges) and the edge properties
+   * holds refs to all adjacent nodes (a.k.a. dummy edges) and the edge properties.
+   * If `adjacentNodeSlots` is set, the adjacent nodes are stored there instead (at the same indices), and this only
+   * holds the edge properties - or nothing at all, if the layout doesn't have any edge properties.
    */
   private Object[] adjacentNodesWithProperties = new Object[0];
 
+  /** null for {@link AdjacencyStorage#HEAP} */
+  private AdjacentNodeSlots adjacentNodeSlots;
+
   /* store the start offset and length into the above `adjacentNodesWithProperties` array in an interleaved manner,
    * i.e. each outgoing edge type has two entries in this array. */
   private PackedIntArray edgeOffsets;
@@ -52,6 +57,13 @@ public abstract class OdbNode implements Vertex, Node {
    */
   private boolean dirty;
 
+  /**
+   * Flag for the {@link ClockEvictionPolicy}: set whenever the node is accessed via {@link NodeRef#get()}, reset when
+   * the node is considered for eviction. Lives here rather than in NodeRef, where it would cost an extra 8 bytes per
+   * node due to alignment.
+   */
+  boolean accessed;
+
   protected OdbNode(NodeRef ref) {
     this.ref = ref;
 
@@ -61,6 +73,9 @@ public abstract class OdbNode implements Vertex, Node {
     }
 
     edgeOffsets = PackedIntArray.create(layoutInformation().numberOfDifferentAdjacentTypes() * 2);
+    if (ref.graph != null) {
+      adjacentNodeSlots = ref.graph.createAdjacentNodeSlots(layoutInformation());
+    }
   }
 
   public abstract NodeLayoutInformation layoutInformation();
@@ -74,12 +89,37 @@ public abstract class OdbNode implements Vertex, Node {
   // TODO drop suffix `2` after tinkerpop interface is gone
   protected abstract Object specificProperty2(String key);
 
+  /** n.b. unless using {@link AdjacencyStorage#HEAP} this is a copy, i.e. changes aren't reflected in the node */
   public Object[] getAdjacentNodesWithProperties() {
-    return adjacentNodesWithProperties;
+    if (adjacentNodeSlots == null) return adjacentNodesWithProperties;
+
+    final Object[] result = Arrays.copyOf(adjacentNodesWithProperties, adjacentNodeSlots.capacity());
+    for (int i = 0; i < result.length; i++) {
+      if (!adjacentNodeSlots.isEmpty(i)) result[i] = adjacentNodeSlots.get(i);
+    }
+    return result;
   }
 
+  /** n.b. unless using {@link AdjacencyStorage#HEAP} the edge offsets must be set first */
   public void setAdjacentNodesWithProperties(Object[] adjacentNodesWithProperties) {
-    this.adjacentNodesWithProperties = adjacentNodesWithProperties;
+    if (adjacentNodeSlots == null) {
+      this.adjacentNodesWithProperties = adjacentNodesWithProperties;
+      return;
+    }
+
+    final AdjacentNodeSlots newSlots = adjacentNodeSlots.allocate(adjacentNodesWithProperties.length);
+    final Object[] edgeProperties = hasEdgeProperties() ? new Object[newSlots.capacity()] : new Object[0];
+    for (int offsetPos = 0; 2 * offsetPos < edgeOffsets.length(); offsetPos++) {
+      final int start = startIndex(offsetPos);
+      final int end = start + blockLength(offsetPos);
+      final int strideSize = layoutInformation().getEdgePropertyCountByOffsetPos(offsetPos) + 1;
+      for (int i = start; i < end; i += strideSize) {
+        newSlots.set(i, (NodeRef) adjacentNodesWithProperties[i]);
+        if (strideSize > 1) System.arraycopy(adjacentNodesWithProperties, i + 1, edgeProperties, i + 1, strideSize - 1);
+      }
+    }
+    replaceAdjacentNodeSlots(newSlots);
+    this.adjacentNodesWithProperties = edgeProperties;
   }
 
   public int[] getEdgeOffsets() {
@@ -182,11 +222,44 @@ public abstract class OdbNode implements Vertex, Node {
   public <V> VertexProperty<V> property(VertexProperty.Cardinality cardinality, String key, V value, Object... keyValues) {
     ElementHelper.legalPropertyKeyValueArray(keyValues);
     ElementHelper.validateProperty(key, value);
-    final VertexProperty<V> vp = updateSpecificProperty(cardinality, key, value);
-    ref.graph.indexManager.putIfIndexed(key, value, ref);
-    /* marking as dirty *after* we updated - if node gets serialized before we finish, it'll be marked as dirty */
-    this.markAsDirty();
-    return vp;
+    final OdbIndexManager indexManager = ref.graph.indexManager;
+    final boolean indexed = indexManager.isIndexed(ref.label(), key);
+    /* reject values that can't be indexed before changing anything */
+    if (indexed) indexManager.checkSupported(ref.label(), key, value);
+    try {
+      if (!indexed) return updateSpecificProperty(cardinality, key, value);
+      /* the property and its index entries are changed together, so that concurrent writers don't leave stale entries */
+      synchronized (this) {
+        /* list properties may be modified in place, see OdbIndexManager.snapshot */
+        final Object oldValue = OdbIndexManager.snapshot(specificProperty2(key));
+        final VertexProperty<V> vp = updateSpecificProperty(cardinality, key, value);
+        try {
+          indexManager.update(ref, key, oldValue, specificProperty2(key));
+        } catch (RuntimeException e) {
+          /* e.g. the value has been appended to a list, which can't be indexed: the property must match the index */
+          if (oldValue == null) removeSpecificProperty(key);
+          else updateSpecificProperty(VertexProperty.Cardinality.single, key, oldValue);
+          throw e;
+        }
+        return vp;
+      }
+    } finally {
+      /* marking as dirty *after* we updated - if node gets serialized before we finish, it'll be marked as dirty */
+      this.markAsDirty();
+    }
+  }
+
+  /** removes the property, and the node from the indexes for it - see {@link OdbNodeProperty#remove()} */
+  final void removeProperty(String key) {
+    try {
+      synchronized (this) {
+        final Object oldValue = OdbIndexManager.snapshot(specificProperty2(key));
+        removeSpecificProperty(key);
+        ref.graph.indexManager.update(ref, key, oldValue, null);
+      }
+    } finally {
+      this.markAsDirty();
+    }
   }
 
   @Override
@@ -211,9 +284,14 @@ public abstract class OdbNode implements Vertex, Node {
     }
     graph.indexManager.removeElement(ref);
     graph.nodes.remove(ref.id);
-    graph.nodesByLabel.get(label()).remove(ref);
 
     graph.storage.removeNode(ref.id);
+    /* the node may be adjacent to others even if it doesn't use the registry for its own adjacent nodes */
+    graph.nodeRefRegistry.ifPresent(registry -> registry.remove(ref));
+    if (adjacentNodeSlots != null) {
+      replaceAdjacentNodeSlots(adjacentNodeSlots.allocate(0));
+      edgeOffsets = PackedIntArray.create(layoutInformation().numberOfDifferentAdjacentTypes() * 2);
+    }
     /* marking as dirty *after* we updated - if node gets serialized before we finish, it'll be marked as dirty */
     this.markAsDirty();
   }
@@ -331,8 +409,9 @@ public abstract class OdbNode implements Vertex, Node {
     final NodeRef inNodeRef = (NodeRef) inNode;
     NodeRef thisNodeRef = ref;
 
-    int outBlockOffset = storeAdjacentNode(Direction.OUT, label, inNodeRef, keyValues);
-    int inBlockOffset = inNodeRef.get().storeAdjacentNode(Direction.IN, label, thisNodeRef, keyValues);
+    long blockOffsets = storeEdge(label, inNodeRef, keyValues);
+    int outBlockOffset = (int) (blockOffsets >>> 32);
+    int inBlockOffset = (int) blockOffsets;
 
     OdbEdge dummyEdge = instantiateDummyEdge(label, thisNodeRef, inNodeRef);
     dummyEdge.setOutBlockOffset(outBlockOffset);
@@ -348,11 +427,7 @@ public abstract class OdbNode implements Vertex, Node {
 
   @Override
   public void addEdgeSilent(String label, Node inNode, Object... keyValues) {
-    final NodeRef inNodeRef = (NodeRef) inNode;
-    NodeRef thisNodeRef = ref;
-
-    storeAdjacentNode(Direction.OUT, label, inNodeRef, keyValues);
-    inNodeRef.get().storeAdjacentNode(Direction.IN, label, thisNodeRef, keyValues);
+    storeEdge(label, (NodeRef) inNode, keyValues);
   }
 
   @Override
@@ -531,7 +606,7 @@ public abstract class OdbNode implements Vertex, Node {
 
     int occurrenceCount = -1;
     for (int i = start; i <= start + blockOffset; i += strideSize) {
-      final NodeRef adjacentNodeWithProperty = (NodeRef) adjacentNodesWithProperties[i];
+      final NodeRef adjacentNodeWithProperty = adjacentNodeAt(i);
       if (adjacentNodeWithProperty != null &&
           adjacentNodeWithProperty.id().equals(otherNode.id())) {
         occurrenceCount++;
@@ -563,7 +638,7 @@ public abstract class OdbNode implements Vertex, Node {
 
     int currentOccurrence = 0;
     for (int i = start; i < start + length; i += strideSize) {
-      final NodeRef adjacentNodeWithProperty = (NodeRef) adjacentNodesWithProperties[i];
+      final NodeRef adjacentNodeWithProperty = adjacentNodeAt(i);
       if (adjacentNodeWithProperty != null &&
           adjacentNodeWithProperty.id().equals(adjacentNode.id())) {
         if (currentOccurrence == occurrence) {
@@ -591,7 +666,8 @@ public abstract class OdbNode implements Vertex, Node {
     int start = startIndex(offsetPos) + blockOffset;
     int strideSize = getStrideSize(label);
 
-    for (int i = start; i < start + strideSize; i++) {
+    setAdjacentNodeAt(start, null);
+    for (int i = start + 1; i < start + strideSize; i++) {
       adjacentNodesWithProperties[i] = null;
     }
 
@@ -607,6 +683,9 @@ public abstract class OdbNode implements Vertex, Node {
       int length = blockLength(offsetPos);
       int strideSize = getStrideSize(label);
 
+      if (adjacentNodeSlots != null) {
+        return new DummyEdgeIterator(adjacentNodeSlots, start, start + length, strideSize, direction, label, ref);
+      }
       return new DummyEdgeIterator(adjacentNodesWithProperties, start, start + length, strideSize,
           direction, label, ref);
     } else {
@@ -625,12 +704,44 @@ public abstract class OdbNode implements Vertex, Node {
       int start = startIndex(offsetPos);
       int length = blockLength(offsetPos);
       int strideSize = layoutInformation().getEdgePropertyCountByOffsetPos(offsetPos) + 1;
+      if (adjacentNodeSlots != null) {
+        return new AdjacentNodeIterator(adjacentNodeSlots, start, start + length, strideSize);
+      }
       return new ArrayOffsetIterator<>(adjacentNodesWithProperties, start, start + length, strideSize);
     } else {
       return Collections.emptyIterator();
     }
   }
 
+  /**
+   * Stores the edge in both this (OUT) and the adjacent (IN) node.
+   * If concurrent mutation is enabled, both nodes are locked (in the order of their ids, to avoid deadlocks) for the
+   * entire operation. Otherwise concurrent edge additions between the same nodes could end up with different block
+   * offsets on both sides, and edge properties could be written into an outdated `adjacentNodesWithProperties` array.
+   *
+   * @return out and in block offsets, packed into the upper and lower 32 bits
+   */
+  private long storeEdge(String label, NodeRef inNodeRef, Object... keyValues) {
+    final OdbNode inNode = inNodeRef.get();
+    if (ref.graph.concurrentMutationEnabled) {
+      final OdbNode first = ref.id <= inNodeRef.id ? this : inNode;
+      final OdbNode second = first == this ? inNode : this;
+      synchronized (first) {
+        synchronized (second) {
+          return storeEdgeInBothNodes(label, inNodeRef, inNode, keyValues);
+        }
+      }
+    } else {
+      return storeEdgeInBothNodes(label, inNodeRef, inNode, keyValues);
+    }
+  }
+
+  private long storeEdgeInBothNodes(String label, NodeRef inNodeRef, OdbNode inNode, Object... keyValues) {
+    int outBlockOffset = storeAdjacentNode(Direction.OUT, label, inNodeRef, keyValues);
+    int inBlockOffset = inNode.storeAdjacentNode(Direction.IN, label, ref, keyValues);
+    return (((long) outBlockOffset) << 32) + inBlockOffset;
+  }
+
   private int storeAdjacentNode(Direction direction,
                                 String edgeLabel,
                                 NodeRef nodeRef,
@@ -658,17 +769,30 @@ public abstract class OdbNode implements Vertex, Node {
       throw new RuntimeException("Edge of type " + edgeLabel + " with direction " + direction +
           " not supported by class " + getClass().getSimpleName());
     }
+    return storeAdjacentNode(offsetPos, getStrideSize(edgeLabel), nodeRef);
+  }
+
+  /**
+   * Fast path for {@link BulkLoader}: the offsetPos is already known and the edge doesn't have any properties.
+   */
+  final void storeAdjacentNodeWithoutProperties(int offsetPos, NodeRef nodeRef) {
+    storeAdjacentNode(offsetPos, layoutInformation().getEdgePropertyCountByOffsetPos(offsetPos) + 1, nodeRef);
+
+    /* marking as dirty *after* we updated - if node gets serialized before we finish, it'll be marked as dirty */
+    this.markAsDirty();
+  }
+
+  private final synchronized int storeAdjacentNode(int offsetPos, int strideSize, NodeRef nodeRef) {
     int start = startIndex(offsetPos);
     int length = blockLength(offsetPos);
-    int strideSize = getStrideSize(edgeLabel);
 
     int insertAt = start + length;
-    if (adjacentNodesWithProperties.length <= insertAt || adjacentNodesWithProperties[insertAt] != null) {
+    if (blockEnd(offsetPos) <= insertAt || !isEmptyAdjacentNodeSlot(insertAt)) {
       // space already occupied - grow adjacentNodesWithProperties array, leaving some room for more elements
-      adjacentNodesWithProperties = growAdjacentNodesWithProperties(offsetPos, strideSize, insertAt, length);
+      growAdjacentNodesWithProperties(offsetPos, strideSize, insertAt, length);
     }
 
-    adjacentNodesWithProperties[insertAt] = nodeRef;
+    setAdjacentNodeAt(insertAt, nodeRef);
     // update edgeOffset length to include the newly inserted element
     edgeOffsets.set(2 * offsetPos + 1, length + strideSize);
 
@@ -693,7 +817,7 @@ public abstract class OdbNode implements Vertex, Node {
   /**
    * @return The position in edgeOffsets array. -1 if the edge label is not supported
    */
-  private final int getPositionInEdgeOffsets(Direction direction, String label) {
+  final int getPositionInEdgeOffsets(Direction direction, String label) {
     final Integer positionOrNull;
     if (direction == Direction.OUT) {
       positionOrNull = layoutInformation().outEdgeToOffsetPosition(label);
@@ -738,7 +862,7 @@ public abstract class OdbNode implements Vertex, Node {
    * (tradeoff between performance and memory).
    * grows with the square root of the double of the current capacity.
    */
-  private final synchronized Object[] growAdjacentNodesWithProperties(int offsetPos,
+  private final synchronized void growAdjacentNodesWithProperties(int offsetPos,
                                                    int strideSize,
                                                    int insertAt,
                                                    int currentLength) {
@@ -749,16 +873,32 @@ public abstract class OdbNode implements Vertex, Node {
 //    int additionalEntriesCount = additionalCapacityInt * strideSize;
     int growthEmptyFactor = 2;
     int additionalEntriesCount = (currentLength + strideSize) * growthEmptyFactor;
-    int newSize = adjacentNodesWithProperties.length + additionalEntriesCount;
-    Object[] newArray = new Object[newSize];
-    System.arraycopy(adjacentNodesWithProperties, 0, newArray, 0, insertAt);
-    System.arraycopy(adjacentNodesWithProperties, insertAt, newArray, insertAt + additionalEntriesCount, adjacentNodesWithProperties.length - insertAt);
+    int currentCapacity = adjacencyCapacity();
+    int newSize = currentCapacity + additionalEntriesCount;
+    if (adjacentNodeSlots == null) {
+      Object[] newArray = new Object[newSize];
+      System.arraycopy(adjacentNodesWithProperties, 0, newArray, 0, insertAt);
+      System.arraycopy(adjacentNodesWithProperties, insertAt, newArray, insertAt + additionalEntriesCount, currentCapacity - insertAt);
+      adjacentNodesWithProperties = newArray;
+    } else {
+      final AdjacentNodeSlots newSlots = adjacentNodeSlots.allocate(newSize);
+      adjacentNodeSlots.copyTo(0, newSlots, 0, insertAt);
+      adjacentNodeSlots.copyTo(insertAt, newSlots, insertAt + additionalEntriesCount, currentCapacity - insertAt);
+      if (adjacentNodesWithProperties.length > 0) {
+        Object[] newArray = new Object[newSlots.capacity()];
+        System.arraycopy(adjacentNodesWithProperties, 0, newArray, 0, insertAt);
+        System.arraycopy(adjacentNodesWithProperties, insertAt, newArray, insertAt + additionalEntriesCount, currentCapacity - insertAt);
+        adjacentNodesWithProperties = newArray;
+      } else if (hasEdgeProperties()) {
+        adjacentNodesWithProperties = new Object[newSlots.capacity()];
+      }
+      replaceAdjacentNodeSlots(newSlots);
+    }
 
     // Increment all following start offsets by `additionalEntriesCount`.
     for (int i = offsetPos + 1; 2 * i < edgeOffsets.length(); i++) {
       edgeOffsets.set(2 * i, edgeOffsets.get(2 * i) + additionalEntriesCount);
     }
-    return newArray;
   }
 
   /**
@@ -780,19 +920,94 @@ public abstract class OdbNode implements Vertex, Node {
       int length = blockLength(offsetPos);
       newSize += length;
     }
-    Object[] newArray = new Object[newSize];
-
+    int oldsize = adjacencyCapacity();
+    int[] newStartIndices = new int[edgeOffsets.length() / 2];
     int off = 0;
     for(int offsetPos = 0; 2*offsetPos < edgeOffsets.length(); offsetPos++){
+      newStartIndices[offsetPos] = off;
+      off += blockLength(offsetPos);
+    }
+    relocateAdjacentNodeBlocks(newSize, newStartIndices);
+    return (long)newSize + ( ((long)oldsize) << 32);
+  }
+
+  /**
+   * Reallocates `adjacentNodesWithProperties` with room for exactly the given number of additional edges per offsetPos,
+   * and drops all other overallocations (like {@link #trim()}). Subsequently adding those edges won't need to grow the
+   * array. Used by {@link BulkLoader}.
+   *
+   * @param additionalEdgeCounts number of additional edges, indexed by offsetPos
+   */
+  synchronized void reserveAdjacentNodeCapacity(int[] additionalEdgeCounts) {
+    int newSize = 0;
+    for (int offsetPos = 0; 2 * offsetPos < edgeOffsets.length(); offsetPos++) {
+      int strideSize = layoutInformation().getEdgePropertyCountByOffsetPos(offsetPos) + 1;
+      newSize += blockLength(offsetPos) + additionalEdgeCounts[offsetPos] * strideSize;
+    }
+    int[] newStartIndices = new int[edgeOffsets.length() / 2];
+    int off = 0;
+    for (int offsetPos = 0; 2 * offsetPos < edgeOffsets.length(); offsetPos++) {
+      int strideSize = layoutInformation().getEdgePropertyCountByOffsetPos(offsetPos) + 1;
+      newStartIndices[offsetPos] = off;
+      off += blockLength(offsetPos) + additionalEdgeCounts[offsetPos] * strideSize;
+    }
+    relocateAdjacentNodeBlocks(newSize, newStartIndices);
+  }
+
+  /** reallocates the adjacent nodes (and edge properties) with the given size, moving each block to its new start index */
+  private void relocateAdjacentNodeBlocks(int newSize, int[] newStartIndices) {
+    final AdjacentNodeSlots newSlots = adjacentNodeSlots == null ? null : adjacentNodeSlots.allocate(newSize);
+    final Object[] newArray;
+    if (newSlots == null) newArray = new Object[newSize];
+    else if (hasEdgeProperties()) newArray = new Object[newSlots.capacity()];
+    else newArray = new Object[0];
+
+    for (int offsetPos = 0; 2 * offsetPos < edgeOffsets.length(); offsetPos++) {
       int start = startIndex(offsetPos);
       int length = blockLength(offsetPos);
-      System.arraycopy(adjacentNodesWithProperties, start, newArray, off, length);
-      edgeOffsets.set(2 * offsetPos, off);
-      off += length;
+      if (newArray.length > 0) {
+        System.arraycopy(adjacentNodesWithProperties, start, newArray, newStartIndices[offsetPos], length);
+      }
+      if (newSlots != null) {
+        adjacentNodeSlots.copyTo(start, newSlots, newStartIndices[offsetPos], length);
+      }
+      edgeOffsets.set(2 * offsetPos, newStartIndices[offsetPos]);
     }
-    int oldsize = adjacentNodesWithProperties.length;
     adjacentNodesWithProperties = newArray;
-    return (long)newSize + ( ((long)oldsize) << 32);
+    if (newSlots != null) replaceAdjacentNodeSlots(newSlots);
+  }
+
+  /**
+   * @return the index up to which the given block may grow without growing the array: the start of the next block, if any.
+   * n.b. off-heap slots may have more capacity than requested, and the following blocks may be empty
+   */
+  private int blockEnd(int offsetPos) {
+    return 2 * (offsetPos + 1) < edgeOffsets.length() ? startIndex(offsetPos + 1) : adjacencyCapacity();
+  }
+
+  private int adjacencyCapacity() {
+    return adjacentNodeSlots == null ? adjacentNodesWithProperties.length : adjacentNodeSlots.capacity();
+  }
+
+  private NodeRef adjacentNodeAt(int index) {
+    return adjacentNodeSlots == null ? (NodeRef) adjacentNodesWithProperties[index] : adjacentNodeSlots.get(index);
+  }
+
+  private boolean isEmptyAdjacentNodeSlot(int index) {
+    return adjacentNodeSlots == null ? adjacentNodesWithProperties[index] == null : adjacentNodeSlots.isEmpty(index);
+  }
+
+  private void setAdjacentNodeAt(int index, NodeRef nodeRef) {
+    if (adjacentNodeSlots == null) adjacentNodesWithProperties[index] = nodeRef;
+    else adjacentNodeSlots.set(index, nodeRef);
+  }
+
+  private void replaceAdjacentNodeSlots(AdjacentNodeSlots newSlots) {
+    adjacentNodeSlots = newSlots;
+  }
+
+  private boolean hasEdgeProperties() {
+    return layoutInformation().hasEdgeProperties();
   }
 
   public final boolean isDirty() {
@@ -63,7 +63,7 @@ public class OdbNodeProperty<V> implements Element, VertexProperty<V> {
 
   @Override
   public void remove() {
-    ((OdbNode) vertex).removeSpecificProperty(key);
+    ((OdbNode) vertex).removeProperty(key);
   }
 
   @Override
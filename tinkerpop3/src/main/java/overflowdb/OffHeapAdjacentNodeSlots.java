@@ -0,0 +1,62 @@
+package overflowdb;
+
+/**
+ * {@link AdjacencyStorage#OFF_HEAP}: the ids of the adjacent nodes in a region of native memory, see
+ * {@link OffHeapSlotAllocator}. The region is reclaimed once this object is unreachable.
+ */
+final class OffHeapAdjacentNodeSlots extends AdjacentNodeSlots {
+  static final long EMPTY = Long.MIN_VALUE;
+  private static final long NO_REGION = -1;
+
+  private final OffHeapSlotAllocator allocator;
+  private final long region;
+
+  OffHeapAdjacentNodeSlots(OffHeapSlotAllocator allocator, int minCapacity) {
+    this.allocator = allocator;
+    this.region = minCapacity == 0 ? NO_REGION : allocator.allocate(OffHeapSlotAllocator.sizeClass(minCapacity), EMPTY, this);
+  }
+
+  @Override
+  int capacity() {
+    return region == NO_REGION ? 0 : OffHeapSlotAllocator.slotCount(region);
+  }
+
+  @Override
+  NodeRef get(int index) {
+    final long id = getId(index);
+    return id == EMPTY ? null : allocator.graph.nodes.get(id);
+  }
+
+  @Override
+  boolean isEmpty(int index) {
+    return getId(index) == EMPTY;
+  }
+
+  private long getId(int index) {
+    return allocator.segment(region).getLong(position(index));
+  }
+
+  @Override
+  void set(int index, NodeRef ref) {
+    allocator.segment(region).putLong(position(index), ref == null ? EMPTY : ref.id);
+  }
+
+  private int position(int index) {
+    if (index >= capacity()) throw new IndexOutOfBoundsException("index " + index + ", capacity " + capacity());
+    return OffHeapSlotAllocator.offset(region) + index * OffHeapSlotAllocator.SLOT_SIZE;
+  }
+
+  @Override
+  AdjacentNodeSlots allocate(int minCapacity) {
+    return new OffHeapAdjacentNodeSlots(allocator, minCapacity);
+  }
+
+  @Override
+  void copyTo(int srcPos, AdjacentNodeSlots dest, int destPos, int length) {
+    final OffHeapAdjacentNodeSlots offHeapDest = (OffHeapAdjacentNodeSlots) dest;
+    for (int i = 0; i < length; i++) {
+      offHeapDest.allocator.segment(offHeapDest.region).putLong(offHeapDest.position(destPos + i), getId(srcPos + i));
+    }
+  }
+
+}
@@ -0,0 +1,168 @@
+package overflowdb;
+
+import gnu.trove.list.array.TLongArrayList;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Native memory for {@link AdjacencyStorage#OFF_HEAP}: direct ByteBuffer segments, carved into regions of 8 byte slots.
+ * Region sizes are powers of two (size classes), with one free list per size class. Regions larger than a segment get
+ * a dedicated segment, which is dropped once the region is reclaimed.
+ *
+ * A region is addressed by `segment number (upper 32 bits), offset within the segment, size class (lower 5 bits)` -
+ * offsets are multiples of the smallest region size, i.e. the lower bits are always zero.
+ *
+ * A region is never released explicitly: a thread may still be iterating over the adjacent nodes of a node that has
+ * just been overflowed (or whose adjacency has grown). Instead, each region is tied to the lifetime of the
+ * {@link OffHeapAdjacentNodeSlots} that owns it via a {@link PhantomReference}, i.e. it is only reclaimed (and reused)
+ * once no thread can read it anymore. Reclaimed regions are collected whenever a region is allocated.
+ *
+ * n.b. all methods may be called concurrently
+ */
+class OffHeapSlotAllocator implements AutoCloseable {
+  static final int SLOT_SIZE = 8;
+  static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+  private static final int MIN_SIZE_CLASS = 2; // 4 slots, i.e. 32 bytes
+  private static final int MAX_SIZE_CLASS = 27; // 1GB, max size of a ByteBuffer is 2GB
+  private static final int SEGMENT_SIZE_CLASS = Integer.numberOfTrailingZeros(SEGMENT_SIZE / SLOT_SIZE);
+  private static final long SIZE_CLASS_MASK = 0x1f;
+
+  final OdbGraph graph;
+  /* indexed by segment number, replaced when adding segments so that readers don't need to lock */
+  private volatile ByteBuffer[] segments = new ByteBuffer[0];
+  private int currentSegment = -1;
+  private int currentSegmentOffset = SEGMENT_SIZE;
+  private final TLongArrayList[] freeRegions = new TLongArrayList[MAX_SIZE_CLASS + 1];
+  private final ReferenceQueue<Object> unreachableOwners = new ReferenceQueue<>();
+  /* the phantom references themselves must remain reachable until they've been enqueued */
+  private final Set<RegionReference> regionReferences = new HashSet<>();
+  private long allocatedBytes;
+
+  OffHeapSlotAllocator(OdbGraph graph) {
+    this.graph = graph;
+    for (int sizeClass = 0; sizeClass < freeRegions.length; sizeClass++) {
+      freeRegions[sizeClass] = new TLongArrayList();
+    }
+  }
+
+  /** @return size class of the smallest region with room for at least the given number of slots */
+  static int sizeClass(int minSlotCount) {
+    final int sizeClass = minSlotCount <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(minSlotCount - 1);
+    if (sizeClass > MAX_SIZE_CLASS)
+      throw new IllegalArgumentException("cannot allocate " + minSlotCount + " off-heap slots, the maximum is " + (1 << MAX_SIZE_CLASS));
+    return Math.max(MIN_SIZE_CLASS, sizeClass);
+  }
+
+  static int slotCount(long region) {
+    return 1 << (int) (region & SIZE_CLASS_MASK);
+  }
+
+  /**
+   * @param owner the region is reclaimed once the owner is unreachable, i.e. the owner must be referenced by anyone
+   *              who reads or writes the region
+   * @return a region of the given size class, with all slots set to `emptyValue`
+   */
+  long allocate(int sizeClass, long emptyValue, Object owner) {
+    final long region = allocateRegion(sizeClass, owner);
+    final ByteBuffer segment = segment(region);
+    final int end = offset(region) + slotCount(region) * SLOT_SIZE;
+    for (int position = offset(region); position < end; position += SLOT_SIZE) {
+      segment.putLong(position, emptyValue);
+    }
+    return region;
+  }
+
+  private synchronized long allocateRegion(int sizeClass, Object owner) {
+    final long region = allocateRegion(sizeClass);
+    regionReferences.add(new RegionReference(owner, region, unreachableOwners));
+    return region;
+  }
+
+  private long allocateRegion(int sizeClass) {
+    reclaimUnreachableRegions();
+    final int regionSize = (1 << sizeClass) * SLOT_SIZE;
+    allocatedBytes += regionSize;
+    if (sizeClass > SEGMENT_SIZE_CLASS) {
+      return region(addSegment(regionSize), 0, sizeClass);
+    }
+
+    final TLongArrayList free = freeRegions[sizeClass];
+    if (!free.isEmpty()) {
+      return free.removeAt(free.size() - 1);
+    }
+
+    if (currentSegmentOffset + regionSize > SEGMENT_SIZE) {
+      currentSegment = addSegment(SEGMENT_SIZE);
+      currentSegmentOffset = 0;
+    }
+    final long region = region(currentSegment, currentSegmentOffset, sizeClass);
+    currentSegmentOffset += regionSize;
+    return region;
+  }
+
+  private int addSegment(int size) {
+    final ByteBuffer[] newSegments = Arrays.copyOf(segments, segments.length + 1);
+    newSegments[segments.length] = ByteBuffer.allocateDirect(size);
+    segments = newSegments;
+    return segments.length - 1;
+  }
+
+  private void reclaimUnreachableRegions() {
+    RegionReference reference;
+    while ((reference = (RegionReference) unreachableOwners.poll()) != null) {
+      if (!regionReferences.remove(reference)) continue; // allocator has been closed in the meantime
+      final long region = reference.region;
+      final int sizeClass = (int) (region & SIZE_CLASS_MASK);
+      allocatedBytes -= (long) slotCount(region) * SLOT_SIZE;
+      if (sizeClass > SEGMENT_SIZE_CLASS) {
+        segments[segmentNumber(region)] = null; // dedicated segment
+      } else {
+        freeRegions[sizeClass].add(region);
+      }
+    }
+  }
+
+  /** number of bytes in regions that are currently in use */
+  synchronized long getAllocatedBytes() {
+    reclaimUnreachableRegions();
+    return allocatedBytes;
+  }
+
+  ByteBuffer segment(long region) {
+    return segments[segmentNumber(region)];
+  }
+
+  static int offset(long region) {
+    return (int) (region & ~SIZE_CLASS_MASK);
+  }
+
+  private static int segmentNumber(long region) {
+    return (int) (region >>> 32);
+  }
+
+  private static long region(int segmentNumber, int offset, int sizeClass) {
+    return ((long) segmentNumber << 32) | offset | sizeClass;
+  }
+
+  /** drops all segments, i.e. the memory is freed once they've been garbage collected */
+  @Override
+  public synchronized void close() {
+    segments = new ByteBuffer[0];
+    for (TLongArrayList free : freeRegions) free.clear();
+    regionReferences.clear();
+  }
+
+  private static final class RegionReference extends PhantomReference<Object> {
+    private final long region;
+
+    private RegionReference(Object owner, long region, ReferenceQueue<Object> queue) {
+      super(owner, queue);
+      this.region = region;
+    }
+  }
+}
@@ -0,0 +1,306 @@
+package overflowdb;
+
+import gnu.trove.map.hash.THashMap;
+
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Single threaded NodeTable, optimized for low memory overhead per node. Serves both lookups by id and by label:
+ *
+ * - by id: open addressing hash table (linear probing) that only holds the NodeRef pointers, the key is `NodeRef.id`
+ * - by label: one dense array per label. Each NodeRef knows its position in that array (`NodeRef.labelPosition`), so
+ *   that removals can be done in O(1) by moving the last node of that label into the freed position.
+ *
+ * Iterating over all nodes walks through the dense per-label arrays rather than the sparse hash table. Iterators are
+ * fail-fast: adding or removing nodes while iterating throws a ConcurrentModificationException on the next access.
+ * n.b. this is not thread-safe
+ */
+class OpenHashNodeTable implements NodeTable {
+  private static final int MIN_CAPACITY = 16;
+  private static final float MAX_LOAD_FACTOR = 0.6f;
+
+  private NodeRef[] slots;
+  private int mask;
+  private int size;
+  private int resizeThreshold;
+  /* incremented on each structural modification, for fail-fast iterators */
+  private int modCount;
+
+  private final Map<String, LabelSegment> segmentsByLabel = new THashMap<>();
+
+  OpenHashNodeTable() {
+    this(0);
+  }
+
+  OpenHashNodeTable(int expectedSize) {
+    allocateSlots(capacityFor(expectedSize));
+  }
+
+  @Override
+  public NodeRef get(long id) {
+    int idx = hash(id) & mask;
+    NodeRef ref;
+    while ((ref = slots[idx]) != null) {
+      if (ref.id == id) return ref;
+      idx = (idx + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * like {@link #get(long)}, but for optimistic reads while the table may be modified concurrently (see
+   * {@link StripedNodeTable}): the result may be wrong in that case (and needs to be validated by the caller), but
+   * this neither throws nor loops forever
+   */
+  NodeRef getOptimistic(long id) {
+    final NodeRef[] slots = this.slots;
+    final int mask = slots.length - 1;
+    int idx = hash(id) & mask;
+    for (int probes = 0; probes < slots.length; probes++) {
+      final NodeRef ref = slots[idx];
+      if (ref == null) return null;
+      if (ref.id == id) return ref;
+      idx = (idx + 1) & mask;
+    }
+    return null;
+  }
+
+  @Override
+  public boolean contains(long id) {
+    return get(id) != null;
+  }
+
+  @Override
+  public boolean add(NodeRef ref) {
+    if (size >= resizeThreshold) {
+      resize(slots.length * 2);
+    }
+    int idx = hash(ref.id) & mask;
+    NodeRef existing;
+    while ((existing = slots[idx]) != null) {
+      if (existing.id == ref.id) return false;
+      idx = (idx + 1) & mask;
+    }
+    slots[idx] = ref;
+    size++;
+    modCount++;
+    segmentFor(ref.label()).add(ref);
+    return true;
+  }
+
+  @Override
+  public int addAll(String label, List<NodeRef> refs) {
+    final int requiredCapacity = capacityFor(size + refs.size());
+    if (requiredCapacity > slots.length) {
+      resize(requiredCapacity);
+    }
+    segmentFor(label).ensureCapacity(refs.size());
+    int addedCount = 0;
+    for (NodeRef ref : refs) {
+      if (add(ref)) addedCount++;
+    }
+    return addedCount;
+  }
+
+  @Override
+  public NodeRef remove(long id) {
+    int idx = hash(id) & mask;
+    NodeRef ref;
+    while ((ref = slots[idx]) != null) {
+      if (ref.id == id) {
+        deleteSlot(idx);
+        size--;
+        modCount++;
+        segmentsByLabel.get(ref.label()).remove(ref);
+        return ref;
+      }
+      idx = (idx + 1) & mask;
+    }
+    return null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Set<String> labels() {
+    return segmentsByLabel.keySet();
+  }
+
+  @Override
+  public int size(String label) {
+    final LabelSegment segment = segmentsByLabel.get(label);
+    return segment == null ? 0 : segment.size;
+  }
+
+  @Override
+  public Iterator<NodeRef> iterator() {
+    final Iterator<LabelSegment> segments = segmentsByLabel.values().iterator();
+    final int expectedModCount = modCount;
+    return new Iterator<NodeRef>() {
+      private Iterator<NodeRef> current = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        if (modCount != expectedModCount) throw new ConcurrentModificationException();
+        while (!current.hasNext()) {
+          if (!segments.hasNext()) return false;
+          current = segments.next().iterator();
+        }
+        return true;
+      }
+
+      @Override
+      public NodeRef next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return current.next();
+      }
+    };
+  }
+
+  @Override
+  public Iterator<NodeRef> iterator(String label) {
+    final LabelSegment segment = segmentsByLabel.get(label);
+    return segment == null ? Collections.emptyIterator() : segment.iterator();
+  }
+
+  /** fibonacci hashing (2^64 / golden ratio), so that consecutive ids are spread over the table */
+  static int hash(long id) {
+    final long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static int capacityFor(int expectedSize) {
+    final long minCapacity = (long) Math.ceil(expectedSize / MAX_LOAD_FACTOR) + 1;
+    int capacity = MIN_CAPACITY;
+    while (capacity < minCapacity) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private void allocateSlots(int capacity) {
+    slots = new NodeRef[capacity];
+    mask = capacity - 1;
+    resizeThreshold = (int) (capacity * MAX_LOAD_FACTOR);
+  }
+
+  private void resize(int newCapacity) {
+    final NodeRef[] oldSlots = slots;
+    allocateSlots(newCapacity);
+    for (NodeRef ref : oldSlots) {
+      if (ref != null) {
+        int idx = hash(ref.id) & mask;
+        while (slots[idx] != null) {
+          idx = (idx + 1) & mask;
+        }
+        slots[idx] = ref;
+      }
+    }
+  }
+
+  /**
+   * backward shift deletion: moves subsequent entries of the same probe sequence into the freed slot, so that we
+   * don't need tombstones
+   */
+  private void deleteSlot(int freeIdx) {
+    int idx = freeIdx;
+    while (true) {
+      idx = (idx + 1) & mask;
+      final NodeRef ref = slots[idx];
+      if (ref == null) break;
+      final int desiredIdx = hash(ref.id) & mask;
+      // only move the entry if its desired slot is not cyclically within (freeIdx, idx]
+      final boolean canMove = freeIdx <= idx
+          ? (desiredIdx <= freeIdx || desiredIdx > idx)
+          : (desiredIdx <= freeIdx && desiredIdx > idx);
+      if (canMove) {
+        slots[freeIdx] = ref;
+        freeIdx = idx;
+      }
+    }
+    slots[freeIdx] = null;
+  }
+
+  private LabelSegment segmentFor(String label) {
+    LabelSegment segment = segmentsByLabel.get(label);
+    if (segment == null) {
+      segment = new LabelSegment();
+      segmentsByLabel.put(label, segment);
+    }
+    return segment;
+  }
+
+  /**
+   * dense array of all nodes with the same label
+   */
+  private static class LabelSegment {
+    private NodeRef[] refs = new NodeRef[MIN_CAPACITY];
+    private int size;
+    private int modCount;
+
+    void ensureCapacity(int additionalCount) {
+      if (size + additionalCount > refs.length) {
+        final NodeRef[] newRefs = new NodeRef[size + additionalCount];
+        System.arraycopy(refs, 0, newRefs, 0, size);
+        refs = newRefs;
+      }
+    }
+
+    void add(NodeRef ref) {
+      if (size == refs.length) {
+        final NodeRef[] newRefs = new NodeRef[refs.length + (refs.length >> 1)];
+        System.arraycopy(refs, 0, newRefs, 0, size);
+        refs = newRefs;
+      }
+      ref.labelPosition = size;
+      refs[size++] = ref;
+      modCount++;
+    }
+
+    void remove(NodeRef ref) {
+      final int position = ref.labelPosition;
+      final NodeRef last = refs[--size];
+      refs[position] = last;
+      last.labelPosition = position;
+      refs[size] = null;
+      ref.labelPosition = -1;
+      modCount++;
+    }
+
+    Iterator<NodeRef> iterator() {
+      final NodeRef[] refs = this.refs;
+      final int size = this.size;
+      final int expectedModCount = modCount;
+      return new Iterator<NodeRef>() {
+        private int current = 0;
+
+        @Override
+        public boolean hasNext() {
+          checkForComodification();
+          return current < size;
+        }
+
+        @Override
+        public NodeRef next() {
+          checkForComodification();
+          if (current >= size) throw new NoSuchElementException();
+          return refs[current++];
+        }
+
+        private void checkForComodification() {
+          if (modCount != expectedModCount) throw new ConcurrentModificationException();
+        }
+      };
+    }
+  }
+
+}
@@ -1,23 +1,31 @@
 package overflowdb;
 
 import overflowdb.storage.OdbStorage;
+import overflowdb.util.ChunkedMpscQueue;
 import overflowdb.util.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * can clear references to disk and apply backpressure when creating new nodes, both to avoid an OutOfMemoryError
  *
+ * clearing is pipelined: the nodes are serialized in parallel and handed to a dedicated writer thread via a bounded
+ * queue. The writer persists them in batches, commits once per clearing run and only then clears the references.
+ * Backpressure is only applied while that queue is full, i.e. node creation continues while the writer is busy.
+ *
  * can save all references to disk to persist the graph on shutdown
  * n.b. we could also persist the graph without a ReferenceManager, by serializing all nodes to disk. But if that
  * instance has been started from a storage location, the ReferenceManager ensures that we don't re-serialize all
@@ -26,82 +34,217 @@ import java.util.stream.Stream;
 public class ReferenceManager implements AutoCloseable, HeapUsageMonitor.HeapNotificationListener {
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
-  public final int releaseCount = 100000; //TODO make configurable
+  public final int releaseCount;
+  private final boolean adaptiveReleaseCountEnabled;
   private AtomicInteger totalReleaseCount = new AtomicInteger(0);
   private final ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("overflowdb-reference-manager"));
-  private int clearingProcessCount = 0;
+  private final ExecutorService writerExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("overflowdb-writer"));
+  private final int writeQueueCapacity;
+  /* number of clearing runs (from collecting the refs until the writer committed) in progress */
+  private final AtomicInteger clearingRunCount = new AtomicInteger(0);
+  /* number of threads waiting for the writer, because the write queue is full.
+   * only modified while holding `backPressureSyncObject`, volatile for the (lock free) backpressure fast path */
+  private volatile int clearingProcessCount = 0;
   private final Object backPressureSyncObject = new Object();
   private final OdbStorage storage;
+  private final EvictionPolicy evictionPolicy;
+
+  /* statistics: hits are only recorded if `statsEnabled`, because they happen on every node access */
+  private final boolean statsEnabled;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final AtomicLong secondChanceCount = new AtomicLong(0);
+  private final LongAdder backpressureWaitCount = new LongAdder();
+  private final LongAdder backpressureWaitNanos = new LongAdder();
+  private final LongAdder backpressureTimeoutCount = new LongAdder();
+  private final long maxBackpressureWaitNanos;
+
+  /* registered by many threads, consumed by one at a time (guarded by `consumerSyncObject`) */
+  private final ChunkedMpscQueue<NodeRef> clearableRefs = new ChunkedMpscQueue<>();
+  private final Object consumerSyncObject = new Object();
 
-  private final List<NodeRef> clearableRefs = Collections.synchronizedList(new LinkedList<>());
+  /* max number of serialized nodes the writer takes from the queue at once */
+  private static final int WRITE_BATCH_SIZE = 1000;
 
   public ReferenceManager(OdbStorage storage) {
+    this(storage, OdbConfig.withDefaults());
+  }
+
+  public ReferenceManager(OdbStorage storage, OdbConfig config) {
     this.storage = storage;
+    this.evictionPolicy = config.getEvictionPolicy();
+    this.statsEnabled = config.isSerializationStatsEnabled();
+    this.releaseCount = config.getReleaseCount();
+    this.adaptiveReleaseCountEnabled = config.isAdaptiveReleaseCountEnabled();
+    this.maxBackpressureWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxBackpressureWaitMillis());
+    this.writeQueueCapacity = config.getWriteQueueCapacity();
   }
 
   public void registerRef(NodeRef ref) {
-    clearableRefs.add(ref);
+    clearableRefs.offer(ref);
+  }
+
+  /** a node was accessed and is in memory */
+  protected final void recordHit() {
+    if (statsEnabled) hitCount.increment();
+  }
+
+  /** a node was accessed and had to be read from disk */
+  protected final void recordMiss() {
+    missCount.increment();
+  }
+
+  /** only available if stats are enabled */
+  public long getHitCount() {
+    if (statsEnabled) return hitCount.sum();
+    else throw new RuntimeException("statistics not enabled");
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /** only available if stats are enabled */
+  public float getHitRate() {
+    final long hits = getHitCount();
+    final long total = hits + getMissCount();
+    return total == 0 ? 1f : hits / (float) total;
+  }
+
+  /** number of times the eviction policy decided to keep a node */
+  public long getSecondChanceCount() {
+    return secondChanceCount.get();
+  }
+
+  public int getTotalReleaseCount() {
+    return totalReleaseCount.get();
+  }
+
+  /** number of times a thread had to wait for the writer, because the write queue was full */
+  public long getBackpressureWaitCount() {
+    return backpressureWaitCount.sum();
+  }
+
+  /** total time all threads spent waiting for the writer, because the write queue was full */
+  public long getBackpressureWaitTimeNanos() {
+    return backpressureWaitNanos.sum();
+  }
+
+  /** number of times a thread stopped waiting because `maxBackpressureWaitMillis` was exceeded */
+  public long getBackpressureTimeoutCount() {
+    return backpressureTimeoutCount.sum();
+  }
+
+  /** whether references are being cleared at the moment, i.e. we're low on heap */
+  boolean isClearing() {
+    return clearingRunCount.get() > 0;
   }
 
   /**
    * when we're running low on heap memory we'll serialize some elements to disk. to ensure we're not creating new ones
-   * faster than old ones are serialized away, we're applying some backpressure in those situation
+   * faster than old ones are written away, we're applying some backpressure while the write queue is full
+   * this is called for every created node and edge, so if nobody waits for the writer it's just a volatile read
+   * if `maxBackpressureWaitMillis` is configured, we'll stop waiting after that time and continue regardless
    */
   public void applyBackpressureMaybe() {
+    if (clearingProcessCount == 0) return;
+
+    final long startTimeNanos = System.nanoTime();
     synchronized (backPressureSyncObject) {
       while (clearingProcessCount > 0) {
         try {
           if (logger.isTraceEnabled()) logger.trace("wait until ref clearing completed");
-          backPressureSyncObject.wait();
+          if (maxBackpressureWaitNanos == 0) {
+            backPressureSyncObject.wait();
+          } else {
+            final long remainingNanos = maxBackpressureWaitNanos - (System.nanoTime() - startTimeNanos);
+            if (remainingNanos <= 0) {
+              backpressureTimeoutCount.increment();
+              if (logger.isDebugEnabled()) logger.debug("ref clearing still in progress, but max backpressure wait time exceeded - continuing");
+              break;
+            }
+            TimeUnit.NANOSECONDS.timedWait(backPressureSyncObject, remainingNanos);
+          }
           if (logger.isTraceEnabled()) logger.trace("continue");
         } catch (InterruptedException e) {
           throw new RuntimeException(e);
         }
       }
     }
+    backpressureWaitCount.increment();
+    backpressureWaitNanos.add(System.nanoTime() - startTimeNanos);
   }
 
   @Override
-  public void notifyHeapAboveThreshold() {
-    if (clearingProcessCount > 0) {
+  public void notifyHeapAboveThreshold(long bytesAboveThreshold) {
+    if (clearingRunCount.get() > 0) {
       logger.debug("cleaning in progress, will only queue up more references to clear after that's completed");
     } else if (clearableRefs.isEmpty()) {
       logger.info("no refs to clear at the moment, i.e. the heap is used by other components");
     } else {
-      int releaseCount = Integer.min(this.releaseCount, clearableRefs.size());
+      int releaseCount = Integer.min(calculateReleaseCount(bytesAboveThreshold), clearableRefs.size());
       if (logger.isInfoEnabled()) logger.info("scheduled to clear " + releaseCount + " references (asynchronously)");
-      singleThreadExecutor.submit(() -> syncClearReferences(releaseCount));
+      singleThreadExecutor.submit(() -> syncClearReferences(releaseCount, true));
     }
   }
 
+  /**
+   * in adaptive mode: the number of nodes that need to be cleared to get the heap back below the threshold, i.e.
+   * bytesAboveThreshold / averageSerializedNodeSize. A node takes up more space on the heap than serialized, so this
+   * errs on the side of clearing too many rather than too few.
+   * Falls back to the configured `releaseCount` if adaptive mode is disabled or no node has been (de)serialized yet.
+   */
+  int calculateReleaseCount(long bytesAboveThreshold) {
+    if (!adaptiveReleaseCountEnabled) return releaseCount;
+
+    final long averageNodeSize = storage.getAverageSerializedNodeSize();
+    if (averageNodeSize <= 0) return releaseCount;
+
+    final long count = (bytesAboveThreshold + averageNodeSize - 1) / averageNodeSize;
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, count));
+  }
+
   /**
    * run clearing of references asynchronously to not block the gc notification thread
    * using executor with one thread and capacity=1, drop `clearingInProgress` flag
    */
-  private void syncClearReferences(final int releaseCount) {
-    final List<NodeRef> refsToClear = collectRefsToClear(releaseCount);
+  void syncClearReferences(final int releaseCount, final boolean applyEvictionPolicy) {
+    final List<NodeRef> refsToClear = collectRefsToClear(releaseCount, applyEvictionPolicy);
     if (!refsToClear.isEmpty()) {
       safelyClearReferences(refsToClear);
       if (logger.isInfoEnabled()) logger.info("completed clearing of " + refsToClear.size() + " references");
       if (logger.isDebugEnabled()) logger.debug("current clearable queue size: " + clearableRefs.size());
       if (logger.isDebugEnabled()) logger.debug("references cleared in total: " + totalReleaseCount);
+      if (logger.isDebugEnabled()) logger.debug("nodes read back from disk: " + getMissCount() + ", second chances given by "
+          + evictionPolicy + " eviction policy: " + getSecondChanceCount());
+      if (statsEnabled && logger.isInfoEnabled()) logger.info("node access hit rate: " + getHitRate());
+      if (logger.isDebugEnabled()) logger.debug("backpressure: threads waited " + getBackpressureWaitCount() + " times, "
+          + TimeUnit.NANOSECONDS.toMillis(getBackpressureWaitTimeNanos()) + "ms in total");
     }
   }
 
-  private List<NodeRef> collectRefsToClear(int releaseCount) {
+  private List<NodeRef> collectRefsToClear(int releaseCount, boolean applyEvictionPolicy) {
     final List<NodeRef> refsToClear = new ArrayList<>(releaseCount);
-
-    while (releaseCount > 0) {
-      if (clearableRefs.isEmpty()) {
-        break;
-      }
-      final NodeRef ref = clearableRefs.remove(0);
-      if (ref != null) {
-        refsToClear.add(ref);
+    synchronized (consumerSyncObject) {
+      if (!applyEvictionPolicy) {
+        clearableRefs.drainTo(refsToClear, releaseCount);
+      } else {
+        /* refs that get another chance are appended to the queue again. limit the number of candidates so that we
+         * terminate even if all nodes are constantly accessed: after one full round, the policy has seen all refs */
+        int remainingCandidates = clearableRefs.size() + releaseCount;
+        while (refsToClear.size() < releaseCount && remainingCandidates-- > 0) {
+          final NodeRef ref = clearableRefs.poll();
+          if (ref == null) {
+            break;
+          } else if (evictionPolicy.shouldEvict(ref)) {
+            refsToClear.add(ref);
+          } else {
+            secondChanceCount.incrementAndGet();
+            clearableRefs.offer(ref);
+          }
+        }
       }
-      releaseCount--;
     }
-
     return refsToClear;
   }
 
@@ -109,35 +252,147 @@ public class ReferenceManager implements AutoCloseable, HeapUsageMonitor.HeapNot
    * clear references, ensuring no exception is raised
    */
   private void safelyClearReferences(final List<NodeRef> refsToClear) {
+    clearingRunCount.incrementAndGet();
     try {
-      synchronized (backPressureSyncObject) {
-        clearingProcessCount += 1;
-      }
       clearReferences(refsToClear);
-      storage.flush();
     } catch (Exception e) {
       logger.error("error while trying to clear references", e);
     } finally {
-      synchronized (backPressureSyncObject) {
-        clearingProcessCount -= 1;
-        if (clearingProcessCount == 0) {
-          backPressureSyncObject.notifyAll();
+      clearingRunCount.decrementAndGet();
+    }
+  }
+
+  /** a thread waits for the writer - applies backpressure to all threads creating nodes or edges */
+  void startClearing() {
+    synchronized (backPressureSyncObject) {
+      clearingProcessCount += 1;
+    }
+  }
+
+  void completeClearing() {
+    synchronized (backPressureSyncObject) {
+      clearingProcessCount -= 1;
+      if (clearingProcessCount == 0) {
+        backPressureSyncObject.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * serializes the nodes in parallel and hands them to the writer, blocks until the writer has committed them
+   * nodes that haven't changed since they were last persisted don't need to be written and are cleared right away
+   */
+  private void clearReferences(final List<NodeRef> refsToClear) throws Exception {
+    final BlockingQueue<SerializedNode> writeQueue = new ArrayBlockingQueue<>(Integer.min(writeQueueCapacity, refsToClear.size() + 1));
+    final Future<Void> writer = writerExecutor.submit(() -> {
+      writeSerializedNodes(writeQueue);
+      return null;
+    });
+    final AtomicReference<Exception> serializationError = new AtomicReference<>();
+    try {
+      refsToClear.parallelStream().filter(NodeRef::isSet).forEach(ref -> {
+        try {
+          final byte[] data = ref.serializeWhenDirty();
+          if (data != null) {
+            enqueue(writeQueue, new SerializedNode(ref, data));
+          } else {
+            clearOrRequeue(ref);
+          }
+        } catch (Exception e) {
+          serializationError.compareAndSet(null, e);
+          restoreRef(ref);
+        }
+      });
+    } finally {
+      enqueue(writeQueue, SerializedNode.END_OF_RUN);
+    }
+    writer.get();
+    if (serializationError.get() != null) throw serializationError.get();
+  }
+
+  private void enqueue(BlockingQueue<SerializedNode> writeQueue, SerializedNode serializedNode) {
+    if (writeQueue.offer(serializedNode)) return;
+
+    /* queue is full: wait for the writer, and let the threads creating nodes wait as well */
+    startClearing();
+    try {
+      writeQueue.put(serializedNode);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      completeClearing();
+    }
+  }
+
+  /**
+   * runs on the writer thread: persists the serialized nodes in batches until the end of the run, then commits and
+   * clears the references. On error, the remaining nodes are still taken from the queue (so that the serializers
+   * don't block on a full queue), but not persisted: none of the nodes are cleared, they're all marked as dirty and
+   * registered again, i.e. they're serialized again by a later run.
+   */
+  private void writeSerializedNodes(BlockingQueue<SerializedNode> writeQueue) throws InterruptedException {
+    final List<SerializedNode> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+    final List<NodeRef> refs = new ArrayList<>();
+    Exception error = null;
+    boolean endOfRun = false;
+    while (!endOfRun) {
+      if (writeQueue.drainTo(batch, WRITE_BATCH_SIZE) == 0) {
+        batch.add(writeQueue.take());
+      }
+      for (SerializedNode serializedNode : batch) {
+        if (serializedNode == SerializedNode.END_OF_RUN) {
+          endOfRun = true;
+        } else {
+          refs.add(serializedNode.ref);
+          if (error == null) {
+            try {
+              serializedNode.ref.persist(serializedNode.data);
+            } catch (Exception e) {
+              error = e;
+            }
+          }
         }
       }
+      batch.clear();
+    }
+
+    if (error == null) {
+      try {
+        storage.flush();
+      } catch (Exception e) {
+        error = e;
+      }
+    }
+    if (error != null) {
+      /* the nodes have been marked as clean when they were serialized, but they may not have been persisted */
+      for (NodeRef ref : refs) restoreRef(ref);
+      throw new RuntimeException("error while writing serialized nodes", error);
+    }
+
+    /* only clear after the commit, so that readers never see a missing node */
+    for (NodeRef ref : refs) clearOrRequeue(ref);
+  }
+
+  /** nodes that have been modified since they were serialized stay in memory, and can be cleared later */
+  private void clearOrRequeue(NodeRef ref) {
+    if (ref.clearIfClean()) {
+      totalReleaseCount.incrementAndGet();
+    } else {
+      registerRef(ref);
     }
   }
 
-  private void clearReferences(final List<NodeRef> refsToClear) {
-    serializeReferences(refsToClear.parallelStream().filter(NodeRef::isSet))
-        .sequential()
-        .forEach(serializedNode -> {
-          serializedNode.ref.persist(serializedNode.data);
-          serializedNode.ref.clear();
-          totalReleaseCount.incrementAndGet();
-        });
+  /** the node couldn't be persisted: it stays in memory, and is serialized again by a later clearing run */
+  private void restoreRef(NodeRef ref) {
+    ref.markAsDirtyIfSet();
+    registerRef(ref);
   }
 
   private static class SerializedNode {
+    /* marks the end of a clearing run for the writer */
+    static final SerializedNode END_OF_RUN = new SerializedNode(null, null);
+
     public final NodeRef ref;
     public final byte[] data;
 
@@ -147,34 +402,25 @@ public class ReferenceManager implements AutoCloseable, HeapUsageMonitor.HeapNot
     }
   }
 
-  private Stream<SerializedNode> serializeReferences(Stream<NodeRef> refs) {
-    return refs
-        .map(ReferenceManager::serializeReference)
-        .filter(Objects::nonNull);
-  }
-
-  private static SerializedNode serializeReference(NodeRef ref) {
-    final byte[] data = ref.serializeWhenDirty();
-    if (data != null)
-      return new SerializedNode(ref, data);
-    else
-      return null;
-  }
-
-
   /**
    * writes all references to disk overflow, blocks until complete.
    * useful when saving the graph
+   * @throws RuntimeException if the nodes couldn't be written - the nodes that haven't been written stay in memory
    */
   public void clearAllReferences() {
     while (!clearableRefs.isEmpty()) {
       int clearableRefsSize = clearableRefs.size();
       logger.info("clearing all (" + clearableRefsSize + ") references - this may take some time");
+      final List<NodeRef> refsToClear = collectRefsToClear(clearableRefsSize, false);
+      clearingRunCount.incrementAndGet();
       try {
-        syncClearReferences(clearableRefsSize);
+        clearReferences(refsToClear);
       } catch (Exception e) {
         throw new RuntimeException("error while clearing references to disk", e);
+      } finally {
+        clearingRunCount.decrementAndGet();
       }
+      logger.info("completed clearing of " + refsToClear.size() + " references");
     }
     logger.info("cleared all clearable references");
   }
@@ -182,5 +428,6 @@ public class ReferenceManager implements AutoCloseable, HeapUsageMonitor.HeapNot
   @Override
   public void close() {
     singleThreadExecutor.shutdown();
+    writerExecutor.shutdown();
   }
 }
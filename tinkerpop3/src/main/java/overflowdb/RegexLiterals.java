@@ -0,0 +1,226 @@
+package overflowdb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Extracts literal strings that every match of a (java.util.regex) regular expression must contain, e.g. `foo.*bar`
+ * requires `foo` and `bar`, and `(foo|bar)baz` requires `baz`. Used to narrow down the candidates for a regex lookup
+ * in a {@link TrigramIndex}, which are verified against the actual regex afterwards.
+ *
+ * This is conservative rather than complete: anything it doesn't understand (e.g. character classes or alternations
+ * within groups) simply doesn't contribute any literals. Regexes with inline flags (e.g. `(?i)`) can't be analysed at
+ * all, since they may change the meaning of the literals.
+ */
+final class RegexLiterals {
+  private static final int NONE = 0;
+  /* the preceding atom may occur zero times, e.g. `a*` or `a{0,2}` */
+  private static final int OPTIONAL = 1;
+  /* the preceding atom occurs at least once, e.g. `a+` or `a{2}` */
+  private static final int REPEATED = 2;
+
+  private final String regex;
+  private int pos = 0;
+
+  private RegexLiterals(String regex) {
+    this.regex = regex;
+  }
+
+  /**
+   * @return the required literals for each top-level alternative, i.e. a match contains all literals of at least one
+   * alternative. null if the regex can't be analysed.
+   */
+  static List<List<String>> requiredLiterals(String regex) {
+    try {
+      final RegexLiterals parser = new RegexLiterals(regex);
+      final List<List<String>> alternatives = parser.alternatives();
+      return parser.pos == regex.length() ? alternatives : null;
+    } catch (UnsupportedRegexException e) {
+      return null;
+    }
+  }
+
+  private List<List<String>> alternatives() {
+    final List<List<String>> alternatives = new ArrayList<>();
+    alternatives.add(sequence());
+    while (pos < regex.length() && regex.charAt(pos) == '|') {
+      pos++;
+      alternatives.add(sequence());
+    }
+    return alternatives;
+  }
+
+  /** parses up to the next `|` or `)` on the same level */
+  private List<String> sequence() {
+    final List<String> literals = new ArrayList<>();
+    final StringBuilder run = new StringBuilder();
+    while (pos < regex.length()) {
+      final char c = regex.charAt(pos);
+      if (c == '|' || c == ')') break;
+
+      String literal = null;
+      List<String> groupLiterals = Collections.emptyList();
+      switch (c) {
+        case '\\':
+          literal = escape();
+          break;
+        case '[':
+          skipCharacterClass();
+          break;
+        case '(':
+          groupLiterals = group();
+          break;
+        case '.':
+        case '^':
+        case '$':
+          pos++;
+          break;
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+          throw new UnsupportedRegexException();
+        default:
+          /* a supplementary character is a single atom, but two chars */
+          final int codePoint = regex.codePointAt(pos);
+          pos += Character.charCount(codePoint);
+          literal = new String(Character.toChars(codePoint));
+      }
+
+      final int quantifier = quantifier();
+      if (literal != null) {
+        /* a quantifier only applies to the last character (code point) of a literal, e.g. `\Qab\E?` */
+        run.append(literal, 0, quantifier == OPTIONAL ? literal.offsetByCodePoints(literal.length(), -1) : literal.length());
+        if (quantifier != NONE) endRun(run, literals);
+      } else {
+        endRun(run, literals);
+        if (quantifier != OPTIONAL) literals.addAll(groupLiterals);
+      }
+    }
+    endRun(run, literals);
+    return literals;
+  }
+
+  private static void endRun(StringBuilder run, List<String> literals) {
+    if (run.length() > 0) {
+      literals.add(run.toString());
+      run.setLength(0);
+    }
+  }
+
+  /** @return the required literals of the group, if it has only one alternative */
+  private List<String> group() {
+    pos++;
+    boolean lookaround = false;
+    if (regex.startsWith("?", pos)) {
+      if (regex.startsWith("?:", pos) || regex.startsWith("?>", pos)) {
+        pos += 2;
+      } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+        pos += 2;
+        lookaround = true;
+      } else if (regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+        pos += 3;
+        lookaround = true;
+      } else if (regex.startsWith("?<", pos)) {
+        pos = indexAfter('>', pos + 2);
+      } else {
+        /* inline flags, e.g. `(?i)` or `(?x:...)` */
+        throw new UnsupportedRegexException();
+      }
+    }
+
+    final List<List<String>> alternatives = alternatives();
+    if (pos >= regex.length()) throw new UnsupportedRegexException();
+    pos++;
+    return !lookaround && alternatives.size() == 1 ? alternatives.get(0) : Collections.emptyList();
+  }
+
+  /** @return the literal character(s) for escaped metacharacters and quotes, null for everything else (e.g. `\d`) */
+  private String escape() {
+    if (pos + 1 >= regex.length()) throw new UnsupportedRegexException();
+    final int c = regex.codePointAt(pos + 1);
+    pos += 1 + Character.charCount(c);
+    if (c == 'Q') {
+      final int end = regex.indexOf("\\E", pos);
+      final String quoted = regex.substring(pos, end < 0 ? regex.length() : end);
+      pos = end < 0 ? regex.length() : end + 2;
+      return quoted.isEmpty() ? null : quoted;
+    } else if (!Character.isLetterOrDigit(c)) {
+      return new String(Character.toChars(c));
+    }
+
+    /* skip the arguments of escapes like `\x{263A}` or `\p{Alpha}` */
+    if (pos < regex.length()) {
+      final char next = regex.charAt(pos);
+      if (next == '{' && (c == 'x' || c == 'p' || c == 'P' || c == 'N')) pos = indexAfter('}', pos);
+      else if (next == '<' && c == 'k') pos = indexAfter('>', pos);
+      else if (c == 'x') pos += 2;
+      else if (c == 'u') pos += 4;
+      else if (c == 'c') pos += 1;
+      else if (c == 'p' || c == 'P') pos += 1;
+      else if (Character.isDigit(c)) while (pos < regex.length() && Character.isDigit(regex.charAt(pos))) pos++;
+    }
+    pos = Math.min(pos, regex.length());
+    return null;
+  }
+
+  private void skipCharacterClass() {
+    pos++;
+    if (regex.startsWith("^", pos)) pos++;
+    /* a leading `]` is a literal */
+    if (regex.startsWith("]", pos)) pos++;
+    int depth = 1;
+    while (depth > 0) {
+      if (pos >= regex.length()) throw new UnsupportedRegexException();
+      final char c = regex.charAt(pos);
+      if (c == '\\') pos++;
+      else if (c == '[') depth++;
+      else if (c == ']') depth--;
+      pos++;
+    }
+  }
+
+  private int quantifier() {
+    if (pos >= regex.length()) return NONE;
+    final int quantifier;
+    switch (regex.charAt(pos)) {
+      case '*':
+      case '?':
+        quantifier = OPTIONAL;
+        pos++;
+        break;
+      case '+':
+        quantifier = REPEATED;
+        pos++;
+        break;
+      case '{':
+        final int end = regex.indexOf('}', pos);
+        if (end < 0 || end == pos + 1 || !Character.isDigit(regex.charAt(pos + 1))) throw new UnsupportedRegexException();
+        int min = 0;
+        for (int i = pos + 1; i < end && Character.isDigit(regex.charAt(i)); i++) {
+          min = Math.min(min * 10 + (regex.charAt(i) - '0'), 1000);
+        }
+        quantifier = min == 0 ? OPTIONAL : REPEATED;
+        pos = end + 1;
+        break;
+      default:
+        return NONE;
+    }
+    /* reluctant or possessive */
+    if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) pos++;
+    return quantifier;
+  }
+
+  private int indexAfter(char c, int from) {
+    final int index = regex.indexOf(c, from);
+    if (index < 0) throw new UnsupportedRegexException();
+    return index + 1;
+  }
+
+  private static class UnsupportedRegexException extends RuntimeException {
+    UnsupportedRegexException() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package overflowdb;
+
+import org.apache.tinkerpop.gremlin.util.iterator.MultiIterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe NodeTable for concurrent mutation: nodes are partitioned into stripes by (the hash of) their id, and
+ * each stripe is a {@link OpenHashNodeTable} that is guarded by its own lock. Threads that work on different stripes
+ * therefor don't contend with each other.
+ *
+ * Lookups by id don't lock at all: they are optimistic reads (see {@link StampedLock#tryOptimisticRead()}), which are
+ * only repeated with a read lock if the stripe has been modified in the meantime.
+ *
+ * Iterators are weakly consistent: they go through the stripes one by one, and operate on a snapshot of the nodes of
+ * the given label in the current stripe at the time the stripe is reached, i.e. they may or may not reflect concurrent
+ * modifications. Only one stripe is copied at a time.
+ */
+class StripedNodeTable implements NodeTable {
+  private static final int STRIPE_BITS = 6;
+  private static final int STRIPE_COUNT = 1 << STRIPE_BITS;
+
+  private final OpenHashNodeTable[] stripes = new OpenHashNodeTable[STRIPE_COUNT];
+  private final StampedLock[] locks = new StampedLock[STRIPE_COUNT];
+
+  StripedNodeTable(int expectedSize) {
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      stripes[i] = new OpenHashNodeTable(expectedSize / STRIPE_COUNT);
+      locks[i] = new StampedLock();
+    }
+  }
+
+  /** uses the highest bits of the hash, while the stripe itself uses the lowest bits for its slots */
+  private static int stripeIndex(long id) {
+    return OpenHashNodeTable.hash(id) >>> (32 - STRIPE_BITS);
+  }
+
+  @Override
+  public NodeRef get(long id) {
+    final int stripeIndex = stripeIndex(id);
+    final OpenHashNodeTable stripe = stripes[stripeIndex];
+    final StampedLock lock = locks[stripeIndex];
+    final long optimisticStamp = lock.tryOptimisticRead();
+    if (optimisticStamp != 0) {
+      final NodeRef ref = stripe.getOptimistic(id);
+      if (lock.validate(optimisticStamp)) return ref;
+    }
+    final long stamp = lock.readLock();
+    try {
+      return stripe.get(id);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public boolean contains(long id) {
+    return get(id) != null;
+  }
+
+  @Override
+  public boolean add(NodeRef ref) {
+    final int stripeIndex = stripeIndex(ref.id);
+    final StampedLock lock = locks[stripeIndex];
+    final long stamp = lock.writeLock();
+    try {
+      return stripes[stripeIndex].add(ref);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public NodeRef remove(long id) {
+    final int stripeIndex = stripeIndex(id);
+    final StampedLock lock = locks[stripeIndex];
+    final long stamp = lock.writeLock();
+    try {
+      return stripes[stripeIndex].remove(id);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      final long stamp = locks[i].readLock();
+      try {
+        size += stripes[i].size();
+      } finally {
+        locks[i].unlockRead(stamp);
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public int size(String label) {
+    int size = 0;
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      final long stamp = locks[i].readLock();
+      try {
+        size += stripes[i].size(label);
+      } finally {
+        locks[i].unlockRead(stamp);
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public Set<String> labels() {
+    final Set<String> labels = new HashSet<>();
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      final long stamp = locks[i].readLock();
+      try {
+        labels.addAll(stripes[i].labels());
+      } finally {
+        locks[i].unlockRead(stamp);
+      }
+    }
+    return labels;
+  }
+
+  @Override
+  public Iterator<NodeRef> iterator() {
+    final MultiIterator<NodeRef> multiIterator = new MultiIterator<>();
+    for (String label : labels()) {
+      multiIterator.addIterator(iterator(label));
+    }
+    return multiIterator;
+  }
+
+  @Override
+  public Iterator<NodeRef> iterator(String label) {
+    return new Iterator<NodeRef>() {
+      private int nextStripeIndex = 0;
+      private Iterator<NodeRef> current = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!current.hasNext()) {
+          if (nextStripeIndex == STRIPE_COUNT) return false;
+          current = snapshot(nextStripeIndex++, label);
+        }
+        return true;
+      }
+
+      @Override
+      public NodeRef next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return current.next();
+      }
+    };
+  }
+
+  /** @return the nodes of the given label in the given stripe */
+  private Iterator<NodeRef> snapshot(int stripeIndex, String label) {
+    final OpenHashNodeTable stripe = stripes[stripeIndex];
+    final long stamp = locks[stripeIndex].readLock();
+    try {
+      final int size = stripe.size(label);
+      if (size == 0) return Collections.emptyIterator();
+      final List<NodeRef> refs = new ArrayList<>(size);
+      stripe.iterator(label).forEachRemaining(refs::add);
+      return refs.iterator();
+    } finally {
+      locks[stripeIndex].unlockRead(stamp);
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+package overflowdb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps each trigram (three consecutive characters) to the distinct String values that contain it. For a regex lookup,
+ * the values that contain all trigrams of the regex' required literals (see {@link RegexLiterals}) are the
+ * candidates, which are then verified against the actual regex.
+ */
+final class TrigramIndex {
+  private final Map<Long, Set<String>> valuesByTrigram = new ConcurrentHashMap<>();
+
+  void add(String value) {
+    for (long trigram : trigrams(value)) {
+      valuesByTrigram.compute(trigram, (key, values) -> {
+        if (values == null) values = ConcurrentHashMap.newKeySet();
+        values.add(value);
+        return values;
+      });
+    }
+  }
+
+  void remove(String value) {
+    for (long trigram : trigrams(value)) {
+      valuesByTrigram.computeIfPresent(trigram, (key, values) -> {
+        values.remove(value);
+        return values.isEmpty() ? null : values;
+      });
+    }
+  }
+
+  /**
+   * @param alternatives see {@link RegexLiterals#requiredLiterals(String)}
+   * @return values that contain all trigrams of at least one alternative, or null if the candidates can't be narrowed
+   * down, i.e. all values need to be checked
+   */
+  Set<String> candidates(List<List<String>> alternatives) {
+    if (alternatives == null) return null;
+    final Set<String> candidates = new HashSet<>();
+    for (List<String> literals : alternatives) {
+      final Set<Long> trigrams = new HashSet<>();
+      for (String literal : literals) trigrams.addAll(trigrams(literal));
+      if (trigrams.isEmpty()) return null;
+      candidates.addAll(valuesContainingAll(trigrams));
+    }
+    return candidates;
+  }
+
+  private Set<String> valuesContainingAll(Set<Long> trigrams) {
+    final List<Set<String>> postings = new ArrayList<>(trigrams.size());
+    for (long trigram : trigrams) {
+      final Set<String> values = valuesByTrigram.get(trigram);
+      if (values == null) return new HashSet<>();
+      postings.add(values);
+    }
+    /* start with the rarest trigram */
+    final Set<String> rarest = Collections.min(postings, Comparator.comparingInt(Set::size));
+    final Set<String> result = new HashSet<>(rarest);
+    for (Set<String> values : postings) {
+      if (result.isEmpty()) break;
+      if (values != rarest) result.retainAll(values);
+    }
+    return result;
+  }
+
+  private static Set<Long> trigrams(String value) {
+    final Set<Long> trigrams = new HashSet<>();
+    for (int i = 0; i + 3 <= value.length(); i++) {
+      trigrams.add(((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+    }
+    return trigrams;
+  }
+}
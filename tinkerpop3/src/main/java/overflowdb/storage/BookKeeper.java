@@ -5,12 +5,16 @@ import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public abstract class BookKeeper {
   protected final Logger logger = LoggerFactory.getLogger(getClass());
   public final boolean statsEnabled;
   private AtomicInteger totalCount = new AtomicInteger(0);
   private AtomicLong totalTimeSpentNanos = new AtomicLong(0);
+  /* sizes are always recorded (cheap enough), they're used to estimate how many nodes to clear when the heap is full */
+  private final LongAdder totalBytes = new LongAdder();
+  private final LongAdder totalSizeCount = new LongAdder();
 
   protected BookKeeper(boolean statsEnabled) {
     this.statsEnabled = statsEnabled;
@@ -30,6 +34,17 @@ public abstract class BookKeeper {
     }
   }
 
+  protected final void recordSize(int byteCount) {
+    totalBytes.add(byteCount);
+    totalSizeCount.increment();
+  }
+
+  /** @return average size of a serialized node in bytes, or 0 if no node has been handled yet */
+  public final long getAverageSize() {
+    final long count = totalSizeCount.sum();
+    return count == 0 ? 0 : totalBytes.sum() / count;
+  }
+
   public final int getSerializedCount() {
     if (statsEnabled) return totalCount.intValue();
     else throw new RuntimeException("serialization statistics not enabled");
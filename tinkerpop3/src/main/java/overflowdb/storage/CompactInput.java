@@ -0,0 +1,62 @@
+package overflowdb.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the primitives written by {@link CompactOutput} straight from the given byte array.
+ */
+final class CompactInput {
+  private final byte[] bytes;
+  private int position;
+
+  CompactInput(byte[] bytes, int position) {
+    this.bytes = bytes;
+    this.position = position;
+  }
+
+  int position() {
+    return position;
+  }
+
+  byte readByte() throws IOException {
+    if (position >= bytes.length) throw new IOException("unexpected end of input at position " + position);
+    return bytes[position++];
+  }
+
+  int readVarInt() throws IOException {
+    return (int) readVarLong();
+  }
+
+  long readVarLong() throws IOException {
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final byte b = readByte();
+      result |= (long) (b & 0x7F) << shift;
+      if (b >= 0) return result;
+    }
+    throw new IOException("malformed varint at position " + position);
+  }
+
+  long readSignedVarLong() throws IOException {
+    final long value = readVarLong();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  int readInt() throws IOException {
+    return (readByte() & 0xFF) << 24 | (readByte() & 0xFF) << 16 | (readByte() & 0xFF) << 8 | (readByte() & 0xFF);
+  }
+
+  long readLong() throws IOException {
+    return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+  }
+
+  String readString() throws IOException {
+    final int length = readVarInt();
+    if (length < 0 || position + length > bytes.length)
+      throw new IOException("invalid string length " + length + " at position " + position);
+    final String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+    position += length;
+    return value;
+  }
+}
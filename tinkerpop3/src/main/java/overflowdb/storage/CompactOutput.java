@@ -0,0 +1,73 @@
+package overflowdb.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer for the compact node format (see {@link NodeSerializer}).
+ * Integers are written as unsigned LEB128 varints, i.e. 7 bits per byte, small values only take a single byte.
+ * Signed values which are likely to be small (e.g. deltas) are zigzag encoded first.
+ */
+final class CompactOutput {
+  private byte[] buffer;
+  private int position;
+
+  CompactOutput(int initialCapacity) {
+    this.buffer = new byte[initialCapacity];
+  }
+
+  void writeByte(int value) {
+    ensureCapacity(1);
+    buffer[position++] = (byte) value;
+  }
+
+  /** n.b. negative values take 5 bytes, use {@link #writeSignedVarLong(long)} if they're common */
+  void writeVarInt(int value) {
+    writeVarLong(value & 0xFFFFFFFFL);
+  }
+
+  void writeVarLong(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[position++] = (byte) value;
+  }
+
+  /** zigzag encoding: maps 0, -1, 1, -2, ... to 0, 1, 2, 3, ... */
+  void writeSignedVarLong(long value) {
+    writeVarLong((value << 1) ^ (value >> 63));
+  }
+
+  void writeInt(int value) {
+    ensureCapacity(4);
+    buffer[position++] = (byte) (value >>> 24);
+    buffer[position++] = (byte) (value >>> 16);
+    buffer[position++] = (byte) (value >>> 8);
+    buffer[position++] = (byte) value;
+  }
+
+  void writeLong(long value) {
+    writeInt((int) (value >>> 32));
+    writeInt((int) value);
+  }
+
+  void writeString(String value) {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(bytes.length);
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, position, bytes.length);
+    position += bytes.length;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, position);
+  }
+
+  private void ensureCapacity(int additionalBytes) {
+    if (position + additionalBytes > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additionalBytes));
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package overflowdb.storage;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional compression of the serialized nodes in {@link OdbStorage}, applied to each node separately.
+ * Compressed nodes are stored as `COMPRESSED_MARKER, codec id, uncompressed length (varint), compressed bytes`. The
+ * marker can't be the first byte of a serialized node (see {@link NodeSerializer#FORMAT_MARKER}), so uncompressed
+ * and compressed nodes (e.g. after changing the configuration) can be mixed within one storage.
+ * Nodes which don't get smaller by compressing them are stored uncompressed.
+ */
+public enum Compression {
+  NONE((byte) 0) {
+    @Override
+    protected int compress(byte[] src, byte[] dest, int destPos) {
+      return -1;
+    }
+
+    @Override
+    protected byte[] decompress(byte[] src, int srcPos, int decompressedLength) {
+      throw new AssertionError("uncompressed nodes don't have a compression header");
+    }
+  },
+
+  /** fast, moderate compression ratio. Pure java implementation of the LZ4 block format */
+  LZ4((byte) 1) {
+    @Override
+    protected int compress(byte[] src, byte[] dest, int destPos) {
+      return Lz4Codec.compress(src, dest, destPos);
+    }
+
+    @Override
+    protected byte[] decompress(byte[] src, int srcPos, int decompressedLength) throws IOException {
+      return Lz4Codec.decompress(src, srcPos, decompressedLength);
+    }
+  },
+
+  /** slower, better compression ratio, via java.util.zip */
+  DEFLATE((byte) 2) {
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    @Override
+    protected int compress(byte[] src, byte[] dest, int destPos) {
+      final Deflater deflater = deflaters.get();
+      deflater.reset();
+      deflater.setInput(src);
+      deflater.finish();
+      final int compressedLength = deflater.deflate(dest, destPos, dest.length - destPos);
+      return deflater.finished() ? destPos + compressedLength : -1;
+    }
+
+    @Override
+    protected byte[] decompress(byte[] src, int srcPos, int decompressedLength) throws IOException {
+      final Inflater inflater = inflaters.get();
+      inflater.reset();
+      inflater.setInput(src, srcPos, src.length - srcPos);
+      final byte[] dest = new byte[decompressedLength];
+      try {
+        final int length = inflater.inflate(dest);
+        if (length != decompressedLength || !inflater.finished())
+          throw new IOException("expected " + decompressedLength + " decompressed bytes, but got " + length);
+      } catch (DataFormatException e) {
+        throw new IOException("malformed deflate data", e);
+      }
+      return dest;
+    }
+  };
+
+  /** first byte of a compressed node - msgpack bin8 type, i.e. it can't be the start of a legacy node either */
+  public static final byte COMPRESSED_MARKER = (byte) 0xc4;
+
+  public final byte id;
+
+  Compression(byte id) {
+    this.id = id;
+  }
+
+  /**
+   * @return the compressed node including the header, or the given bytes if compression is disabled or doesn't make
+   * them any smaller
+   */
+  public byte[] compress(byte[] serializedNode) {
+    if (this == NONE) return serializedNode;
+
+    final CompactOutput header = new CompactOutput(8);
+    header.writeByte(COMPRESSED_MARKER);
+    header.writeByte(id);
+    header.writeVarInt(serializedNode.length);
+    final byte[] headerBytes = header.toByteArray();
+
+    /* only keep the result if it's smaller than the input */
+    final byte[] dest = new byte[serializedNode.length];
+    if (headerBytes.length >= dest.length) return serializedNode;
+    System.arraycopy(headerBytes, 0, dest, 0, headerBytes.length);
+    final int compressedEnd = compress(serializedNode, dest, headerBytes.length);
+    if (compressedEnd < 0 || compressedEnd >= serializedNode.length) return serializedNode;
+    return Arrays.copyOf(dest, compressedEnd);
+  }
+
+  /** @return the uncompressed serialized node, independent of the compression that was used to store it */
+  public static byte[] decompress(byte[] storedNode) throws IOException {
+    if (storedNode == null || storedNode.length == 0 || storedNode[0] != COMPRESSED_MARKER) return storedNode;
+
+    final CompactInput in = new CompactInput(storedNode, 1);
+    final Compression compression = lookup(in.readByte());
+    final int decompressedLength = in.readVarInt();
+    return compression.decompress(storedNode, in.position(), decompressedLength);
+  }
+
+  public static Compression lookup(byte id) {
+    for (Compression compression : values()) {
+      if (compression.id == id) return compression;
+    }
+    throw new IllegalArgumentException("unknown compression id " + id);
+  }
+
+  /**
+   * @return the end position in `dest`, or -1 if the compressed data doesn't fit
+   */
+  protected abstract int compress(byte[] src, byte[] dest, int destPos);
+
+  protected abstract byte[] decompress(byte[] src, int srcPos, int decompressedLength) throws IOException;
+}
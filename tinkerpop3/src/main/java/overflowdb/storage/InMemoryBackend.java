@@ -0,0 +1,96 @@
+package overflowdb.storage;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the serialized nodes on the heap. Doesn't free any memory when nodes are overflowed (other than the difference
+ * between the in-memory and serialized representation), and can't persist the graph - mostly useful for tests and to
+ * benchmark the other backends against.
+ */
+public class InMemoryBackend implements StorageBackend {
+  private final Map<Long, byte[]> nodes = new ConcurrentHashMap<>();
+  private final Map<String, Map<Object, long[]>> indexes = new ConcurrentHashMap<>();
+  private final Map<String, byte[]> metadata = new ConcurrentHashMap<>();
+
+  public InMemoryBackend(final Optional<File> location) {
+    if (location.isPresent()) {
+      throw new IllegalArgumentException("in-memory storage backend cannot persist to " + location.get());
+    }
+  }
+
+  @Override
+  public byte[] get(long id) {
+    return nodes.get(id);
+  }
+
+  @Override
+  public void put(long id, byte[] node) {
+    nodes.put(id, node);
+  }
+
+  @Override
+  public void remove(long id) {
+    nodes.remove(id);
+  }
+
+  @Override
+  public Set<Map.Entry<Long, byte[]>> allNodes() {
+    return nodes.entrySet();
+  }
+
+  @Override
+  public Set<String> getIndexNames() {
+    return indexes.keySet();
+  }
+
+  @Override
+  public Map<Object, long[]> loadIndex(String indexName) {
+    return indexes.getOrDefault(indexName, new ConcurrentHashMap<>());
+  }
+
+  @Override
+  public void saveIndex(String indexName, Stream<Map.Entry<Object, long[]>> entries) {
+    indexes.put(indexName, entries.collect(Collectors.toConcurrentMap(Map.Entry::getKey, Map.Entry::getValue)));
+  }
+
+  @Override
+  public void removeIndex(String indexName) {
+    indexes.remove(indexName);
+  }
+
+  @Override
+  public byte[] getMetadata(String key) {
+    return metadata.get(key);
+  }
+
+  @Override
+  public void putMetadata(String key, byte[] value) {
+    metadata.put(key, value);
+  }
+
+  @Override
+  public void removeMetadata(String key) {
+    metadata.remove(key);
+  }
+
+  @Override
+  public void flush() {}
+
+  @Override
+  public void close() {
+    nodes.clear();
+    indexes.clear();
+    metadata.clear();
+  }
+
+  @Override
+  public Optional<File> getStorageFile() {
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,177 @@
+package overflowdb.storage;
+
+import java.io.IOException;
+
+/**
+ * Pure java implementation of the LZ4 block format: a sequence of
+ * `token, [literal length bytes], literals, match offset (2 bytes LE), [match length bytes]`, where the token holds
+ * 4 bits each for the literal length and the match length (minus {@link #MIN_MATCH}).
+ * Greedy single-probe hash matching, i.e. fast rather than maximum compression. The last sequence only contains
+ * literals, as required by the format.
+ */
+final class Lz4Codec {
+  private static final int MIN_MATCH = 4;
+  private static final int MAX_OFFSET = 0xFFFF;
+  /* the format requires the last 5 bytes to be literals, and the last match to start at least 12 bytes before the end */
+  private static final int LAST_LITERALS = 5;
+  private static final int MATCH_FIND_LIMIT = 12;
+  private static final int HASH_LOG = 12;
+
+  private static final ThreadLocal<int[]> hashTables = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+  private Lz4Codec() {}
+
+  /**
+   * Compresses straight into `dest`, starting at `destPos`. Each sequence is only written if it fits, i.e. `dest`
+   * doesn't need room for the worst case (incompressible data grows slightly).
+   * @return the end position of the compressed data in `dest`, or -1 if it doesn't fit
+   */
+  static int compress(byte[] src, byte[] dest, int destPos) {
+    final int length = src.length;
+    int anchor = 0;
+
+    if (length >= MATCH_FIND_LIMIT) {
+      /* the table isn't cleared between calls: stale entries are just bad guesses, since every candidate is verified */
+      final int[] hashTable = hashTables.get();
+      final int matchFindLimit = length - MATCH_FIND_LIMIT;
+      final int matchLimit = length - LAST_LITERALS;
+
+      int pos = 0;
+      while (pos < matchFindLimit) {
+        final int sequence = readIntLE(src, pos);
+        final int hash = hash(sequence);
+        final int candidate = hashTable[hash];
+        hashTable[hash] = pos;
+        if (candidate >= pos || pos - candidate > MAX_OFFSET || readIntLE(src, candidate) != sequence) {
+          pos++;
+          continue;
+        }
+
+        int matchLength = MIN_MATCH;
+        while (pos + matchLength < matchLimit && src[candidate + matchLength] == src[pos + matchLength]) {
+          matchLength++;
+        }
+        if (destPos + sequenceLength(pos - anchor, matchLength) > dest.length) return -1;
+        destPos = writeSequence(src, anchor, pos - anchor, pos - candidate, matchLength, dest, destPos);
+        pos += matchLength;
+        anchor = pos;
+      }
+    }
+
+    /* last literals */
+    final int literalLength = length - anchor;
+    if (destPos + sequenceLength(literalLength, 0) > dest.length) return -1;
+    destPos = writeToken(dest, destPos, literalLength);
+    System.arraycopy(src, anchor, dest, destPos, literalLength);
+    return destPos + literalLength;
+  }
+
+  static byte[] decompress(byte[] src, int srcPos, int decompressedLength) throws IOException {
+    final byte[] dest = new byte[decompressedLength];
+    int destPos = 0;
+    try {
+      while (true) {
+        final int token = src[srcPos++] & 0xFF;
+
+        int literalLength = token >>> 4;
+        if (literalLength == 0xF) {
+          int b;
+          do {
+            b = src[srcPos++] & 0xFF;
+            literalLength += b;
+          } while (b == 0xFF);
+        }
+        System.arraycopy(src, srcPos, dest, destPos, literalLength);
+        srcPos += literalLength;
+        destPos += literalLength;
+        if (srcPos == src.length) break; // last sequence only contains literals
+
+        final int offset = (src[srcPos] & 0xFF) | (src[srcPos + 1] & 0xFF) << 8;
+        srcPos += 2;
+        int matchLength = token & 0xF;
+        if (matchLength == 0xF) {
+          int b;
+          do {
+            b = src[srcPos++] & 0xFF;
+            matchLength += b;
+          } while (b == 0xFF);
+        }
+        matchLength += MIN_MATCH;
+
+        int matchPos = destPos - offset;
+        if (offset == 0 || matchPos < 0) throw new IOException("invalid match offset " + offset + " at position " + srcPos);
+        /* byte by byte, because source and destination may overlap */
+        for (int i = 0; i < matchLength; i++) {
+          dest[destPos++] = dest[matchPos++];
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("malformed lz4 data", e);
+    }
+
+    if (destPos != decompressedLength) {
+      throw new IOException("expected " + decompressedLength + " decompressed bytes, but got " + destPos);
+    }
+    return dest;
+  }
+
+  private static int writeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength, byte[] dest, int destPos) {
+    final int tokenPos = destPos;
+    destPos = writeToken(dest, destPos, literalLength);
+    System.arraycopy(src, literalStart, dest, destPos, literalLength);
+    destPos += literalLength;
+
+    dest[destPos++] = (byte) offset;
+    dest[destPos++] = (byte) (offset >>> 8);
+
+    final int matchLengthCode = matchLength - MIN_MATCH;
+    if (matchLengthCode >= 0xF) {
+      dest[tokenPos] |= 0xF;
+      int remaining = matchLengthCode - 0xF;
+      while (remaining >= 0xFF) {
+        dest[destPos++] = (byte) 0xFF;
+        remaining -= 0xFF;
+      }
+      dest[destPos++] = (byte) remaining;
+    } else {
+      dest[tokenPos] |= matchLengthCode;
+    }
+    return destPos;
+  }
+
+  /** @return the encoded length of a sequence, see {@link #writeSequence}. `matchLength` 0 for the last literals */
+  private static int sequenceLength(int literalLength, int matchLength) {
+    int length = 1 + literalLength;
+    if (literalLength >= 0xF) length += (literalLength - 0xF) / 0xFF + 1;
+    if (matchLength > 0) {
+      length += 2;
+      final int matchLengthCode = matchLength - MIN_MATCH;
+      if (matchLengthCode >= 0xF) length += (matchLengthCode - 0xF) / 0xFF + 1;
+    }
+    return length;
+  }
+
+  /** writes the token (with the literal length in the upper 4 bits) plus additional literal length bytes */
+  private static int writeToken(byte[] dest, int destPos, int literalLength) {
+    if (literalLength >= 0xF) {
+      dest[destPos++] = (byte) 0xF0;
+      int remaining = literalLength - 0xF;
+      while (remaining >= 0xFF) {
+        dest[destPos++] = (byte) 0xFF;
+        remaining -= 0xFF;
+      }
+      dest[destPos++] = (byte) remaining;
+    } else {
+      dest[destPos++] = (byte) (literalLength << 4);
+    }
+    return destPos;
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  private static int readIntLE(byte[] bytes, int pos) {
+    return (bytes[pos] & 0xFF) | (bytes[pos + 1] & 0xFF) << 8 | (bytes[pos + 2] & 0xFF) << 16 | (bytes[pos + 3] & 0xFF) << 24;
+  }
+}
@@ -0,0 +1,132 @@
+package overflowdb.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Stores nodes in a {@link MMapNodeStore}, in directory `$location.nodes`.
+ * The indexes and metadata (much smaller, and only written on close) remain in an MVStore at `$location`.
+ */
+public class MMapBackend implements StorageBackend {
+  private final MMapNodeStore nodeStore;
+  private final MVStoreBackend indexStore;
+  private final boolean doPersist;
+
+  public MMapBackend(final Optional<File> location) {
+    this.doPersist = location.isPresent();
+    this.indexStore = new MVStoreBackend(location);
+    final File nodeStoreDirectory;
+    if (location.isPresent()) {
+      nodeStoreDirectory = new File(location.get().getPath() + ".nodes");
+    } else {
+      try {
+        nodeStoreDirectory = Files.createTempDirectory("overflowdb-nodes").toFile();
+      } catch (IOException e) {
+        throw new RuntimeException("cannot create tmp directory for node store", e);
+      }
+    }
+    this.nodeStore = new MMapNodeStore(nodeStoreDirectory);
+  }
+
+  @Override
+  public byte[] get(long id) {
+    return nodeStore.get(id);
+  }
+
+  @Override
+  public byte[][] getAll(long[] ids) {
+    return nodeStore.getAll(ids);
+  }
+
+  @Override
+  public void put(long id, byte[] node) {
+    nodeStore.put(id, node);
+  }
+
+  @Override
+  public void remove(long id) {
+    nodeStore.remove(id);
+  }
+
+  @Override
+  public Set<Map.Entry<Long, byte[]>> allNodes() {
+    return nodeStore.entrySet();
+  }
+
+  @Override
+  public List<Iterable<Map.Entry<Long, byte[]>>> allNodesPartitioned(int partitionCount) {
+    return nodeStore.entriesPartitioned(partitionCount);
+  }
+
+  @Override
+  public Set<String> getIndexNames() {
+    return indexStore.getIndexNames();
+  }
+
+  @Override
+  public Map<Object, long[]> loadIndex(String indexName) {
+    return indexStore.loadIndex(indexName);
+  }
+
+  @Override
+  public void saveIndex(String indexName, Stream<Map.Entry<Object, long[]>> entries) {
+    indexStore.saveIndex(indexName, entries);
+  }
+
+  @Override
+  public void removeIndex(String indexName) {
+    indexStore.removeIndex(indexName);
+  }
+
+  @Override
+  public byte[] getMetadata(String key) {
+    return indexStore.getMetadata(key);
+  }
+
+  @Override
+  public void putMetadata(String key, byte[] value) {
+    indexStore.putMetadata(key, value);
+  }
+
+  @Override
+  public void removeMetadata(String key) {
+    indexStore.removeMetadata(key);
+  }
+
+  /** for temporary storage there's no need to force the changes to disk, the OS will write them back when it's a good time */
+  @Override
+  public void flush() {
+    indexStore.flush();
+    if (doPersist) nodeStore.flush();
+  }
+
+  @Override
+  public void close() {
+    indexStore.close();
+    nodeStore.close();
+    if (!doPersist) deleteRecursively(nodeStore.getDirectory());
+  }
+
+  @Override
+  public Optional<File> getStorageFile() {
+    return indexStore.getStorageFile();
+  }
+
+  public MMapNodeStore getNodeStore() {
+    return nodeStore;
+  }
+
+  private static void deleteRecursively(File file) {
+    final File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) deleteRecursively(child);
+    }
+    file.delete();
+  }
+}
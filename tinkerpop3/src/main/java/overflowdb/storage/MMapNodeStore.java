@@ -0,0 +1,562 @@
+package overflowdb.storage;
+
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import overflowdb.util.NamedThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Node store for serialized nodes, as an alternative to the MVStore: an append-only log of
+ * `[int length][long id][int crc][bytes]` records in memory mapped segment files, plus an in-memory id->location index.
+ * Writing a node is a sequential append, overwriting or removing a node (the latter writes a tombstone with
+ * length=-1) just turns the previous record into garbage. Once half of a segment is garbage, a background thread
+ * compacts it by appending the live records to the current segment, and deletes the segment file.
+ * Each append is followed by an end marker (length={@link #END_OF_SEGMENT}), unless the segment is full.
+ *
+ * On startup, the index is rebuilt by scanning all segments in order, i.e. with sequential reads only. The scan of a
+ * segment stops at the end marker, or at the first record whose crc (over length, id and bytes) doesn't match, e.g.
+ * because its pages weren't written to disk before a crash.
+ *
+ * n.b. all methods may be called concurrently
+ */
+public class MMapNodeStore implements AutoCloseable {
+  static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+  static final float COMPACTION_GARBAGE_RATIO = 0.5f;
+  private static final int HEADER_SIZE = 16; // int length + long id + int crc
+  private static final int CRC_OFFSET = 12;
+  private static final int TOMBSTONE = -1;
+  private static final int END_OF_SEGMENT = Integer.MIN_VALUE;
+  private static final long NO_LOCATION = -1;
+  private static final String SEGMENT_FILE_PREFIX = "segment-";
+  private static final String SEGMENT_FILE_SUFFIX = ".bin";
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final File directory;
+  private final int segmentSize;
+  /* location = segment number (upper 32 bits) and offset within that segment (lower 32 bits) */
+  private final TLongLongMap locations = new TLongLongHashMap(1024, 0.5f, NO_LOCATION, NO_LOCATION);
+  /* indexed by segment number, compacted segments are set to null */
+  private final List<Segment> segments = new ArrayList<>();
+  private Segment activeSegment;
+  private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("overflowdb-mmap-compaction"));
+  private boolean compactionScheduled;
+  private final Object compactionSyncObject = new Object();
+  private boolean closed;
+
+  public MMapNodeStore(File directory) {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  MMapNodeStore(File directory, int segmentSize) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new RuntimeException("unable to create directory " + directory);
+    }
+    try {
+      openExistingSegments();
+      if (activeSegment == null) activeSegment = createSegment(segmentSize);
+    } catch (IOException e) {
+      throw new RuntimeException("unable to open node segments in " + directory, e);
+    }
+  }
+
+  private void openExistingSegments() throws IOException {
+    final File[] segmentFiles = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX));
+    if (segmentFiles == null || segmentFiles.length == 0) return;
+
+    final int[] segmentNumbers = new int[segmentFiles.length];
+    for (int i = 0; i < segmentFiles.length; i++) {
+      final String name = segmentFiles[i].getName();
+      segmentNumbers[i] = Integer.parseInt(name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SEGMENT_FILE_SUFFIX.length()));
+    }
+    Arrays.sort(segmentNumbers);
+
+    long start = System.currentTimeMillis();
+    for (int segmentNumber : segmentNumbers) {
+      while (segments.size() < segmentNumber) segments.add(null);
+      final Segment segment = Segment.open(segmentFile(segmentNumber), segmentNumber, 0);
+      segments.add(segment);
+      replay(segment);
+      activeSegment = segment;
+    }
+    logger.info("initialized " + locations.size() + " node locations from " + segmentNumbers.length + " segments in "
+        + (System.currentTimeMillis() - start) + "ms");
+  }
+
+  /** scan all records of the given segment and apply them to the index */
+  private void replay(Segment segment) {
+    final ByteBuffer buffer = segment.buffer;
+    int offset = 0;
+    while (offset + HEADER_SIZE <= buffer.capacity()) {
+      final int length = buffer.getInt(offset);
+      if (length == END_OF_SEGMENT) break;
+      final long id = buffer.getLong(offset + 4);
+      final int recordSize = recordSize(length);
+      if (!isValidRecord(buffer, offset, length)) {
+        /* never written space is all zeros, anything else is a torn record */
+        if (length != 0 || id != 0 || buffer.getInt(offset + CRC_OFFSET) != 0) {
+          logger.warn("ignoring invalid record (and everything after it) at offset " + offset + " in " + segment.file);
+        }
+        break;
+      }
+      markGarbage(locations.get(id));
+      if (length == TOMBSTONE) {
+        locations.remove(id);
+      } else {
+        locations.put(id, location(segment.number, offset));
+      }
+      offset += recordSize;
+    }
+    segment.writePosition = offset;
+  }
+
+  public synchronized void put(long id, byte[] bytes) {
+    ensureOpen();
+    markGarbage(locations.put(id, append(id, bytes, bytes.length)));
+    scheduleCompactionMaybe();
+  }
+
+  public byte[] get(long id) {
+    final Segment segment;
+    final int offset;
+    synchronized (this) {
+      final long location = locations.get(id);
+      if (location == NO_LOCATION) return null;
+      segment = segments.get(segmentNumber(location));
+      offset = offset(location);
+    }
+    /* records are never modified once written, and segments are only deleted after they've been compacted,
+     * i.e. we don't need to hold the lock while reading */
+    return segment.read(offset);
+  }
+
+  /**
+   * reads the given nodes in the order of their location, i.e. segment by segment and sequentially within the segments
+   * @return the serialized nodes in the same order as `ids`, null for ids without a node
+   */
+  public byte[][] getAll(long[] ids) {
+    final long[] locations = new long[ids.length];
+    final Segment[] idSegments = new Segment[ids.length];
+    synchronized (this) {
+      for (int i = 0; i < ids.length; i++) {
+        locations[i] = this.locations.get(ids[i]);
+        if (locations[i] != NO_LOCATION) idSegments[i] = segments.get(segmentNumber(locations[i]));
+      }
+    }
+
+    final byte[][] result = new byte[ids.length][];
+    for (int idx : StorageBackend.sortedIndices(locations)) {
+      if (idSegments[idx] != null) result[idx] = idSegments[idx].read(offset(locations[idx]));
+    }
+    return result;
+  }
+
+  public synchronized void remove(long id) {
+    ensureOpen();
+    final long location = locations.remove(id);
+    if (location != NO_LOCATION) {
+      markGarbage(location);
+      append(id, null, TOMBSTONE);
+      scheduleCompactionMaybe();
+    }
+  }
+
+  public synchronized int size() {
+    return locations.size();
+  }
+
+  /**
+   * all nodes, in the order they're stored on disk
+   * n.b. not a snapshot: nodes that are overwritten or removed while iterating may or may not be included
+   */
+  public Set<Map.Entry<Long, byte[]>> entrySet() {
+    return new AbstractSet<Map.Entry<Long, byte[]>>() {
+      @Override
+      public Iterator<Map.Entry<Long, byte[]>> iterator() {
+        return new EntryIterator(segmentsSnapshot());
+      }
+
+      @Override
+      public int size() {
+        return MMapNodeStore.this.size();
+      }
+    };
+  }
+
+  /**
+   * all nodes, split into partitions of (roughly) the same number of segments, which can be scanned concurrently
+   * @see #entrySet()
+   */
+  public List<Iterable<Map.Entry<Long, byte[]>>> entriesPartitioned(int partitionCount) {
+    final List<Segment> segmentsSnapshot = segmentsSnapshot();
+    final int actualPartitionCount = Math.max(1, Math.min(partitionCount, segmentsSnapshot.size()));
+    final List<Iterable<Map.Entry<Long, byte[]>>> partitions = new ArrayList<>(actualPartitionCount);
+    for (int i = 0; i < actualPartitionCount; i++) {
+      final List<Segment> partition = segmentsSnapshot.subList(
+          segmentsSnapshot.size() * i / actualPartitionCount,
+          segmentsSnapshot.size() * (i + 1) / actualPartitionCount);
+      partitions.add(() -> new EntryIterator(partition));
+    }
+    return partitions;
+  }
+
+  /** write all changes to disk */
+  public void flush() {
+    for (Segment segment : segmentsSnapshot()) {
+      segment.buffer.force();
+    }
+  }
+
+  /** all segments that haven't been compacted */
+  private synchronized List<Segment> segmentsSnapshot() {
+    final List<Segment> snapshot = new ArrayList<>(segments.size());
+    for (Segment segment : segments) {
+      if (segment != null) snapshot.add(segment);
+    }
+    return snapshot;
+  }
+
+  /** compact all segments (other than the active one) that contain enough garbage, blocks until completed */
+  public void compact() {
+    synchronized (compactionSyncObject) {
+      for (Segment segment : compactionCandidates()) {
+        compact(segment);
+      }
+    }
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  synchronized int segmentCount() {
+    int count = 0;
+    for (Segment segment : segments) {
+      if (segment != null) count++;
+    }
+    return count;
+  }
+
+  @Override
+  public void close() {
+    compactionExecutor.shutdown();
+    try {
+      compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    flush();
+    synchronized (this) {
+      closed = true;
+      for (Segment segment : segments) {
+        if (segment != null) segment.close();
+      }
+    }
+  }
+
+  private void ensureOpen() {
+    if (closed) throw new IllegalStateException("node store in " + directory + " is closed");
+  }
+
+  /** @return location of the appended record */
+  private long append(long id, byte[] bytes, int length) {
+    final int recordSize = recordSize(length);
+    if (activeSegment.writePosition + recordSize > activeSegment.buffer.capacity()) {
+      try {
+        activeSegment = createSegment(Math.max(segmentSize, recordSize));
+      } catch (IOException e) {
+        throw new RuntimeException("unable to create new segment in " + directory, e);
+      }
+    }
+    final Segment segment = activeSegment;
+    final int offset = segment.writePosition;
+    final ByteBuffer buffer = segment.buffer.duplicate();
+    buffer.position(offset);
+    buffer.putInt(length);
+    buffer.putLong(id);
+    buffer.putInt(0);
+    if (bytes != null) buffer.put(bytes);
+    buffer.putInt(offset + CRC_OFFSET, checksum(buffer, offset, length));
+    segment.writePosition += recordSize;
+    if (segment.writePosition + 4 <= buffer.capacity()) buffer.putInt(segment.writePosition, END_OF_SEGMENT);
+    return location(segment.number, offset);
+  }
+
+  private static boolean isValidRecord(ByteBuffer buffer, int offset, int length) {
+    if (length < TOMBSTONE || length > buffer.capacity() - offset - HEADER_SIZE) return false;
+    return buffer.getInt(offset + CRC_OFFSET) == checksum(buffer, offset, length);
+  }
+
+  /** crc32 of length, id and bytes of the record at the given offset */
+  private static int checksum(ByteBuffer buffer, int offset, int length) {
+    final CRC32 crc = new CRC32();
+    final ByteBuffer header = buffer.duplicate();
+    header.limit(offset + CRC_OFFSET);
+    header.position(offset);
+    crc.update(header);
+    if (length > 0) {
+      final ByteBuffer bytes = buffer.duplicate();
+      bytes.limit(offset + HEADER_SIZE + length);
+      bytes.position(offset + HEADER_SIZE);
+      crc.update(bytes);
+    }
+    return (int) crc.getValue();
+  }
+
+  private Segment createSegment(int size) throws IOException {
+    final int segmentNumber = segments.size();
+    final Segment segment = Segment.open(segmentFile(segmentNumber), segmentNumber, size);
+    segments.add(segment);
+    return segment;
+  }
+
+  private File segmentFile(int segmentNumber) {
+    return new File(directory, String.format("%s%08d%s", SEGMENT_FILE_PREFIX, segmentNumber, SEGMENT_FILE_SUFFIX));
+  }
+
+  private void markGarbage(long location) {
+    if (location != NO_LOCATION) {
+      final Segment segment = segments.get(segmentNumber(location));
+      segment.garbageBytes += recordSize(segment.buffer.getInt(offset(location)));
+    }
+  }
+
+  private void scheduleCompactionMaybe() {
+    if (!compactionScheduled && !compactionCandidates().isEmpty()) {
+      compactionScheduled = true;
+      compactionExecutor.submit(() -> {
+        try {
+          compact();
+        } catch (Exception e) {
+          logger.error("error while compacting node segments", e);
+        } finally {
+          synchronized (this) {
+            compactionScheduled = false;
+          }
+        }
+      });
+    }
+  }
+
+  /* tombstones are not counted as garbage: they're small, and may need to be retained anyway */
+  synchronized List<Segment> compactionCandidates() {
+    final List<Segment> candidates = new ArrayList<>();
+    for (Segment segment : segments) {
+      if (segment != null && segment != activeSegment
+          && segment.garbageBytes >= segment.writePosition * COMPACTION_GARBAGE_RATIO) {
+        candidates.add(segment);
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * append all live records of the given segment to the active segment, then delete it
+   * tombstones are retained as long as there are older segments, which may contain a record for the same id
+   */
+  private void compact(Segment segment) {
+    final ByteBuffer buffer = segment.buffer;
+    int offset = 0;
+    int liveCount = 0;
+    while (offset < segment.writePosition) {
+      final int length = buffer.getInt(offset);
+      final long id = buffer.getLong(offset + 4);
+      synchronized (this) {
+        if (closed) return;
+        if (length == TOMBSTONE) {
+          if (!locations.containsKey(id) && hasSegmentsOlderThan(segment.number)) {
+            append(id, null, TOMBSTONE);
+          }
+        } else if (locations.get(id) == location(segment.number, offset)) {
+          locations.put(id, append(id, segment.read(offset), length));
+          liveCount++;
+        }
+      }
+      offset += recordSize(length);
+    }
+
+    /* the moved records (and tombstones) need to be on disk before the segment is deleted, otherwise a crash would
+     * lose them. They're all in segments newer than the compacted one. */
+    for (Segment newerSegment : segmentsSnapshot()) {
+      if (newerSegment.number > segment.number) newerSegment.buffer.force();
+    }
+    synchronized (this) {
+      if (closed) return;
+      segments.set(segment.number, null);
+      segment.close();
+      if (!segment.file.delete()) logger.warn("unable to delete compacted segment " + segment.file);
+    }
+    if (logger.isDebugEnabled()) logger.debug("compacted segment " + segment.number + ": moved " + liveCount + " live nodes");
+  }
+
+  private boolean hasSegmentsOlderThan(int segmentNumber) {
+    for (int i = 0; i < segmentNumber; i++) {
+      if (segments.get(i) != null) return true;
+    }
+    return false;
+  }
+
+  private static int recordSize(int length) {
+    return HEADER_SIZE + Math.max(0, length);
+  }
+
+  private static long location(int segmentNumber, int offset) {
+    return ((long) segmentNumber << 32) | (offset & 0xffffffffL);
+  }
+
+  private static int segmentNumber(long location) {
+    return (int) (location >>> 32);
+  }
+
+  private static int offset(long location) {
+    return (int) location;
+  }
+
+  private static class Segment {
+    final File file;
+    final int number;
+    final RandomAccessFile randomAccessFile;
+    final MappedByteBuffer buffer;
+    /* guarded by the MMapNodeStore's lock */
+    int writePosition;
+    int garbageBytes;
+
+    private Segment(File file, int number, RandomAccessFile randomAccessFile, MappedByteBuffer buffer) {
+      this.file = file;
+      this.number = number;
+      this.randomAccessFile = randomAccessFile;
+      this.buffer = buffer;
+    }
+
+    /** @param minSize the file is extended to this size if it's smaller */
+    static Segment open(File file, int number, int minSize) throws IOException {
+      final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      if (randomAccessFile.length() < minSize) randomAccessFile.setLength(minSize);
+      final MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+      return new Segment(file, number, randomAccessFile, buffer);
+    }
+
+    byte[] read(int offset) {
+      final ByteBuffer buffer = this.buffer.duplicate();
+      final int length = buffer.getInt(offset);
+      final byte[] bytes = new byte[length];
+      buffer.position(offset + HEADER_SIZE);
+      buffer.get(bytes);
+      return bytes;
+    }
+
+    void close() {
+      try {
+        randomAccessFile.close();
+      } catch (IOException e) {
+        throw new RuntimeException("unable to close segment " + file, e);
+      }
+    }
+  }
+
+  /**
+   * scans the given segments sequentially and returns the records that are still live
+   * to keep lock contention low when multiple threads are scanning, the liveness check is done for a batch of
+   * records at a time
+   */
+  private class EntryIterator implements Iterator<Map.Entry<Long, byte[]>> {
+    private static final int BATCH_SIZE = 1024;
+    private final List<Segment> segmentsToScan;
+    private int segmentIdx = 0;
+    private int offset = 0;
+    private final long[] batchIds = new long[BATCH_SIZE];
+    private final int[] batchOffsets = new int[BATCH_SIZE];
+    private final boolean[] batchLive = new boolean[BATCH_SIZE];
+    private Segment batchSegment;
+    private int batchSize = 0;
+    private int batchIdx = 0;
+
+    EntryIterator(List<Segment> segmentsToScan) {
+      this.segmentsToScan = segmentsToScan;
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return batchIdx < batchSize;
+    }
+
+    @Override
+    public Map.Entry<Long, byte[]> next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      final Map.Entry<Long, byte[]> result =
+          new AbstractMap.SimpleImmutableEntry<>(batchIds[batchIdx], batchSegment.read(batchOffsets[batchIdx]));
+      batchIdx++;
+      advance();
+      return result;
+    }
+
+    /** moves to the next live record, reading the next batch if necessary */
+    private void advance() {
+      while (true) {
+        while (batchIdx < batchSize && !batchLive[batchIdx]) batchIdx++;
+        if (batchIdx < batchSize || !readBatch()) return;
+      }
+    }
+
+    /** @return false if there are no more records */
+    private boolean readBatch() {
+      batchSize = 0;
+      batchIdx = 0;
+      while (segmentIdx < segmentsToScan.size()) {
+        final Segment segment = segmentsToScan.get(segmentIdx);
+        final int writePosition = segmentWritePosition(segment);
+        while (offset < writePosition && batchSize < BATCH_SIZE) {
+          final int length = segment.buffer.getInt(offset);
+          if (length != TOMBSTONE) {
+            batchIds[batchSize] = segment.buffer.getLong(offset + 4);
+            batchOffsets[batchSize] = offset;
+            batchSize++;
+          }
+          offset += recordSize(length);
+        }
+        if (batchSize > 0) {
+          batchSegment = segment;
+          synchronized (MMapNodeStore.this) {
+            for (int i = 0; i < batchSize; i++) {
+              batchLive[i] = locations.get(batchIds[i]) == location(segment.number, batchOffsets[i]);
+            }
+          }
+          return true;
+        }
+        segmentIdx++;
+        offset = 0;
+      }
+      return false;
+    }
+
+    private int segmentWritePosition(Segment segment) {
+      synchronized (MMapNodeStore.this) {
+        return segment.writePosition;
+      }
+    }
+  }
+
+}
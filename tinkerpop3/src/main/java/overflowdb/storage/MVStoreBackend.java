@@ -0,0 +1,202 @@
+package overflowdb.storage;
+
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stores nodes and indexes in separate maps of an H2 MVStore.
+ */
+public class MVStoreBackend implements StorageBackend {
+  private static final String INDEX_PREFIX = "index_";
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  private final File mvstoreFile;
+  private final boolean doPersist;
+  private MVStore mvstore; // initialized in `getMVStore`
+  private MVMap<Long, byte[]> nodesMVMap;
+  private MVMap<String, byte[]> metadataMVMap;
+
+  /**
+   * @param mvstoreFileMaybe specific mvstore file - which may or may not yet exist. It won't be deleted at the end.
+   *                         If absent, we'll use a temp file which is deleted on `close`.
+   */
+  public MVStoreBackend(final Optional<File> mvstoreFileMaybe) {
+    if (mvstoreFileMaybe.isPresent()) {
+      this.doPersist = true;
+      mvstoreFile = mvstoreFileMaybe.get();
+    } else {
+      try {
+        this.doPersist = false;
+        mvstoreFile = File.createTempFile("mvstore", ".bin");
+        mvstoreFile.deleteOnExit(); // `.close` will also delete it, this is just in case users forget to call it
+      } catch (IOException e) {
+        throw new RuntimeException("cannot create tmp file for mvstore", e);
+      }
+    }
+    logger.trace("storage file: " + mvstoreFile);
+  }
+
+  @Override
+  public byte[] get(long id) {
+    return getNodesMVMap().get(id);
+  }
+
+  @Override
+  public void put(long id, byte[] node) {
+    getNodesMVMap().put(id, node);
+  }
+
+  @Override
+  public void remove(long id) {
+    getNodesMVMap().remove(id);
+  }
+
+  @Override
+  public Set<Map.Entry<Long, byte[]>> allNodes() {
+    return getNodesMVMap().entrySet();
+  }
+
+  /** partitions by key index, i.e. all partitions have the same size */
+  @Override
+  public List<Iterable<Map.Entry<Long, byte[]>>> allNodesPartitioned(int partitionCount) {
+    final MVMap<Long, byte[]> nodes = getNodesMVMap();
+    final long size = nodes.sizeAsLong();
+    final int actualPartitionCount = (int) Math.max(1, Math.min(partitionCount, size));
+    final List<Iterable<Map.Entry<Long, byte[]>>> partitions = new ArrayList<>(actualPartitionCount);
+    for (int i = 0; i < actualPartitionCount && size > 0; i++) {
+      final long startIndex = size * i / actualPartitionCount;
+      final long endIndex = size * (i + 1) / actualPartitionCount;
+      final Long startKey = nodes.getKey(startIndex);
+      partitions.add(() -> new Iterator<Map.Entry<Long, byte[]>>() {
+        private final Cursor<Long, byte[]> cursor = nodes.cursor(startKey);
+        private long remaining = endIndex - startIndex;
+
+        @Override
+        public boolean hasNext() {
+          return remaining > 0 && cursor.hasNext();
+        }
+
+        @Override
+        public Map.Entry<Long, byte[]> next() {
+          if (!hasNext()) throw new NoSuchElementException();
+          remaining--;
+          final Long id = cursor.next();
+          return new AbstractMap.SimpleImmutableEntry<>(id, cursor.getValue());
+        }
+      });
+    }
+    return partitions;
+  }
+
+  @Override
+  public Set<String> getIndexNames() {
+    return getIndexNameMap(getMVStore()).keySet();
+  }
+
+  @Override
+  public Map<Object, long[]> loadIndex(String indexName) {
+    return openIndex(indexName);
+  }
+
+  @Override
+  public void saveIndex(String indexName, Stream<Map.Entry<Object, long[]>> entries) {
+    final MVMap<Object, long[]> indexMVMap = openIndex(indexName);
+    indexMVMap.clear();
+    entries.forEach(entry -> indexMVMap.put(entry.getKey(), entry.getValue()));
+  }
+
+  @Override
+  public void removeIndex(String indexName) {
+    getMVStore().removeMap(openIndex(indexName));
+  }
+
+  @Override
+  public byte[] getMetadata(String key) {
+    return getMetadataMVMap().get(key);
+  }
+
+  @Override
+  public void putMetadata(String key, byte[] value) {
+    getMetadataMVMap().put(key, value);
+  }
+
+  @Override
+  public void removeMetadata(String key) {
+    getMetadataMVMap().remove(key);
+  }
+
+  @Override
+  public void flush() {
+    if (mvstore != null) {
+      logger.debug("flushing to disk");
+      mvstore.commit();
+    }
+  }
+
+  @Override
+  public void close() {
+    flush();
+    if (mvstore != null) mvstore.close();
+    if (!doPersist) mvstoreFile.delete();
+  }
+
+  @Override
+  public Optional<File> getStorageFile() {
+    return Optional.of(mvstoreFile);
+  }
+
+  public MVMap<Long, byte[]> getNodesMVMap() {
+    if (nodesMVMap == null)
+      nodesMVMap = getMVStore().openMap("nodes");
+    return nodesMVMap;
+  }
+
+  private MVMap<String, byte[]> getMetadataMVMap() {
+    if (metadataMVMap == null)
+      metadataMVMap = getMVStore().openMap("metadata");
+    return metadataMVMap;
+  }
+
+  private MVStore getMVStore() {
+    if (mvstore == null) {
+      mvstore = new MVStore.Builder()
+          .fileName(mvstoreFile.getAbsolutePath())
+          .autoCommitBufferSize(1024 * 8)
+          .open();
+    }
+    return mvstore;
+  }
+
+  private Map<String, String> getIndexNameMap(MVStore store) {
+    return store
+        .getMapNames()
+        .stream()
+        .filter(s -> s.startsWith(INDEX_PREFIX))
+        .collect(Collectors.toConcurrentMap(s -> removeIndexPrefix(s), s -> s));
+  }
+
+  private String removeIndexPrefix(String s) {
+    assert s.startsWith(INDEX_PREFIX);
+    return s.substring(INDEX_PREFIX.length());
+  }
+
+  private MVMap<Object, long[]> openIndex(String indexName) {
+    return getMVStore().openMap(INDEX_PREFIX + indexName);
+  }
+}
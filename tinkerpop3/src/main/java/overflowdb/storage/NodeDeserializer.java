@@ -2,6 +2,7 @@ package overflowdb.storage;
 
 import gnu.trove.map.hash.THashMap;
 import overflowdb.NodeFactory;
+import overflowdb.NodeLayoutInformation;
 import overflowdb.NodeRef;
 import overflowdb.OdbGraph;
 import overflowdb.OdbNode;
@@ -15,15 +16,21 @@ import org.msgpack.value.Value;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Reads both the compact node format written by {@link NodeSerializer} and the legacy msgpack based format.
+ */
 public class NodeDeserializer extends BookKeeper {
+  private static final int[] NO_HOLES = new int[0];
   protected final OdbGraph graph;
   private final Map<Integer, NodeFactory> nodeFactoryByLabelId;
   private ConcurrentHashMap<String, String> interner;
+  private PropertyKeyDictionary propertyKeys = new PropertyKeyDictionary();
 
   public NodeDeserializer(OdbGraph graph, Map<Integer, NodeFactory> nodeFactoryByLabelId, boolean statsEnabled) {
     super(statsEnabled);
@@ -32,6 +39,11 @@ public class NodeDeserializer extends BookKeeper {
     this.interner = new ConcurrentHashMap<>();
   }
 
+  /** must be the dictionary that the nodes were serialized with - set by {@link OdbStorage} */
+  public void setPropertyKeyDictionary(PropertyKeyDictionary propertyKeys) {
+    this.propertyKeys = propertyKeys;
+  }
+
   private final String intern(String s){
     String interned = interner.putIfAbsent(s, s);
     return interned == null ? s : interned;
@@ -42,16 +54,10 @@ public class NodeDeserializer extends BookKeeper {
     if (null == bytes)
       return null;
 
-    MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(bytes);
-    final long id = unpacker.unpackLong();
-    final int labelId = unpacker.unpackInt();
-    final Map<String, Object> properties = unpackProperties(unpacker);
-    final int[] edgeOffsets = unpackEdgeOffsets(unpacker);
-    final Object[] adjacentNodesWithProperties = unpackAdjacentNodesWithProperties(unpacker);
-
-    OdbNode node = createNode(id, labelId, properties, edgeOffsets, adjacentNodesWithProperties);
+    final OdbNode node = isCompactFormat(bytes) ? deserializeCompact(bytes) : deserializeLegacy(bytes);
 
     if (statsEnabled) recordStatistics(startTimeNanos);
+    recordSize(bytes.length);
     return node;
   }
 
@@ -59,6 +65,13 @@ public class NodeDeserializer extends BookKeeper {
    * only deserialize the part we're keeping in memory, used during startup when initializing from disk
    */
   public final NodeRef deserializeRef(byte[] bytes) throws IOException {
+    if (isCompactFormat(bytes)) {
+      final CompactInput in = new CompactInput(bytes, 2);
+      final long id = in.readVarLong();
+      final int labelId = in.readVarInt();
+      return createNodeRef(id, labelId);
+    }
+
     try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(bytes)) {
       long id = unpacker.unpackLong();
       int labelId = unpacker.unpackInt();
@@ -67,6 +80,164 @@ public class NodeDeserializer extends BookKeeper {
     }
   }
 
+  private static boolean isCompactFormat(byte[] bytes) throws IOException {
+    if (bytes.length < 2 || bytes[0] != NodeSerializer.FORMAT_MARKER) return false;
+    if (bytes[1] != NodeSerializer.FORMAT_VERSION)
+      throw new IOException("unsupported node format version " + bytes[1]);
+    return true;
+  }
+
+  /** see {@link NodeSerializer} for the format */
+  private final OdbNode deserializeCompact(byte[] bytes) throws IOException {
+    final CompactInput in = new CompactInput(bytes, 2);
+    final long id = in.readVarLong();
+    final int labelId = in.readVarInt();
+    final OdbNode node = getNodeFactory(labelId).createNode(graph, id);
+    final NodeLayoutInformation layoutInformation = node.layoutInformation();
+
+    final Map<String, Object> properties = readProperties(in, layoutInformation);
+
+    final int edgeOffsetCount = in.readVarInt();
+    if (edgeOffsetCount != layoutInformation.numberOfDifferentAdjacentTypes() * 2) {
+      throw new IOException("node " + id + " was serialized with " + edgeOffsetCount / 2 + " edge types, but its layout has "
+          + layoutInformation.numberOfDifferentAdjacentTypes());
+    }
+    final int[] edgeOffsets = new int[edgeOffsetCount];
+    final Object[] adjacentNodesWithProperties = new Object[in.readVarInt()];
+    int start = 0;
+    for (int offsetPos = 0; 2 * offsetPos < edgeOffsetCount; offsetPos++) {
+      final int strideSize = layoutInformation.getEdgePropertyCountByOffsetPos(offsetPos) + 1;
+      final int length = readEdgeBlock(in, adjacentNodesWithProperties, start, strideSize);
+      edgeOffsets[2 * offsetPos] = start;
+      edgeOffsets[2 * offsetPos + 1] = length;
+      start += length;
+    }
+
+    initializeNode(node, properties, edgeOffsets, adjacentNodesWithProperties);
+    return node;
+  }
+
+  private final Map<String, Object> readProperties(CompactInput in, NodeLayoutInformation layoutInformation) throws IOException {
+    final PropertyKeyDictionary.LabelKeys keys = propertyKeys.forLayout(layoutInformation);
+    final int propertyCount = in.readVarInt();
+    final Map<String, Object> res = new THashMap<>(propertyCount);
+    for (int i = 0; i < propertyCount; i++) {
+      final int keyIndex = in.readVarInt();
+      final String key;
+      if (keyIndex == NodeSerializer.UNKNOWN_PROPERTY_KEY) {
+        key = intern(in.readString());
+      } else {
+        key = keys.keyAt(keyIndex - 1);
+        if (key == null) throw new IOException("unknown property key index " + (keyIndex - 1) + " for label id " + layoutInformation.labelId);
+      }
+      res.put(key, readTypedValue(in));
+    }
+    return res;
+  }
+
+  /** @return the block length, i.e. the number of elements in `adjacentNodesWithProperties` */
+  private final int readEdgeBlock(CompactInput in, Object[] adjacentNodesWithProperties, int start, int strideSize) throws IOException {
+    final int edgeCount = in.readVarInt();
+    final int[] holeRuns = readHoleRuns(in);
+
+    int holeRunIdx = 0;
+    long adjacentNodeId = 0;
+    for (int edge = 0; edge < edgeCount; edge++) {
+      if (holeRunIdx < holeRuns.length && edge == holeRuns[holeRunIdx]) {
+        edge += holeRuns[holeRunIdx + 1] - 1;
+        holeRunIdx += 2;
+        continue;
+      }
+      final int i = start + edge * strideSize;
+      adjacentNodeId += in.readSignedVarLong();
+      adjacentNodesWithProperties[i] = graph.vertex(adjacentNodeId);
+      for (int propertyIdx = i + 1; propertyIdx < i + strideSize; propertyIdx++) {
+        adjacentNodesWithProperties[propertyIdx] = readTypedValue(in);
+      }
+    }
+    return edgeCount * strideSize;
+  }
+
+  /** @return `[start, length]` of all hole runs, in units of edges */
+  private final int[] readHoleRuns(CompactInput in) throws IOException {
+    final int runCount = in.readVarInt();
+    if (runCount == 0) return NO_HOLES;
+
+    final int[] holeRuns = new int[runCount * 2];
+    int previousRunEnd = 0;
+    for (int run = 0; run < runCount; run++) {
+      holeRuns[2 * run] = previousRunEnd + in.readVarInt();
+      holeRuns[2 * run + 1] = in.readVarInt();
+      previousRunEnd = holeRuns[2 * run] + holeRuns[2 * run + 1];
+    }
+    return holeRuns;
+  }
+
+  private final Object readTypedValue(CompactInput in) throws IOException {
+    final byte valueTypeId = in.readByte();
+    switch (ValueTypes.lookup(valueTypeId)) {
+      case UNKNOWN:
+        return null;
+      case NODE_REF:
+        return graph.vertex(in.readVarLong());
+      case BOOLEAN:
+        return in.readByte() != 0;
+      case STRING:
+        return intern(in.readString());
+      case BYTE:
+        return in.readByte();
+      case SHORT:
+        return (short) in.readSignedVarLong();
+      case INTEGER:
+        return (int) in.readSignedVarLong();
+      case LONG:
+        return in.readSignedVarLong();
+      case FLOAT:
+        return Float.intBitsToFloat(in.readInt());
+      case DOUBLE:
+        return Double.longBitsToDouble(in.readLong());
+      case LIST:
+        final int size = in.readVarInt();
+        final List deserializedList = new ArrayList(size);
+        for (int i = 0; i < size; i++) {
+          deserializedList.add(readTypedValue(in));
+        }
+        return deserializedList;
+      case INTEGER_LIST:
+        final Integer[] ints = new Integer[in.readVarInt()];
+        for (int i = 0; i < ints.length; i++) ints[i] = (int) in.readSignedVarLong();
+        return Arrays.asList(ints);
+      case LONG_LIST:
+        final Long[] longs = new Long[in.readVarInt()];
+        for (int i = 0; i < longs.length; i++) longs[i] = in.readSignedVarLong();
+        return Arrays.asList(longs);
+      case DOUBLE_LIST:
+        final Double[] doubles = new Double[in.readVarInt()];
+        for (int i = 0; i < doubles.length; i++) doubles[i] = Double.longBitsToDouble(in.readLong());
+        return Arrays.asList(doubles);
+      case STRING_LIST:
+        final String[] strings = new String[in.readVarInt()];
+        for (int i = 0; i < strings.length; i++) strings[i] = intern(in.readString());
+        return Arrays.asList(strings);
+      case CHARACTER:
+        return (char) in.readVarInt();
+      default:
+        throw new NotImplementedException("unknown valueTypeId=`" + valueTypeId);
+    }
+  }
+
+  /** legacy msgpack format, all values are wrapped in `[typeId, value]` arrays */
+  private final OdbNode deserializeLegacy(byte[] bytes) throws IOException {
+    MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(bytes);
+    final long id = unpacker.unpackLong();
+    final int labelId = unpacker.unpackInt();
+    final Map<String, Object> properties = unpackProperties(unpacker);
+    final int[] edgeOffsets = unpackEdgeOffsets(unpacker);
+    final Object[] adjacentNodesWithProperties = unpackAdjacentNodesWithProperties(unpacker);
+
+    return createNode(id, labelId, properties, edgeOffsets, adjacentNodesWithProperties);
+  }
+
   private final Map<String, Object> unpackProperties(MessageUnpacker unpacker) throws IOException {
     int propertyCount = unpacker.unpackMapHeader();
     Map<String, Object> res = new THashMap<>(propertyCount);
@@ -169,12 +340,15 @@ public class NodeDeserializer extends BookKeeper {
 
   protected final OdbNode createNode(long id, int labelId, Map<String, Object> properties, int[] edgeOffsets, Object[] adjacentNodesWithProperties) {
     OdbNode node = getNodeFactory(labelId).createNode(graph, id);
+    initializeNode(node, properties, edgeOffsets, adjacentNodesWithProperties);
+    return node;
+  }
+
+  private final void initializeNode(OdbNode node, Map<String, Object> properties, int[] edgeOffsets, Object[] adjacentNodesWithProperties) {
     ElementHelper.attachProperties(node, VertexProperty.Cardinality.list, toTinkerpopKeyValues(properties));
     node.setEdgeOffsets(edgeOffsets);
     node.setAdjacentNodesWithProperties(adjacentNodesWithProperties);
     node.markAsClean();
-
-    return node;
   }
 
   private final NodeFactory getNodeFactory(int labelId) {
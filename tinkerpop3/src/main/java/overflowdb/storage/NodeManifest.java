@@ -0,0 +1,161 @@
+package overflowdb.storage;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compact summary of all nodes in a storage: the sorted node ids per label id, and the max id.
+ * Written on close, so that reopening a graph doesn't need to read all serialized nodes just to learn their ids and
+ * labels. The nodes themselves are then only read on first access.
+ *
+ * Stored in the {@link StorageBackend} metadata: a header `version, maxId, labelCount, (labelId, nodeCount)*`, and
+ * the ids of each label in chunks of (at most) `CHUNK_SIZE` ids, delta encoded. All numbers are varints, see
+ * {@link CompactOutput}.
+ * It is removed when the graph is opened, i.e. if the graph isn't closed properly, there won't be a (stale) manifest.
+ */
+public class NodeManifest {
+  static final int VERSION = 2;
+  static final int CHUNK_SIZE = 1 << 20;
+  private static final String HEADER_KEY = "manifest";
+
+  public final long maxId;
+  /* sorted node ids by label id */
+  private final Map<Integer, long[]> idsByLabelId;
+
+  /** @param idsByLabelId node ids by label id, will be sorted in place */
+  public static NodeManifest create(long maxId, Map<Integer, long[]> idsByLabelId) {
+    idsByLabelId.values().forEach(Arrays::parallelSort);
+    return new NodeManifest(maxId, idsByLabelId);
+  }
+
+  private NodeManifest(long maxId, Map<Integer, long[]> idsByLabelId) {
+    this.maxId = maxId;
+    this.idsByLabelId = idsByLabelId;
+  }
+
+  public Map<Integer, long[]> getIdsByLabelId() {
+    return Collections.unmodifiableMap(idsByLabelId);
+  }
+
+  public int nodeCount() {
+    int count = 0;
+    for (long[] ids : idsByLabelId.values()) count += ids.length;
+    return count;
+  }
+
+  public void save(StorageBackend backend) {
+    remove(backend);
+    final CompactOutput header = new CompactOutput(16 + idsByLabelId.size() * 8);
+    header.writeVarInt(VERSION);
+    header.writeSignedVarLong(maxId);
+    header.writeVarInt(idsByLabelId.size());
+    for (Map.Entry<Integer, long[]> labelIdAndIds : idsByLabelId.entrySet()) {
+      final int labelId = labelIdAndIds.getKey();
+      final long[] ids = labelIdAndIds.getValue();
+      header.writeVarInt(labelId);
+      header.writeVarInt(ids.length);
+      for (int chunk = 0; chunk * CHUNK_SIZE < ids.length; chunk++) {
+        final int from = chunk * CHUNK_SIZE;
+        backend.putMetadata(chunkKey(labelId, chunk), encodeChunk(ids, from, Math.min(ids.length, from + CHUNK_SIZE)));
+      }
+    }
+    backend.putMetadata(HEADER_KEY, header.toByteArray());
+  }
+
+  /** @return the manifest, if the storage contains one (in a supported version) */
+  public static Optional<NodeManifest> load(StorageBackend backend) {
+    final Header header = Header.read(backend);
+    if (header == null) return Optional.empty();
+
+    final Map<Integer, long[]> idsByLabelId = new HashMap<>(header.labelIds.length);
+    try {
+      for (int i = 0; i < header.labelIds.length; i++) {
+        final long[] ids = new long[header.nodeCounts[i]];
+        for (int chunk = 0; chunk * CHUNK_SIZE < ids.length; chunk++) {
+          final byte[] chunkBytes = backend.getMetadata(chunkKey(header.labelIds[i], chunk));
+          if (chunkBytes == null) return Optional.empty();
+          final int from = chunk * CHUNK_SIZE;
+          decodeChunk(chunkBytes, ids, from, Math.min(ids.length, from + CHUNK_SIZE));
+        }
+        idsByLabelId.put(header.labelIds[i], ids);
+      }
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+    return Optional.of(new NodeManifest(header.maxId, idsByLabelId));
+  }
+
+  /** removes the manifest from the given storage, if any */
+  public static void remove(StorageBackend backend) {
+    final Header header = Header.read(backend);
+    backend.removeMetadata(HEADER_KEY);
+    if (header == null) return;
+
+    for (int i = 0; i < header.labelIds.length; i++) {
+      for (int chunk = 0; (long) chunk * CHUNK_SIZE < header.nodeCounts[i]; chunk++) {
+        backend.removeMetadata(chunkKey(header.labelIds[i], chunk));
+      }
+    }
+  }
+
+  /* the ids are sorted, i.e. the deltas are small */
+  private static byte[] encodeChunk(long[] ids, int from, int to) {
+    final CompactOutput out = new CompactOutput((to - from) * 2);
+    long previous = 0;
+    for (int i = from; i < to; i++) {
+      out.writeSignedVarLong(ids[i] - previous);
+      previous = ids[i];
+    }
+    return out.toByteArray();
+  }
+
+  private static void decodeChunk(byte[] chunk, long[] ids, int from, int to) throws IOException {
+    final CompactInput in = new CompactInput(chunk, 0);
+    long previous = 0;
+    for (int i = from; i < to; i++) {
+      previous += in.readSignedVarLong();
+      ids[i] = previous;
+    }
+  }
+
+  private static final class Header {
+    final long maxId;
+    final int[] labelIds;
+    final int[] nodeCounts;
+
+    private Header(long maxId, int[] labelIds, int[] nodeCounts) {
+      this.maxId = maxId;
+      this.labelIds = labelIds;
+      this.nodeCounts = nodeCounts;
+    }
+
+    /** @return null if there is no header, or it has an unsupported version */
+    static Header read(StorageBackend backend) {
+      final byte[] bytes = backend.getMetadata(HEADER_KEY);
+      if (bytes == null) return null;
+      try {
+        final CompactInput in = new CompactInput(bytes, 0);
+        if (in.readVarInt() != VERSION) return null;
+        final long maxId = in.readSignedVarLong();
+        final int labelCount = in.readVarInt();
+        final int[] labelIds = new int[labelCount];
+        final int[] nodeCounts = new int[labelCount];
+        for (int i = 0; i < labelCount; i++) {
+          labelIds[i] = in.readVarInt();
+          nodeCounts[i] = in.readVarInt();
+        }
+        return new Header(maxId, labelIds, nodeCounts);
+      } catch (IOException e) {
+        return null;
+      }
+    }
+  }
+
+  private static String chunkKey(int labelId, int chunk) {
+    return HEADER_KEY + "." + labelId + "." + chunk;
+  }
+}
@@ -1,112 +1,243 @@
 package overflowdb.storage;
 
+import overflowdb.NodeLayoutInformation;
 import overflowdb.NodeRef;
 import overflowdb.OdbNode;
 import overflowdb.util.PackedIntArray;
 import org.apache.commons.lang3.NotImplementedException;
-import org.msgpack.core.MessageBufferPacker;
-import org.msgpack.core.MessagePack;
 
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Compact binary node format, version {@link #FORMAT_VERSION}:
+ * <pre>
+ * FORMAT_MARKER, FORMAT_VERSION, id, labelId
+ * propertyCount, (keyIndex + 1 | 0 followed by key as string, value)*
+ * edgeOffsetCount, adjacentNodesLength, block*
+ * </pre>
+ * Integers are varints (see {@link CompactOutput}), values are prefixed by their {@link ValueTypes} id.
+ * Homogeneous lists of integers, longs, doubles or strings are written with a single type tag for all elements.
+ * Property keys are referenced by their index in the {@link PropertyKeyDictionary}, which is stored alongside the
+ * nodes, i.e. nodes remain readable after property keys are added to or removed from the schema.
+ * Each edge block (one per edge label and direction) is encoded as
+ * `edgeCount, holeRunCount, (holeStart, holeLength)*, (adjacentNodeIdDelta, edgeProperty*)*`:
+ * holes (i.e. removed edges) are run-length encoded, and the adjacent node ids are delta encoded within the block.
+ * Overallocated space at the end of the blocks is dropped, like in {@link OdbNode#trim()}.
+ *
+ * The legacy format (msgpack, all values wrapped in `[typeId, value]` arrays) can still be read by
+ * {@link NodeDeserializer}, but is no longer written.
+ */
 public class NodeSerializer extends BookKeeper {
+  /** first byte of the compact format - never used by msgpack, i.e. it can't be the start of a legacy node */
+  public static final byte FORMAT_MARKER = (byte) 0xc1;
+  public static final byte FORMAT_VERSION = 1;
+
+  /** property key isn't part of the node layout (and therefor the dictionary), and is written as a string */
+  static final int UNKNOWN_PROPERTY_KEY = 0;
+
+  private static final int INITIAL_BUFFER_SIZE = 128;
+
+  private final PropertyKeyDictionary propertyKeys;
+
+  /** n.b. the serialized nodes can only be read with the same schema, see {@link PropertyKeyDictionary#PropertyKeyDictionary()} */
   public NodeSerializer(boolean statsEnabled) {
+    this(statsEnabled, new PropertyKeyDictionary());
+  }
+
+  public NodeSerializer(boolean statsEnabled, PropertyKeyDictionary propertyKeys) {
     super(statsEnabled);
+    this.propertyKeys = propertyKeys;
   }
 
   public byte[] serialize(OdbNode node) throws IOException {
     long startTimeNanos = getStartTimeNanos();
-    try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
-      /* marking as clean *before* we start serializing - if node is modified any time afterwards it'll be marked as dirty */
-      node.markAsClean();
+    /* marking as clean *before* we start serializing - if node is modified any time afterwards it'll be marked as dirty */
+    node.markAsClean();
+
+    final NodeLayoutInformation layoutInformation = node.layoutInformation();
+    final CompactOutput out = new CompactOutput(INITIAL_BUFFER_SIZE);
+    out.writeByte(FORMAT_MARKER);
+    out.writeByte(FORMAT_VERSION);
+    out.writeVarLong(node.ref.id);
+    out.writeVarInt(layoutInformation.labelId);
+
+    writeProperties(out, layoutInformation, node.valueMap());
+    writeAdjacentNodesWithProperties(out, layoutInformation, node.getEdgeOffsetsPackedArray(), node.getAdjacentNodesWithProperties());
+
+    if (statsEnabled) recordStatistics(startTimeNanos);
+    final byte[] bytes = out.toByteArray();
+    recordSize(bytes.length);
+    return bytes;
+  }
+
+  private void writeProperties(CompactOutput out, NodeLayoutInformation layoutInformation, Map<String, Object> properties) throws IOException {
+    final PropertyKeyDictionary.LabelKeys keys = propertyKeys.forLayout(layoutInformation);
+    out.writeVarInt(properties.size());
+    for (Map.Entry<String, Object> property : properties.entrySet()) {
+      final int keyIndex = keys.indexOf(property.getKey());
+      if (keyIndex >= 0) {
+        out.writeVarInt(keyIndex + 1);
+      } else {
+        out.writeVarInt(UNKNOWN_PROPERTY_KEY);
+        out.writeString(property.getKey());
+      }
+      writeTypedValue(out, property.getValue());
+    }
+  }
+
+  private void writeAdjacentNodesWithProperties(CompactOutput out,
+                                                NodeLayoutInformation layoutInformation,
+                                                PackedIntArray edgeOffsets,
+                                                Object[] adjacentNodesWithProperties) throws IOException {
+    final int blockCount = edgeOffsets.length() / 2;
+    int adjacentNodesLength = 0;
+    for (int offsetPos = 0; offsetPos < blockCount; offsetPos++) {
+      adjacentNodesLength += edgeOffsets.get(2 * offsetPos + 1);
+    }
+    out.writeVarInt(edgeOffsets.length());
+    out.writeVarInt(adjacentNodesLength);
 
-      packer.packLong(node.ref.id);
-      packer.packInt(node.layoutInformation().labelId);
+    for (int offsetPos = 0; offsetPos < blockCount; offsetPos++) {
+      final int start = edgeOffsets.get(2 * offsetPos);
+      final int length = edgeOffsets.get(2 * offsetPos + 1);
+      final int strideSize = layoutInformation.getEdgePropertyCountByOffsetPos(offsetPos) + 1;
+      if (length % strideSize != 0) {
+        throw new IllegalStateException("edge block length " + length + " is not a multiple of the stride size " + strideSize);
+      }
+      final int edgeCount = length / strideSize;
+      out.writeVarInt(edgeCount);
+      writeHoles(out, adjacentNodesWithProperties, start, edgeCount, strideSize);
+
+      long previousId = 0;
+      for (int i = start; i < start + length; i += strideSize) {
+        final NodeRef adjacentNode = (NodeRef) adjacentNodesWithProperties[i];
+        if (adjacentNode != null) {
+          out.writeSignedVarLong(adjacentNode.id - previousId);
+          previousId = adjacentNode.id;
+          for (int propertyIdx = i + 1; propertyIdx < i + strideSize; propertyIdx++) {
+            writeTypedValue(out, adjacentNodesWithProperties[propertyIdx]);
+          }
+        }
+      }
+    }
+  }
 
-      packProperties(packer, node.valueMap());
-      packEdgeOffsets(packer, node.getEdgeOffsetsPackedArray());
-      packAdjacentNodesWithProperties(packer, node.getAdjacentNodesWithProperties());
+  /** format: `holeRunCount, (distance to end of previous run, run length)*`, in units of edges */
+  private void writeHoles(CompactOutput out, Object[] adjacentNodesWithProperties, int start, int edgeCount, int strideSize) {
+    int runCount = 0;
+    boolean inRun = false;
+    for (int edge = 0; edge < edgeCount; edge++) {
+      final boolean isHole = adjacentNodesWithProperties[start + edge * strideSize] == null;
+      if (isHole && !inRun) runCount++;
+      inRun = isHole;
+    }
+    out.writeVarInt(runCount);
+    if (runCount == 0) return;
 
-      if (statsEnabled) recordStatistics(startTimeNanos);
-      return packer.toByteArray();
+    int previousRunEnd = 0;
+    int edge = 0;
+    while (edge < edgeCount) {
+      if (adjacentNodesWithProperties[start + edge * strideSize] == null) {
+        final int runStart = edge;
+        while (edge < edgeCount && adjacentNodesWithProperties[start + edge * strideSize] == null) edge++;
+        out.writeVarInt(runStart - previousRunEnd);
+        out.writeVarInt(edge - runStart);
+        previousRunEnd = edge;
+      } else {
+        edge++;
+      }
     }
   }
 
   /**
-   * when deserializing, msgpack can't differentiate between e.g. int and long, so we need to encode the type as well - doing that with an array
-   * i.e. format is: Map[PropertyName, Array(TypeId, PropertyValue)]
+   * format: `ValueType.id, size, element*` - the elements of homogeneous lists are written without their type tag
    */
-  private void packProperties(MessageBufferPacker packer, Map<String, Object> properties) throws IOException {
-    packer.packMapHeader(properties.size());
-    for (Map.Entry<String, Object> property : properties.entrySet()) {
-      packer.packString(property.getKey());
-      packTypedValue(packer, property.getValue());
+  private void writeList(final CompactOutput out, final List<?> list) throws IOException {
+    final ValueTypes listType = homogeneousElementType(list);
+    if (listType == null) {
+      out.writeByte(ValueTypes.LIST.id);
+      out.writeVarInt(list.size());
+      for (Object element : list) writeTypedValue(out, element);
+      return;
     }
-  }
 
-  private void packEdgeOffsets(MessageBufferPacker packer, PackedIntArray edgeOffsets) throws IOException {
-    packer.packArrayHeader(edgeOffsets.length());
-    for (int i = 0; i < edgeOffsets.length(); i++) {
-      packer.packInt(edgeOffsets.get(i));
+    out.writeByte(listType.id);
+    out.writeVarInt(list.size());
+    switch (listType) {
+      case INTEGER_LIST:
+        for (Object element : list) out.writeSignedVarLong((Integer) element);
+        break;
+      case LONG_LIST:
+        for (Object element : list) out.writeSignedVarLong((Long) element);
+        break;
+      case DOUBLE_LIST:
+        for (Object element : list) out.writeLong(Double.doubleToLongBits((Double) element));
+        break;
+      case STRING_LIST:
+        for (Object element : list) out.writeString((String) element);
+        break;
+      default:
+        throw new AssertionError("unexpected list type " + listType);
     }
   }
 
-  private void packAdjacentNodesWithProperties(MessageBufferPacker packer, Object[] adjacentNodesWithProperties) throws IOException {
-    packer.packArrayHeader(adjacentNodesWithProperties.length);
-    for (int i = 0; i < adjacentNodesWithProperties.length; i++) {
-      packTypedValue(packer, adjacentNodesWithProperties[i]);
+  /** @return the specialized list type if all elements are of the same supported type (and not null), null otherwise */
+  private ValueTypes homogeneousElementType(final List<?> list) {
+    if (list.isEmpty() || list.get(0) == null) return null;
+    final Class<?> elementClass = list.get(0).getClass();
+    final ValueTypes listType;
+    if (elementClass == Integer.class) listType = ValueTypes.INTEGER_LIST;
+    else if (elementClass == Long.class) listType = ValueTypes.LONG_LIST;
+    else if (elementClass == Double.class) listType = ValueTypes.DOUBLE_LIST;
+    else if (elementClass == String.class) listType = ValueTypes.STRING_LIST;
+    else return null;
+
+    for (Object element : list) {
+      if (element == null || element.getClass() != elementClass) return null;
     }
+    return listType;
   }
 
   /**
-   * format: `[ValueType.id, value]`
+   * format: `ValueType.id, value`
    */
-  private void packTypedValue(final MessageBufferPacker packer, final Object value) throws IOException {
-    packer.packArrayHeader(2);
+  private void writeTypedValue(final CompactOutput out, final Object value) throws IOException {
     if (value == null) {
-      packer.packByte(ValueTypes.UNKNOWN.id);
-      packer.packNil();
+      out.writeByte(ValueTypes.UNKNOWN.id);
     } else if (value instanceof NodeRef) {
-      packer.packByte(ValueTypes.NODE_REF.id);
-      packer.packLong(((NodeRef) value).id);
+      out.writeByte(ValueTypes.NODE_REF.id);
+      out.writeVarLong(((NodeRef) value).id);
     } else if (value instanceof Boolean) {
-      packer.packByte(ValueTypes.BOOLEAN.id);
-      packer.packBoolean((Boolean) value);
+      out.writeByte(ValueTypes.BOOLEAN.id);
+      out.writeByte((Boolean) value ? 1 : 0);
     } else if (value instanceof String) {
-      packer.packByte(ValueTypes.STRING.id);
-      packer.packString((String) value);
+      out.writeByte(ValueTypes.STRING.id);
+      out.writeString((String) value);
     } else if (value instanceof Byte) {
-      packer.packByte(ValueTypes.BYTE.id);
-      packer.packByte((byte) value);
+      out.writeByte(ValueTypes.BYTE.id);
+      out.writeByte((byte) value);
     } else if (value instanceof Short) {
-      packer.packByte(ValueTypes.SHORT.id);
-      packer.packShort((short) value);
+      out.writeByte(ValueTypes.SHORT.id);
+      out.writeSignedVarLong((short) value);
     } else if (value instanceof Integer) {
-      packer.packByte(ValueTypes.INTEGER.id);
-      packer.packInt((int) value);
+      out.writeByte(ValueTypes.INTEGER.id);
+      out.writeSignedVarLong((int) value);
     } else if (value instanceof Long) {
-      packer.packByte(ValueTypes.LONG.id);
-      packer.packLong((long) value);
+      out.writeByte(ValueTypes.LONG.id);
+      out.writeSignedVarLong((long) value);
     } else if (value instanceof Float) {
-      packer.packByte(ValueTypes.FLOAT.id);
-      packer.packFloat((float) value);
+      out.writeByte(ValueTypes.FLOAT.id);
+      out.writeInt(Float.floatToIntBits((float) value));
     } else if (value instanceof Double) {
-      packer.packByte(ValueTypes.DOUBLE.id);
-      packer.packFloat((float) value); //msgpack doesn't support double, but we still want to deserialize it as a double later
+      out.writeByte(ValueTypes.DOUBLE.id);
+      out.writeLong(Double.doubleToLongBits((double) value));
     } else if (value instanceof List) {
-      packer.packByte(ValueTypes.LIST.id);
-      List listValue = (List) value;
-      packer.packArrayHeader(listValue.size());
-      final Iterator listIter = listValue.iterator();
-      while (listIter.hasNext()) {
-        packTypedValue(packer, listIter.next());
-      }
+      writeList(out, (List) value);
     } else if (value instanceof Character) {
-      packer.packByte(ValueTypes.CHARACTER.id);
-      packer.packInt((Character) value);
+      out.writeByte(ValueTypes.CHARACTER.id);
+      out.writeVarInt((Character) value);
     } else {
       throw new NotImplementedException("id type `" + value.getClass() + "` not yet supported");
     }
@@ -2,33 +2,44 @@ package overflowdb.storage;
 
 import overflowdb.OdbNode;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
-import org.h2.mvstore.MVMap;
-import org.h2.mvstore.MVStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+/**
+ * (de)serializes nodes and stores them in a {@link StorageBackend}
+ */
 public class OdbStorage implements AutoCloseable {
-  private static final String INDEX_PREFIX = "index_";
   private final Logger logger = LoggerFactory.getLogger(getClass());
   protected final NodeSerializer nodeSerializer;
   protected final Optional<NodeDeserializer> nodeDeserializer;
-
-  private final File mvstoreFile;
-  private final boolean doPersist;
-  private MVStore mvstore; // initialized in `getNodesMVMap`
-  private MVMap<Long, byte[]> nodesMVMap;
+  private final StorageBackend backend;
+  private final Compression compression;
   private boolean closed;
 
   public static OdbStorage createWithTempFile(
       final NodeDeserializer nodeDeserializer, final boolean enableSerializationStats) {
-    return new OdbStorage(Optional.empty(), Optional.ofNullable(nodeDeserializer), enableSerializationStats);
+    return createWithTempFile(nodeDeserializer, enableSerializationStats, StorageBackend.MVSTORE);
+  }
+
+  public static OdbStorage createWithTempFile(
+      final NodeDeserializer nodeDeserializer, final boolean enableSerializationStats, final StorageBackend.Factory backendFactory) {
+    return createWithTempFile(nodeDeserializer, enableSerializationStats, backendFactory, Compression.NONE);
+  }
+
+  public static OdbStorage createWithTempFile(
+      final NodeDeserializer nodeDeserializer, final boolean enableSerializationStats, final StorageBackend.Factory backendFactory,
+      final Compression compression) {
+    return new OdbStorage(backendFactory.create(Optional.empty()), Optional.ofNullable(nodeDeserializer), enableSerializationStats, compression);
   }
 
   /**
@@ -37,7 +48,22 @@ public class OdbStorage implements AutoCloseable {
    */
   public static OdbStorage createWithSpecificLocation(
       final NodeDeserializer nodeDeserializer, final File mvstoreFile, final boolean enableSerializationStats) {
-    return new OdbStorage(Optional.ofNullable(mvstoreFile), Optional.ofNullable(nodeDeserializer), enableSerializationStats);
+    return createWithSpecificLocation(nodeDeserializer, mvstoreFile, enableSerializationStats, StorageBackend.MVSTORE);
+  }
+
+  /**
+   * create with specific storage location - which may or may not yet exist.
+   * it won't be deleted at the end (unlike temp file constructors above)
+   */
+  public static OdbStorage createWithSpecificLocation(
+      final NodeDeserializer nodeDeserializer, final File location, final boolean enableSerializationStats, final StorageBackend.Factory backendFactory) {
+    return createWithSpecificLocation(nodeDeserializer, location, enableSerializationStats, backendFactory, Compression.NONE);
+  }
+
+  public static OdbStorage createWithSpecificLocation(
+      final NodeDeserializer nodeDeserializer, final File location, final boolean enableSerializationStats, final StorageBackend.Factory backendFactory,
+      final Compression compression) {
+    return new OdbStorage(backendFactory.create(Optional.ofNullable(location)), Optional.ofNullable(nodeDeserializer), enableSerializationStats, compression);
   }
 
   /**
@@ -45,29 +71,20 @@ public class OdbStorage implements AutoCloseable {
    * mvstoreFile won't be deleted at the end (unlike temp file constructors above)
    */
   public static OdbStorage createWithSpecificLocation(final File mvstoreFile, final boolean enableSerializationStats) {
-    return new OdbStorage(Optional.ofNullable(mvstoreFile), Optional.empty(), enableSerializationStats);
+    return new OdbStorage(StorageBackend.MVSTORE.create(Optional.ofNullable(mvstoreFile)), Optional.empty(), enableSerializationStats, Compression.NONE);
   }
 
   private OdbStorage(
-      final Optional<File> mvstoreFileMaybe,
+      final StorageBackend backend,
       final Optional<NodeDeserializer> nodeDeserializer,
-      final boolean enableSerializationStats) {
-    this.nodeSerializer = new NodeSerializer(enableSerializationStats);
+      final boolean enableSerializationStats,
+      final Compression compression) {
+    this.backend = backend;
+    this.compression = compression;
+    final PropertyKeyDictionary propertyKeys = new PropertyKeyDictionary(backend);
+    this.nodeSerializer = new NodeSerializer(enableSerializationStats, propertyKeys);
+    nodeDeserializer.ifPresent(deserializer -> deserializer.setPropertyKeyDictionary(propertyKeys));
     this.nodeDeserializer = nodeDeserializer;
-
-    if (mvstoreFileMaybe.isPresent()) {
-      this.doPersist = true;
-      mvstoreFile = mvstoreFileMaybe.get();
-    } else {
-      try {
-        this.doPersist = false;
-        mvstoreFile = File.createTempFile("mvstore", ".bin");
-        mvstoreFile.deleteOnExit(); // `.close` will also delete it, this is just in case users forget to call it
-      } catch (IOException e) {
-        throw new RuntimeException("cannot create tmp file for mvstore", e);
-      }
-    }
-    logger.trace("storage file: " + mvstoreFile);
   }
 
   public void persist(final OdbNode node) {
@@ -83,101 +100,114 @@ public class OdbStorage implements AutoCloseable {
     }
   }
 
+  /** @param node serialized node, will be compressed according to the configured {@link Compression} */
   public void persist(long id, byte[] node) {
     if (!closed) {
-      getNodesMVMap().put(id, node);
+      backend.put(id, compression.compress(node));
     }
   }
 
   public <A extends Vertex> A readNode(final long id) throws IOException {
-    return (A) nodeDeserializer.get().deserialize(getNodesMVMap().get(id));
+    return (A) nodeDeserializer.get().deserialize(Compression.decompress(backend.get(id)));
+  }
+
+  /**
+   * reads the given nodes in one pass (see {@link StorageBackend#getAll(long[])}) and deserializes them in parallel
+   * @return the nodes in the same order as `ids`, null for ids without a node
+   */
+  public OdbNode[] readNodes(final long[] ids) throws IOException {
+    final byte[][] storedNodes = backend.getAll(ids);
+    final NodeDeserializer deserializer = nodeDeserializer.get();
+    final OdbNode[] nodes = new OdbNode[ids.length];
+    try {
+      IntStream.range(0, ids.length).parallel().forEach(i -> {
+        try {
+          nodes[i] = deserializer.deserialize(Compression.decompress(storedNodes[i]));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return nodes;
   }
 
   /** flush any remaining changes in underlying storage to disk */
   public void flush() {
-    if (mvstore != null) {
-      logger.debug("flushing to disk");
-      mvstore.commit();
-    }
+    backend.flush();
   }
 
   @Override
   public void close() {
     closed = true;
     logger.info("closing " + getClass().getSimpleName());
-    flush();
-    if (mvstore != null) mvstore.close();
-    if (!doPersist) mvstoreFile.delete();
+    backend.close();
   }
 
+  /** @return the main file of the storage backend, or null if it doesn't use any */
   public File getStorageFile() {
-    return mvstoreFile;
+    return backend.getStorageFile().orElse(null);
+  }
+
+  public StorageBackend getBackend() {
+    return backend;
   }
 
   public void removeNode(final Long id) {
-    getNodesMVMap().remove(id);
+    backend.remove(id);
   }
 
+  /** n.b. the nodes as stored in the backend, i.e. possibly compressed - see {@link Compression#decompress(byte[])} */
   public Set<Map.Entry<Long, byte[]>> allNodes() {
-    return getNodesMVMap().entrySet();
+    return backend.allNodes();
   }
 
-  public NodeSerializer getNodeSerializer() {
-    return nodeSerializer;
+  /**
+   * @see StorageBackend#allNodesPartitioned(int)
+   * n.b. the nodes as stored in the backend, i.e. possibly compressed - see {@link Compression#decompress(byte[])}
+   */
+  public List<Iterable<Map.Entry<Long, byte[]>>> allNodesPartitioned(int partitionCount) {
+    return backend.allNodesPartitioned(partitionCount);
   }
 
-  public MVMap<Long, byte[]> getNodesMVMap() {
-    if (mvstore == null) {
-      mvstore = initializeMVStore();
-    }
-    if (nodesMVMap == null)
-      nodesMVMap = mvstore.openMap("nodes");
-    return nodesMVMap;
+  public Compression getCompression() {
+    return compression;
   }
 
-  private MVStore initializeMVStore() {
-    final MVStore store = new MVStore.Builder()
-        .fileName(mvstoreFile.getAbsolutePath())
-        .autoCommitBufferSize(1024 * 8)
-        .open();
-    return store;
+  public NodeSerializer getNodeSerializer() {
+    return nodeSerializer;
   }
 
   public Optional<NodeDeserializer> getNodeDeserializer() {
     return nodeDeserializer;
   }
 
-  private Map<String, String> getIndexNameMap(MVStore store) {
-    return store
-        .getMapNames()
-        .stream()
-        .filter(s -> s.startsWith(INDEX_PREFIX))
-        .collect(Collectors.toConcurrentMap(s -> removeIndexPrefix(s), s -> s));
+  /**
+   * @return average size of a serialized node in bytes, based on the nodes serialized so far, or (if none have been
+   * serialized yet) the nodes deserialized so far. 0 if there is no data yet.
+   */
+  public long getAverageSerializedNodeSize() {
+    final long averageSerializedSize = nodeSerializer.getAverageSize();
+    if (averageSerializedSize > 0) return averageSerializedSize;
+    else return nodeDeserializer.map(BookKeeper::getAverageSize).orElse(0L);
   }
 
   public Set<String> getIndexNames() {
-    return getIndexNameMap(mvstore).keySet();
-  }
-
-  private String removeIndexPrefix(String s) {
-    assert s.startsWith(INDEX_PREFIX);
-    return s.substring(INDEX_PREFIX.length());
-  }
-
-  public MVMap<Object, long[]> openIndex(String indexName) {
-    final String mapName = getIndexMapName(indexName);
-    return mvstore.openMap(mapName);
+    return backend.getIndexNames();
   }
 
-  private String getIndexMapName(String indexName) {
-    return INDEX_PREFIX + indexName;
+  /** @return property value -> node ids */
+  public Map<Object, long[]> loadIndex(String indexName) {
+    return backend.loadIndex(indexName);
   }
 
-  public void clearIndices() {
-    getIndexNames().forEach(this::clearIndex);
+  /** replaces the stored index with the given name, if any */
+  public void saveIndex(String indexName, Stream<Map.Entry<Object, long[]>> entries) {
+    backend.saveIndex(indexName, entries);
   }
 
-  public void clearIndex(String indexName) {
-    openIndex(indexName).clear();
+  public void removeIndex(String indexName) {
+    backend.removeIndex(indexName);
   }
 }
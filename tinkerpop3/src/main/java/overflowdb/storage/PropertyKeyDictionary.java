@@ -0,0 +1,98 @@
+package overflowdb.storage;
+
+import overflowdb.NodeLayoutInformation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The property keys of each node label, in the order in which serialized nodes refer to them (see {@link NodeSerializer}).
+ * Append-only: keys that are added to the schema are appended, keys that are removed from it remain. I.e. a node that
+ * was serialized with an older schema still refers to its keys by the same index, and is read with the correct keys.
+ *
+ * If created for a {@link StorageBackend}, the keys are stored in its metadata as `keyCount, key*` per label id, using
+ * the varints and UTF-8 strings of {@link CompactOutput}. New keys are stored *before* any node refers to them.
+ */
+public class PropertyKeyDictionary {
+  private static final String METADATA_KEY_PREFIX = "propertyKeys.";
+
+  private final Optional<StorageBackend> backend;
+  private final Map<Integer, LabelKeys> keysByLabelId = new ConcurrentHashMap<>();
+
+  /**
+   * not persisted, i.e. the keys of each label are initialized from its current layout.
+   * Serialized nodes can only be read by a dictionary that is initialized from the same layouts.
+   */
+  public PropertyKeyDictionary() {
+    this.backend = Optional.empty();
+  }
+
+  /** reads and writes the keys from/to the metadata of the given backend */
+  public PropertyKeyDictionary(StorageBackend backend) {
+    this.backend = Optional.of(backend);
+  }
+
+  /** @return the keys for the label of the given layout - all keys of the layout are included */
+  LabelKeys forLayout(NodeLayoutInformation layout) {
+    final LabelKeys keys = keysByLabelId.get(layout.labelId);
+    if (keys != null) return keys;
+    return keysByLabelId.computeIfAbsent(layout.labelId, labelId -> initialize(layout));
+  }
+
+  private LabelKeys initialize(NodeLayoutInformation layout) {
+    final String metadataKey = METADATA_KEY_PREFIX + layout.labelId;
+    final List<String> keys = backend.map(b -> decode(b.getMetadata(metadataKey))).orElseGet(ArrayList::new);
+    final int storedKeyCount = keys.size();
+    layout.propertyKeys().stream().sorted().filter(key -> !keys.contains(key)).forEach(keys::add);
+    if (keys.size() > storedKeyCount) {
+      backend.ifPresent(b -> b.putMetadata(metadataKey, encode(keys)));
+    }
+    return new LabelKeys(keys.toArray(new String[0]));
+  }
+
+  private static List<String> decode(byte[] bytes) {
+    final List<String> keys = new ArrayList<>();
+    if (bytes == null) return keys;
+    final CompactInput in = new CompactInput(bytes, 0);
+    try {
+      final int keyCount = in.readVarInt();
+      for (int i = 0; i < keyCount; i++) keys.add(in.readString());
+    } catch (IOException e) {
+      throw new IllegalStateException("invalid property keys in storage metadata", e);
+    }
+    return keys;
+  }
+
+  private static byte[] encode(List<String> keys) {
+    final CompactOutput out = new CompactOutput(16 * keys.size() + 1);
+    out.writeVarInt(keys.size());
+    for (String key : keys) out.writeString(key);
+    return out.toByteArray();
+  }
+
+  static final class LabelKeys {
+    private final String[] keys;
+    private final Map<String, Integer> indexByKey;
+
+    private LabelKeys(String[] keys) {
+      this.keys = keys;
+      this.indexByKey = new HashMap<>(keys.length * 2);
+      for (int i = 0; i < keys.length; i++) indexByKey.put(keys[i], i);
+    }
+
+    /** @return the index of the given key, or -1 if it's unknown */
+    int indexOf(String key) {
+      return indexByKey.getOrDefault(key, -1);
+    }
+
+    /** @return the key at the given index, or null if there is none */
+    String keyAt(int index) {
+      return index >= 0 && index < keys.length ? keys[index] : null;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package overflowdb.storage;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Stores the serialized nodes and the indexes for {@link OdbStorage}.
+ * Configure via {@link overflowdb.OdbConfig#withStorageBackend(Factory)}, defaults to {@link #MVSTORE}.
+ *
+ * n.b. all node operations may be called concurrently
+ */
+public interface StorageBackend extends AutoCloseable {
+
+  /** H2 MVStore, in a single file */
+  Factory MVSTORE = MVStoreBackend::new;
+
+  /** append-only memory mapped segment files for the nodes, see {@link MMapNodeStore} */
+  Factory MMAP = MMapBackend::new;
+
+  /** keeps everything on the heap (in serialized form), can't persist - mostly useful for tests */
+  Factory IN_MEMORY = InMemoryBackend::new;
+
+  /** @return the serialized node, or null if there is none for the given id */
+  byte[] get(long id);
+
+  /**
+   * reads multiple nodes in one pass, in the order that suits the storage best. The default implementation reads
+   * them in id order, which is the key order of most stores.
+   * @return the serialized nodes in the same order as `ids`, null for ids without a node
+   */
+  default byte[][] getAll(long[] ids) {
+    final byte[][] result = new byte[ids.length][];
+    for (int idx : sortedIndices(ids)) {
+      result[idx] = get(ids[idx]);
+    }
+    return result;
+  }
+
+  /** @return the indices of `keys`, sorted by their key */
+  static Integer[] sortedIndices(long[] keys) {
+    final Integer[] indices = new Integer[keys.length];
+    for (int i = 0; i < indices.length; i++) indices[i] = i;
+    Arrays.sort(indices, (a, b) -> Long.compare(keys[a], keys[b]));
+    return indices;
+  }
+
+  void put(long id, byte[] node);
+
+  void remove(long id);
+
+  /** all serialized nodes, i.e. a full scan */
+  Set<Map.Entry<Long, byte[]>> allNodes();
+
+  /**
+   * all serialized nodes, split into (roughly) equally sized partitions which can be scanned concurrently, e.g. to
+   * restore a graph using multiple threads. The default implementation doesn't split at all.
+   */
+  default List<Iterable<Map.Entry<Long, byte[]>>> allNodesPartitioned(int partitionCount) {
+    return Collections.singletonList(allNodes());
+  }
+
+  Set<String> getIndexNames();
+
+  /** @return property value -> node ids */
+  Map<Object, long[]> loadIndex(String indexName);
+
+  /** replaces the index with the given name, if any. `entries` may be a parallel stream */
+  void saveIndex(String indexName, Stream<Map.Entry<Object, long[]>> entries);
+
+  void removeIndex(String indexName);
+
+  /**
+   * small amounts of additional data, e.g. the {@link NodeManifest}, in a format that's up to the caller.
+   * null if there is no value for the given key
+   */
+  byte[] getMetadata(String key);
+
+  void putMetadata(String key, byte[] value);
+
+  void removeMetadata(String key);
+
+  /** flush any remaining changes to disk */
+  void flush();
+
+  @Override
+  void close();
+
+  /** the main file of this backend, if any */
+  Optional<File> getStorageFile();
+
+  interface Factory {
+    /**
+     * @param location if present, the storage should be persisted there (and restored from there, if it exists).
+     *                 if absent, all files should be deleted on close.
+     */
+    StorageBackend create(Optional<File> location);
+  }
+}
@@ -3,7 +3,8 @@ package overflowdb.storage;
 /* when serializing values we need to encode the id type in a separate entry, to ensure we can deserialize it
  * back to the very same type. I would have hoped that MsgPack does that for us, but that's only partly the case.
  * E.g. the different integer types cannot be distinguished other than by their value. When we deserialize `42`,
- * we have no idea whether it should be deserialized as a byte, short, integer or double */
+ * we have no idea whether it should be deserialized as a byte, short, integer or double.
+ * The compact node format (see NodeSerializer) uses the same ids as type tags. */
 public enum ValueTypes {
   BOOLEAN((byte) 0),
   STRING((byte) 1),
@@ -16,7 +17,12 @@ public enum ValueTypes {
   LIST((byte) 8),
   NODE_REF((byte) 9),
   UNKNOWN((byte) 10),
-  CHARACTER((byte) 11);
+  CHARACTER((byte) 11),
+  /* homogeneous lists without null elements - compact format only */
+  INTEGER_LIST((byte) 12),
+  LONG_LIST((byte) 13),
+  DOUBLE_LIST((byte) 14),
+  STRING_LIST((byte) 15);
 
   public final byte id;
 
@@ -50,6 +56,14 @@ public enum ValueTypes {
         return UNKNOWN;
       case 11:
         return CHARACTER;
+      case 12:
+        return INTEGER_LIST;
+      case 13:
+        return LONG_LIST;
+      case 14:
+        return DOUBLE_LIST;
+      case 15:
+        return STRING_LIST;
       default:
         throw new IllegalArgumentException("unknown id type " + id);
     }
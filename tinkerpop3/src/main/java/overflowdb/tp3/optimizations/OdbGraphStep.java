@@ -1,8 +1,13 @@
 package overflowdb.tp3.optimizations;
 
+import overflowdb.IndexType;
+import overflowdb.NodeRef;
 import overflowdb.OdbGraph;
+import overflowdb.OdbIndexManager;
 import org.apache.tinkerpop.gremlin.process.traversal.Compare;
+import org.apache.tinkerpop.gremlin.process.traversal.Contains;
 import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.Text;
 import org.apache.tinkerpop.gremlin.process.traversal.step.HasContainerHolder;
 import org.apache.tinkerpop.gremlin.process.traversal.step.map.GraphStep;
 import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
@@ -13,14 +18,20 @@ import org.apache.tinkerpop.gremlin.structure.T;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
 import org.apache.tinkerpop.gremlin.util.iterator.IteratorUtils;
+import org.apache.tinkerpop.gremlin.util.iterator.MultiIterator;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public final class OdbGraphStep<S, E extends Element> extends GraphStep<S, E> implements HasContainerHolder {
 
@@ -51,7 +62,6 @@ public final class OdbGraphStep<S, E extends Element> extends GraphStep<S, E> im
 
   private Iterator<? extends Vertex> vertices() {
     final OdbGraph graph = (OdbGraph) this.getTraversal().getGraph().get();
-    final HasContainer indexedContainer = getIndexKey();
     final Optional<HasContainer> hasLabelContainer = findHasLabelStep();
     // ids are present, filter on them first
     if (null == this.ids)
@@ -63,17 +73,18 @@ public final class OdbGraphStep<S, E extends Element> extends GraphStep<S, E> im
       // unfortunately TP3 api doesn't seem to find out if it's the `Compare.eq` bipredicate, so we can optimise single-label lookups
       return graph.nodesByLabel(hasLabelPredicate);
     } else {
-      if (indexedContainer == null) return this.iteratorList(graph.vertices());
-      else {
-        return IteratorUtils.filter(
-            graph.indexManager.lookup(indexedContainer.getKey(), indexedContainer.getPredicate().getValue()).iterator(),
-            nodeRef -> HasContainer.testAll(nodeRef, this.hasContainers));
-      }
+      final Set<String> labels = findLabels();
+      final Set<NodeRef> indexCandidates = lookupViaIndexes(graph, labels);
+      if (indexCandidates != null)
+        return IteratorUtils.filter(indexCandidates.iterator(), nodeRef -> HasContainer.testAll(nodeRef, this.hasContainers));
+      else if (labels != null)
+        return this.iteratorList(graph.nodesByLabel(labels));
+      else
+        return this.iteratorList(graph.vertices());
     }
   }
 
-  // only optimize if hasLabel is the _only_ hasContainer, since that's the simplest case
-  // TODO implement other cases as well, e.g. for `g.V.hasLabel(lbl).has(k,v)`
+  // if hasLabel is the _only_ hasContainer, all label predicates can be used. Other cases are handled in `findLabels`
   private Optional<HasContainer> findHasLabelStep() {
     if (hasContainers.size() == 1) {
       if (T.label.getAccessor().equals(hasContainers.get(0).getKey())) {
@@ -83,13 +94,129 @@ public final class OdbGraphStep<S, E extends Element> extends GraphStep<S, E> im
     return Optional.empty();
   }
 
-  private HasContainer getIndexKey() {
-    final OdbGraph graph = (OdbGraph) this.getTraversal().getGraph().get();
-    final Set<String> indexedKeys = graph.indexManager.getIndexedNodeProperties();
+  /**
+   * @return the labels that all results must have, based on `hasLabel(...)` with one or more labels; null if the
+   * labels aren't restricted like that
+   */
+  private Set<String> findLabels() {
+    Set<String> labels = null;
+    for (HasContainer container : hasContainers) {
+      if (!T.label.getAccessor().equals(container.getKey())) continue;
+      final Set<String> containerLabels = new HashSet<>();
+      if (container.getBiPredicate() == Compare.eq && container.getValue() instanceof String)
+        containerLabels.add((String) container.getValue());
+      else if (container.getBiPredicate() == Contains.within && container.getValue() instanceof Collection)
+        for (Object label : (Collection<?>) container.getValue()) containerLabels.add(String.valueOf(label));
+      else
+        continue;
+
+      if (labels == null) labels = containerLabels;
+      else labels.retainAll(containerLabels);
+    }
+    return labels;
+  }
+
+  /**
+   * Looks up the candidates for each indexed hasContainer, and intersects them. For each property, an index for the
+   * given labels is preferred over an index for all nodes. Exact lookups come first, since they're usually the most
+   * selective. Sorted indexes are also used for ranges (`gt`, `between` etc.) and `TextP.startingWith`.
+   *
+   * Reading the candidates of a lookup stops as soon as they outnumber the nodes with the given labels: iterating over
+   * those is cheaper then.
+   * The result may contain nodes that don't match all hasContainers, i.e. the caller needs to filter it.
+   * @return candidate nodes from the indexes, or null if none of the hasContainers can be looked up in an index
+   */
+  private Set<NodeRef> lookupViaIndexes(OdbGraph graph, Set<String> labels) {
+    final OdbIndexManager indexManager = graph.indexManager;
+    int maxCandidates = Integer.MAX_VALUE;
+    if (labels != null) {
+      maxCandidates = 0;
+      for (String label : labels) maxCandidates += graph.nodeCount(label);
+    }
+
+    final List<Iterator<NodeRef>> lookups = new ArrayList<>();
+    for (HasContainer container : hasContainers) {
+      final String key = container.getKey();
+      if (container.getBiPredicate() == Compare.eq && !T.label.getAccessor().equals(key)) {
+        addLookup(lookups, indexManager, labels, key, type -> true,
+            label -> label == null ? indexManager.lookup(key, container.getValue()) : indexManager.lookup(label, key, container.getValue()));
+      }
+    }
+    final Set<String> rangeKeys = new HashSet<>();
+    for (HasContainer container : hasContainers) {
+      final String key = container.getKey();
+      final BiPredicate<?, ?> biPredicate = container.getBiPredicate();
+      if (container.getValue() == null) continue;
+      if (biPredicate == Text.startingWith) {
+        final String prefix = (String) container.getValue();
+        addLookup(lookups, indexManager, labels, key, type -> type == IndexType.SORTED,
+            label -> label == null ? indexManager.lookupPrefix(key, prefix) : indexManager.lookupPrefix(label, key, prefix));
+      } else if (isRangeBound(biPredicate) && rangeKeys.add(key)) {
+        addLookup(lookups, indexManager, labels, key, type -> type == IndexType.SORTED,
+            label -> lookupRange(indexManager, label, key));
+      }
+    }
+
+    Set<NodeRef> candidates = null;
+    for (Iterator<NodeRef> lookup : lookups) {
+      final Set<NodeRef> lookupCandidates = new HashSet<>();
+      int count = 0;
+      while (lookup.hasNext() && count <= maxCandidates) {
+        final NodeRef nodeRef = lookup.next();
+        count++;
+        if (candidates == null || candidates.contains(nodeRef)) lookupCandidates.add(nodeRef);
+      }
+      if (count > maxCandidates) continue; // not selective enough
+      candidates = lookupCandidates;
+      maxCandidates = candidates.size();
+      if (candidates.isEmpty()) break;
+    }
+    return candidates;
+  }
+
+  /**
+   * adds the lookup for the given key, if there's a suitable index for each of the given labels, or for all nodes
+   * @param lookup label -> matching nodes with that label, or all matching nodes if the label is null
+   */
+  private static void addLookup(List<Iterator<NodeRef>> lookups, OdbIndexManager indexManager, Set<String> labels, String key,
+                                Predicate<IndexType> isSuitable, Function<String, Iterator<NodeRef>> lookup) {
+    if (labels != null && !labels.isEmpty()
+        && labels.stream().allMatch(label -> indexManager.getIndexType(label, key).filter(isSuitable).isPresent())) {
+      final MultiIterator<NodeRef> multiIterator = new MultiIterator<>();
+      for (String label : labels) multiIterator.addIterator(lookup.apply(label));
+      lookups.add(multiIterator);
+    } else if (indexManager.getIndexType(key).filter(isSuitable).isPresent()) {
+      lookups.add(lookup.apply(null));
+    }
+  }
+
+  /**
+   * combines all range bounds for the given key, e.g. `P.between` has been split into `gte` and `lt`
+   * @param label null for the index of all nodes
+   */
+  private Iterator<NodeRef> lookupRange(OdbIndexManager indexManager, String label, String key) {
+    Object from = null;
+    Object to = null;
+    boolean fromInclusive = false;
+    boolean toInclusive = false;
+    for (HasContainer container : hasContainers) {
+      final BiPredicate<?, ?> biPredicate = container.getBiPredicate();
+      if (!key.equals(container.getKey()) || container.getValue() == null) continue;
+      if (from == null && (biPredicate == Compare.gt || biPredicate == Compare.gte)) {
+        from = container.getValue();
+        fromInclusive = biPredicate == Compare.gte;
+      } else if (to == null && (biPredicate == Compare.lt || biPredicate == Compare.lte)) {
+        to = container.getValue();
+        toInclusive = biPredicate == Compare.lte;
+      }
+    }
+    return label == null ?
+        indexManager.lookupRange(key, from, fromInclusive, to, toInclusive) :
+        indexManager.lookupRange(label, key, from, fromInclusive, to, toInclusive);
+  }
 
-    final Iterator<HasContainer> itty = IteratorUtils.filter(hasContainers.iterator(),
-        c -> c.getPredicate().getBiPredicate() == Compare.eq && indexedKeys.contains(c.getKey()));
-    return itty.hasNext() ? itty.next() : null;
+  private static boolean isRangeBound(BiPredicate<?, ?> biPredicate) {
+    return biPredicate == Compare.gt || biPredicate == Compare.gte || biPredicate == Compare.lt || biPredicate == Compare.lte;
   }
 
   @Override
@@ -0,0 +1,130 @@
+package overflowdb.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Unbounded, lock-free multi producer single consumer FIFO queue, backed by a linked list of fixed size array chunks.
+ * Compared to a (synchronized) LinkedList, offering an element doesn't allocate anything (other than one chunk every
+ * `CHUNK_SIZE` elements) and doesn't take a lock: producers just claim a slot in the current chunk via an atomic
+ * increment. The memory overhead is one array slot per element, rather than one list node.
+ *
+ * n.b. `offer` may be called by any number of threads concurrently, but only one thread at a time may consume (`poll`
+ * and `drainTo`) - it's up to the caller to guarantee that.
+ * `size` is only an estimate if there are concurrent producers.
+ */
+public class ChunkedMpscQueue<E> {
+  static final int CHUNK_SIZE = 1024;
+
+  private static final AtomicReferenceFieldUpdater<ChunkedMpscQueue, Chunk> TAIL_UPDATER =
+      AtomicReferenceFieldUpdater.newUpdater(ChunkedMpscQueue.class, Chunk.class, "tail");
+
+  /* only accessed by the consumer */
+  private Chunk<E> head;
+  private int headIndex;
+  /* only written by the consumer, volatile so that `size` can be called from any thread */
+  private volatile long consumedCount;
+
+  private volatile Chunk<E> tail;
+
+  public ChunkedMpscQueue() {
+    final Chunk<E> chunk = new Chunk<>(0);
+    head = chunk;
+    tail = chunk;
+  }
+
+  public void offer(E element) {
+    if (element == null) throw new NullPointerException("null elements are not supported");
+
+    while (true) {
+      final Chunk<E> chunk = tail;
+      final int index = Chunk.WRITE_INDEX_UPDATER.getAndIncrement(chunk);
+      if (index < CHUNK_SIZE) {
+        chunk.elements.lazySet(index, element);
+        return;
+      }
+
+      // chunk is full: append a new one (or help whoever is already doing that), then try again
+      Chunk<E> next = chunk.next;
+      if (next == null) {
+        final Chunk<E> newChunk = new Chunk<>(chunk.sequence + 1);
+        if (Chunk.NEXT_UPDATER.compareAndSet(chunk, null, newChunk)) {
+          next = newChunk;
+        } else {
+          next = chunk.next;
+        }
+      }
+      TAIL_UPDATER.compareAndSet(this, chunk, next);
+    }
+  }
+
+  /**
+   * @return the next element, or null if the queue is empty (or if the next element is just being offered)
+   * n.b. only one thread at a time may consume
+   */
+  public E poll() {
+    Chunk<E> chunk = head;
+    int index = headIndex;
+    if (index == CHUNK_SIZE) {
+      final Chunk<E> next = chunk.next;
+      if (next == null) return null;
+      chunk = next;
+      index = 0;
+      head = next;
+      headIndex = 0;
+    }
+
+    final E element = chunk.elements.get(index);
+    if (element == null) return null;
+    chunk.elements.lazySet(index, null);
+    headIndex = index + 1;
+    consumedCount++;
+    return element;
+  }
+
+  /**
+   * moves up to `maxElements` elements into the given collection
+   * n.b. only one thread at a time may consume
+   * @return number of elements moved
+   */
+  public int drainTo(Collection<? super E> collection, int maxElements) {
+    int count = 0;
+    while (count < maxElements) {
+      final E element = poll();
+      if (element == null) break;
+      collection.add(element);
+      count++;
+    }
+    return count;
+  }
+
+  public int size() {
+    final long consumed = consumedCount;
+    final Chunk<E> tail = this.tail;
+    final long offered = tail.sequence * CHUNK_SIZE + Math.min(tail.writeIndex, CHUNK_SIZE);
+    return (int) Math.max(0, Math.min(Integer.MAX_VALUE, offered - consumed));
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  private static class Chunk<E> {
+    static final AtomicIntegerFieldUpdater<Chunk> WRITE_INDEX_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(Chunk.class, "writeIndex");
+    static final AtomicReferenceFieldUpdater<Chunk, Chunk> NEXT_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "next");
+
+    final long sequence;
+    final AtomicReferenceArray<E> elements = new AtomicReferenceArray<>(CHUNK_SIZE);
+    volatile int writeIndex;
+    volatile Chunk<E> next;
+
+    Chunk(long sequence) {
+      this.sequence = sequence;
+    }
+  }
+
+}
@@ -0,0 +1,149 @@
+package overflowdb;
+
+import org.apache.tinkerpop.gremlin.util.iterator.IteratorUtils;
+import org.junit.Test;
+import overflowdb.testdomains.gratefuldead.Artist;
+import overflowdb.testdomains.gratefuldead.FollowedBy;
+import overflowdb.testdomains.gratefuldead.GratefulDead;
+import overflowdb.testdomains.gratefuldead.Song;
+import overflowdb.testdomains.gratefuldead.SungBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AdjacencyStorageTest {
+
+  @Test
+  public void shouldTraverseTheSameGraphInAllModes() throws IOException {
+    final List<Object> heapNames;
+    try (OdbGraph graph = GratefulDead.newGraph(config(AdjacencyStorage.HEAP))) {
+      GratefulDead.loadData(graph);
+      assertEquals(0, graph.getOffHeapAdjacencyBytes());
+      heapNames = graph.traversal().V().has(Song.NAME, "HERE COMES SUNSHINE").out().values(Song.NAME).toList();
+      assertFalse(heapNames.isEmpty());
+    }
+
+    for (AdjacencyStorage adjacencyStorage : AdjacencyStorage.values()) {
+      try (OdbGraph graph = GratefulDead.newGraph(config(adjacencyStorage))) {
+        GratefulDead.loadData(graph);
+        assertEquals(adjacencyStorage == AdjacencyStorage.OFF_HEAP, graph.getOffHeapAdjacencyBytes() > 0);
+        assertEquals(Long.valueOf(8049), graph.traversal().V().outE().count().next());
+        assertEquals(Long.valueOf(8049), graph.traversal().V().in().count().next());
+        assertEquals(3564, graph.traversal().E().has(FollowedBy.WEIGHT, 1).toList().size());
+        assertEquals(heapNames, graph.traversal().V().has(Song.NAME, "HERE COMES SUNSHINE").out().values(Song.NAME).toList());
+      }
+    }
+  }
+
+  @Test
+  public void shouldSupportEdgePropertiesAndRemoval() {
+    for (AdjacencyStorage adjacencyStorage : AdjacencyStorage.values()) {
+      shouldSupportEdgePropertiesAndRemoval(adjacencyStorage);
+    }
+  }
+
+  private void shouldSupportEdgePropertiesAndRemoval(AdjacencyStorage adjacencyStorage) {
+    try (OdbGraph graph = GratefulDead.newGraph(config(adjacencyStorage))) {
+      Node song1 = graph.addNode(Song.label, Song.NAME, "song 1");
+      Node song2 = graph.addNode(Song.label, Song.NAME, "song 2");
+      Node song3 = graph.addNode(Song.label, Song.NAME, "song 3");
+      /* enough edges to grow the adjacent node slots a few times */
+      for (int i = 0; i < 100; i++) {
+        song1.addEdge2(FollowedBy.LABEL, song2, FollowedBy.WEIGHT, i);
+      }
+      OdbEdge toRemove = song1.addEdge2(FollowedBy.LABEL, song3, FollowedBy.WEIGHT, 42);
+      assertEquals(Long.valueOf(101), graph.traversal().V().outE().count().next());
+      assertEquals(42, (int) song3.inE().next().property2(FollowedBy.WEIGHT));
+      assertEquals(4950, graph.traversal().V(song2.id()).inE().values(FollowedBy.WEIGHT).sum().next().intValue());
+
+      toRemove.remove();
+      assertFalse(song3.in().hasNext());
+      assertEquals(Long.valueOf(100), graph.traversal().V().outE().count().next());
+
+      song2.remove();
+      assertFalse(song1.out().hasNext());
+      assertEquals(2, graph.nodeCount());
+    }
+  }
+
+  @Test
+  public void shouldResolveNodeIndicesToNodeRefs() {
+    try (OdbGraph graph = GratefulDead.newGraph(config(AdjacencyStorage.NODE_INDEX))) {
+      Node song1 = graph.addNode(Song.label, Song.NAME, "song 1");
+      Node song2 = graph.addNode(Song.label, Song.NAME, "song 2");
+      Node artist = graph.addNode(Artist.label, Artist.NAME, "artist");
+      song1.addEdge2(SungBy.LABEL, artist);
+      song2.addEdge2(SungBy.LABEL, artist);
+
+      /* indices are assigned when a node is first referenced by an edge. songs have edges with properties, i.e. they
+       * store their adjacent nodes on the heap and the artist doesn't get an index */
+      final NodeRefRegistry registry = graph.nodeRefRegistry.get();
+      assertEquals(2, registry.size());
+      assertSame(song1, registry.get(((NodeRef) song1).nodeIndex));
+      assertSame(artist, song1.out().next());
+      final Set<Node> singers = new HashSet<>();
+      artist.in().forEachRemaining(singers::add);
+      assertEquals(new HashSet<>(Arrays.asList(song1, song2)), singers);
+
+      song1.remove();
+      assertNull(registry.get(((NodeRef) song1).nodeIndex));
+      assertSame(song2, artist.in().next());
+    }
+  }
+
+  @Test
+  public void shouldOverflowAndRestoreOffHeapAdjacency() throws IOException {
+    final File storageFile = Files.createTempFile("overflowdb", "bin").toFile();
+    storageFile.deleteOnExit();
+
+    try (OdbGraph graph = GratefulDead.newGraph(config(AdjacencyStorage.OFF_HEAP).withStorageLocation(storageFile.getAbsolutePath()))) {
+      GratefulDead.loadData(graph);
+      final OdbNode song = ((NodeRef) graph.traversal().V().has(Song.NAME, "HERE COMES SUNSHINE").next()).get();
+      final List<Node> adjacentNodes = IteratorUtils.list(song.out());
+      final long allocatedBytes = graph.getOffHeapAdjacencyBytes();
+      graph.referenceManager.clearAllReferences();
+      /* all nodes are cleared, i.e. their adjacent node slots are reclaimed once they've been garbage collected -
+       * except for those of the node that's still referenced here */
+      awaitOffHeapAdjacencyBytesBelow(graph, allocatedBytes / 10);
+      assertEquals(Long.valueOf(8049), graph.traversal().V().outE().count().next());
+      assertEquals(adjacentNodes, IteratorUtils.list(song.out()));
+      assertTrue(graph.getOffHeapAdjacencyBytes() > 0);
+    }
+
+    /* the serialized format doesn't depend on the adjacency storage */
+    for (AdjacencyStorage adjacencyStorage : new AdjacencyStorage[]{AdjacencyStorage.HEAP, AdjacencyStorage.NODE_INDEX}) {
+      try (OdbGraph graph = GratefulDead.newGraph(config(adjacencyStorage).withStorageLocation(storageFile.getAbsolutePath()))) {
+        assertEquals(Long.valueOf(8049), graph.traversal().V().outE().count().next());
+        assertEquals(3564, graph.traversal().E().has(FollowedBy.WEIGHT, 1).toList().size());
+      }
+    }
+  }
+
+  private void awaitOffHeapAdjacencyBytesBelow(OdbGraph graph, long bytes) {
+    for (int attempt = 0; attempt < 50 && graph.getOffHeapAdjacencyBytes() >= bytes; attempt++) {
+      System.gc();
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    assertTrue(graph.getOffHeapAdjacencyBytes() < bytes);
+  }
+
+  private OdbConfig config(AdjacencyStorage adjacencyStorage) {
+    return OdbConfig.withoutOverflow().withAdjacencyStorage(adjacencyStorage);
+  }
+}
@@ -0,0 +1,82 @@
+package overflowdb;
+
+import org.junit.Test;
+import overflowdb.testdomains.simple.SimpleDomain;
+import overflowdb.testdomains.simple.TestEdge;
+import overflowdb.testdomains.simple.TestNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class BulkLoaderTest {
+
+  @Test
+  public void shouldLoadSameGraphAsRegularApi() {
+    final int nodeCount = 100;
+    final int edgeCount = 1000;
+
+    try (OdbGraph regularGraph = SimpleDomain.newGraph();
+         OdbGraph bulkGraph = SimpleDomain.newGraph()) {
+      final Node[] regularNodes = new Node[nodeCount];
+      final Node[] bulkNodes = new Node[nodeCount];
+      try (BulkLoader loader = bulkGraph.bulkLoader(7)) {
+        for (int i = 0; i < nodeCount; i++) {
+          regularNodes[i] = regularGraph.addNode(TestNode.LABEL, TestNode.INT_PROPERTY, i);
+          bulkNodes[i] = loader.addNode(TestNode.LABEL, TestNode.INT_PROPERTY, i);
+        }
+
+        // some edges are already there when the bulk loader starts
+        regularNodes[0].addEdgeSilent(TestEdge.LABEL, regularNodes[1], TestEdge.LONG_PROPERTY, -1L);
+        bulkNodes[0].addEdgeSilent(TestEdge.LABEL, bulkNodes[1], TestEdge.LONG_PROPERTY, -1L);
+
+        final Random random = new Random(42);
+        for (long i = 0; i < edgeCount; i++) {
+          final int outIdx = random.nextInt(nodeCount);
+          final int inIdx = random.nextInt(nodeCount);
+          regularNodes[outIdx].addEdgeSilent(TestEdge.LABEL, regularNodes[inIdx], TestEdge.LONG_PROPERTY, i);
+          loader.addEdge(bulkNodes[outIdx], TestEdge.LABEL, bulkNodes[inIdx], TestEdge.LONG_PROPERTY, i);
+        }
+      }
+
+      assertEquals(edgeCount + 1, bulkGraph.edgeCount());
+      for (int i = 0; i < nodeCount; i++) {
+        assertEquals(edgeProperties(regularNodes[i].outE()), edgeProperties(bulkNodes[i].outE()));
+        assertEquals(edgeProperties(regularNodes[i].inE()), edgeProperties(bulkNodes[i].inE()));
+      }
+    }
+  }
+
+  @Test
+  public void shouldNotOverallocate() {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      final Node[] nodes = new Node[10];
+      try (BulkLoader loader = graph.bulkLoader()) {
+        for (int i = 0; i < nodes.length; i++) {
+          nodes[i] = loader.addNode(TestNode.LABEL);
+        }
+        for (int i = 0; i < 100; i++) {
+          loader.addEdge(nodes[i % nodes.length], TestEdge.LABEL, nodes[(i * 7) % nodes.length], TestEdge.LONG_PROPERTY, (long) i);
+        }
+        assertEquals(100, loader.pendingEdgeCount());
+      }
+
+      for (Node node : nodes) {
+        final long trimResult = ((NodeRef) node).get().trim();
+        final int newSize = (int) trimResult;
+        final int oldSize = (int) (trimResult >>> 32);
+        assertEquals(oldSize, newSize);
+      }
+    }
+  }
+
+  private List<Long> edgeProperties(Iterator<OdbEdge> edges) {
+    final List<Long> values = new ArrayList<>();
+    edges.forEachRemaining(edge -> values.add(edge.value(TestEdge.LONG_PROPERTY)));
+    return values;
+  }
+
+}
@@ -0,0 +1,126 @@
+package overflowdb;
+
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.junit.Test;
+import overflowdb.testdomains.simple.SimpleDomain;
+import overflowdb.testdomains.simple.TestEdge;
+import overflowdb.testdomains.simple.TestNode;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConcurrentMutationTest {
+  private static final int THREAD_COUNT = 8;
+
+  @Test
+  public void shouldNotLoseNodesOrEdges() throws Exception {
+    final int nodesPerThread = 5000;
+    final int edgesPerThread = 20000;
+
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withConcurrentMutationEnabled())) {
+      runConcurrently(threadIdx -> {
+        for (int i = 0; i < nodesPerThread; i++) {
+          graph.addNode(TestNode.LABEL, TestNode.INT_PROPERTY, threadIdx);
+        }
+      });
+      final int nodeCount = THREAD_COUNT * nodesPerThread;
+      assertEquals(nodeCount, graph.nodeCount());
+      assertEquals(nodeCount, count(graph.nodesByLabel(TestNode.LABEL)));
+      final Set<Object> ids = new HashSet<>();
+      graph.nodes().forEachRemaining(node -> ids.add(node.id()));
+      assertEquals(nodeCount, ids.size());
+
+      // only a few distinct nodes, so that threads contend for the same nodes
+      final Node[] nodes = new Node[16];
+      for (int i = 0; i < nodes.length; i++) {
+        nodes[i] = graph.node(i);
+      }
+      final AtomicLong edgeId = new AtomicLong(0);
+      runConcurrently(threadIdx -> {
+        final Random random = new Random(threadIdx);
+        for (int i = 0; i < edgesPerThread; i++) {
+          final Node outNode = nodes[random.nextInt(nodes.length)];
+          final Node inNode = nodes[random.nextInt(nodes.length)];
+          outNode.addEdge2(TestEdge.LABEL, inNode, TestEdge.LONG_PROPERTY, edgeId.incrementAndGet());
+        }
+      });
+
+      // both sides of each edge must agree on the edge properties
+      final int edgeCount = THREAD_COUNT * edgesPerThread;
+      final Set<Long> outEdgeIds = new HashSet<>();
+      final Set<Long> inEdgeIds = new HashSet<>();
+      for (Node node : nodes) {
+        node.outE().forEachRemaining(edge -> outEdgeIds.add(edge.value(TestEdge.LONG_PROPERTY)));
+        node.inE().forEachRemaining(edge -> inEdgeIds.add(edge.value(TestEdge.LONG_PROPERTY)));
+      }
+      assertEquals(edgeCount, outEdgeIds.size());
+      assertEquals(outEdgeIds, inEdgeIds);
+      assertEquals(edgeCount, graph.edgeCount());
+    }
+  }
+
+  @Test
+  public void shouldAddNodeWithSameIdOnlyOnce() throws Exception {
+    final int nodeCount = 10000;
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withConcurrentMutationEnabled())) {
+      final AtomicInteger duplicateCount = new AtomicInteger(0);
+      runConcurrently(threadIdx -> {
+        for (int id = 0; id < nodeCount; id++) {
+          try {
+            graph.addNode(id, TestNode.LABEL);
+          } catch (IllegalArgumentException e) {
+            assertEquals(Graph.Exceptions.vertexWithIdAlreadyExists(id).getMessage(), e.getMessage());
+            duplicateCount.incrementAndGet();
+          }
+        }
+      });
+      assertEquals(nodeCount, graph.nodeCount());
+      assertEquals(nodeCount * (THREAD_COUNT - 1), duplicateCount.get());
+    }
+  }
+
+  private void runConcurrently(ThreadTask task) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      final List<Future<Void>> futures = new ArrayList<>(THREAD_COUNT);
+      for (int i = 0; i < THREAD_COUNT; i++) {
+        final int threadIdx = i;
+        futures.add(executor.submit((Callable<Void>) () -> {
+          task.run(threadIdx);
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private interface ThreadTask {
+    void run(int threadIdx);
+  }
+
+  private int count(Iterator<?> iter) {
+    int count = 0;
+    while (iter.hasNext()) {
+      iter.next();
+      count++;
+    }
+    return count;
+  }
+
+}
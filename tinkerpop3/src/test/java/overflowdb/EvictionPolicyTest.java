@@ -0,0 +1,84 @@
+package overflowdb;
+
+import org.junit.Test;
+import overflowdb.testdomains.simple.SimpleDomain;
+import overflowdb.testdomains.simple.TestNode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EvictionPolicyTest {
+
+  @Test
+  public void fifoShouldEvictInInsertionOrder() {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow())) {
+      final NodeRef[] nodes = createNodesAndAccessEvenOnes(graph);
+      graph.referenceManager.syncClearReferences(5, true);
+      for (int i = 0; i < 5; i++) assertTrue(nodes[i].isCleared());
+      for (int i = 5; i < 10; i++) assertTrue(nodes[i].isSet());
+      assertEquals(0, graph.referenceManager.getSecondChanceCount());
+    }
+  }
+
+  @Test
+  public void clockShouldKeepAccessedNodes() {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withEvictionPolicy(EvictionPolicy.CLOCK))) {
+      final NodeRef[] nodes = createNodesAndAccessEvenOnes(graph);
+      graph.referenceManager.syncClearReferences(5, true);
+      for (int i = 0; i < 10; i++) {
+        assertEquals(i % 2 == 0, nodes[i].isSet());
+      }
+      assertEquals(5, graph.referenceManager.getSecondChanceCount());
+
+      // the accessed nodes got their second chance - since they haven't been accessed since, they're next
+      graph.referenceManager.syncClearReferences(5, true);
+      for (NodeRef node : nodes) assertTrue(node.isCleared());
+    }
+  }
+
+  @Test
+  public void clockShouldTerminateIfAllNodesAreAccessed() {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withEvictionPolicy(EvictionPolicy.CLOCK))) {
+      final NodeRef[] nodes = createNodesAndAccessEvenOnes(graph);
+      for (NodeRef node : nodes) node.get();
+      graph.referenceManager.syncClearReferences(3, true);
+      // one full round of second chances, then clear in FIFO order
+      for (int i = 0; i < 3; i++) assertTrue(nodes[i].isCleared());
+      for (int i = 3; i < 10; i++) assertTrue(nodes[i].isSet());
+      assertEquals(10, graph.referenceManager.getSecondChanceCount());
+    }
+  }
+
+  @Test
+  public void shouldReportHitsAndMisses() {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withSerializationStatsEnabled())) {
+      final NodeRef[] nodes = createNodesAndAccessEvenOnes(graph);
+      graph.referenceManager.syncClearReferences(5, true);
+      final long hitsBefore = graph.referenceManager.getHitCount();
+      assertEquals(0, graph.referenceManager.getMissCount());
+
+      nodes[0].get(); // miss
+      nodes[0].get(); // hit
+      nodes[9].get(); // hit
+      assertEquals(1, graph.referenceManager.getMissCount());
+      assertEquals(hitsBefore + 2, graph.referenceManager.getHitCount());
+      assertTrue(graph.referenceManager.getHitRate() > 0.5f);
+    }
+  }
+
+  /** creates 10 nodes, resets their access flags, and then accesses the ones with an even index */
+  private NodeRef[] createNodesAndAccessEvenOnes(OdbGraph graph) {
+    final NodeRef[] nodes = new NodeRef[10];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = (NodeRef) graph.addNode(i, TestNode.LABEL, TestNode.INT_PROPERTY, i);
+      nodes[i].resetAccessedFlag();
+      assertFalse(nodes[i].resetAccessedFlag());
+    }
+    for (int i = 0; i < nodes.length; i += 2) {
+      nodes[i].get();
+    }
+    return nodes;
+  }
+
+}
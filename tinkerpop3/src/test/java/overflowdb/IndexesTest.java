@@ -1,20 +1,36 @@
 package overflowdb;
 
+import overflowdb.testdomains.gratefuldead.Artist;
 import overflowdb.testdomains.gratefuldead.GratefulDead;
+import overflowdb.testdomains.gratefuldead.Song;
+import overflowdb.testdomains.simple.SimpleDomain;
+import overflowdb.testdomains.simple.TestNode;
 import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.TextP;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
 import org.apache.tinkerpop.gremlin.util.TimeUtil;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class IndexesTest {
 
@@ -132,4 +148,361 @@ public class IndexesTest {
     }
   }
 
+  @Test
+  public void shouldLookupNodesWithSharedAndUniqueValues() {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      graph.indexManager.createNodePropertyIndex(TestNode.INT_PROPERTY);
+      final List<Node> nodes = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        /* value 0 is shared by 500 nodes, the others are unique */
+        nodes.add(graph.addNode(TestNode.LABEL, TestNode.INT_PROPERTY, i % 2 == 0 ? 0 : i));
+      }
+
+      assertEquals(500, count(graph.indexManager.lookup(TestNode.INT_PROPERTY, 0)));
+      assertEquals(nodes.get(1), graph.indexManager.lookup(TestNode.INT_PROPERTY, 1).next());
+      assertFalse(graph.indexManager.lookup(TestNode.INT_PROPERTY, 2).hasNext());
+      assertFalse(graph.indexManager.lookup("unindexedProperty", 1).hasNext());
+      assertEquals(1000, graph.indexManager.getIndexedNodeCount(TestNode.INT_PROPERTY));
+
+      /* adding a node twice doesn't duplicate it */
+      nodes.get(0).setProperty(TestNode.INT_PROPERTY, 0);
+      assertEquals(500, count(graph.indexManager.lookup(TestNode.INT_PROPERTY, 0)));
+
+      nodes.get(0).remove();
+      nodes.get(1).remove();
+      assertEquals(499, count(graph.indexManager.lookup(TestNode.INT_PROPERTY, 0)));
+      assertFalse(graph.indexManager.lookup(TestNode.INT_PROPERTY, 1).hasNext());
+      assertEquals(998, graph.indexManager.getIndexedNodeCount(TestNode.INT_PROPERTY));
+    }
+  }
+
+  @Test
+  public void shouldRemoveNodesWithSharedValues() {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      graph.indexManager.createNodePropertyIndex(TestNode.INT_PROPERTY);
+      final List<Node> nodes = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) nodes.add(graph.addNode(TestNode.LABEL, TestNode.INT_PROPERTY, 42));
+      assertEquals(1000, count(graph.indexManager.lookup(TestNode.INT_PROPERTY, 42)));
+
+      /* removed and added again before the next lookup */
+      nodes.get(0).setProperty(TestNode.INT_PROPERTY, 43);
+      nodes.get(0).setProperty(TestNode.INT_PROPERTY, 42);
+      assertEquals(1000, graph.indexManager.getIndexedNodeCount(TestNode.INT_PROPERTY));
+      assertEquals(1000, count(graph.indexManager.lookup(TestNode.INT_PROPERTY, 42)));
+
+      for (int i = 0; i < 999; i++) {
+        nodes.get(i).remove();
+        if (i % 100 == 0) {
+          /* lookups in between removals */
+          assertEquals(999 - i, count(graph.indexManager.lookup(TestNode.INT_PROPERTY, 42)));
+          assertEquals(999 - i, graph.indexManager.getIndexedNodeCount(TestNode.INT_PROPERTY));
+        }
+      }
+      assertEquals(nodes.get(999), graph.indexManager.lookup(TestNode.INT_PROPERTY, 42).next());
+      assertEquals(1, graph.indexManager.getIndexedNodeCount(TestNode.INT_PROPERTY));
+
+      /* a removed value which is set again */
+      final Node node = graph.addNode(TestNode.LABEL, TestNode.INT_PROPERTY, 42);
+      node.setProperty(TestNode.INT_PROPERTY, 43);
+      node.setProperty(TestNode.INT_PROPERTY, 42);
+      assertEquals(2, count(graph.indexManager.lookup(TestNode.INT_PROPERTY, 42)));
+      assertFalse(graph.indexManager.lookup(TestNode.INT_PROPERTY, 43).hasNext());
+    }
+  }
+
+  @Test
+  public void shouldNotReflectChangesInRunningLookups() {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      graph.indexManager.createNodePropertyIndex(TestNode.INT_PROPERTY);
+      for (int i = 0; i < 100; i++) graph.addNode(TestNode.LABEL, TestNode.INT_PROPERTY, 42);
+
+      final Iterator<NodeRef> lookup = graph.indexManager.lookup(TestNode.INT_PROPERTY, 42);
+      for (int i = 0; i < 100; i++) graph.addNode(TestNode.LABEL, TestNode.INT_PROPERTY, 42);
+      assertEquals(100, count(lookup));
+      assertEquals(200, count(graph.indexManager.lookup(TestNode.INT_PROPERTY, 42)));
+    }
+  }
+
+  @Test
+  public void shouldLookupRangesAndPrefixesInSortedIndexes() throws IOException {
+    try (OdbGraph graph = GratefulDead.newGraphWithData();
+         OdbGraph unindexedGraph = GratefulDead.newGraphWithData()) {
+      graph.indexManager.createNodePropertyIndex("performances", IndexType.SORTED);
+      graph.indexManager.createNodePropertyIndex("name", IndexType.SORTED);
+      final OdbIndexManager indexManager = graph.indexManager;
+
+      assertEquals(341, count(indexManager.lookupRange("performances", 1, false, null, false)));
+      assertEquals(483, count(indexManager.lookupRange("performances", 1, true, null, false)));
+      assertEquals(101, count(indexManager.lookupRange("performances", null, false, 1, false)));
+      assertEquals(178, count(indexManager.lookupRange("performances", 1L, true, 3.0, false)));
+      assertEquals(0, count(indexManager.lookupRange("performances", 3, true, 1, true)));
+      assertEquals(3, count(indexManager.lookupPrefix("name", "Bob")));
+      assertEquals(142, count(indexManager.lookup("performances", 1)));
+
+      /* OdbGraphStep uses the sorted indexes for ranges and prefixes */
+      final GraphTraversalSource g = graph.traversal();
+      final GraphTraversalSource unindexed = unindexedGraph.traversal();
+      assertEquals(unindexed.V().has("performances", P.gt(1)).count().next(), g.V().has("performances", P.gt(1)).count().next());
+      assertEquals(unindexed.V().has("performances", P.lte(1)).count().next(), g.V().has("performances", P.lte(1)).count().next());
+      assertEquals(Long.valueOf(178), g.V().has("performances", P.between(1, 3)).count().next());
+      assertEquals(Long.valueOf(36), g.V().has("performances", P.between(1, 3)).has("performances", P.gt(1)).count().next());
+      assertEquals(Long.valueOf(3), g.V().has("name", TextP.startingWith("Bob")).count().next());
+      assertEquals(
+          unindexed.V().has("name", TextP.startingWith("B")).has("performances", P.gte(0)).values("name").toSet(),
+          g.V().has("name", TextP.startingWith("B")).has("performances", P.gte(0)).values("name").toSet());
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void shouldNotLookupRangesInExactIndexes() throws IOException {
+    try (OdbGraph graph = GratefulDead.newGraphWithData()) {
+      graph.indexManager.createNodePropertyIndex("performances");
+      graph.indexManager.lookupRange("performances", 1, false, null, false);
+    }
+  }
+
+  @Test
+  public void shouldOrderMixedNumbersExactly() {
+    final Comparator<Object> order = NodePropertyIndex.VALUE_ORDER;
+    final long twoPow53 = 1L << 53;
+    // 2^53 + 1 can't be represented as a double, i.e. comparing via doubleValue() wouldn't be transitive
+    assertEquals(0, order.compare(twoPow53, (double) twoPow53));
+    assertTrue(order.compare((double) twoPow53, twoPow53 + 1) < 0);
+    assertTrue(order.compare(twoPow53, twoPow53 + 1) < 0);
+    assertTrue(order.compare(Long.MAX_VALUE, (double) Long.MAX_VALUE) < 0);
+
+    assertEquals(0, order.compare(1, 1.0f));
+    assertEquals(0, order.compare(0L, -0.0d));
+    assertEquals(0, order.compare(-0.0d, 0.0d));
+    assertTrue(order.compare(Double.NaN, Long.MAX_VALUE) > 0);
+    assertTrue(order.compare(Double.NaN, Double.POSITIVE_INFINITY) > 0);
+    assertTrue(order.compare(Double.NEGATIVE_INFINITY, Long.MIN_VALUE) < 0);
+    assertTrue(order.compare(new BigInteger("18446744073709551616"), Long.MAX_VALUE) > 0);
+    assertTrue(order.compare(1, "1") < 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectValuesThatCantBeOrderedInSortedIndexes() {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      final NodeRef node = (NodeRef) graph.addNode(TestNode.LABEL);
+      new NodePropertyIndex(IndexType.SORTED).put(new Object(), node);
+    }
+  }
+
+  @Test
+  public void shouldNotChangePropertiesThatCantBeIndexed() {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      final OdbIndexManager indexManager = graph.indexManager;
+      indexManager.createNodePropertyIndex(TestNode.STRING_LIST_PROPERTY, IndexType.SORTED);
+      final NodeRef node = (NodeRef) graph.addNode(TestNode.LABEL);
+      node.get().markAsClean();
+
+      /* rejected before the property is changed */
+      try {
+        node.setProperty(TestNode.STRING_LIST_PROPERTY, Arrays.asList("a"));
+        fail("lists can't be ordered");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      assertNull(node.property2(TestNode.STRING_LIST_PROPERTY));
+
+      /* only rejected once it has been appended to the list: the change is undone */
+      try {
+        node.property(VertexProperty.Cardinality.list, TestNode.STRING_LIST_PROPERTY, "a");
+        fail("lists can't be ordered");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      assertNull(node.property2(TestNode.STRING_LIST_PROPERTY));
+      assertEquals(0, indexManager.getIndexedNodeCount(TestNode.STRING_LIST_PROPERTY));
+      assertTrue(node.get().isDirty());
+    }
+  }
+
+  @Test
+  public void shouldStoreAndRestoreSortedIndexes() throws IOException {
+    final File overflowDb = Files.createTempFile("overflowdb", "bin").toFile();
+    overflowDb.deleteOnExit();
+    try (OdbGraph graph = GratefulDead.newGraphWithData(overflowDb.getAbsolutePath())) {
+      graph.indexManager.createNodePropertyIndex("performances");
+      graph.indexManager.createNodePropertyIndex("name");
+      /* replaces the exact index */
+      graph.indexManager.createNodePropertyIndex("performances", IndexType.SORTED);
+    }
+    try (OdbGraph graph = GratefulDead.newGraph(OdbConfig.withDefaults().withStorageLocation(overflowDb.getAbsolutePath()))) {
+      assertEquals(new HashSet<>(Arrays.asList("performances", "name")), graph.indexManager.getIndexedNodeProperties());
+      assertEquals(Optional.of(IndexType.SORTED), graph.indexManager.getIndexType("performances"));
+      assertEquals(Optional.of(IndexType.EXACT), graph.indexManager.getIndexType("name"));
+      assertEquals(584, graph.indexManager.getIndexedNodeCount("performances"));
+      assertEquals(341, count(graph.indexManager.lookupRange("performances", 1, false, null, false)));
+    }
+  }
+
+  @Test
+  public void shouldLookupRegexesInTrigramIndexes() {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      graph.indexManager.createNodePropertyIndex(TestNode.STRING_PROPERTY, IndexType.TRIGRAM);
+      graph.indexManager.createNodePropertyIndex(TestNode.INT_PROPERTY, IndexType.TRIGRAM);
+      final List<Node> nodes = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        nodes.add(graph.addNode(TestNode.LABEL, TestNode.STRING_PROPERTY, "node" + i + (i % 2 == 0 ? "even" : "odd"), TestNode.INT_PROPERTY, i));
+      }
+      final Node removed = graph.addNode(TestNode.LABEL, TestNode.STRING_PROPERTY, "node42even");
+
+      final OdbIndexManager indexManager = graph.indexManager;
+      assertEquals(2, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile("node42even"))));
+      assertEquals(500, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile(".*odd"))));
+      assertEquals(55, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile("node9[0-9]{1,2}odd"))));
+      assertEquals(66, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile("node1.*even|node99.*"))));
+      assertEquals(1001, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile("node.*"))));
+      assertEquals(0, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile("node0odd.*"))));
+      assertEquals(1001, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile("NODE.*", Pattern.CASE_INSENSITIVE))));
+      assertEquals(1001, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile("(?i)NODE.*"))));
+      /* only String values are matched */
+      assertEquals(0, count(indexManager.lookupRegex(TestNode.INT_PROPERTY, Pattern.compile("1.*"))));
+
+      removed.remove();
+      nodes.get(1).setProperty(TestNode.STRING_PROPERTY, "renamed");
+      assertEquals(1, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile("node42even"))));
+      assertEquals(0, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile("node1odd"))));
+      assertEquals(1, count(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile(".*name.*"))));
+    }
+  }
+
+  @Test
+  public void shouldStoreAndRestoreTrigramIndexes() throws IOException {
+    final File overflowDb = Files.createTempFile("overflowdb", "bin").toFile();
+    overflowDb.deleteOnExit();
+    try (OdbGraph graph = GratefulDead.newGraphWithData(overflowDb.getAbsolutePath())) {
+      graph.indexManager.createNodePropertyIndex("name", IndexType.TRIGRAM);
+    }
+    try (OdbGraph graph = GratefulDead.newGraph(OdbConfig.withDefaults().withStorageLocation(overflowDb.getAbsolutePath()))) {
+      assertEquals(Optional.of(IndexType.TRIGRAM), graph.indexManager.getIndexType("name"));
+      assertEquals(3, count(graph.indexManager.lookupRegex("name", Pattern.compile(".*Bob.*"))));
+    }
+  }
+
+  @Test
+  public void shouldLookupLabelPropertyIndexes() throws IOException {
+    try (OdbGraph graph = GratefulDead.newGraphWithData();
+         OdbGraph unindexedGraph = GratefulDead.newGraphWithData()) {
+      final OdbIndexManager indexManager = graph.indexManager;
+      indexManager.createLabelPropertyIndex(Song.label, "name");
+      indexManager.createLabelPropertyIndex(Song.label, Song.PERFORMANCES, IndexType.SORTED);
+      assertEquals(584, indexManager.getIndexedNodeCount(Song.label, "name"));
+      assertEquals(0, indexManager.getIndexedNodeCount(Artist.label, "name"));
+      assertEquals(new HashSet<>(Arrays.asList("name", Song.PERFORMANCES)), indexManager.getIndexedNodeProperties(Song.label));
+      assertTrue(indexManager.getIndexedNodeProperties().isEmpty());
+
+      assertEquals(1, count(indexManager.lookup(Song.label, "name", "BERTHA")));
+      assertEquals(341, count(indexManager.lookupRange(Song.label, Song.PERFORMANCES, 1, false, null, false)));
+      assertFalse(indexManager.lookup(Artist.label, "name", "Bob_Dylan").hasNext());
+
+      /* the index is updated along with the nodes */
+      final Node song = graph.addNode(Song.label, Song.NAME, "NEW SONG", Song.PERFORMANCES, 1);
+      graph.addNode(Artist.label, Artist.NAME, "NEW SONG");
+      assertEquals(song, indexManager.lookup(Song.label, "name", "NEW SONG").next());
+      assertEquals(585, indexManager.getIndexedNodeCount(Song.label, "name"));
+      song.remove();
+      assertFalse(indexManager.lookup(Song.label, "name", "NEW SONG").hasNext());
+
+      final GraphTraversalSource g = graph.traversal();
+      final GraphTraversalSource unindexed = unindexedGraph.traversal();
+      assertEquals(Long.valueOf(1), g.V().hasLabel(Song.label).has("name", "BERTHA").count().next());
+      assertEquals(Long.valueOf(1), g.V().has("name", "BERTHA").hasLabel(Song.label).count().next());
+      assertEquals(Long.valueOf(0), g.V().hasLabel(Song.label).has("name", "NEW SONG").count().next());
+      assertEquals(Long.valueOf(0), g.V().hasLabel(Artist.label).has("name", "BERTHA").count().next());
+      assertEquals(Long.valueOf(1), g.V().hasLabel(Song.label, Artist.label).has("name", "Bob_Dylan").count().next());
+      assertEquals(Long.valueOf(36), g.V().hasLabel(Song.label).has(Song.PERFORMANCES, P.between(2, 3)).count().next());
+
+      /* multiple indexed predicates are intersected */
+      indexManager.createNodePropertyIndex(Song.SONG_TYPE);
+      assertEquals(
+          unindexed.V().hasLabel(Song.label).has(Song.SONG_TYPE, "cover").has(Song.PERFORMANCES, P.gt(10)).values("name").toSet(),
+          g.V().hasLabel(Song.label).has(Song.SONG_TYPE, "cover").has(Song.PERFORMANCES, P.gt(10)).values("name").toSet());
+      assertEquals(
+          unindexed.V().hasLabel(Song.label).has(Song.PERFORMANCES, P.gte(0)).has("name", P.neq("BERTHA")).count().next(),
+          g.V().hasLabel(Song.label).has(Song.PERFORMANCES, P.gte(0)).has("name", P.neq("BERTHA")).count().next());
+      assertEquals(Long.valueOf(0), g.V().hasLabel(Song.label).has("name", "BERTHA").has(Song.SONG_TYPE, "nonexistent").count().next());
+    }
+  }
+
+  @Test
+  public void shouldStoreAndRestoreLabelPropertyIndexes() throws IOException {
+    final File overflowDb = Files.createTempFile("overflowdb", "bin").toFile();
+    overflowDb.deleteOnExit();
+    try (OdbGraph graph = GratefulDead.newGraphWithData(overflowDb.getAbsolutePath())) {
+      graph.indexManager.createLabelPropertyIndex(Song.label, "name");
+      graph.indexManager.createLabelPropertyIndex(Artist.label, "name", IndexType.SORTED);
+      graph.indexManager.createNodePropertyIndex("name");
+    }
+    try (OdbGraph graph = GratefulDead.newGraph(OdbConfig.withDefaults().withStorageLocation(overflowDb.getAbsolutePath()))) {
+      final OdbIndexManager indexManager = graph.indexManager;
+      assertEquals(Optional.of(IndexType.EXACT), indexManager.getIndexType(Song.label, "name"));
+      assertEquals(Optional.of(IndexType.SORTED), indexManager.getIndexType(Artist.label, "name"));
+      assertEquals(584, indexManager.getIndexedNodeCount(Song.label, "name"));
+      assertEquals(224, indexManager.getIndexedNodeCount(Artist.label, "name"));
+      assertEquals(808, indexManager.getIndexedNodeCount("name"));
+      assertEquals(3, count(indexManager.lookupPrefix(Artist.label, "name", "Bob")));
+
+      indexManager.dropLabelPropertyIndex(Artist.label, "name");
+      assertFalse(indexManager.getIndexType(Artist.label, "name").isPresent());
+    }
+  }
+
+  @Test
+  public void shouldUpdateIndexesWhenPropertiesChange() {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      final OdbIndexManager indexManager = graph.indexManager;
+      indexManager.createNodePropertyIndex(TestNode.STRING_PROPERTY, IndexType.TRIGRAM);
+      indexManager.createNodePropertyIndex(TestNode.INT_PROPERTY, IndexType.SORTED);
+      indexManager.createLabelPropertyIndex(TestNode.LABEL, TestNode.INT_PROPERTY);
+      indexManager.createNodePropertyIndex(TestNode.STRING_LIST_PROPERTY);
+      final Node node = graph.addNode(TestNode.LABEL, TestNode.STRING_PROPERTY, "old", TestNode.INT_PROPERTY, 1);
+      graph.addNode(TestNode.LABEL, TestNode.STRING_PROPERTY, "other", TestNode.INT_PROPERTY, 1);
+
+      /* the node is only indexed under its current value */
+      node.setProperty(TestNode.STRING_PROPERTY, "new");
+      node.setProperty(TestNode.INT_PROPERTY, 2);
+      assertFalse(indexManager.lookup(TestNode.STRING_PROPERTY, "old").hasNext());
+      assertFalse(indexManager.lookupRegex(TestNode.STRING_PROPERTY, Pattern.compile("old")).hasNext());
+      assertEquals(node, indexManager.lookup(TestNode.STRING_PROPERTY, "new").next());
+      assertEquals(1, count(indexManager.lookup(TestNode.INT_PROPERTY, 1)));
+      assertEquals(1, count(indexManager.lookup(TestNode.LABEL, TestNode.INT_PROPERTY, 1)));
+      assertEquals(node, indexManager.lookupRange(TestNode.INT_PROPERTY, 1, false, null, false).next());
+      assertEquals(node, indexManager.lookup(TestNode.LABEL, TestNode.INT_PROPERTY, 2).next());
+      assertEquals(2, indexManager.getIndexedNodeCount(TestNode.STRING_PROPERTY));
+
+      node.property(TestNode.STRING_PROPERTY).remove();
+      assertFalse(indexManager.lookup(TestNode.STRING_PROPERTY, "new").hasNext());
+      assertEquals(1, indexManager.getIndexedNodeCount(TestNode.STRING_PROPERTY));
+
+      /* multi-valued properties are indexed by their whole value, even if they're modified in place */
+      node.property(VertexProperty.Cardinality.list, TestNode.STRING_LIST_PROPERTY, "a");
+      node.property(VertexProperty.Cardinality.list, TestNode.STRING_LIST_PROPERTY, "b");
+      assertFalse(indexManager.lookup(TestNode.STRING_LIST_PROPERTY, Arrays.asList("a")).hasNext());
+      assertEquals(node, indexManager.lookup(TestNode.STRING_LIST_PROPERTY, Arrays.asList("a", "b")).next());
+      assertEquals(node, graph.traversal().V().has(TestNode.STRING_LIST_PROPERTY, Arrays.asList("a", "b")).next());
+      node.setProperty(TestNode.STRING_LIST_PROPERTY, Arrays.asList("b", "c"));
+      assertFalse(indexManager.lookup(TestNode.STRING_LIST_PROPERTY, Arrays.asList("a", "b")).hasNext());
+      assertEquals(node, indexManager.lookup(TestNode.STRING_LIST_PROPERTY, Arrays.asList("b", "c")).next());
+
+      node.remove();
+      assertFalse(indexManager.lookup(TestNode.INT_PROPERTY, 2).hasNext());
+      assertFalse(indexManager.lookup(TestNode.LABEL, TestNode.INT_PROPERTY, 2).hasNext());
+      assertFalse(indexManager.lookup(TestNode.STRING_LIST_PROPERTY, Arrays.asList("b", "c")).hasNext());
+      assertEquals(1, indexManager.getIndexedNodeCount(TestNode.INT_PROPERTY));
+      assertEquals(0, indexManager.getIndexedNodeCount(TestNode.STRING_LIST_PROPERTY));
+    }
+  }
+
+  private int count(Iterator<?> iterator) {
+    int count = 0;
+    while (iterator.hasNext()) {
+      iterator.next();
+      count++;
+    }
+    return count;
+  }
+
 }
@@ -0,0 +1,86 @@
+package overflowdb;
+
+import org.junit.Test;
+import overflowdb.testdomains.simple.SimpleDomain;
+import overflowdb.testdomains.simple.TestEdge;
+import overflowdb.testdomains.simple.TestNode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NodePrefetcherTest {
+
+  @Test
+  public void shouldPrefetchClearedNeighboursUpToConfiguredDepth() throws InterruptedException {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withNeighbourPrefetch(2, 100))) {
+      final NodeRef[] chain = createChain(graph, 10);
+      graph.referenceManager.clearAllReferences();
+
+      chain[0].get();
+      awaitPrefetchedCount(graph, 2);
+      assertTrue(chain[1].isSet());
+      assertTrue(chain[2].isSet());
+      assertTrue(chain[3].isCleared());
+
+      /* prefetched nodes are in memory when they're accessed */
+      final long missCount = graph.referenceManager.getMissCount();
+      assertEquals(2, chain[1].get().ref.id2());
+      assertEquals(missCount, graph.referenceManager.getMissCount());
+    }
+  }
+
+  @Test
+  public void shouldPrefetchAtMostMaxNodes() throws InterruptedException {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withNeighbourPrefetch(5, 3))) {
+      final NodeRef[] chain = createChain(graph, 10);
+      graph.referenceManager.clearAllReferences();
+
+      chain[0].get();
+      awaitPrefetchedCount(graph, 3);
+      graph.prefetcher.get().close();
+      assertEquals(3, graph.prefetcher.get().getPrefetchedCount());
+      assertTrue(chain[3].isSet());
+      assertTrue(chain[4].isCleared());
+    }
+  }
+
+  @Test
+  public void shouldPrefetchWithOffHeapAdjacency() throws InterruptedException {
+    final OdbConfig config = OdbConfig.withoutOverflow().withNeighbourPrefetch(2, 100).withAdjacencyStorage(AdjacencyStorage.OFF_HEAP);
+    try (OdbGraph graph = SimpleDomain.newGraph(config)) {
+      final NodeRef[] chain = createChain(graph, 10);
+      graph.referenceManager.clearAllReferences();
+
+      chain[0].get();
+      awaitPrefetchedCount(graph, 2);
+      assertTrue(chain[2].isSet());
+      assertTrue(chain[3].isCleared());
+    }
+  }
+
+  @Test
+  public void shouldBeDisabledByDefault() {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow())) {
+      assertFalse(graph.prefetcher.isPresent());
+    }
+  }
+
+  /** creates a chain of nodes with ids 1..count, connected by TestEdges */
+  private NodeRef[] createChain(OdbGraph graph, int count) {
+    final NodeRef[] nodes = new NodeRef[count];
+    for (int i = 0; i < count; i++) {
+      nodes[i] = (NodeRef) graph.addNode(i + 1, TestNode.LABEL);
+      if (i > 0) nodes[i - 1].addEdge2(TestEdge.LABEL, nodes[i]);
+    }
+    return nodes;
+  }
+
+  private void awaitPrefetchedCount(OdbGraph graph, long expected) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (graph.prefetcher.get().getPrefetchedCount() < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, graph.prefetcher.get().getPrefetchedCount());
+  }
+}
@@ -0,0 +1,183 @@
+package overflowdb;
+
+import org.junit.Test;
+import overflowdb.testdomains.gratefuldead.Artist;
+import overflowdb.testdomains.gratefuldead.GratefulDead;
+import overflowdb.testdomains.gratefuldead.Song;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NodeTableTest {
+
+  @Test
+  public void shouldSupportLookupsAndRemovals() {
+    try (OdbGraph graph = GratefulDead.newGraph()) {
+      final int nodeCount = 10000;
+      for (int i = 0; i < nodeCount; i++) {
+        // use sparse ids with a common stride, to provoke collisions
+        graph.addNode(i * 1024L, i % 2 == 0 ? Song.label : Artist.label);
+      }
+      assertEquals(nodeCount, graph.nodeCount());
+      assertEquals(nodeCount / 2, count(graph.nodesByLabel(Song.label)));
+      assertEquals(nodeCount / 2, count(graph.nodesByLabel(Artist.label)));
+
+      for (int i = 0; i < nodeCount; i += 3) {
+        graph.node(i * 1024L).remove();
+      }
+
+      final Set<Long> expectedIds = new HashSet<>();
+      for (int i = 0; i < nodeCount; i++) {
+        final Node node = graph.node(i * 1024L);
+        if (i % 3 == 0) {
+          assertNull(node);
+        } else {
+          assertEquals(i * 1024L, node.id());
+          expectedIds.add(i * 1024L);
+        }
+      }
+      assertEquals(expectedIds.size(), graph.nodeCount());
+
+      final Set<Long> actualIds = new HashSet<>();
+      graph.nodes().forEachRemaining(node -> actualIds.add((Long) node.id()));
+      assertEquals(expectedIds, actualIds);
+      assertEquals(expectedIds.size(), count(graph.nodesByLabel(Song.label)) + count(graph.nodesByLabel(Artist.label)));
+    }
+  }
+
+  @Test
+  public void shouldKeepLabelSegmentsDense() {
+    try (OdbGraph graph = GratefulDead.newGraph()) {
+      final OpenHashNodeTable table = new OpenHashNodeTable();
+      final NodeRef first = (NodeRef) graph.addNode(1, Song.label);
+      final NodeRef second = (NodeRef) graph.addNode(2, Song.label);
+      final NodeRef third = (NodeRef) graph.addNode(3, Song.label);
+      assertTrue(table.add(first));
+      assertTrue(table.add(second));
+      assertTrue(table.add(third));
+      assertFalse(table.add(second));
+
+      assertSame(first, table.remove(1));
+      assertNull(table.remove(1));
+      assertEquals(2, table.size());
+      assertEquals(2, table.size(Song.label));
+      assertEquals(0, table.size(Artist.label));
+
+      // the last node has been moved into the freed position
+      final Iterator<NodeRef> songs = table.iterator(Song.label);
+      assertSame(third, songs.next());
+      assertSame(second, songs.next());
+      assertFalse(songs.hasNext());
+    }
+  }
+
+  @Test
+  public void shouldAddAllNodesOfOneLabel() {
+    try (OdbGraph graph = GratefulDead.newGraph()) {
+      final List<NodeRef> songs = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        songs.add((NodeRef) graph.addNode(i, Song.label));
+      }
+      for (NodeTable table : Arrays.asList(new OpenHashNodeTable(), new StripedNodeTable(0))) {
+        assertTrue(table.add(songs.get(0)));
+        assertEquals(999, table.addAll(Song.label, songs));
+        assertEquals(1000, table.size());
+        assertEquals(1000, table.size(Song.label));
+        assertEquals(1000, count(table.iterator(Song.label)));
+        for (NodeRef song : songs) assertSame(song, table.get(song.id));
+      }
+    }
+  }
+
+  @Test
+  public void shouldFailFastWhenRemovingNodesWhileIterating() {
+    try (OdbGraph graph = GratefulDead.newGraph()) {
+      for (int i = 0; i < 10; i++) graph.addNode(i, Song.label);
+
+      for (Supplier<Iterator<Node>> nodes : Arrays.<Supplier<Iterator<Node>>>asList(graph::nodes, () -> graph.nodesByLabel(Song.label))) {
+        final Iterator<Node> iterator = nodes.get();
+        try {
+          while (iterator.hasNext()) {
+            final Node node = iterator.next();
+            assertNotNull(node);
+            node.remove();
+          }
+          fail("expected ConcurrentModificationException");
+        } catch (ConcurrentModificationException e) {
+          // expected
+        }
+      }
+      assertEquals(8, graph.nodeCount());
+
+      /* removing them via a copy works */
+      final List<Node> nodes = new ArrayList<>();
+      graph.nodes().forEachRemaining(nodes::add);
+      nodes.forEach(Node::remove);
+      assertEquals(0, graph.nodeCount());
+    }
+  }
+
+  @Test
+  public void shouldLookupNodesWhileOtherThreadsModifyTheStripedTable() throws Exception {
+    try (OdbGraph graph = GratefulDead.newGraph()) {
+      final StripedNodeTable table = new StripedNodeTable(0);
+      final List<NodeRef> stable = new ArrayList<>();
+      final List<NodeRef> transients = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+        final NodeRef ref = (NodeRef) graph.addNode(i, Song.label);
+        if (i % 2 == 0) {
+          stable.add(ref);
+          table.add(ref);
+        } else {
+          transients.add(ref);
+        }
+      }
+
+      final AtomicBoolean done = new AtomicBoolean(false);
+      final Thread writer = new Thread(() -> {
+        /* adds and removes nodes over and over, i.e. the stripes are resized and their probe sequences shift */
+        for (int round = 0; round < 50; round++) {
+          for (NodeRef ref : transients) table.add(ref);
+          for (NodeRef ref : transients) table.remove(ref.id);
+        }
+        done.set(true);
+      });
+      writer.start();
+      int iterations = 0;
+      while (!done.get() || iterations == 0) {
+        for (NodeRef ref : stable) assertSame(ref, table.get(ref.id));
+        final Set<NodeRef> iterated = new HashSet<>();
+        table.iterator(Song.label).forEachRemaining(iterated::add);
+        assertTrue(iterated.containsAll(stable));
+        iterations++;
+      }
+      writer.join();
+      assertEquals(stable.size(), table.size());
+    }
+  }
+
+  private int count(Iterator<?> iter) {
+    int count = 0;
+    while (iter.hasNext()) {
+      iter.next();
+      count++;
+    }
+    return count;
+  }
+
+}
@@ -1,55 +1,167 @@
 package overflowdb;
 
-import org.apache.commons.lang3.NotImplementedException;
-import org.apache.tinkerpop.gremlin.structure.Element;
-import org.apache.tinkerpop.gremlin.structure.Property;
 import org.junit.Test;
+import overflowdb.storage.InMemoryBackend;
+import overflowdb.storage.StorageBackend;
+import overflowdb.testdomains.simple.SimpleDomain;
+import overflowdb.testdomains.simple.TestNode;
 
-import java.io.IOException;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-//TODO MP
-public class ReferenceManagerTest {
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
-  private int heapPercentageThreshold = 80;
+public class ReferenceManagerTest {
 
   @Test
   public void shouldReleaseConfiguredRefCount() {
-    int releaseCount = 2;
-//        ReferenceManager refMgr = new ReferenceManager(heapPercentageThreshold, releaseCount);
-//        refMgr.registerRef(new DummyElementRef());
-//        refMgr.clearReferences();
-
-
-  }
-
-
-//  private class DummyElementRef extends NodeRef {
-//    private final String label;
-//
-//    public DummyElementRef(Element element) {
-//      super(element.id(), element.graph(), element);
-//      this.label = element.label();
-//    }
-//
-//    @Override
-//    protected Element readFromDisk(long elementId) throws IOException {
-//      throw new NotImplementedException("");
-//    }
-//
-//    @Override
-//    public Property<?> property(String key, Object value) {
-//      throw new NotImplementedException("");
-//    }
-//
-//    @Override
-//    public Iterator<? extends Property<?>> properties(String... propertyKeys) {
-//      throw new NotImplementedException("");
-//    }
-//
-//    @Override
-//    public String label() {
-//      return label;
-//    }
-//  }
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withReleaseCount(2))) {
+      addNodes(graph, 10);
+      assertEquals(2, graph.referenceManager.calculateReleaseCount(Long.MAX_VALUE));
+      assertEquals(2, graph.referenceManager.calculateReleaseCount(1));
+    }
+  }
+
+  @Test
+  public void shouldDeriveReleaseCountFromHeapOvershootInAdaptiveMode() {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withReleaseCount(2).withAdaptiveReleaseCount())) {
+      addNodes(graph, 10);
+      // no node serialized yet, i.e. we don't know the average node size: fall back to configured release count
+      assertEquals(2, graph.referenceManager.calculateReleaseCount(100000));
+
+      graph.referenceManager.clearAllReferences();
+      final long averageNodeSize = graph.storage.getAverageSerializedNodeSize();
+      assertTrue(averageNodeSize > 0);
+      assertEquals(5, graph.referenceManager.calculateReleaseCount(averageNodeSize * 5));
+      assertEquals(6, graph.referenceManager.calculateReleaseCount(averageNodeSize * 5 + 1));
+      assertEquals(1, graph.referenceManager.calculateReleaseCount(1));
+    }
+  }
+
+  @Test
+  public void backpressureShouldWaitUntilClearingIsCompleted() throws InterruptedException {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow())) {
+      final ReferenceManager referenceManager = graph.referenceManager;
+      referenceManager.applyBackpressureMaybe();
+      assertEquals(0, referenceManager.getBackpressureWaitCount());
+
+      referenceManager.startClearing();
+      final Thread nodeCreator = new Thread(() -> graph.addNode(1, TestNode.LABEL));
+      nodeCreator.start();
+      nodeCreator.join(100);
+      assertTrue(nodeCreator.isAlive());
+      assertEquals(0, graph.nodeCount());
+
+      referenceManager.completeClearing();
+      nodeCreator.join();
+      assertEquals(1, graph.nodeCount());
+      assertEquals(1, referenceManager.getBackpressureWaitCount());
+      assertTrue(referenceManager.getBackpressureWaitTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+      assertEquals(0, referenceManager.getBackpressureTimeoutCount());
+    }
+  }
+
+  @Test
+  public void backpressureShouldStopWaitingAfterTimeout() {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withMaxBackpressureWaitMillis(50))) {
+      final ReferenceManager referenceManager = graph.referenceManager;
+      referenceManager.startClearing();
+      graph.addNode(1, TestNode.LABEL);
+      referenceManager.completeClearing();
+
+      assertEquals(1, graph.nodeCount());
+      assertEquals(1, referenceManager.getBackpressureWaitCount());
+      assertEquals(1, referenceManager.getBackpressureTimeoutCount());
+      assertTrue(referenceManager.getBackpressureWaitTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+  }
+
+  @Test
+  public void shouldWriteAllNodesThroughSmallWriteQueue() {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withWriteQueueCapacity(2))) {
+      addNodes(graph, 100);
+      graph.referenceManager.clearAllReferences();
+      assertEquals(100, graph.referenceManager.getTotalReleaseCount());
+      assertEquals(100, graph.storage.allNodes().size());
+
+      final NodeRef node = (NodeRef) graph.node(42);
+      assertTrue(node.isCleared());
+      assertEquals("node 42", node.property2(TestNode.STRING_PROPERTY));
+    }
+  }
+
+  @Test
+  public void shouldClearUnmodifiedNodesWithoutWritingThemAgain() {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withSerializationStatsEnabled())) {
+      addNodes(graph, 10);
+      graph.referenceManager.clearAllReferences();
+      final NodeRef node = (NodeRef) graph.node(3);
+      node.get(); // read back from storage, registered for clearing again
+      assertTrue(node.isSet());
+
+      final int serializedCount = graph.storage.getNodeSerializer().getSerializedCount();
+      graph.referenceManager.clearAllReferences();
+      assertTrue(node.isCleared());
+      assertEquals(serializedCount, graph.storage.getNodeSerializer().getSerializedCount());
+    }
+  }
+
+  @Test
+  public void shouldMaterializeClearedNodesInOneBatch() {
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow())) {
+      addNodes(graph, 10);
+      final NodeRef node1 = (NodeRef) graph.node(1);
+      final NodeRef node2 = (NodeRef) graph.node(2);
+      graph.referenceManager.clearAllReferences();
+      node2.get();
+
+      assertEquals(1, NodeRef.getAll(Arrays.asList(node1, node2, node1)));
+      assertTrue(node1.isSet());
+      assertEquals(2, graph.referenceManager.getMissCount());
+      assertEquals("node 1", node1.property2(TestNode.STRING_PROPERTY));
+
+      assertEquals(8, graph.materialize(graph.nodes()));
+      assertEquals(0, graph.materialize(graph.nodes()));
+    }
+  }
+
+  @Test
+  public void shouldKeepNodesInMemoryIfTheyCannotBeWritten() {
+    final AtomicBoolean failFlush = new AtomicBoolean(false);
+    final StorageBackend.Factory backend = location -> new InMemoryBackend(location) {
+      @Override
+      public void flush() {
+        if (failFlush.getAndSet(false)) throw new IllegalStateException("disk full");
+      }
+    };
+    try (OdbGraph graph = SimpleDomain.newGraph(OdbConfig.withoutOverflow().withStorageBackend(backend))) {
+      addNodes(graph, 10);
+      failFlush.set(true);
+      try {
+        graph.referenceManager.clearAllReferences();
+        fail("expected the flush to fail");
+      } catch (RuntimeException e) {
+        // expected
+      }
+      final NodeRef node = (NodeRef) graph.node(3);
+      assertTrue(node.isSet());
+      assertEquals(0, graph.referenceManager.getTotalReleaseCount());
+
+      /* the nodes have been registered again, and are written by the next run */
+      graph.referenceManager.clearAllReferences();
+      assertEquals(10, graph.referenceManager.getTotalReleaseCount());
+      assertTrue(node.isCleared());
+      assertEquals("node 3", node.property2(TestNode.STRING_PROPERTY));
+    }
+  }
+
+  private void addNodes(OdbGraph graph, int count) {
+    for (int i = 0; i < count; i++) {
+      graph.addNode(i, TestNode.LABEL, TestNode.STRING_PROPERTY, "node " + i);
+    }
+  }
+
 }
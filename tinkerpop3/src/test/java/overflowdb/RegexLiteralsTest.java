@@ -0,0 +1,60 @@
+package overflowdb;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RegexLiteralsTest {
+
+  @Test
+  public void shouldExtractRequiredLiterals() {
+    assertLiterals("foo", "foo");
+    assertLiterals("foo.*bar", "foo", "bar");
+    assertLiterals(".*foo\\.bar[0-9]+", "foo.bar");
+    assertLiterals("ab?cd", "a", "cd");
+    assertLiterals("ab+cd", "ab", "cd");
+    assertLiterals("abc{0,2}de", "ab", "de");
+    assertLiterals("abc{2,}de", "abc", "de");
+    assertLiterals("a\\d+bcd\\p{Alpha}ef", "a", "bcd", "ef");
+    assertLiterals("\\Qa.b*c\\Ed", "a.b*cd");
+    assertLiterals("x(?:foo|bar)baz", "x", "baz");
+    assertLiterals("(foo)?bar(?<name>baz)", "bar", "baz");
+    assertLiterals("foo(?=bar)", "foo");
+    assertLiterals("[a(|)]bcd", "bcd");
+    assertLiterals("[]|]abc", "abc");
+    assertLiterals(".*");
+  }
+
+  @Test
+  public void shouldTreatSupplementaryCharactersAsOneAtom() {
+    final String emoji = "\uD83D\uDE00"; // U+1F600, a single code point
+    assertLiterals("abc" + emoji + "?def", "abc", "def");
+    assertLiterals("a" + emoji + "+b", "a" + emoji, "b");
+    assertLiterals("\\Qa" + emoji + "\\E?b", "a", "b");
+    assertLiterals("\\" + emoji + "x", emoji + "x");
+  }
+
+  @Test
+  public void shouldExtractAlternatives() {
+    assertEquals(Arrays.asList(Arrays.asList("foo"), Arrays.asList("bar", "baz")),
+        RegexLiterals.requiredLiterals("foo|bar.baz"));
+    assertEquals(Arrays.asList(Arrays.asList("foo"), Collections.emptyList()),
+        RegexLiterals.requiredLiterals("foo|"));
+  }
+
+  @Test
+  public void shouldNotAnalyseRegexesWithInlineFlags() {
+    assertNull(RegexLiterals.requiredLiterals("(?i)foo"));
+    assertNull(RegexLiterals.requiredLiterals("bar(?i:foo)"));
+  }
+
+  private void assertLiterals(String regex, String... expected) {
+    final List<List<String>> alternatives = RegexLiterals.requiredLiterals(regex);
+    assertEquals(Collections.singletonList(Arrays.asList(expected)), alternatives);
+  }
+}
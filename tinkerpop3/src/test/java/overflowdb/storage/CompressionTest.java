@@ -0,0 +1,113 @@
+package overflowdb.storage;
+
+import org.junit.Test;
+import overflowdb.Node;
+import overflowdb.OdbConfig;
+import overflowdb.OdbGraph;
+import overflowdb.testdomains.gratefuldead.GratefulDead;
+import overflowdb.testdomains.gratefuldead.Song;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompressionTest {
+
+  @Test
+  public void shouldRoundTripCompressibleData() throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10000; i++) sb.append("node ").append(i % 100).append(", ");
+    final byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+    for (Compression compression : new Compression[]{Compression.LZ4, Compression.DEFLATE}) {
+      final byte[] compressed = compression.compress(data);
+      assertEquals(Compression.COMPRESSED_MARKER, compressed[0]);
+      assertTrue(compression + " should compress repetitive data", compressed.length < data.length / 4);
+      assertArrayEquals(data, Compression.decompress(compressed));
+    }
+  }
+
+  @Test
+  public void shouldRoundTripArbitraryData() throws IOException {
+    final Random random = new Random(42);
+    for (int length : new int[]{0, 1, 4, 12, 13, 17, 100, 1000, 70000}) {
+      final byte[] data = new byte[length];
+      for (int i = 0; i < length; i++) {
+        /* small alphabet, so that there are some (short) matches */
+        data[i] = (byte) random.nextInt(8);
+      }
+      for (Compression compression : Compression.values()) {
+        assertArrayEquals(compression + ", length=" + length, data, Compression.decompress(compression.compress(data)));
+      }
+    }
+  }
+
+  @Test
+  public void shouldStoreIncompressibleDataUncompressed() throws IOException {
+    final byte[] data = new byte[100];
+    new Random(42).nextBytes(data);
+    data[0] = NodeSerializer.FORMAT_MARKER;
+
+    for (Compression compression : Compression.values()) {
+      assertSame(data, compression.compress(data));
+      assertSame(data, Compression.decompress(data));
+    }
+  }
+
+  @Test
+  public void shouldCompressLz4IntoTheGivenBufferOnly() {
+    final byte[] data = new byte[1000];
+    final Random random = new Random(42);
+    for (int i = 0; i < data.length; i++) data[i] = (byte) random.nextInt(8);
+
+    final byte[] dest = new byte[data.length];
+    final int end = Compression.LZ4.compress(data, dest, 3);
+    assertTrue(end > 3);
+    for (int size = 3; size < end; size++) {
+      assertEquals("size=" + size, -1, Compression.LZ4.compress(data, new byte[size], 3));
+    }
+    final byte[] exact = new byte[end];
+    assertEquals(end, Compression.LZ4.compress(data, exact, 3));
+    assertArrayEquals(Arrays.copyOfRange(dest, 3, end), Arrays.copyOfRange(exact, 3, end));
+  }
+
+  @Test
+  public void shouldRestoreGraphWithDifferentCompression() throws IOException {
+    final File storageFile = Files.createTempFile("overflowdb", "bin").toFile();
+    storageFile.deleteOnExit();
+
+    try (OdbGraph graph = GratefulDead.newGraph(config(storageFile, Compression.LZ4))) {
+      GratefulDead.loadData(graph);
+    }
+    try (OdbStorage storage = OdbStorage.createWithSpecificLocation(storageFile, false)) {
+      assertTrue(storage.allNodes().stream().anyMatch(entry -> entry.getValue()[0] == Compression.COMPRESSED_MARKER));
+    }
+
+    /* nodes written with LZ4 can be read with any configured compression, and new nodes are written uncompressed */
+    final long newSongId;
+    try (OdbGraph graph = GratefulDead.newGraph(config(storageFile, Compression.NONE))) {
+      assertEquals(808, graph.nodeCount());
+      assertEquals(Long.valueOf(8049), graph.traversal().V().outE().count().next());
+      newSongId = graph.addNode(Song.label, Song.NAME, "new song").id2();
+    }
+
+    try (OdbGraph graph = GratefulDead.newGraph(config(storageFile, Compression.DEFLATE))) {
+      assertEquals(809, graph.nodeCount());
+      assertEquals(Long.valueOf(8049), graph.traversal().V().outE().count().next());
+      Node newSong = graph.node(newSongId);
+      assertEquals("new song", newSong.property2(Song.NAME));
+    }
+  }
+
+  private OdbConfig config(File storageFile, Compression compression) {
+    return OdbConfig.withoutOverflow().withStorageLocation(storageFile.getAbsolutePath()).withCompression(compression);
+  }
+}
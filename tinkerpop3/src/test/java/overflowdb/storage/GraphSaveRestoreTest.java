@@ -17,6 +17,8 @@ import java.nio.file.Files;
 import java.util.function.Function;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * save and restore a graph from disk overlay
@@ -165,6 +167,54 @@ public class GraphSaveRestoreTest {
     });
   }
 
+  @Test
+  public void shouldRestoreFromNodeManifestWithoutReadingNodes() throws IOException {
+    final File storageFile = Files.createTempFile("overflowdb", "bin").toFile();
+    storageFile.deleteOnExit();
+
+    final long maxId;
+    try (OdbGraph graph = newGratefulDeadGraph(storageFile, false)) {
+      loadGraphMl(graph);
+      maxId = graph.addNode(Song.label, Song.NAME, "new song").id2();
+    }
+
+    try (OdbGraph graph = newGratefulDeadGraph(storageFile, false)) {
+      final NodeDeserializer nodeDeserializer = graph.getStorage().getNodeDeserializer().get();
+      assertEquals(809, graph.nodeCount());
+      assertEquals(0, nodeDeserializer.getSerializedCount());
+      assertFalse("manifest should be removed on open", NodeManifest.load(graph.getStorage().getBackend()).isPresent());
+
+      assertEquals(Long.valueOf(224), graph.traversal().V().hasLabel(Artist.label).count().next());
+      assertEquals(0, nodeDeserializer.getSerializedCount());
+      assertEquals("new song", graph.node(maxId).property2(Song.NAME));
+      assertEquals(1, nodeDeserializer.getSerializedCount());
+      assertEquals(Long.valueOf(8049), graph.traversal().V().outE().count().next());
+      assertTrue(graph.addNode(Song.label).id2() > maxId);
+    }
+  }
+
+  @Test
+  public void shouldRestoreWithoutNodeManifest() throws IOException {
+    final File storageFile = Files.createTempFile("overflowdb", "bin").toFile();
+    storageFile.deleteOnExit();
+
+    final long maxId;
+    try (OdbGraph graph = newGratefulDeadGraph(storageFile, false)) {
+      loadGraphMl(graph);
+      maxId = graph.addNode(Song.label, Song.NAME, "new song").id2();
+    }
+    try (OdbStorage storage = OdbStorage.createWithSpecificLocation(storageFile, false)) {
+      NodeManifest.remove(storage.getBackend());
+    }
+
+    try (OdbGraph graph = newGratefulDeadGraph(storageFile, false)) {
+      assertEquals(809, graph.nodeCount());
+      assertEquals(Long.valueOf(224), graph.traversal().V().hasLabel(Artist.label).count().next());
+      assertEquals(Long.valueOf(8049), graph.traversal().V().outE().count().next());
+      assertTrue(graph.addNode(Song.label).id2() > maxId);
+    }
+  }
+
   private void modifyAndCloseGraph(File storageFile, Function<OdbGraph, Integer> graphModifications) {
     OdbGraph graph = newGratefulDeadGraph(storageFile, false);
     int expectedSerializationCount = graphModifications.apply(graph);
@@ -0,0 +1,230 @@
+package overflowdb.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import overflowdb.Node;
+import overflowdb.NodeRef;
+import overflowdb.OdbConfig;
+import overflowdb.OdbGraph;
+import overflowdb.testdomains.gratefuldead.GratefulDead;
+import overflowdb.testdomains.gratefuldead.Song;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MMapNodeStoreTest {
+  private static final int SEGMENT_SIZE = 1024;
+
+  private File directory;
+
+  @Before
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("overflowdb-mmap").toFile();
+  }
+
+  @After
+  public void cleanup() {
+    deleteRecursively(directory);
+  }
+
+  @Test
+  public void shouldPutGetAndRemove() {
+    try (MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE)) {
+      store.put(1, bytes(1, 10));
+      store.put(2, bytes(2, 20));
+      assertArrayEquals(bytes(1, 10), store.get(1));
+      assertArrayEquals(bytes(2, 20), store.get(2));
+      assertNull(store.get(3));
+
+      store.put(1, bytes(3, 30));
+      assertArrayEquals(bytes(3, 30), store.get(1));
+      assertEquals(2, store.size());
+
+      store.remove(2);
+      store.remove(3); // never stored
+      assertNull(store.get(2));
+      assertEquals(1, store.size());
+    }
+  }
+
+  @Test
+  public void shouldRestoreFromSegmentFiles() {
+    final Map<Long, byte[]> expected = new HashMap<>();
+    try (MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE)) {
+      // spans multiple segments, including one that's larger than the regular segment size
+      for (long id = 0; id < 100; id++) {
+        final byte[] bytes = bytes((int) id, 50);
+        store.put(id, bytes);
+        expected.put(id, bytes);
+      }
+      store.put(100, bytes(100, SEGMENT_SIZE * 2));
+      store.put(5, bytes(5, 60));
+      store.remove(7);
+      expected.put(100L, bytes(100, SEGMENT_SIZE * 2));
+      expected.put(5L, bytes(5, 60));
+      expected.remove(7L);
+    }
+
+    try (MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE)) {
+      assertEquals(expected.size(), store.size());
+      expected.forEach((id, bytes) -> assertArrayEquals(bytes, store.get(id)));
+      assertNull(store.get(7));
+
+      final Map<Long, byte[]> scanned = new HashMap<>();
+      store.entrySet().forEach(entry -> scanned.put(entry.getKey(), entry.getValue()));
+      assertEquals(expected.size(), scanned.size());
+      expected.forEach((id, bytes) -> assertArrayEquals(bytes, scanned.get(id)));
+
+      final Map<Long, byte[]> scannedPartitions = new HashMap<>();
+      final List<Iterable<Map.Entry<Long, byte[]>>> partitions = store.entriesPartitioned(3);
+      assertEquals(3, partitions.size());
+      partitions.forEach(partition -> partition.forEach(entry -> scannedPartitions.put(entry.getKey(), entry.getValue())));
+      assertEquals(expected.size(), scannedPartitions.size());
+      expected.forEach((id, bytes) -> assertArrayEquals(bytes, scannedPartitions.get(id)));
+
+      // appending to the restored store
+      store.put(200, bytes(200, 10));
+      assertArrayEquals(bytes(200, 10), store.get(200));
+    }
+  }
+
+  @Test
+  public void shouldCompactSegmentsWithGarbage() {
+    try (MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE)) {
+      for (long id = 0; id < 100; id++) {
+        store.put(id, bytes((int) id, 50));
+      }
+      final int segmentCountBefore = store.segmentCount();
+      assertTrue(segmentCountBefore > 2);
+
+      // overwrite most and remove some nodes, i.e. all but the active segment are mostly garbage
+      for (long id = 0; id < 80; id++) {
+        store.put(id, bytes((int) id + 1, 50));
+      }
+      for (long id = 80; id < 90; id++) {
+        store.remove(id);
+      }
+      store.compact();
+      assertTrue(store.compactionCandidates().isEmpty());
+      // the first segment only contained nodes that have been overwritten since
+      assertFalse(new File(directory, "segment-00000000.bin").exists());
+      assertEquals(90, store.size());
+
+      for (long id = 0; id < 80; id++) assertArrayEquals(bytes((int) id + 1, 50), store.get(id));
+      for (long id = 80; id < 90; id++) assertNull(store.get(id));
+      for (long id = 90; id < 100; id++) assertArrayEquals(bytes((int) id, 50), store.get(id));
+    }
+
+    // compacted segments are deleted, removed nodes must not be resurrected
+    try (MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE)) {
+      assertEquals(90, store.size());
+      for (long id = 80; id < 90; id++) assertNull(store.get(id));
+      for (long id = 0; id < 80; id++) assertArrayEquals(bytes((int) id + 1, 50), store.get(id));
+    }
+  }
+
+  @Test
+  public void shouldRestoreEmptyRecords() {
+    try (MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE)) {
+      store.put(1, new byte[0]);
+      store.put(2, bytes(2, 20));
+    }
+    try (MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE)) {
+      assertEquals(2, store.size());
+      assertArrayEquals(new byte[0], store.get(1));
+      assertArrayEquals(bytes(2, 20), store.get(2));
+    }
+  }
+
+  @Test
+  public void shouldIgnoreTornRecords() throws IOException {
+    try (MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE)) {
+      store.put(1, bytes(1, 10));
+      store.put(2, bytes(2, 20));
+      store.put(3, bytes(3, 30));
+    }
+    // simulate a crash while the last record was written: its bytes don't match the crc any more
+    try (RandomAccessFile segmentFile = new RandomAccessFile(new File(directory, "segment-00000000.bin"), "rw")) {
+      final int lastRecordOffset = (16 + 10) + (16 + 20);
+      segmentFile.seek(lastRecordOffset + 16 + 5);
+      segmentFile.write(0);
+    }
+
+    try (MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE)) {
+      assertEquals(2, store.size());
+      assertArrayEquals(bytes(1, 10), store.get(1));
+      assertArrayEquals(bytes(2, 20), store.get(2));
+      assertNull(store.get(3));
+      // overwrites the torn record, and marks the end of the segment after it
+      store.put(4, bytes(4, 5));
+    }
+    try (MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE)) {
+      assertEquals(3, store.size());
+      assertArrayEquals(bytes(4, 5), store.get(4));
+      assertNull(store.get(3));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldRejectWritesAfterClose() {
+    final MMapNodeStore store = new MMapNodeStore(directory, SEGMENT_SIZE);
+    store.close();
+    store.put(1, bytes(1, 10));
+  }
+
+  @Test
+  public void shouldPersistGraphWithMMapNodeStore() {
+    final File storageFile = new File(directory, "graph.bin");
+    final OdbConfig config = OdbConfig.withoutOverflow().withStorageBackend(StorageBackend.MMAP).withStorageLocation(storageFile.getAbsolutePath());
+    try (OdbGraph graph = GratefulDead.newGraph(config)) {
+      final Node song1 = graph.addNode(1L, Song.label, Song.NAME, "Song 1");
+      final Node song2 = graph.addNode(2L, Song.label, Song.NAME, "Song 2");
+      song1.addEdge("followedBy", song2);
+    }
+    assertTrue(new File(directory, "graph.bin.nodes").isDirectory());
+
+    try (OdbGraph graph = GratefulDead.newGraph(config)) {
+      assertEquals(2, graph.nodeCount());
+      final NodeRef song1 = (NodeRef) graph.node(1L);
+      assertEquals("Song 1", song1.property2(Song.NAME));
+      assertEquals("Song 2", ((NodeRef) song1.out("followedBy").next()).property2(Song.NAME));
+    }
+  }
+
+  @Test
+  public void shouldDeleteTempNodeStoreOnClose() {
+    final File nodeStoreDirectory;
+    try (OdbGraph graph = GratefulDead.newGraph(OdbConfig.withDefaults().withStorageBackend(StorageBackend.MMAP))) {
+      graph.addNode(Song.label, Song.NAME, "Song 1");
+      nodeStoreDirectory = ((MMapBackend) graph.getStorage().getBackend()).getNodeStore().getDirectory();
+      assertTrue(nodeStoreDirectory.exists());
+    }
+    assertFalse(nodeStoreDirectory.exists());
+  }
+
+  private static byte[] bytes(int seed, int length) {
+    final byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) bytes[i] = (byte) (seed + i);
+    return bytes;
+  }
+
+  private static void deleteRecursively(File file) {
+    final File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) deleteRecursively(child);
+    }
+    file.delete();
+  }
+}
@@ -1,8 +1,11 @@
 package overflowdb.storage;
 
 import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
 import overflowdb.Node;
 import overflowdb.NodeFactory;
+import overflowdb.NodeLayoutInformation;
 import overflowdb.NodeRef;
 import overflowdb.OdbEdge;
 import overflowdb.OdbGraph;
@@ -14,9 +17,15 @@ import overflowdb.testdomains.simple.TestNodeDb;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Optional;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
 public class SerializerTest {
 
@@ -79,6 +88,126 @@ public class SerializerTest {
     }
   }
 
+  @Test
+  public void serializeWithRemovedEdges() throws IOException {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      NodeSerializer serializer = new NodeSerializer(false);
+      NodeDeserializer deserializer = newDeserializer(graph);
+
+      TestNode testNode1 = (TestNode) graph.addNode(TestNode.LABEL);
+      TestNode testNode2 = (TestNode) graph.addNode(TestNode.LABEL);
+      TestNode testNode3 = (TestNode) graph.addNode(TestNode.LABEL);
+      TestNode testNode4 = (TestNode) graph.addNode(TestNode.LABEL);
+      testNode1.addEdge2(TestEdge.LABEL, testNode2, TestEdge.LONG_PROPERTY, 2L);
+      testNode1.addEdge2(TestEdge.LABEL, testNode3, TestEdge.LONG_PROPERTY, 3L).remove();
+      testNode1.addEdge2(TestEdge.LABEL, testNode4, TestEdge.LONG_PROPERTY, 4L);
+
+      TestNodeDb deserialized = (TestNodeDb) deserializer.deserialize(serializer.serialize(testNode1.get()));
+      Iterator<OdbEdge> edges = deserialized.outE(TestEdge.LABEL);
+      OdbEdge edge1 = edges.next();
+      OdbEdge edge2 = edges.next();
+      assertFalse(edges.hasNext());
+      assertEquals(testNode2.id2(), edge1.inNode().id2());
+      assertEquals(2L, (long) edge1.value(TestEdge.LONG_PROPERTY));
+      assertEquals(testNode4.id2(), edge2.inNode().id2());
+      assertEquals(4L, (long) edge2.value(TestEdge.LONG_PROPERTY));
+      // the hole of the removed edge is retained, i.e. the block offsets of all other edges remain unchanged
+      assertArrayEquals(new int[]{0, 6, 6, 0}, deserialized.getEdgeOffsets());
+    }
+  }
+
+  @Test
+  public void serializeDoubleLosslessly() throws IOException {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      NodeSerializer serializer = new NodeSerializer(false);
+      NodeDeserializer deserializer = newDeserializer(graph);
+      TestNode testNode = (TestNode) graph.addNode(TestNode.LABEL, TestNode.DOUBLE_PROPERTY, Math.PI);
+
+      Node deserialized = deserializer.deserialize(serializer.serialize(testNode.get()));
+      assertEquals(Math.PI, (double) deserialized.property2(TestNode.DOUBLE_PROPERTY), 0d);
+    }
+  }
+
+  @Test
+  public void deserializeAfterSchemaChange() throws IOException {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      final StorageBackend backend = StorageBackend.IN_MEMORY.create(Optional.empty());
+      // nodes were stored with an older schema, which only had two of the property keys
+      final NodeLayoutInformation oldLayout = new NodeLayoutInformation(
+          TestNodeDb.layoutInformation.labelId,
+          new HashSet<>(Arrays.asList(TestNode.STRING_PROPERTY, TestNode.INT_PROPERTY)),
+          Arrays.asList(TestEdge.layoutInformation),
+          Arrays.asList(TestEdge.layoutInformation));
+      new PropertyKeyDictionary(backend).forLayout(oldLayout);
+
+      NodeSerializer serializer = new NodeSerializer(false, new PropertyKeyDictionary(backend));
+      NodeDeserializer deserializer = newDeserializer(graph);
+      deserializer.setPropertyKeyDictionary(new PropertyKeyDictionary(backend));
+      TestNode testNode = (TestNode) graph.addNode(
+          TestNode.LABEL,
+          TestNode.STRING_PROPERTY, "StringValue",
+          TestNode.INT_PROPERTY, 42,
+          TestNode.DOUBLE_PROPERTY, 1.5d);
+
+      Node deserialized = deserializer.deserialize(serializer.serialize(testNode.get()));
+      assertEquals(testNode.get().propertyMap(), deserialized.propertyMap());
+
+      // the keys of the old schema keep their position, new keys are appended
+      PropertyKeyDictionary.LabelKeys keys = new PropertyKeyDictionary(backend).forLayout(TestNodeDb.layoutInformation);
+      assertEquals(TestNode.INT_PROPERTY, keys.keyAt(0));
+      assertEquals(TestNode.STRING_PROPERTY, keys.keyAt(1));
+      assertEquals(TestNode.DOUBLE_PROPERTY, keys.keyAt(2));
+      assertEquals(TestNode.STRING_LIST_PROPERTY, keys.keyAt(4));
+      assertNull(keys.keyAt(5));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectUnsupportedFormatVersion() throws IOException {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      final byte[] bytes = new byte[]{NodeSerializer.FORMAT_MARKER, NodeSerializer.FORMAT_VERSION + 1, 42, 2, 0, 4, 0, 0, 0, 0, 0};
+      newDeserializer(graph).deserialize(bytes);
+    }
+  }
+
+  @Test
+  public void deserializeLegacyFormat() throws IOException {
+    try (OdbGraph graph = SimpleDomain.newGraph()) {
+      NodeDeserializer deserializer = newDeserializer(graph);
+      TestNode testNode1 = (TestNode) graph.addNode(TestNode.LABEL);
+      TestNode testNode2 = (TestNode) graph.addNode(TestNode.LABEL);
+
+      final byte[] bytes;
+      try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+        packer.packLong(testNode1.id2());
+        packer.packInt(TestNodeDb.layoutInformation.labelId);
+        packer.packMapHeader(2);
+        packer.packString(TestNode.STRING_PROPERTY);
+        packer.packArrayHeader(2).packByte(ValueTypes.STRING.id).packString("StringValue");
+        packer.packString(TestNode.INT_LIST_PROPERTY);
+        packer.packArrayHeader(2).packByte(ValueTypes.LIST.id).packArrayHeader(2);
+        packer.packArrayHeader(2).packByte(ValueTypes.INTEGER.id).packInt(42);
+        packer.packArrayHeader(2).packByte(ValueTypes.INTEGER.id).packInt(43);
+        packer.packArrayHeader(4).packInt(0).packInt(2).packInt(4).packInt(0); // edge offsets
+        packer.packArrayHeader(4); // adjacent nodes with properties, including some overallocation
+        packer.packArrayHeader(2).packByte(ValueTypes.NODE_REF.id).packLong(testNode2.id2());
+        packer.packArrayHeader(2).packByte(ValueTypes.LONG.id).packLong(Long.MAX_VALUE);
+        packer.packArrayHeader(2).packByte(ValueTypes.UNKNOWN.id).packNil();
+        packer.packArrayHeader(2).packByte(ValueTypes.UNKNOWN.id).packNil();
+        bytes = packer.toByteArray();
+      }
+
+      assertEquals(testNode1.id2(), deserializer.deserializeRef(bytes).id);
+      Node deserialized = deserializer.deserialize(bytes);
+      assertEquals(testNode1.id2(), deserialized.id2());
+      assertEquals("StringValue", deserialized.property2(TestNode.STRING_PROPERTY));
+      assertEquals(Arrays.asList(42, 43), deserialized.property2(TestNode.INT_LIST_PROPERTY));
+      OdbEdge edge = deserialized.outE(TestEdge.LABEL).next();
+      assertEquals(testNode2.id2(), edge.inNode().id2());
+      assertEquals(Long.MAX_VALUE, (long) edge.value(TestEdge.LONG_PROPERTY));
+    }
+  }
+
   private NodeDeserializer newDeserializer(OdbGraph graph) {
     Map<Integer, NodeFactory> nodeFactories = new HashMap();
     nodeFactories.put(TestNodeDb.layoutInformation.labelId, TestNode.factory);
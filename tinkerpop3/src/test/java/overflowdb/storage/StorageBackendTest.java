@@ -0,0 +1,153 @@
+package overflowdb.storage;
+
+import org.junit.Test;
+import overflowdb.NodeRef;
+import overflowdb.OdbConfig;
+import overflowdb.OdbGraph;
+import overflowdb.testdomains.gratefuldead.GratefulDead;
+import overflowdb.testdomains.gratefuldead.Song;
+import overflowdb.testdomains.gratefuldead.SongDb;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StorageBackendTest {
+  private static final List<StorageBackend.Factory> ALL_BACKENDS =
+      Arrays.asList(StorageBackend.MVSTORE, StorageBackend.MMAP, StorageBackend.IN_MEMORY);
+
+  @Test
+  public void shouldStoreNodes() {
+    for (StorageBackend.Factory backendFactory : ALL_BACKENDS) {
+      try (StorageBackend backend = backendFactory.create(Optional.empty())) {
+        backend.put(1, new byte[]{1});
+        backend.put(2, new byte[]{2, 2});
+        backend.put(1, new byte[]{1, 1, 1});
+        backend.remove(2);
+        backend.remove(3);
+
+        assertArrayEquals(new byte[]{1, 1, 1}, backend.get(1));
+        assertNull(backend.get(2));
+        assertEquals(1, backend.allNodes().size());
+        final Map.Entry<Long, byte[]> entry = backend.allNodes().iterator().next();
+        assertEquals(Long.valueOf(1), entry.getKey());
+        assertArrayEquals(new byte[]{1, 1, 1}, entry.getValue());
+      }
+    }
+  }
+
+  @Test
+  public void shouldReadMultipleNodesAtOnce() {
+    for (StorageBackend.Factory backendFactory : ALL_BACKENDS) {
+      try (StorageBackend backend = backendFactory.create(Optional.empty())) {
+        for (long id = 1; id <= 5; id++) backend.put(id, new byte[]{(byte) id});
+        backend.put(2, new byte[]{22}); // moves node 2 behind the others in append-only stores
+
+        final byte[][] nodes = backend.getAll(new long[]{5, 2, 99, 1});
+        assertArrayEquals(new byte[]{5}, nodes[0]);
+        assertArrayEquals(new byte[]{22}, nodes[1]);
+        assertNull(nodes[2]);
+        assertArrayEquals(new byte[]{1}, nodes[3]);
+      }
+    }
+  }
+
+  @Test
+  public void shouldPartitionAllNodes() {
+    for (StorageBackend.Factory backendFactory : ALL_BACKENDS) {
+      try (StorageBackend backend = backendFactory.create(Optional.empty())) {
+        for (long id = 0; id < 1000; id++) backend.put(id * 3, new byte[]{(byte) id});
+        backend.remove(0);
+
+        final List<Iterable<Map.Entry<Long, byte[]>>> partitions = backend.allNodesPartitioned(7);
+        assertTrue(partitions.size() <= 7);
+        final Set<Long> ids = new HashSet<>();
+        for (Iterable<Map.Entry<Long, byte[]>> partition : partitions) {
+          for (Map.Entry<Long, byte[]> entry : partition) {
+            assertTrue(ids.add(entry.getKey()));
+            assertEquals((byte) (entry.getKey() / 3), entry.getValue()[0]);
+          }
+        }
+        assertEquals(999, ids.size());
+        assertFalse(ids.contains(0L));
+      }
+    }
+  }
+
+  @Test
+  public void shouldStoreIndexes() {
+    for (StorageBackend.Factory backendFactory : ALL_BACKENDS) {
+      try (StorageBackend backend = backendFactory.create(Optional.empty())) {
+        backend.saveIndex("name", Stream.of(indexEntry("a", 1, 2), indexEntry("b", 3)));
+        backend.saveIndex("name", Stream.of(indexEntry("a", 1), indexEntry("c", 4)));
+
+        assertEquals(1, backend.getIndexNames().size());
+        assertTrue(backend.getIndexNames().contains("name"));
+        final Map<Object, long[]> index = new HashMap<>(backend.loadIndex("name"));
+        assertEquals(2, index.size());
+        assertArrayEquals(new long[]{1}, index.get("a"));
+        assertArrayEquals(new long[]{4}, index.get("c"));
+      }
+    }
+  }
+
+  @Test
+  public void shouldStoreMetadata() {
+    for (StorageBackend.Factory backendFactory : ALL_BACKENDS) {
+      try (StorageBackend backend = backendFactory.create(Optional.empty())) {
+        backend.putMetadata("a", new byte[]{1, 2});
+        backend.putMetadata("b", new byte[0]);
+        backend.putMetadata("a", new byte[]{3});
+        backend.removeMetadata("b");
+
+        assertArrayEquals(new byte[]{3}, backend.getMetadata("a"));
+        assertNull(backend.getMetadata("b"));
+      }
+    }
+  }
+
+  @Test
+  public void shouldDeleteTempFilesOnClose() {
+    for (StorageBackend.Factory backendFactory : ALL_BACKENDS) {
+      final StorageBackend backend = backendFactory.create(Optional.empty());
+      backend.put(1, new byte[]{1});
+      backend.flush();
+      final Optional<File> storageFile = backend.getStorageFile();
+      backend.close();
+      storageFile.ifPresent(file -> assertFalse(file.exists()));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void inMemoryBackendShouldNotAcceptStorageLocation() {
+    StorageBackend.IN_MEMORY.create(Optional.of(new File("odb.bin")));
+  }
+
+  @Test
+  public void shouldPersistAndReadNodesWithInMemoryBackend() throws IOException {
+    try (OdbGraph graph = GratefulDead.newGraph(OdbConfig.withoutOverflow().withStorageBackend(StorageBackend.IN_MEMORY))) {
+      final NodeRef song = (NodeRef) graph.addNode(1L, Song.label, Song.NAME, "Song 1");
+      graph.getStorage().persist(song.get());
+      final SongDb restored = graph.getStorage().readNode(1L);
+      assertEquals("Song 1", restored.property(Song.NAME).value());
+    }
+  }
+
+  private static Map.Entry<Object, long[]> indexEntry(String value, long... nodeIds) {
+    return new AbstractMap.SimpleImmutableEntry<>(value, nodeIds);
+  }
+}
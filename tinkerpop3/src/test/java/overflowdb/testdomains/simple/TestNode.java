@@ -13,6 +13,7 @@ public class TestNode extends NodeRef<TestNodeDb> {
   public static final String INT_PROPERTY = "IntProperty";
   public static final String STRING_LIST_PROPERTY = "StringListProperty";
   public static final String INT_LIST_PROPERTY = "IntListProperty";
+  public static final String DOUBLE_PROPERTY = "DoubleProperty";
 
   public TestNode(OdbGraph graph, long id) {
     super(graph, id);
@@ -39,6 +40,10 @@ public class TestNode extends NodeRef<TestNodeDb> {
     return get().intListProperty();
   }
 
+  public Double doubleProperty() {
+    return get().doubleProperty();
+  }
+
   public static NodeFactory<TestNodeDb> factory = new NodeFactory<TestNodeDb>() {
 
     @Override
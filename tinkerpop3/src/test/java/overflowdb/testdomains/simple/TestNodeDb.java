@@ -25,6 +25,7 @@ public class TestNodeDb extends OdbNode {
   private Integer _intProperty;
   private List<String> _stringListProperty;
   private List<Integer> _intListProperty;
+  private Double _doubleProperty;
 
   public String stringProperty() {
     return _stringProperty;
@@ -42,6 +43,10 @@ public class TestNodeDb extends OdbNode {
     return _intListProperty;
   }
 
+  public Double doubleProperty() {
+    return _doubleProperty;
+  }
+
   @Override
   public NodeLayoutInformation layoutInformation() {
     return layoutInformation;
@@ -65,6 +70,8 @@ public class TestNodeDb extends OdbNode {
       return _intProperty;
     } else if (key == TestNode.INT_LIST_PROPERTY) {
       return _intListProperty;
+    } else if (key == TestNode.DOUBLE_PROPERTY) {
+      return _doubleProperty;
     } else {
       return null;
     }
@@ -77,6 +84,7 @@ public class TestNodeDb extends OdbNode {
     if (_stringListProperty != null) properties.put(TestNode.STRING_LIST_PROPERTY, _stringListProperty);
     if (_intProperty != null) properties.put(TestNode.INT_PROPERTY, _intProperty);
     if (_intListProperty != null) properties.put(TestNode.INT_LIST_PROPERTY, _intListProperty);
+    if (_doubleProperty != null) properties.put(TestNode.DOUBLE_PROPERTY, _doubleProperty);
     return properties;
   }
 
@@ -101,6 +109,8 @@ public class TestNodeDb extends OdbNode {
         if (this._intListProperty == null) this._intListProperty = new ArrayList<>();
         this._intListProperty.add((Integer) value);
       }
+    } else if (TestNode.DOUBLE_PROPERTY.equals(key)) {
+      this._doubleProperty = (Double) value;
     } else {
       throw new RuntimeException("property with key=" + key + " not (yet) supported by " + this.getClass().getName());
     }
@@ -117,6 +127,8 @@ public class TestNodeDb extends OdbNode {
       this._intProperty = null;
     } else if (TestNode.INT_LIST_PROPERTY.equals(key)) {
       this._intListProperty = null;
+    } else if (TestNode.DOUBLE_PROPERTY.equals(key)) {
+      this._doubleProperty = null;
     } else {
       throw new RuntimeException("property with key=" + key + " not (yet) supported by " + this.getClass().getName());
     }
@@ -124,7 +136,7 @@ public class TestNodeDb extends OdbNode {
 
   public static NodeLayoutInformation layoutInformation = new NodeLayoutInformation(
       2,
-      new HashSet<>(Arrays.asList(TestNode.STRING_PROPERTY, TestNode.INT_PROPERTY, TestNode.STRING_LIST_PROPERTY, TestNode.INT_LIST_PROPERTY)),
+      new HashSet<>(Arrays.asList(TestNode.STRING_PROPERTY, TestNode.INT_PROPERTY, TestNode.STRING_LIST_PROPERTY, TestNode.INT_LIST_PROPERTY, TestNode.DOUBLE_PROPERTY)),
       Arrays.asList(TestEdge.layoutInformation),
       Arrays.asList(TestEdge.layoutInformation));
 }
@@ -0,0 +1,89 @@
+package overflowdb.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedMpscQueueTest {
+
+  @Test
+  public void shouldBeFifoAcrossChunks() {
+    final ChunkedMpscQueue<Integer> queue = new ChunkedMpscQueue<>();
+    assertTrue(queue.isEmpty());
+    assertNull(queue.poll());
+
+    final int count = ChunkedMpscQueue.CHUNK_SIZE * 3 + 7;
+    for (int i = 0; i < count; i++) {
+      queue.offer(i);
+    }
+    assertEquals(count, queue.size());
+
+    final List<Integer> drained = new ArrayList<>();
+    assertEquals(10, queue.drainTo(drained, 10));
+    assertEquals(count - 10, queue.size());
+    for (int i = 10; i < count; i++) {
+      assertEquals(Integer.valueOf(i), queue.poll());
+    }
+    assertNull(queue.poll());
+    assertTrue(queue.isEmpty());
+
+    // and reuse after it has been emptied
+    queue.offer(42);
+    assertEquals(1, queue.size());
+    assertEquals(Integer.valueOf(42), queue.poll());
+  }
+
+  @Test
+  public void shouldNotLoseElementsWithConcurrentProducers() throws InterruptedException {
+    final ChunkedMpscQueue<Long> queue = new ChunkedMpscQueue<>();
+    final int threadCount = 8;
+    final int elementsPerThread = 100000;
+    final CountDownLatch startSignal = new CountDownLatch(1);
+    final List<Thread> producers = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      final long threadIdx = t;
+      final Thread producer = new Thread(() -> {
+        try {
+          startSignal.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        for (long i = 0; i < elementsPerThread; i++) {
+          queue.offer(threadIdx * elementsPerThread + i);
+        }
+      });
+      producer.start();
+      producers.add(producer);
+    }
+
+    // consume while producers are still running: elements of each producer must arrive in order
+    startSignal.countDown();
+    final long[] lastSeenByThread = new long[threadCount];
+    Arrays.fill(lastSeenByThread, -1);
+    int consumed = 0;
+    while (consumed < threadCount * elementsPerThread) {
+      final Long element = queue.poll();
+      if (element != null) {
+        final int threadIdx = (int) (element / elementsPerThread);
+        final long value = element % elementsPerThread;
+        assertEquals(lastSeenByThread[threadIdx] + 1, value);
+        lastSeenByThread[threadIdx] = value;
+        consumed++;
+      }
+    }
+
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    assertNull(queue.poll());
+    assertEquals(0, queue.size());
+  }
+
+}
@@ -0,0 +1,17 @@
+package overflowdb.traversal
+
+import overflowdb.OdbGraph
+
+import scala.jdk.CollectionConverters._
+
+/**
+ * All nodes with the given label, i.e. the first step of a traversal: property filters can use an index instead of
+ * iterating over all of them, see e.g. [[overflowdb.traversal.filter.NumberPropertyFilter]]
+ */
+class LabelTraversal[A](val graph: OdbGraph, val label: String)
+  /* `++` is lazy, i.e. the nodes are only iterated if no index is used */
+  extends Traversal[A](Iterator.empty ++ graph.nodesByLabel(label).asScala.map(_.asInstanceOf[A])) {
+
+  override def cast[B]: Traversal[B] =
+    new LabelTraversal[B](graph, label)
+}
@@ -1,7 +1,9 @@
 package overflowdb.traversal
 
 import overflowdb.traversal.help.Doc
-import overflowdb.{Node, OdbEdge}
+import overflowdb.{Node, NodeRef, OdbEdge}
+
+import scala.jdk.CollectionConverters._
 
 class NodeTraversal[E <: Node](val traversal: Traversal[E]) extends AnyVal {
 
@@ -13,6 +15,16 @@ class NodeTraversal[E <: Node](val traversal: Traversal[E]) extends AnyVal {
   def hasId(value: Long): Traversal[E] =
     traversal.filter(_.id == value)
 
+  /** read overflowed nodes from disk in batches of the given size (in storage order, deserialized in parallel), rather
+   * than one by one when they're accessed. Useful for traversals over mostly overflowed nodes, e.g.
+   * `label(...).prefetch(1000).out(...)` */
+  @Doc("read overflowed nodes from disk in batches")
+  def prefetch(batchSize: Int): Traversal[E] =
+    traversal.iterator.grouped(batchSize).flatMap { batch =>
+      NodeRef.getAll(batch.asJava)
+      batch
+    }
+
   /** follow outgoing edges to adjacent nodes */
   @Doc("follow outgoing edges to adjacent nodes")
   def out: Traversal[Node] =
@@ -0,0 +1,67 @@
+package overflowdb.traversal.filter
+
+import java.util.regex.Pattern
+
+import overflowdb.{IndexType, NodeRef, OdbIndexManager}
+import overflowdb.traversal.{LabelTraversal, Traversal}
+
+import scala.jdk.CollectionConverters._
+
+/**
+ * If a property filter is the first step after `label`, and the property has a suitable index, the candidate nodes
+ * can be looked up in the index rather than checking all nodes with that label. An index for that label only is
+ * preferred over an index for all nodes.
+ * The candidates are filtered by label only, i.e. the caller still needs to apply the actual filter.
+ */
+private[filter] object IndexLookup {
+
+  /** uses an IndexType.SORTED index
+   *  @param from lower bound, null for none
+   *  @param to upper bound, null for none */
+  def range[NodeType](trav: Traversal[NodeType], propertyKey: String)(from: Any,
+                                                                       fromInclusive: Boolean,
+                                                                       to: Any,
+                                                                       toInclusive: Boolean): Traversal[NodeType] =
+    lookup(trav, propertyKey, hasIndexType(IndexType.SORTED)) {
+      case (indexManager, Some(label)) => indexManager.lookupRange(label, propertyKey, from, fromInclusive, to, toInclusive)
+      case (indexManager, None) => indexManager.lookupRange(propertyKey, from, fromInclusive, to, toInclusive)
+    }
+
+  /** uses an IndexType.SORTED index */
+  def prefix[NodeType](trav: Traversal[NodeType], propertyKey: String)(prefix: String): Traversal[NodeType] =
+    lookup(trav, propertyKey, hasIndexType(IndexType.SORTED)) {
+      case (indexManager, Some(label)) => indexManager.lookupPrefix(label, propertyKey, prefix)
+      case (indexManager, None) => indexManager.lookupPrefix(propertyKey, prefix)
+    }
+
+  /** uses any index, but IndexType.TRIGRAM is the most efficient */
+  def regexps[NodeType](trav: Traversal[NodeType], propertyKey: String)(regexps: Seq[Pattern]): Traversal[NodeType] =
+    lookup(trav, propertyKey, _.isPresent) { (indexManager, label) =>
+      val lookups = regexps.iterator.flatMap { regexp =>
+        label match {
+          case Some(label) => indexManager.lookupRegex(label, propertyKey, regexp).asScala
+          case None => indexManager.lookupRegex(propertyKey, regexp).asScala
+        }
+      }
+      lookups.distinct.asJava
+    }
+
+  /** @param lookupFun (indexManager, label) => matching nodes. The label is None for the index of all nodes */
+  private def lookup[NodeType](trav: Traversal[NodeType], propertyKey: String, isSuitable: java.util.Optional[IndexType] => Boolean)(
+      lookupFun: (OdbIndexManager, Option[String]) => java.util.Iterator[NodeRef[_]]): Traversal[NodeType] =
+    trav match {
+      case labelTrav: LabelTraversal[_] =>
+        val indexManager = labelTrav.graph.indexManager
+        if (isSuitable(indexManager.getIndexType(labelTrav.label, propertyKey)))
+          Traversal(lookupFun(indexManager, Some(labelTrav.label))).cast[NodeType]
+        else if (isSuitable(indexManager.getIndexType(propertyKey)))
+          Traversal(lookupFun(indexManager, None))
+            .filter(_.label == labelTrav.label)
+            .cast[NodeType]
+        else trav
+      case _ => trav
+    }
+
+  private def hasIndexType(indexType: IndexType)(actual: java.util.Optional[IndexType]): Boolean =
+    actual.filter(_ == indexType).isPresent
+}
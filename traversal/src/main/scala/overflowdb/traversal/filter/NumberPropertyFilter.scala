@@ -2,7 +2,11 @@ package overflowdb.traversal.filter
 
 import overflowdb.traversal.Traversal
 
-/** to avoid boxing conversion at runtime, the implementation is replicated for each number type */
+/**
+ * to avoid boxing conversion at runtime, the implementation is replicated for each number type.
+ * The variants that take the `propertyKey` use a sorted index if the filter is the first step after `label`,
+ * see [[IndexLookup]].
+ */
 object NumberPropertyFilter {
 
   object Int {
@@ -10,17 +14,33 @@ object NumberPropertyFilter {
                                                 value: Int): Traversal[NodeType] =
       trav.filter(node => accessor(node) > value)
 
+    def gt[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Int,
+                                                                     value: Int): Traversal[NodeType] =
+      gt(IndexLookup.range(trav, propertyKey)(value, false, null, false))(accessor, value)
+
     def gte[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Int,
                                                  value: Int): Traversal[NodeType] =
       trav.filter(node => accessor(node) >= value)
 
+    def gte[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Int,
+                                                                      value: Int): Traversal[NodeType] =
+      gte(IndexLookup.range(trav, propertyKey)(value, true, null, false))(accessor, value)
+
     def lt[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Int,
                                                 value: Int): Traversal[NodeType] =
       trav.filter(node => accessor(node) < value)
 
+    def lt[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Int,
+                                                                     value: Int): Traversal[NodeType] =
+      lt(IndexLookup.range(trav, propertyKey)(null, false, value, false))(accessor, value)
+
     def lte[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Int,
                                                  value: Int): Traversal[NodeType] =
       trav.filter(node => accessor(node) <= value)
+
+    def lte[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Int,
+                                                                      value: Int): Traversal[NodeType] =
+      lte(IndexLookup.range(trav, propertyKey)(null, false, value, true))(accessor, value)
   }
 
   object Long {
@@ -28,17 +48,33 @@ object NumberPropertyFilter {
                                                 value: Long): Traversal[NodeType] =
       trav.filter(node => accessor(node) > value)
 
+    def gt[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Long,
+                                                                     value: Long): Traversal[NodeType] =
+      gt(IndexLookup.range(trav, propertyKey)(value, false, null, false))(accessor, value)
+
     def gte[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Long,
                                                  value: Long): Traversal[NodeType] =
       trav.filter(node => accessor(node) >= value)
 
+    def gte[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Long,
+                                                                      value: Long): Traversal[NodeType] =
+      gte(IndexLookup.range(trav, propertyKey)(value, true, null, false))(accessor, value)
+
     def lt[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Long,
                                                 value: Long): Traversal[NodeType] =
       trav.filter(node => accessor(node) < value)
 
+    def lt[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Long,
+                                                                     value: Long): Traversal[NodeType] =
+      lt(IndexLookup.range(trav, propertyKey)(null, false, value, false))(accessor, value)
+
     def lte[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Long,
                                                  value: Long): Traversal[NodeType] =
       trav.filter(node => accessor(node) <= value)
+
+    def lte[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Long,
+                                                                      value: Long): Traversal[NodeType] =
+      lte(IndexLookup.range(trav, propertyKey)(null, false, value, true))(accessor, value)
   }
 
   object Float {
@@ -46,17 +82,33 @@ object NumberPropertyFilter {
                                                 value: Float): Traversal[NodeType] =
       trav.filter(node => accessor(node) > value)
 
+    def gt[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Float,
+                                                                     value: Float): Traversal[NodeType] =
+      gt(IndexLookup.range(trav, propertyKey)(value, false, null, false))(accessor, value)
+
     def gte[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Float,
                                                  value: Float): Traversal[NodeType] =
       trav.filter(node => accessor(node) >= value)
 
+    def gte[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Float,
+                                                                      value: Float): Traversal[NodeType] =
+      gte(IndexLookup.range(trav, propertyKey)(value, true, null, false))(accessor, value)
+
     def lt[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Float,
                                                 value: Float): Traversal[NodeType] =
       trav.filter(node => accessor(node) < value)
 
+    def lt[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Float,
+                                                                     value: Float): Traversal[NodeType] =
+      lt(IndexLookup.range(trav, propertyKey)(null, false, value, false))(accessor, value)
+
     def lte[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Float,
                                                  value: Float): Traversal[NodeType] =
       trav.filter(node => accessor(node) <= value)
+
+    def lte[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Float,
+                                                                      value: Float): Traversal[NodeType] =
+      lte(IndexLookup.range(trav, propertyKey)(null, false, value, true))(accessor, value)
   }
 
   object Double {
@@ -64,17 +116,33 @@ object NumberPropertyFilter {
                                                 value: Double): Traversal[NodeType] =
       trav.filter(node => accessor(node) > value)
 
+    def gt[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Double,
+                                                                     value: Double): Traversal[NodeType] =
+      gt(IndexLookup.range(trav, propertyKey)(value, false, null, false))(accessor, value)
+
     def gte[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Double,
                                                  value: Double): Traversal[NodeType] =
       trav.filter(node => accessor(node) >= value)
 
+    def gte[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Double,
+                                                                      value: Double): Traversal[NodeType] =
+      gte(IndexLookup.range(trav, propertyKey)(value, true, null, false))(accessor, value)
+
     def lt[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Double,
                                                 value: Double): Traversal[NodeType] =
       trav.filter(node => accessor(node) < value)
 
+    def lt[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Double,
+                                                                     value: Double): Traversal[NodeType] =
+      lt(IndexLookup.range(trav, propertyKey)(null, false, value, false))(accessor, value)
+
     def lte[NodeType](trav: Traversal[NodeType])(accessor: NodeType => Double,
                                                  value: Double): Traversal[NodeType] =
       trav.filter(node => accessor(node) <= value)
+
+    def lte[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => Double,
+                                                                      value: Double): Traversal[NodeType] =
+      lte(IndexLookup.range(trav, propertyKey)(null, false, value, true))(accessor, value)
   }
 
 }
@@ -12,6 +12,13 @@ object StringPropertyFilter {
     trav.filter(node => valueRegex.matches(accessor(node)))
   }
 
+  /** uses an index if this is the first step after `label`, see [[IndexLookup]] */
+  def regexp[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => String,
+                                                                       regexp: String): Traversal[NodeType] = {
+    val valueRegex = regexpCompile(regexp)
+    IndexLookup.regexps(trav, propertyKey)(Seq(valueRegex.pattern)).filter(node => valueRegex.matches(accessor(node)))
+  }
+
   def regexpNot[NodeType](trav: Traversal[NodeType])(accessor: NodeType => String,
                                                      regexp: String): Traversal[NodeType] = {
     val valueRegex = regexpCompile(regexp)
@@ -28,6 +35,17 @@ object StringPropertyFilter {
     }
   }
 
+  /** uses an index if this is the first step after `label`, see [[IndexLookup]] */
+  def regexpMultiple[NodeType](trav: Traversal[NodeType], propertyKey: String)(
+      accessor: NodeType => String,
+      regexps: Seq[String]): Traversal[NodeType] = {
+    val valueRegexs = regexps.map(regexpCompile)
+    IndexLookup.regexps(trav, propertyKey)(valueRegexs.map(_.pattern)).filter { node =>
+      val value = accessor(node)
+      valueRegexs.find(_.matches(value)).isDefined
+    }
+  }
+
   def regexpNotMultiple[NodeType](trav: Traversal[NodeType])(
       accessor: NodeType => String,
       regexps: Seq[String]): Traversal[NodeType] = {
@@ -60,6 +78,11 @@ object StringPropertyFilter {
                                                       value: String): Traversal[NodeType] =
     trav.filter(accessor(_).startsWith(value))
 
+  /** uses a sorted index if this is the first step after `label`, see [[IndexLookup]] */
+  def startsWith[NodeType](trav: Traversal[NodeType], propertyKey: String)(accessor: NodeType => String,
+                                                                           value: String): Traversal[NodeType] =
+    startsWith(IndexLookup.prefix(trav, propertyKey)(value))(accessor, value)
+
   def endsWith[NodeType](trav: Traversal[NodeType])(accessor: NodeType => String,
                                                     value: String): Traversal[NodeType] =
     trav.filter(accessor(_).endsWith(value))
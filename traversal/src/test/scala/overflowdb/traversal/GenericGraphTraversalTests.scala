@@ -1,7 +1,7 @@
 package overflowdb.traversal
 
-import overflowdb.Node
-import overflowdb.traversal.testdomains.simple.{Connection, ExampleGraphSetup, Thing}
+import overflowdb._
+import overflowdb.traversal.testdomains.simple.{Connection, ExampleGraphSetup, SimpleDomain, Thing}
 import org.scalatest.{Matchers, WordSpec}
 
 /** generic graph traversals, i.e. domain independent */
@@ -149,6 +149,26 @@ class GenericGraphTraversalTests extends WordSpec with Matchers {
     }
   }
 
+  "prefetch step reads overflowed nodes in batches" in {
+    val storageFile = java.io.File.createTempFile("overflowdb", "bin")
+    storageFile.deleteOnExit()
+    def openGraph = SimpleDomain.newGraph(OdbConfig.withoutOverflow.withStorageLocation(storageFile.getAbsolutePath))
+
+    val graph = openGraph
+    val things = (1 to 10).map(i => graph + (Thing.Label, Thing.Properties.Name -> s"thing $i"))
+    things.sliding(2).foreach { case Seq(a, b) => a --- Connection.Label --> b }
+    graph.close()
+
+    /* after reopening, all nodes are on disk only */
+    val reopened = openGraph
+    try {
+      val prefetched = SimpleDomain.traversal(reopened).things.prefetch(4).l
+      prefetched.size shouldBe 10
+      prefetched.forall(_.isSet) shouldBe true
+      SimpleDomain.traversal(reopened).things.prefetch(4).out.property(Thing.Properties.Name).size shouldBe 9
+    } finally reopened.close()
+  }
+
   def assertNames[A <: Node](traversal: Traversal[A], expectedNames: Set[String]) = {
     traversal.property(Thing.Properties.Name).toSet shouldBe expectedNames
   }
@@ -3,6 +3,7 @@ package overflowdb.traversal
 import overflowdb.traversal.filter.StringPropertyFilter.InvalidRegexException
 import overflowdb.traversal.testdomains.gratefuldead._
 import org.scalatest.{Matchers, WordSpec}
+import overflowdb.IndexType
 
 class GratefulDeadTests extends WordSpec with Matchers {
   val gratefulDead = GratefulDead.traversal(GratefulDead.newGraphWithData)
@@ -55,6 +56,53 @@ class GratefulDeadTests extends WordSpec with Matchers {
       gratefulDead.songs.performancesLte(1).size shouldBe 243
     }
 
+    "property filter using sorted indexes" in {
+      val graph = GratefulDead.newGraphWithData
+      graph.indexManager.createNodePropertyIndex(Song.PropertyNames.Performances, IndexType.SORTED)
+      graph.indexManager.createNodePropertyIndex(Artist.PropertyNames.Name, IndexType.SORTED)
+      val indexed = GratefulDead.traversal(graph)
+
+      /* same results as the unindexed filters above */
+      indexed.artists.nameStartsWith("Bob").size shouldBe 3
+      indexed.songs.nameStartsWith("Bob").size shouldBe 0
+      indexed.songs.performancesGt(1).size shouldBe 341
+      indexed.songs.performancesGte(1).size shouldBe 483
+      indexed.songs.performancesLt(1).size shouldBe 101
+      indexed.songs.performancesLte(1).size shouldBe 243
+      indexed.songs.performancesGt(1).performancesLte(2).size shouldBe 36
+      indexed.artists.nameExact("Bob_Dylan").sangSongs.performancesGt(1).size shouldBe
+        gratefulDead.artists.nameExact("Bob_Dylan").sangSongs.performancesGt(1).size
+      graph.close()
+    }
+
+    "property filter using trigram indexes" in {
+      val graph = GratefulDead.newGraphWithData
+      graph.indexManager.createNodePropertyIndex(Artist.PropertyNames.Name, IndexType.TRIGRAM)
+      val indexed = GratefulDead.traversal(graph)
+
+      /* same results as the unindexed filters above */
+      indexed.artists.name(".*Bob.*").size shouldBe 3
+      indexed.artists.name(".*Bob.*", "^M.*").size shouldBe 16
+      indexed.artists.name("Bob_Dylan").sangSongs.size shouldBe 22
+      indexed.songs.name(".*BOB.*").size shouldBe gratefulDead.songs.name(".*BOB.*").size
+      intercept[InvalidRegexException] { indexed.artists.name("this regexp is invalid [") }
+      graph.close()
+    }
+
+    "property filter using label specific indexes" in {
+      val graph = GratefulDead.newGraphWithData
+      graph.indexManager.createLabelPropertyIndex(Song.Label, Song.PropertyNames.Performances, IndexType.SORTED)
+      graph.indexManager.createLabelPropertyIndex(Artist.Label, Artist.PropertyNames.Name, IndexType.TRIGRAM)
+      val indexed = GratefulDead.traversal(graph)
+
+      indexed.songs.performancesGt(1).size shouldBe 341
+      indexed.songs.performancesLte(1).size shouldBe 243
+      indexed.artists.name(".*Bob.*").size shouldBe 3
+      indexed.artists.name(".*Bob.*", "^M.*").size shouldBe 16
+      indexed.songs.name(".*BOB.*").size shouldBe gratefulDead.songs.name(".*BOB.*").size
+      graph.close()
+    }
+
     "throw useful exception when passing invalid regexp" in {
       intercept[InvalidRegexException] { gratefulDead.artists.name("this regexp is invalid [") }
     }
@@ -10,8 +10,8 @@ package object gratefuldead {
     def wroteSongs: Traversal[Song] = trav.flatMap(_.wroteSongs)
 
     def name: Traversal[String] = trav.map(_.name)
-    def name(regexp: String): Traversal[Artist] = StringPropertyFilter.regexp(trav)(_.name, regexp)
-    def name(regexps: String*): Traversal[Artist] = StringPropertyFilter.regexpMultiple(trav)(_.name, regexps)
+    def name(regexp: String): Traversal[Artist] = StringPropertyFilter.regexp(trav, Artist.PropertyNames.Name)(_.name, regexp)
+    def name(regexps: String*): Traversal[Artist] = StringPropertyFilter.regexpMultiple(trav, Artist.PropertyNames.Name)(_.name, regexps)
     def nameNot(regexp: String): Traversal[Artist] = StringPropertyFilter.regexpNot(trav)(_.name, regexp)
     def nameNot(regexps: String*): Traversal[Artist] = StringPropertyFilter.regexpNotMultiple(trav)(_.name, regexps)
     def nameExact(value: String): Traversal[Artist] = PropertyFilter.exact(trav)(_.name, value)
@@ -29,15 +29,15 @@ package object gratefuldead {
     def sungBy: Traversal[Artist] = trav.flatMap(_.sungBy)
 
     def name: Traversal[String] = trav.map(_.name)
-    def name(regexp: String): Traversal[Song] = StringPropertyFilter.regexp(trav)(_.name, regexp)
-    def name(regexps: String*): Traversal[Song] = StringPropertyFilter.regexpMultiple(trav)(_.name, regexps)
+    def name(regexp: String): Traversal[Song] = StringPropertyFilter.regexp(trav, Song.PropertyNames.Name)(_.name, regexp)
+    def name(regexps: String*): Traversal[Song] = StringPropertyFilter.regexpMultiple(trav, Song.PropertyNames.Name)(_.name, regexps)
     def nameNot(regexp: String): Traversal[Song] = StringPropertyFilter.regexpNot(trav)(_.name, regexp)
     def nameNot(regexps: String*): Traversal[Song] = StringPropertyFilter.regexpNotMultiple(trav)(_.name, regexps)
     def nameExact(value: String): Traversal[Song] = PropertyFilter.exact(trav)(_.name, value)
     def nameExact(values: String*): Traversal[Song] = PropertyFilter.exactMultiple(trav)(_.name, values)
     def nameContains(value: String): Traversal[Song] = StringPropertyFilter.contains(trav)(_.name, value)
     def nameContainsNot(value: String): Traversal[Song] = StringPropertyFilter.containsNot(trav)(_.name, value)
-    def nameStartsWith(value: String): Traversal[Song] = StringPropertyFilter.startsWith(trav)(_.name, value)
+    def nameStartsWith(value: String): Traversal[Song] = StringPropertyFilter.startsWith(trav, Song.PropertyNames.Name)(_.name, value)
     def nameEndsWith(value: String): Traversal[Song] = StringPropertyFilter.endsWith(trav)(_.name, value)
 
     def songType: Traversal[String] = trav.map(_.songType)
@@ -54,9 +54,9 @@ package object gratefuldead {
 
     def performances: Traversal[Int] = trav.map(_.performances)
     def performances(value: Int): Traversal[Song] = PropertyFilter.exact(trav)(_.performances, value)
-    def performancesGt(value: Int): Traversal[Song] = NumberPropertyFilter.Int.gt(trav)(_.performances, value)
-    def performancesGte(value: Int): Traversal[Song] = NumberPropertyFilter.Int.gte(trav)(_.performances, value)
-    def performancesLt(value: Int): Traversal[Song] = NumberPropertyFilter.Int.lt(trav)(_.performances, value)
-    def performancesLte(value: Int): Traversal[Song] = NumberPropertyFilter.Int.lte(trav)(_.performances, value)
+    def performancesGt(value: Int): Traversal[Song] = NumberPropertyFilter.Int.gt(trav, Song.PropertyNames.Performances)(_.performances, value)
+    def performancesGte(value: Int): Traversal[Song] = NumberPropertyFilter.Int.gte(trav, Song.PropertyNames.Performances)(_.performances, value)
+    def performancesLt(value: Int): Traversal[Song] = NumberPropertyFilter.Int.lt(trav, Song.PropertyNames.Performances)(_.performances, value)
+    def performancesLte(value: Int): Traversal[Song] = NumberPropertyFilter.Int.lte(trav, Song.PropertyNames.Performances)(_.performances, value)
   }
 }